@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * Turns on JPA auditing, so that entities with {@code @CreatedDate} and {@code @LastModifiedDate}
+ * fields (e.g. {@link edu.ucsb.cs156.example.entities.Job}) have them filled in when saved. This is
+ * kept out of the main application class so that {@code @WebMvcTest} slices do not need a JPA
+ * context.
+ */
+@Configuration
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
+public class JpaAuditingConfig {
+
+  /**
+   * @return the current time as a ZonedDateTime, which is the type our audited fields use
+   */
+  @Bean
+  public DateTimeProvider auditingDateTimeProvider() {
+    return () -> Optional.of(ZonedDateTime.now());
+  }
+}
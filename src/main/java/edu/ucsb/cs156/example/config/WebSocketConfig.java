@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.config;
+
+import java.security.Principal;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * The `WebSocketConfig` class sets up a STOMP endpoint at /ws with an in-memory broker for the
+ * /topic destinations, on which the server pushes job status changes; see {@link
+ * edu.ucsb.cs156.example.services.jobs.JobStatusNotifier}.
+ *
+ * <p>Clients only listen: only admins may subscribe, and nothing may be sent to the broker.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+  @Override
+  public void registerStompEndpoints(StompEndpointRegistry registry) {
+    registry.addEndpoint("/ws");
+  }
+
+  @Override
+  public void configureMessageBroker(MessageBrokerRegistry registry) {
+    registry.enableSimpleBroker("/topic");
+    registry.setApplicationDestinationPrefixes("/app");
+  }
+
+  @Override
+  public void configureClientInboundChannel(ChannelRegistration registration) {
+    registration.interceptors(new AdminSubscriptionInterceptor());
+  }
+
+  /** Rejects subscriptions from anyone but admins, and every message sent by a client. */
+  static class AdminSubscriptionInterceptor implements ChannelInterceptor {
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+      StompHeaderAccessor accessor =
+          MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+      if (accessor == null) return message;
+      if (StompCommand.SEND.equals(accessor.getCommand())) {
+        throw new MessageDeliveryException("Clients may not send messages");
+      }
+      if (StompCommand.SUBSCRIBE.equals(accessor.getCommand()) && !isAdmin(accessor.getUser())) {
+        throw new MessageDeliveryException("Only admins may subscribe");
+      }
+      return message;
+    }
+
+    private static boolean isAdmin(Principal user) {
+      return user instanceof Authentication authentication
+          && authentication.getAuthorities().stream()
+              .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+  }
+}
@@ -1,20 +1,81 @@
 package edu.ucsb.cs156.example.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidBulkCreateException;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidExportException;
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import edu.ucsb.cs156.example.errors.InvalidJobScheduleException;
+import edu.ucsb.cs156.example.errors.InvalidJobSubmissionException;
+import edu.ucsb.cs156.example.errors.InvalidSortException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.exports.EntityExport;
+import edu.ucsb.cs156.example.services.exports.ExportFormat;
+import jakarta.persistence.Id;
+import jakarta.persistence.criteria.Predicate;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is an abstract class that provides common functionality for all API controllers. */
 @Slf4j
 public abstract class ApiController {
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private ObjectMapper cursorMapper;
+
+  @Autowired private EntityStreamService entityStreamService;
+
+  /** The most items that one call to a bulk create endpoint may save */
+  protected static final int MAX_BULK_SIZE = 1000;
+
+  private static final Pattern SORT =
+      Pattern.compile("(\\w+)(?:,(asc|desc))?", Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern NO_QUALITY = Pattern.compile("q=0(\\.0*)?");
+
   /**
    * This method returns the current user.
    *
@@ -34,6 +95,232 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * This method lists the entities that match some filters, one page at a time. Pages are found by
+   * key rather than by offset, so that a page deep into a large table costs as much as the first:
+   * the cursor holds the sort field and id of the last item of a page, and the next page starts
+   * just past them. Clients may instead opt in to getting every match as a plain array, which is
+   * written out row by row while it is read from the database rather than loaded first.
+   *
+   * <p>Sort keys are compared with {@code <} and {@code >}, which never match a null, so only
+   * fields that are never null should be sortable.
+   *
+   * @param repository the repository of the entities
+   * @param type the entity class
+   * @param sortable the fields besides the id that the list can be sorted by
+   * @param filters values that fields must equal; see {@link #filters(Object...)}
+   * @param request the paging parameters the client sent
+   * @param <T> the entity type
+   * @return a {@link KeysetPage}, or an array of every match if the client asked for it unpaged
+   * @throws InvalidSortException if the list cannot be sorted as asked
+   * @throws InvalidCursorException if the cursor was not made for this list and sort
+   */
+  protected <T> Object keysetPage(
+      JpaSpecificationExecutor<T> repository,
+      Class<T> type,
+      Set<String> sortable,
+      Map<String, Object> filters,
+      KeysetPageRequest request) {
+    Sort sort = sortOf(request.getSort(), type, sortable);
+    Specification<T> matching =
+        (root, query, cb) ->
+            cb.and(
+                filters.entrySet().stream()
+                    .map(filter -> cb.equal(root.get(filter.getKey()), filter.getValue()))
+                    .toArray(Predicate[]::new));
+    if (request.getUnpaged()) {
+      return new StreamedArray<>(entityStreamService, type, matching, sort);
+    }
+
+    int size = Math.max(1, Math.min(request.getSize(), KeysetPageRequest.MAX_SIZE));
+    ScrollPosition position =
+        request.getCursor() == null
+            ? ScrollPosition.keyset()
+            : decodeCursor(request.getCursor(), type, sort);
+    Window<T> window =
+        repository.findBy(matching, query -> query.sortBy(sort).limit(size).scroll(position));
+    String nextCursor =
+        window.hasNext()
+            ? encodeCursor((KeysetScrollPosition) window.positionAt(window.size() - 1))
+            : null;
+    return new KeysetPage<>(window.getContent(), nextCursor);
+  }
+
+  /**
+   * This method builds the filters for {@link #keysetPage}, leaving out the ones the client did not
+   * send.
+   *
+   * @param namesAndValues field names, each followed by the value it must equal or null for any
+   * @return the filters
+   */
+  protected static Map<String, Object> filters(Object... namesAndValues) {
+    Map<String, Object> filters = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      if (namesAndValues[i + 1] != null) {
+        filters.put((String) namesAndValues[i], namesAndValues[i + 1]);
+      }
+    }
+    return filters;
+  }
+
+  /**
+   * This method saves a list of new entities in one transaction. Their ids come from a sequence
+   * that hands Hibernate 50 at a time, so the inserts reach the database in JDBC batches rather
+   * than one round trip per row. Any ids the client sent are ignored. Nothing is saved unless every
+   * item is valid.
+   *
+   * @param repository the repository of the entities
+   * @param type the entity class
+   * @param required the fields every item must have, as for creating one at a time
+   * @param items the new entities
+   * @param <T> the entity type
+   * @return the saved entities, with their ids
+   * @throws InvalidBulkCreateException if there are too many items or one is missing a field
+   */
+  protected <T> Iterable<T> createAll(
+      CrudRepository<T, ?> repository, Class<T> type, Set<String> required, List<T> items) {
+    if (items.size() > MAX_BULK_SIZE) {
+      throw new InvalidBulkCreateException(
+          "At most %d items may be created at once, got %d".formatted(MAX_BULK_SIZE, items.size()));
+    }
+    String id = idFieldOf(type);
+    for (int i = 0; i < items.size(); i++) {
+      if (items.get(i) == null) {
+        throw new InvalidBulkCreateException("Item %d is null".formatted(i));
+      }
+      BeanWrapper item = PropertyAccessorFactory.forBeanPropertyAccess(items.get(i));
+      for (String field : new TreeSet<>(required)) {
+        if (item.getPropertyValue(field) == null) {
+          throw new InvalidBulkCreateException("Item %d has no %s".formatted(i, field));
+        }
+      }
+      item.setPropertyValue(id, item.getPropertyType(id).isPrimitive() ? 0L : null);
+    }
+    return repository.saveAll(items);
+  }
+
+  /**
+   * This method downloads every entity of one type as CSV or NDJSON, in order of id. The rows are
+   * written to the response while they are read through a database cursor, so the download starts
+   * at once and takes about as much memory for a large table as for a small one. It is gzipped if
+   * the client accepts gzip.
+   *
+   * @param type the entity class
+   * @param name what to call the downloaded file, without its extension
+   * @param format "csv" or "ndjson"
+   * @param acceptEncoding the Accept-Encoding header the client sent, or null
+   * @param <T> the entity type
+   * @return the download
+   * @throws InvalidExportException if the format is unknown
+   */
+  protected <T> ResponseEntity<StreamingResponseBody> export(
+      Class<T> type, String name, String format, String acceptEncoding) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    boolean gzip = acceptsGzip(acceptEncoding);
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, exportFormat.getContentType() + ";charset=UTF-8")
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment()
+                    .filename(name + "." + exportFormat.getExtension())
+                    .build()
+                    .toString())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    return response.body(
+        new EntityExport<>(
+            entityStreamService, cursorMapper, type, Sort.by(idFieldOf(type)), exportFormat, gzip));
+  }
+
+  /**
+   * @param acceptEncoding an Accept-Encoding header, or null
+   * @return whether it lists gzip with a quality above zero
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) return false;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return parts.length == 1 || !NO_QUALITY.matcher(parts[1].replace(" ", "")).matches();
+      }
+    }
+    return false;
+  }
+
+  /** A JSON array that reads its items from the database while it is being written. */
+  @AllArgsConstructor
+  static class StreamedArray<T> extends JsonSerializable.Base {
+    private final EntityStreamService entityStreamService;
+    private final Class<T> type;
+    private final Specification<T> matching;
+    private final Sort sort;
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+      gen.writeStartArray();
+      entityStreamService.forEach(
+          type, matching, sort, row -> serializers.defaultSerializeValue(row, gen));
+      gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+        throws IOException {
+      serialize(gen, serializers);
+    }
+  }
+
+  private static Sort sortOf(String sort, Class<?> type, Set<String> sortable) {
+    String id = idFieldOf(type);
+    if (sort == null) return Sort.by(id);
+    Set<String> allowed = new HashSet<>(sortable);
+    allowed.add(id);
+    Matcher matcher = SORT.matcher(sort);
+    if (!matcher.matches() || !allowed.contains(matcher.group(1))) {
+      throw new InvalidSortException(sort, allowed);
+    }
+    Sort.Direction direction =
+        "desc".equalsIgnoreCase(matcher.group(2)) ? Sort.Direction.DESC : Sort.Direction.ASC;
+    // The id breaks ties, so that each item has a key of its own
+    Sort byField = Sort.by(direction, matcher.group(1));
+    return id.equals(matcher.group(1)) ? byField : byField.and(Sort.by(direction, id));
+  }
+
+  private static String idFieldOf(Class<?> type) {
+    return Arrays.stream(type.getDeclaredFields())
+        .filter(field -> field.isAnnotationPresent(Id.class))
+        .findFirst()
+        .orElseThrow()
+        .getName();
+  }
+
+  private String encodeCursor(KeysetScrollPosition position) {
+    String json = cursorMapper.valueToTree(position.getKeys()).toString();
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private ScrollPosition decodeCursor(String cursor, Class<?> type, Sort sort) {
+    Map<String, Object> keys = new LinkedHashMap<>();
+    try {
+      JsonNode json = cursorMapper.readTree(Base64.getUrlDecoder().decode(cursor));
+      for (Sort.Order order : sort) {
+        Class<?> fieldType = ReflectionUtils.findField(type, order.getProperty()).getType();
+        Object key =
+            cursorMapper.treeToValue(
+                json.path(order.getProperty()), ClassUtils.resolvePrimitiveIfNecessary(fieldType));
+        if (key == null) throw new InvalidCursorException(cursor);
+        keys.put(order.getProperty(), key);
+      }
+    } catch (IllegalArgumentException | IOException e) {
+      throw new InvalidCursorException(cursor);
+    }
+    return ScrollPosition.forward(keys);
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    *
@@ -47,4 +334,40 @@ public abstract class ApiController {
         "type", e.getClass().getSimpleName(),
         "message", e.getMessage());
   }
+
+  /**
+   * This method handles the JobQueueFullException.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({JobQueueFullException.class})
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public Object handleJobQueueFullException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
+
+  /**
+   * This method handles the exceptions thrown when a request is invalid.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({
+    InvalidCursorException.class,
+    InvalidSortException.class,
+    InvalidJobScheduleException.class,
+    InvalidJobSubmissionException.class,
+    InvalidBulkCreateException.class,
+    InvalidImportException.class,
+    InvalidExportException.class
+  })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequestException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
+  }
 }
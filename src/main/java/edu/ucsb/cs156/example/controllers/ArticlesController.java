@@ -2,25 +2,39 @@ package edu.ucsb.cs156.example.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for Articles */
 @Tag(name = "Articles")
@@ -31,17 +45,50 @@ public class ArticlesController extends ApiController {
 
   @Autowired ArticlesRepository articlesRepository;
 
+  @Autowired ImportService importService;
+
+  /** Fields besides the id that the list of articles can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("title", "email", "dateAdded");
+
+  /** Fields that every new article must have, as for creating one at a time */
+  private static final Set<String> REQUIRED =
+      Set.of("title", "url", "explanation", "email", "dateAdded");
+
   /**
-   * List all Articles
+   * List the articles, a page at a time
    *
-   * @return an iterable of Articles
+   * @param email only articles submitted by this email
+   * @param page the paging parameters
+   * @return a page of articles, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all articles")
+  @Operation(summary = "List articles, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Articles> allArticles() {
-    Iterable<Articles> articles = articlesRepository.findAll();
-    return articles;
+  public Object allArticles(
+      @Parameter(name = "email", description = "only articles submitted by this email")
+          @RequestParam(required = false)
+          String email,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(articlesRepository, Articles.class, SORTABLE, filters("email", email), page);
+  }
+
+  /**
+   * Download every one of the articles as CSV or NDJSON. Rows are written as they are read from the
+   * database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all articles as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportArticles(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(Articles.class, "articles", format, acceptEncoding);
   }
 
   /**
@@ -88,6 +135,19 @@ public class ArticlesController extends ApiController {
     return savedArticle;
   }
 
+  /**
+   * Create many new articles at once
+   *
+   * @param articles the new articles; any ids are ignored
+   * @return the saved articles, with their ids
+   */
+  @Operation(summary = "Create many new articles at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<Articles> bulkCreateArticles(@RequestBody List<Articles> articles) {
+    return createAll(articlesRepository, Articles.class, REQUIRED, articles);
+  }
+
   /**
    * Get a single article by id
    *
@@ -135,6 +195,28 @@ public class ArticlesController extends ApiController {
     return article;
   }
 
+  /**
+   * Start a job that imports articles from a CSV or NDJSON file. Each row is checked and any row
+   * that cannot be imported is logged to the job with its line number.
+   *
+   * @param file the file, whose fields are named as in the JSON for one of the articles
+   * @param format csv or ndjson; if not given, ndjson for a file name ending in .ndjson or .jsonl
+   *     and csv otherwise
+   * @return the import job
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(summary = "Import articles from a CSV or NDJSON file, as a job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importArticles(
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(name = "format", description = "csv or ndjson; by default from the file name")
+          @RequestParam(required = false)
+          String format)
+      throws IOException {
+    return importService.startImport(ImportTarget.ARTICLES, file, format);
+  }
+
   /**
    * Delete an Article
    *
@@ -3,24 +3,32 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for HelpRequest */
 @Tag(name = "HelpRequests")
@@ -30,17 +38,61 @@ import org.springframework.web.bind.annotation.RestController;
 public class HelpRequestsController extends ApiController {
   @Autowired HelpRequestRepository helpRequestRepository;
 
+  /** Fields besides the id that the list of help requests can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("requestTime", "requesterEmail", "teamId");
+
+  /** Fields that every new help request must have, as for creating one at a time */
+  private static final Set<String> REQUIRED =
+      Set.of("requesterEmail", "teamId", "tableOrBreakoutRoom", "explanation", "requestTime");
+
   /**
-   * List all help requests
+   * List the help requests, a page at a time
    *
-   * @return an iterable of HelpRequest
+   * @param requesterEmail only requests from this email
+   * @param teamId only requests from this team
+   * @param solved only solved or only unsolved requests
+   * @param page the paging parameters
+   * @return a page of help requests, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all help requests")
+  @Operation(summary = "List help requests, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<HelpRequest> allHelpRequests() {
-    Iterable<HelpRequest> requests = helpRequestRepository.findAll();
-    return requests;
+  public Object allHelpRequests(
+      @Parameter(name = "requesterEmail", description = "only requests from this email")
+          @RequestParam(required = false)
+          String requesterEmail,
+      @Parameter(name = "teamId", description = "only requests from this team")
+          @RequestParam(required = false)
+          String teamId,
+      @Parameter(name = "solved", description = "only solved or only unsolved requests")
+          @RequestParam(required = false)
+          Boolean solved,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        helpRequestRepository,
+        HelpRequest.class,
+        SORTABLE,
+        filters("requesterEmail", requesterEmail, "teamId", teamId, "solved", solved),
+        page);
+  }
+
+  /**
+   * Download every one of the help requests as CSV or NDJSON. Rows are written as they are read
+   * from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all help requests as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportHelpRequests(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(HelpRequest.class, "help_requests", format, acceptEncoding);
   }
 
   /**
@@ -89,6 +141,19 @@ public class HelpRequestsController extends ApiController {
     return savedHelpRequest;
   }
 
+  /**
+   * Create many new help requests at once
+   *
+   * @param helpRequests the new help requests; any ids are ignored
+   * @return the saved help requests, with their ids
+   */
+  @Operation(summary = "Create many new help requests at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<HelpRequest> bulkCreateHelpRequests(@RequestBody List<HelpRequest> helpRequests) {
+    return createAll(helpRequestRepository, HelpRequest.class, REQUIRED, helpRequests);
+  }
+
   /**
    * Delete a HelpRequest
    *
@@ -0,0 +1,174 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
+import edu.ucsb.cs156.example.repositories.JobScheduleRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.Set;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** This is a REST controller for recurring job schedules */
+@Tag(name = "Job Schedules")
+@RequestMapping("/api/jobs/schedules")
+@RestController
+public class JobSchedulesController extends ApiController {
+
+  @Autowired JobScheduleRepository jobScheduleRepository;
+
+  @Autowired JobScheduler jobScheduler;
+
+  /** Fields besides the id that the list of job schedules can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("name");
+
+  /**
+   * List the job schedules, a page at a time
+   *
+   * @param enabled only enabled or only disabled schedules
+   * @param jobType only schedules of this job type
+   * @param page the paging parameters
+   * @return a page of job schedules, or all of them if asked for unpaged
+   */
+  @Operation(summary = "List job schedules, a page at a time")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/all")
+  public Object allJobSchedules(
+      @Parameter(name = "enabled", description = "only enabled or only disabled schedules")
+          @RequestParam(required = false)
+          Boolean enabled,
+      @Parameter(name = "jobType", description = "only schedules of this job type")
+          @RequestParam(required = false)
+          String jobType,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        jobScheduleRepository,
+        JobSchedule.class,
+        SORTABLE,
+        filters("enabled", enabled, "jobType", jobType),
+        page);
+  }
+
+  /**
+   * This method returns a single job schedule.
+   *
+   * @param id id of the job schedule to get
+   * @return a single job schedule
+   */
+  @Operation(summary = "Get a single job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("")
+  public JobSchedule getById(@Parameter(name = "id") @RequestParam Long id) {
+    return jobScheduleRepository
+        .findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+  }
+
+  /**
+   * This method creates a new job schedule.
+   *
+   * @param name unique name of the schedule
+   * @param cron when to run, as a Spring cron expression (with seconds)
+   * @param jobType class name of the job to run
+   * @param jobSpec the job's fields as JSON
+   * @param enabled whether the schedule fires
+   * @param overlapPolicy "skip" or "allow"
+   * @param catchUpPolicy "skip" or "once"
+   * @param jitterMs the most each run may be delayed by
+   * @param timeoutMs how long each run may take, or null for no limit
+   * @return the saved job schedule
+   */
+  @Operation(summary = "Create a new job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/post")
+  public JobSchedule postJobSchedule(
+      @Parameter(name = "name") @RequestParam String name,
+      @Parameter(
+              name = "cron",
+              description = "second minute hour day-of-month month day-of-week, e.g. 0 0 3 * * *")
+          @RequestParam
+          String cron,
+      @Parameter(name = "jobType", description = "e.g. edu.ucsb.cs156.example.jobs.TestJob")
+          @RequestParam
+          String jobType,
+      @Parameter(name = "jobSpec", description = "the job's fields as JSON")
+          @RequestParam(defaultValue = "{}")
+          String jobSpec,
+      @Parameter(name = "enabled") @RequestParam(defaultValue = "true") Boolean enabled,
+      @Parameter(
+              name = "overlapPolicy",
+              description = "skip: do not start a run while the previous one is running; allow")
+          @RequestParam(defaultValue = "skip")
+          String overlapPolicy,
+      @Parameter(
+              name = "catchUpPolicy",
+              description = "skip: drop runs missed while no node was up; once: make them up once")
+          @RequestParam(defaultValue = "skip")
+          String catchUpPolicy,
+      @Parameter(name = "jitterMs", description = "delay each run by a random 0..jitterMs ms")
+          @RequestParam(defaultValue = "0")
+          Long jitterMs,
+      @Parameter(name = "timeoutMs", description = "stop a run that takes longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs) {
+    JobSchedule schedule =
+        JobSchedule.builder()
+            .name(name)
+            .cron(cron)
+            .jobType(jobType)
+            .jobSpec(jobSpec)
+            .enabled(enabled)
+            .overlapPolicy(overlapPolicy)
+            .catchUpPolicy(catchUpPolicy)
+            .jitterMs(jitterMs)
+            .timeoutMs(timeoutMs)
+            .build();
+    return jobScheduler.create(schedule);
+  }
+
+  /**
+   * Update a single job schedule; its next run is worked out again from the new cron expression.
+   *
+   * @param id id of the job schedule to update
+   * @param incoming the new job schedule settings
+   * @return the updated job schedule
+   */
+  @Operation(summary = "Update a single job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("")
+  public JobSchedule updateJobSchedule(
+      @Parameter(name = "id") @RequestParam Long id, @RequestBody JobSchedule incoming) {
+    return jobScheduler.update(id, incoming);
+  }
+
+  /**
+   * Deletes a job schedule. Jobs it has already started are not affected.
+   *
+   * @param id id of the job schedule to delete
+   * @return a message indicating that the job schedule was deleted
+   */
+  @Operation(summary = "Delete a job schedule")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("")
+  public Object deleteJobSchedule(@Parameter(name = "id") @RequestParam Long id) {
+    JobSchedule schedule =
+        jobScheduleRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+
+    jobScheduleRepository.delete(schedule);
+    return genericMessage("JobSchedule with id %s deleted".formatted(id));
+  }
+}
@@ -4,49 +4,143 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidJobSubmissionException;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobSubmission;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobTypeUsage;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.RetentionReport;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.DatabaseJobQueue;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobExecutor;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressionService;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
 @RestController
 @Slf4j
 public class JobsController extends ApiController {
+  private static final int MAX_PAGE_SIZE = 500;
+
+  private static final int MAX_BATCH_SIZE = 1000;
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
   @Autowired private JobService jobService;
 
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Autowired private JobRetentionService jobRetentionService;
+
+  @Autowired private DatabaseJobQueue databaseJobQueue;
+
   @Autowired ObjectMapper mapper;
 
-  @Operation(summary = "List all jobs")
+  @Operation(
+      summary =
+          "List jobs, newest first, without their logs; pass nextCursor back as cursor for the"
+              + " next page")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
-  public Iterable<Job> allJobs() {
-    Iterable<Job> jobs = jobsRepository.findAll();
-    return jobs;
+  public KeysetPage<JobSummary> allJobs(
+      @Parameter(name = "status", description = "only jobs with this status")
+          @RequestParam(required = false)
+          String status,
+      @Parameter(name = "createdById", description = "only jobs created by this user")
+          @RequestParam(required = false)
+          Long createdById,
+      @Parameter(name = "cursor", description = "nextCursor from the previous page")
+          @RequestParam(required = false)
+          String cursor,
+      @Parameter(name = "size", description = "jobs per page, at most " + MAX_PAGE_SIZE)
+          @RequestParam(defaultValue = "50")
+          Integer size) {
+    int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    ZonedDateTime beforeCreatedAt = null;
+    Long beforeId = null;
+    if (cursor != null) {
+      String[] key = KeysetPage.decodeCursor(cursor, 2);
+      try {
+        beforeCreatedAt = Instant.parse(key[0]).atZone(ZoneOffset.UTC);
+        beforeId = Long.parseLong(key[1]);
+      } catch (DateTimeParseException | NumberFormatException e) {
+        throw new InvalidCursorException(cursor);
+      }
+    }
+
+    List<JobSummary> rows =
+        jobsRepository.findSummaries(status, createdById, beforeCreatedAt, beforeId, pageSize + 1);
+    return KeysetPage.of(
+        rows,
+        pageSize,
+        job -> KeysetPage.encodeCursor(job.getCreatedAt().toInstant(), job.getId()));
   }
 
   @Operation(summary = "Delete all job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
-    return Map.of("message", "All jobs deleted");
+    RetentionReport report = jobRetentionService.purgeAll();
+    return Map.of(
+        "message",
+        "All jobs deleted (%d jobs, %d log chunks)"
+            .formatted(report.getJobs(), report.getLogChunks()));
+  }
+
+  @Operation(summary = "Remove finished jobs older than the retention period now")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/retention/run")
+  public RetentionReport runRetention() {
+    return jobRetentionService.runRetention();
+  }
+
+  @Operation(summary = "Get what the last retention run removed (empty if none since startup)")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/retention")
+  public RetentionReport getRetentionReport() {
+    return jobRetentionService.getLastReport();
   }
 
   @Operation(summary = "Get a specific Job Log by ID if it is in the database")
@@ -59,6 +153,8 @@ public class JobsController extends ApiController {
     Job job =
         jobsRepository.findById(id).orElseThrow(() -> new EntityNotFoundException(Job.class, id));
 
+    // The log is kept in chunks (or compressed) rather than in the log column, so put it together
+    job.setLog(jobService.getJobLogs(job));
     return job;
   }
 
@@ -69,6 +165,7 @@ public class JobsController extends ApiController {
     if (!jobsRepository.existsById(id)) {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
+    jobLogChunkRepository.deleteAllByJobId(id);
     jobsRepository.deleteById(id);
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
@@ -78,17 +175,152 @@ public class JobsController extends ApiController {
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(name = "timeoutMs", description = "stop the job if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @Parameter(
+              name = "Idempotency-Key",
+              description =
+                  "launches with the same key share one job; defaults to a key derived from the"
+                      + " parameters, so a repeated launch returns the job already running")
+          @RequestHeader(value = "Idempotency-Key", required = false)
+          String idempotencyKey) {
 
     TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+    String key =
+        idempotencyKey != null ? "TestJob:" + idempotencyKey : jobService.idempotencyKeyOf(testJob);
+    return jobService.runAsJob(
+        testJob, timeoutMs == null ? null : Duration.ofMillis(timeoutMs), key);
+  }
+
+  @Operation(
+      summary =
+          "Launch several jobs at once, each given by its class name and fields; either all of"
+              + " them start or none do")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/batch")
+  public List<Job> launchJobs(
+      @Parameter(name = "timeoutMs", description = "stop each job if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @RequestBody List<JobSubmission> submissions) {
+    if (submissions.size() > MAX_BATCH_SIZE) {
+      throw new InvalidJobSubmissionException(
+          "At most %d jobs may be launched at once, got %d"
+              .formatted(MAX_BATCH_SIZE, submissions.size()));
+    }
+    List<JobContextConsumer> jobFunctions = new ArrayList<>(submissions.size());
+    for (int i = 0; i < submissions.size(); i++) {
+      jobFunctions.add(decode(i, submissions.get(i)));
+    }
+    return jobService.runAsJobs(
+        jobFunctions, timeoutMs == null ? null : Duration.ofMillis(timeoutMs));
+  }
+
+  private JobContextConsumer decode(int index, JobSubmission submission) {
+    if (submission.getJobType() == null) {
+      throw new InvalidJobSubmissionException("Job %d has no jobType".formatted(index));
+    }
+    String jobSpec = submission.getJobSpec() == null ? "{}" : submission.getJobSpec().toString();
+    try {
+      return databaseJobQueue.decode(submission.getJobType(), jobSpec);
+    } catch (ClassNotFoundException e) {
+      throw new InvalidJobSubmissionException(
+          "Job %d has unknown jobType %s".formatted(index, submission.getJobType()));
+    } catch (Exception e) {
+      throw new InvalidJobSubmissionException(
+          "Job %d cannot be built: %s".formatted(index, e.getMessage()));
+    }
+  }
+
+  @Operation(summary = "Cancel a queued or running job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @RequestMapping(
+      value = "/{id}/cancel",
+      method = {RequestMethod.POST, RequestMethod.DELETE})
+  public Map<String, String> cancelJob(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+    return Map.of("message", jobService.cancel(id));
   }
 
   @Operation(summary = "Get long job logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public ResponseEntity<?> getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+    // A compressed log is sent as stored to clients that can decompress it themselves
+    if (accepts(acceptEncoding, JobLogCompressionService.CODEC)) {
+      Optional<byte[]> compressed = jobsRepository.findCompressedLogById(id);
+      if (compressed.isPresent()) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_ENCODING, JobLogCompressionService.CODEC)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+            .body(compressed.get());
+      }
+    }
+    return ResponseEntity.ok()
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .body(jobService.getJobLogs(id));
+  }
+
+  private static boolean accepts(String acceptEncoding, String coding) {
+    if (acceptEncoding == null) return false;
+    for (String part : acceptEncoding.split(",")) {
+      String[] params = part.trim().split(";");
+      String name = params[0].trim();
+      boolean refused = params.length > 1 && params[1].trim().matches("q=0(\\.0*)?");
+      if ((name.equalsIgnoreCase(coding) || name.equals("*")) && !refused) return true;
+    }
+    return false;
+  }
 
-    return jobService.getJobLogs(id);
+  @Operation(summary = "Get a job's progress counters without its log")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/{id}/progress")
+  public JobProgress getJobProgress(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+    return jobsRepository
+        .findProgressById(id)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, id));
+  }
+
+  @Operation(
+      summary =
+          "Stream a job's log as Server-Sent Events until the job finishes; each event id is the"
+              + " seq of the chunk, so pass since=lastId+1 to resume")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/{id}/stream")
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "since", description = "seq of the first log chunk to send")
+          @RequestParam(defaultValue = "0")
+          Integer since) {
+    return jobLogStreamService.subscribe(id, since);
+  }
+
+  @Operation(
+      summary =
+          "Get the CPU time, allocated bytes, wall time and SQL statements used by finished jobs,"
+              + " totalled per job type, most CPU time first; CPU time and allocated bytes are only"
+              + " measured for the types in app.jobs.meteredTypes")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/usage")
+  public List<JobTypeUsage> getUsageByJobType(
+      @Parameter(name = "days", description = "only jobs created in the last this many days")
+          @RequestParam(defaultValue = "7")
+          int days) {
+    return jobsRepository.findUsageByJobType(
+        JobRetentionService.FINISHED_STATUSES, ZonedDateTime.now().minusDays(days));
+  }
+
+  @Operation(summary = "Get the number of running and queued jobs, overall and per job type")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/executor")
+  public Map<String, Object> getExecutorStats() {
+    return jobExecutor.stats();
   }
 }
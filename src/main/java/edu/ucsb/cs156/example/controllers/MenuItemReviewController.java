@@ -3,24 +3,32 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for MenuItemReviews */
 @Tag(name = "MenuItemReviews")
@@ -30,12 +38,61 @@ import org.springframework.web.bind.annotation.RestController;
 public class MenuItemReviewController extends ApiController {
   @Autowired MenuItemReviewRepository menuItemReviewRepository;
 
-  @Operation(summary = "List all menu review items")
+  /** Fields besides the id that the list of menu item reviews can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("dateReviewed", "stars", "itemId");
+
+  /** Fields that every new menu item review must have, as for creating one at a time */
+  private static final Set<String> REQUIRED =
+      Set.of("itemId", "reviewerEmail", "comments", "dateReviewed");
+
+  /**
+   * List the menu item reviews, a page at a time
+   *
+   * @param itemId only reviews of this menu item
+   * @param reviewerEmail only reviews by this email
+   * @param stars only reviews with this many stars
+   * @param page the paging parameters
+   * @return a page of menu item reviews, or all of them if asked for unpaged
+   */
+  @Operation(summary = "List menu item reviews, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<MenuItemReview> allMenuItemReviews() {
-    Iterable<MenuItemReview> reviews = menuItemReviewRepository.findAll();
-    return reviews;
+  public Object allMenuItemReviews(
+      @Parameter(name = "itemId", description = "only reviews of this menu item")
+          @RequestParam(required = false)
+          Long itemId,
+      @Parameter(name = "reviewerEmail", description = "only reviews by this email")
+          @RequestParam(required = false)
+          String reviewerEmail,
+      @Parameter(name = "stars", description = "only reviews with this many stars")
+          @RequestParam(required = false)
+          Integer stars,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        menuItemReviewRepository,
+        MenuItemReview.class,
+        SORTABLE,
+        filters("itemId", itemId, "reviewerEmail", reviewerEmail, "stars", stars),
+        page);
+  }
+
+  /**
+   * Download every one of the menu item reviews as CSV or NDJSON. Rows are written as they are read
+   * from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all menu item reviews as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportMenuItemReviews(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(MenuItemReview.class, "menuitemreviews", format, acceptEncoding);
   }
 
   /**
@@ -82,6 +139,20 @@ public class MenuItemReviewController extends ApiController {
     return savedReview;
   }
 
+  /**
+   * Create many new menu item reviews at once
+   *
+   * @param menuItemReviews the new menu item reviews; any ids are ignored
+   * @return the saved menu item reviews, with their ids
+   */
+  @Operation(summary = "Create many new menu item reviews at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<MenuItemReview> bulkCreateMenuItemReviews(
+      @RequestBody List<MenuItemReview> menuItemReviews) {
+    return createAll(menuItemReviewRepository, MenuItemReview.class, REQUIRED, menuItemReviews);
+  }
+
   /**
    * Get a single date by id
    *
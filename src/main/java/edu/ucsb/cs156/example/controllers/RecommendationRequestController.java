@@ -3,24 +3,32 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for Recommendation Request */
 @Tag(name = "RecommendationRequest")
@@ -31,18 +39,62 @@ public class RecommendationRequestController extends ApiController {
 
   @Autowired RecommendationRequestRepository recommendationrequestRepository;
 
+  /** Fields besides the id that the list of recommendation requests can be sorted by */
+  private static final Set<String> SORTABLE =
+      Set.of("daterequested", "dateneeded", "requesteremail");
+
+  /** Fields that every new recommendation request must have, as for creating one at a time */
+  private static final Set<String> REQUIRED =
+      Set.of("requesteremail", "professoremail", "explanation", "daterequested", "dateneeded");
+
   /**
-   * List all Recommendation Requests
+   * List the recommendation requests, a page at a time
    *
-   * @return an iterable of Recommendation Requests
+   * @param requesteremail only requests from this email
+   * @param professoremail only requests to this professor
+   * @param done only done or only open requests
+   * @param page the paging parameters
+   * @return a page of recommendation requests, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all recommendation requests")
+  @Operation(summary = "List recommendation requests, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<RecommendationRequest> allRecommendationRequest() {
-    Iterable<RecommendationRequest> recommendationrequests =
-        recommendationrequestRepository.findAll();
-    return recommendationrequests;
+  public Object allRecommendationRequest(
+      @Parameter(name = "requesteremail", description = "only requests from this email")
+          @RequestParam(required = false)
+          String requesteremail,
+      @Parameter(name = "professoremail", description = "only requests to this professor")
+          @RequestParam(required = false)
+          String professoremail,
+      @Parameter(name = "done", description = "only done or only open requests")
+          @RequestParam(required = false)
+          Boolean done,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        recommendationrequestRepository,
+        RecommendationRequest.class,
+        SORTABLE,
+        filters("requesteremail", requesteremail, "professoremail", professoremail, "done", done),
+        page);
+  }
+
+  /**
+   * Download every one of the recommendation requests as CSV or NDJSON. Rows are written as they
+   * are read from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all recommendation requests as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportRecommendationRequests(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(RecommendationRequest.class, "recommendationrequests", format, acceptEncoding);
   }
 
   /**
@@ -100,6 +152,24 @@ public class RecommendationRequestController extends ApiController {
     return savedRecommendationRequest;
   }
 
+  /**
+   * Create many new recommendation requests at once
+   *
+   * @param recommendationRequests the new recommendation requests; any ids are ignored
+   * @return the saved recommendation requests, with their ids
+   */
+  @Operation(summary = "Create many new recommendation requests at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<RecommendationRequest> bulkCreateRecommendationRequests(
+      @RequestBody List<RecommendationRequest> recommendationRequests) {
+    return createAll(
+        recommendationrequestRepository,
+        RecommendationRequest.class,
+        REQUIRED,
+        recommendationRequests);
+  }
+
   /**
    * Get a single requester by id
    *
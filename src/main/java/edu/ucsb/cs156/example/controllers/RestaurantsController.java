@@ -1,22 +1,36 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for Restaurants */
 @Tag(name = "Restaurants")
@@ -26,17 +40,50 @@ public class RestaurantsController extends ApiController {
 
   @Autowired RestaurantRepository restaurantRepository;
 
+  @Autowired ImportService importService;
+
+  /** Fields besides the id that the list of restaurants can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("name");
+
+  /** Fields that every new restaurant must have, as for creating one at a time */
+  private static final Set<String> REQUIRED = Set.of("name", "description");
+
   /**
-   * This method returns a list of all restaurants.
+   * List the restaurants, a page at a time
    *
-   * @return a list of all restaurants
+   * @param name only restaurants with this name
+   * @param page the paging parameters
+   * @return a page of restaurants, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all restaurants")
+  @Operation(summary = "List restaurants, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<Restaurant> allRestaurants() {
-    Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-    return restaurants;
+  public Object allRestaurants(
+      @Parameter(name = "name", description = "only restaurants with this name")
+          @RequestParam(required = false)
+          String name,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        restaurantRepository, Restaurant.class, SORTABLE, filters("name", name), page);
+  }
+
+  /**
+   * Download every one of the restaurants as CSV or NDJSON. Rows are written as they are read from
+   * the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all restaurants as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportRestaurants(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(Restaurant.class, "restaurants", format, acceptEncoding);
   }
 
   /**
@@ -79,6 +126,41 @@ public class RestaurantsController extends ApiController {
     return savedrestaurant;
   }
 
+  /**
+   * Create many new restaurants at once
+   *
+   * @param restaurants the new restaurants; any ids are ignored
+   * @return the saved restaurants, with their ids
+   */
+  @Operation(summary = "Create many new restaurants at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<Restaurant> bulkCreateRestaurants(@RequestBody List<Restaurant> restaurants) {
+    return createAll(restaurantRepository, Restaurant.class, REQUIRED, restaurants);
+  }
+
+  /**
+   * Start a job that imports restaurants from a CSV or NDJSON file. Each row is checked and any row
+   * that cannot be imported is logged to the job with its line number.
+   *
+   * @param file the file, whose fields are named as in the JSON for one of the restaurants
+   * @param format csv or ndjson; if not given, ndjson for a file name ending in .ndjson or .jsonl
+   *     and csv otherwise
+   * @return the import job
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(summary = "Import restaurants from a CSV or NDJSON file, as a job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importRestaurants(
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(name = "format", description = "csv or ndjson; by default from the file name")
+          @RequestParam(required = false)
+          String format)
+      throws IOException {
+    return importService.startImport(ImportTarget.RESTAURANTS, file, format);
+  }
+
   /**
    * Deletes a restaurant. Accessible only to users with the role "ROLE_ADMIN".
    *
@@ -2,24 +2,32 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for UCSBDates */
 @Tag(name = "UCSBDates")
@@ -30,17 +38,48 @@ public class UCSBDatesController extends ApiController {
 
   @Autowired UCSBDateRepository ucsbDateRepository;
 
+  /** Fields besides the id that the list of ucsb dates can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("localDateTime", "quarterYYYYQ", "name");
+
+  /** Fields that every new date must have, as for creating one at a time */
+  private static final Set<String> REQUIRED = Set.of("quarterYYYYQ", "name", "localDateTime");
+
   /**
-   * List all UCSB dates
+   * List the ucsb dates, a page at a time
    *
-   * @return an iterable of UCSBDate
+   * @param quarterYYYYQ only dates in this quarter, e.g. 20244
+   * @param page the paging parameters
+   * @return a page of ucsb dates, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all ucsb dates")
+  @Operation(summary = "List ucsb dates, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDate> allUCSBDates() {
-    Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-    return dates;
+  public Object allUCSBDates(
+      @Parameter(name = "quarterYYYYQ", description = "only dates in this quarter, e.g. 20244")
+          @RequestParam(required = false)
+          String quarterYYYYQ,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        ucsbDateRepository, UCSBDate.class, SORTABLE, filters("quarterYYYYQ", quarterYYYYQ), page);
+  }
+
+  /**
+   * Download every one of the ucsb dates as CSV or NDJSON. Rows are written as they are read from
+   * the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all ucsb dates as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportUCSBDates(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(UCSBDate.class, "ucsbdates", format, acceptEncoding);
   }
 
   /**
@@ -98,6 +137,19 @@ public class UCSBDatesController extends ApiController {
     return savedUcsbDate;
   }
 
+  /**
+   * Create many new dates at once
+   *
+   * @param dates the new dates; any ids are ignored
+   * @return the saved dates, with their ids
+   */
+  @Operation(summary = "Create many new dates at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<UCSBDate> bulkCreateUCSBDates(@RequestBody List<UCSBDate> dates) {
+    return createAll(ucsbDateRepository, UCSBDate.class, REQUIRED, dates);
+  }
+
   /**
    * Delete a UCSBDate
    *
@@ -2,22 +2,29 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for UCSBDiningCommons */
 @Tag(name = "UCSBDiningCommons")
@@ -28,17 +35,65 @@ public class UCSBDiningCommonsController extends ApiController {
 
   @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+  /** Fields besides the id that the list of ucsb dining commons can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("name");
+
   /**
-   * THis method returns a list of all ucsbdiningcommons.
+   * List the ucsb dining commons, a page at a time
    *
-   * @return a list of all ucsbdiningcommons
+   * @param hasSackMeal only commons with or without sack meals
+   * @param hasTakeOutMeal only commons with or without take out meals
+   * @param hasDiningCam only commons with or without a dining cam
+   * @param page the paging parameters
+   * @return a page of ucsb dining commons, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all ucsb dining commons")
+  @Operation(summary = "List ucsb dining commons, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommons> allCommonss() {
-    Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-    return commons;
+  public Object allCommonss(
+      @Parameter(name = "hasSackMeal", description = "only commons with or without sack meals")
+          @RequestParam(required = false)
+          Boolean hasSackMeal,
+      @Parameter(
+              name = "hasTakeOutMeal",
+              description = "only commons with or without take out meals")
+          @RequestParam(required = false)
+          Boolean hasTakeOutMeal,
+      @Parameter(name = "hasDiningCam", description = "only commons with or without a dining cam")
+          @RequestParam(required = false)
+          Boolean hasDiningCam,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        ucsbDiningCommonsRepository,
+        UCSBDiningCommons.class,
+        SORTABLE,
+        filters(
+            "hasSackMeal",
+            hasSackMeal,
+            "hasTakeOutMeal",
+            hasTakeOutMeal,
+            "hasDiningCam",
+            hasDiningCam),
+        page);
+  }
+
+  /**
+   * Download every one of the ucsb dining commons as CSV or NDJSON. Rows are written as they are
+   * read from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all ucsb dining commons as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportCommons(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(UCSBDiningCommons.class, "ucsbdiningcommons", format, acceptEncoding);
   }
 
   /**
@@ -1,23 +1,37 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This is a REST controller for UCSBDiningCommonsMenuItem */
 @Tag(name = "UCSBDiningCommonsMenuItem")
@@ -28,14 +42,61 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
 
   @Autowired UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
-  /** Get all records in the table and return as a JSON array */
-  @Operation(summary = "List all ucsb dining commons menu items")
+  @Autowired ImportService importService;
+
+  /** Fields besides the id that the list of ucsb dining commons menu items can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("name", "station", "diningCommonsCode");
+
+  /** Fields that every new menu item must have, as for creating one at a time */
+  private static final Set<String> REQUIRED = Set.of("diningCommonsCode", "name", "station");
+
+  /**
+   * List the ucsb dining commons menu items, a page at a time
+   *
+   * @param diningCommonsCode only items served at this dining commons
+   * @param station only items served at this station
+   * @param page the paging parameters
+   * @return a page of ucsb dining commons menu items, or all of them if asked for unpaged
+   */
+  @Operation(summary = "List ucsb dining commons menu items, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBDiningCommonsMenuItem> allUCSBDiningCommonsMenuItem() {
-    Iterable<UCSBDiningCommonsMenuItem> diningcommonsmenuitem =
-        ucsbDiningCommonsMenuItemRepository.findAll();
-    return diningcommonsmenuitem;
+  public Object allUCSBDiningCommonsMenuItem(
+      @Parameter(
+              name = "diningCommonsCode",
+              description = "only items served at this dining commons")
+          @RequestParam(required = false)
+          String diningCommonsCode,
+      @Parameter(name = "station", description = "only items served at this station")
+          @RequestParam(required = false)
+          String station,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        ucsbDiningCommonsMenuItemRepository,
+        UCSBDiningCommonsMenuItem.class,
+        SORTABLE,
+        filters("diningCommonsCode", diningCommonsCode, "station", station),
+        page);
+  }
+
+  /**
+   * Download every one of the ucsb dining commons menu items as CSV or NDJSON. Rows are written as
+   * they are read from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all ucsb dining commons menu items as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportUCSBDiningCommonsMenuItems(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(
+        UCSBDiningCommonsMenuItem.class, "ucsbdiningcommonsmenuitems", format, acceptEncoding);
   }
 
   /**
@@ -80,6 +141,21 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     return savedUcsbDiningCommonsMenuItem;
   }
 
+  /**
+   * Create many new menu items at once
+   *
+   * @param menuItems the new menu items; any ids are ignored
+   * @return the saved menu items, with their ids
+   */
+  @Operation(summary = "Create many new menu items at once")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/bulk")
+  public Iterable<UCSBDiningCommonsMenuItem> bulkCreateUCSBDiningCommonsMenuItems(
+      @RequestBody List<UCSBDiningCommonsMenuItem> menuItems) {
+    return createAll(
+        ucsbDiningCommonsMenuItemRepository, UCSBDiningCommonsMenuItem.class, REQUIRED, menuItems);
+  }
+
   /**
    * Update a single menu item
    *
@@ -108,6 +184,28 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     return ucsbDiningCommonsMenuItem;
   }
 
+  /**
+   * Start a job that imports menu items from a CSV or NDJSON file. Each row is checked and any row
+   * that cannot be imported is logged to the job with its line number.
+   *
+   * @param file the file, whose fields are named as in the JSON for one of the menu items
+   * @param format csv or ndjson; if not given, ndjson for a file name ending in .ndjson or .jsonl
+   *     and csv otherwise
+   * @return the import job
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(summary = "Import menu items from a CSV or NDJSON file, as a job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importMenuItems(
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(name = "format", description = "csv or ndjson; by default from the file name")
+          @RequestParam(required = false)
+          String format)
+      throws IOException {
+    return importService.startImport(ImportTarget.UCSB_DINING_COMMONS_MENU_ITEMS, file, format);
+  }
+
   /**
    * Delete a UCSBDiningCommonsMenuItem
    *
@@ -1,23 +1,36 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Tag(name = "UCSBOrganization")
 @RequestMapping("/api/ucsborganization")
@@ -27,17 +40,51 @@ public class UCSBOrganizationController extends ApiController {
 
   @Autowired UCSBOrganizationRepository ucsbOrganizationRepository;
 
+  @Autowired ImportService importService;
+
+  /** Fields besides the id that the list of ucsb organizations can be sorted by */
+  private static final Set<String> SORTABLE = Set.of("orgTranslationShort");
+
   /**
-   * THis method returns a list of all ucsborganizations.
+   * List the ucsb organizations, a page at a time
    *
-   * @return a list of all ucsborganizations
+   * @param inactive only inactive or only active organizations
+   * @param page the paging parameters
+   * @return a page of ucsb organizations, or all of them if asked for unpaged
    */
-  @Operation(summary = "List all ucsb organizations")
+  @Operation(summary = "List ucsb organizations, a page at a time")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("/all")
-  public Iterable<UCSBOrganization> allOrganizations() {
-    Iterable<UCSBOrganization> organizations = ucsbOrganizationRepository.findAll();
-    return organizations;
+  public Object allOrganizations(
+      @Parameter(name = "inactive", description = "only inactive or only active organizations")
+          @RequestParam(required = false)
+          Boolean inactive,
+      @ParameterObject KeysetPageRequest page) {
+    return keysetPage(
+        ucsbOrganizationRepository,
+        UCSBOrganization.class,
+        SORTABLE,
+        filters("inactive", inactive),
+        page);
+  }
+
+  /**
+   * Download every one of the ucsb organizations as CSV or NDJSON. Rows are written as they are
+   * read from the database, so the download starts at once however many there are.
+   *
+   * @param format csv or ndjson
+   * @param acceptEncoding the client's Accept-Encoding; the download is gzipped if it allows gzip
+   * @return the download
+   */
+  @Operation(summary = "Download all ucsb organizations as CSV or NDJSON")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportOrganizations(
+      @Parameter(name = "format", description = "csv (the default) or ndjson")
+          @RequestParam(defaultValue = "csv")
+          String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(UCSBOrganization.class, "ucsborganizations", format, acceptEncoding);
   }
 
   /**
@@ -87,6 +134,28 @@ public class UCSBOrganizationController extends ApiController {
     return savedOrganization;
   }
 
+  /**
+   * Start a job that imports ucsb organizations from a CSV or NDJSON file. Each row is checked and
+   * any row that cannot be imported is logged to the job with its line number.
+   *
+   * @param file the file, whose fields are named as in the JSON for one of the ucsb organizations
+   * @param format csv or ndjson; if not given, ndjson for a file name ending in .ndjson or .jsonl
+   *     and csv otherwise
+   * @return the import job
+   * @throws IOException if the upload cannot be saved
+   */
+  @Operation(summary = "Import ucsb organizations from a CSV or NDJSON file, as a job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job importOrganizations(
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(name = "format", description = "csv or ndjson; by default from the file name")
+          @RequestParam(required = false)
+          String format)
+      throws IOException {
+    return importService.startImport(ImportTarget.UCSB_ORGANIZATIONS, file, format);
+  }
+
   /**
    * Delete a organization. Accessible only to users with the role "ROLE_ADMIN".
    *
@@ -4,6 +4,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +22,11 @@ import lombok.NoArgsConstructor;
 @Entity(name = "help_requests")
 public class HelpRequest {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "help_requests_seq")
+  @SequenceGenerator(
+      name = "help_requests_seq",
+      sequenceName = "help_requests_seq",
+      allocationSize = 50)
   private long id;
 
   private String requesterEmail;
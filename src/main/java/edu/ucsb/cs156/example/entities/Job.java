@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
@@ -10,6 +11,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import java.time.ZonedDateTime;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -27,8 +29,10 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @Entity(name = "jobs")
 @EntityListeners(AuditingEntityListener.class)
 public class Job {
+  // Ids come from a sequence, 50 at a time, so that new jobs saved together go in one JDBC batch
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "jobs_seq")
+  @SequenceGenerator(name = "jobs_seq", sequenceName = "jobs_seq", allocationSize = 50)
   private long id;
 
   @JsonIgnore
@@ -47,4 +51,67 @@ public class Job {
       length = 1048576) // needed for long strings, i.e. log entries longer than 255
   // characters
   private String log;
+
+  // Class name of the job; with jobSpec, DatabaseJobQueue can rebuild the job from it
+  private String jobType;
+
+  @JsonIgnore
+  @Column(columnDefinition = "TEXT")
+  private String jobSpec;
+
+  private String leaseOwner;
+  private ZonedDateTime leaseExpiresAt;
+  private ZonedDateTime heartbeatAt;
+
+  // Null means the job may run for as long as it needs
+  private Long timeoutMs;
+
+  // Submissions with the same key share one job; see JobService#runAsJob
+  private String idempotencyKey;
+
+  // The idempotencyKey while the job is queued or running, and null once it has finished. The
+  // column is unique, so that only one job per key can be in flight even across nodes
+  @JsonIgnore private String activeIdempotencyKey;
+
+  // Set for jobs that may be run again if their node dies while running them; see JobOrphanSweeper
+  private boolean restartable;
+  private int restarts;
+
+  // How many times the job has been started, and for job types with a RetryPolicy, a JSON array
+  // describing each attempt; see JobService
+  private int attempts;
+
+  @JsonRawValue
+  @Column(columnDefinition = "TEXT")
+  private String attemptHistory;
+
+  // A job waiting to be retried does not start again before this time
+  private ZonedDateTime runAfter;
+
+  // Resources used by the job's own thread, summed over its attempts, or null before it has run;
+  // see JobResourceMeter. Totals per job type are read through GET /api/jobs/usage
+  private Long wallTimeMs;
+  private Long cpuTimeMs;
+  private Long allocatedBytes;
+  private Long sqlStatements;
+  private Long sqlTimeMs;
+
+  // Set by a cancel request, so that the node running the job can see it; see JobQueueWorker
+  @JsonIgnore private boolean cancelRequested;
+
+  // Written by JobContext at throttled intervals; read through GET /api/jobs/{id}/progress
+  private Long progressTotal;
+  private Long progressDone;
+  private String progressPhase;
+
+  @JsonIgnore
+  @Column(length = 4000)
+  private String progressCounters;
+
+  private ZonedDateTime progressUpdatedAt;
+
+  // Set when a finished job's log is moved to cold storage; see JobLogCompressionService
+  @JsonIgnore private byte[] logCompressed;
+  private String logCodec;
+  private Long logLength;
 }
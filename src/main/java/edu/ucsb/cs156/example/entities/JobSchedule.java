@@ -0,0 +1,68 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+/**
+ * This is a JPA entity that represents a recurring job: a job, stored the same way as a job in the
+ * database queue, that is started each time its cron expression fires; see JobScheduler.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "job_schedules")
+@EntityListeners(AuditingEntityListener.class)
+public class JobSchedule {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  @Column(unique = true)
+  private String name;
+
+  // Spring cron syntax: second minute hour day-of-month month day-of-week
+  private String cron;
+
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT")
+  private String jobSpec;
+
+  private boolean enabled;
+
+  // "skip" to not start a run while the previous one is still queued or running, or "allow"
+  private String overlapPolicy;
+
+  // "skip" to drop runs missed while no node was up, or "once" to make them up with a single run
+  private String catchUpPolicy;
+
+  // Each run starts up to this many ms after the time the cron expression gives
+  private long jitterMs;
+
+  private Long timeoutMs;
+
+  private ZonedDateTime nextRunAt;
+  private ZonedDateTime lastRunAt;
+  private Long lastJobId;
+  private String lastOutcome;
+
+  // Bumped each time the schedule fires; a node fires it only if this has not changed under it
+  private long runCount;
+
+  @CreatedDate private ZonedDateTime createdAt;
+  @LastModifiedDate private ZonedDateTime updatedAt;
+}
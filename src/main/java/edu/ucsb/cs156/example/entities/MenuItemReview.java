@@ -4,6 +4,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,7 +18,11 @@ import lombok.NoArgsConstructor;
 @Entity(name = "MenuItemReview")
 public class MenuItemReview {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY) // autogenerated id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menu_item_review_seq")
+  @SequenceGenerator(
+      name = "menu_item_review_seq",
+      sequenceName = "menu_item_review_seq",
+      allocationSize = 50)
   private Long id;
 
   private Long itemId;
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a list
+ * of new items sent by a client cannot be saved, e.g. because it is too long or an item is missing
+ * a field.
+ */
+public class InvalidBulkCreateException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the list
+   */
+  public InvalidBulkCreateException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a
+ * paging cursor sent by a client is malformed or does not belong to the list being paged.
+ */
+public class InvalidCursorException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param cursor the cursor that was sent
+   */
+  public InvalidCursorException(String cursor) {
+    super("Invalid cursor: %s".formatted(cursor));
+  }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that an
+ * export cannot be made as asked, e.g. because the format is unknown.
+ */
+public class InvalidExportException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the request
+   */
+  public InvalidExportException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that an
+ * uploaded file cannot be imported, e.g. because it is empty or its format is unknown.
+ */
+public class InvalidImportException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the upload
+   */
+  public InvalidImportException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a
+ * recurring job schedule sent by a client cannot be run, e.g. because its cron expression does not
+ * parse or its job cannot be built.
+ */
+public class InvalidJobScheduleException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the schedule
+   */
+  public InvalidJobScheduleException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a job
+ * sent by a client cannot be started, e.g. because its class does not exist or its fields cannot be
+ * read.
+ */
+public class InvalidJobSubmissionException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the job
+   */
+  public InvalidJobSubmissionException(String message) {
+    super(message);
+  }
+}
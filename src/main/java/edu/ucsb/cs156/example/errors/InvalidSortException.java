@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.errors;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a
+ * client asked for a list to be sorted by a field that it cannot be sorted by.
+ */
+public class InvalidSortException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param sort the sort that was sent
+   * @param sortable the fields that the list can be sorted by
+   */
+  public InvalidSortException(String sort, Collection<String> sortable) {
+    super("Cannot sort by %s; sort by one of %s".formatted(sort, new TreeSet<>(sortable)));
+  }
+}
@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is thrown inside a running job
+ * when the job has been cancelled or has run past its timeout, so that the job stops at its next
+ * cancellation check.
+ */
+public class JobCancelledException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param jobId id of the job
+   * @param reason the status the job will finish with, e.g. "cancelled" or "timed_out"
+   */
+  public JobCancelledException(long jobId, String reason) {
+    super("Job %d stopped: %s".formatted(jobId, reason));
+  }
+}
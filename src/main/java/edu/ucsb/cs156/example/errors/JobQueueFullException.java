@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that is used to indicate that a job
+ * could not be submitted because the job executor's admission queue is full.
+ */
+public class JobQueueFullException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param jobType the simple class name of the job that was rejected, or a description of the jobs
+   *     if several were rejected together
+   * @param capacity the number of jobs that may wait to start at once
+   */
+  public JobQueueFullException(String jobType, int capacity) {
+    super(
+        "Job queue is full (%d jobs waiting); %s was not started, try again later"
+            .formatted(capacity, jobType));
+  }
+}
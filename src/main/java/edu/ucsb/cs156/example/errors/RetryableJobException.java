@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom RuntimeException in Java that a job can throw to say that it
+ * failed for a reason that may go away, so that it is retried if its retry policy allows.
+ */
+public class RetryableJobException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what went wrong
+   * @param cause the underlying failure, or null
+   */
+  public RetryableJobException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
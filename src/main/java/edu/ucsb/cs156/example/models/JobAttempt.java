@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One run of a job that has a {@link edu.ucsb.cs156.example.services.jobs.RetryPolicy}, as kept in
+ * the job's attempt history.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobAttempt {
+  private int attempt;
+  private ZonedDateTime startedAt;
+  private ZonedDateTime finishedAt;
+
+  /** The status the attempt ended with, or "retrying" if the job is run again */
+  private String outcome;
+
+  /** The message of the exception the attempt failed with */
+  private String error;
+
+  /** When the next attempt is due, if the job is run again */
+  private ZonedDateTime retryAt;
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The progress a job has reported through {@link edu.ucsb.cs156.example.services.jobs.JobContext},
+ * without the job's log.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobProgress {
+  private long jobId;
+  private String status;
+
+  /** Number of units of work, or null if the job has not said */
+  private Long total;
+
+  private Long done;
+  private String phase;
+
+  /** Named counters as a JSON object, e.g. {@code {"skipped":3}} */
+  @JsonRawValue private String counters;
+
+  private ZonedDateTime updatedAt;
+}
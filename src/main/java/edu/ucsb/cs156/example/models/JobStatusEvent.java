@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change in a job's status or progress, as pushed to WebSocket subscribers by {@link
+ * edu.ucsb.cs156.example.services.jobs.JobStatusNotifier}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobStatusEvent {
+  /** What happened: "submitted", "started", "progress", "retrying" or "finished" */
+  private String event;
+
+  private long jobId;
+  private String jobType;
+
+  /**
+   * The job's status after the change, e.g. "running" or, once finished, "complete". A job that was
+   * submitted but then turned away because the executor was full finishes as "rejected".
+   */
+  private String status;
+
+  private Long total;
+  private Long done;
+  private String phase;
+
+  /** Named counters as a JSON object, e.g. {@code {"skipped":3}} */
+  @JsonRawValue private String counters;
+
+  private ZonedDateTime at;
+}
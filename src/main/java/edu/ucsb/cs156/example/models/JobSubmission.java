@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One job in a batch sent to {@code POST /api/jobs/batch}, described the same way as the job of a
+ * {@link edu.ucsb.cs156.example.entities.JobSchedule}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobSubmission {
+  /** Class name of the job, e.g. edu.ucsb.cs156.example.jobs.TestJob */
+  private String jobType;
+
+  /** The job's fields, e.g. {"fail": false, "sleepMs": 1000}; none if missing */
+  private JsonNode jobSpec;
+}
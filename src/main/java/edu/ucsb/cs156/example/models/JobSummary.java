@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** A job without its log, for listing many jobs at once. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobSummary {
+  private long id;
+  private String status;
+  private Long createdById;
+  private ZonedDateTime createdAt;
+  private ZonedDateTime updatedAt;
+
+  /** Total characters of log text the job has written */
+  private long logLength;
+}
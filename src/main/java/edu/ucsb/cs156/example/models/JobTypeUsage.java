@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The resources used by all finished jobs of one type; see {@link
+ * edu.ucsb.cs156.example.services.jobs.JobService}. Totals are summed over every attempt of every
+ * job, and are null if no job of the type could measure them.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobTypeUsage {
+  /** Class name of the jobs */
+  private String jobType;
+
+  private long jobs;
+  private long attempts;
+  private Long wallTimeMs;
+  private Long maxWallTimeMs;
+  private Long cpuTimeMs;
+  private Long allocatedBytes;
+  private Long sqlStatements;
+  private Long sqlTimeMs;
+
+  /**
+   * @return the mean CPU time per job in ms, or null if it is not known
+   */
+  public Long getCpuTimeMsPerJob() {
+    return perJob(cpuTimeMs);
+  }
+
+  /**
+   * @return the mean bytes allocated per job, or null if it is not known
+   */
+  public Long getAllocatedBytesPerJob() {
+    return perJob(allocatedBytes);
+  }
+
+  /**
+   * @return the mean number of SQL statements per job, or null if it is not known
+   */
+  public Long getSqlStatementsPerJob() {
+    return perJob(sqlStatements);
+  }
+
+  /**
+   * The share of the jobs' wall time spent on CPU. Jobs near 1 are CPU bound and gain little from
+   * running more of them at once than there are cores; jobs near 0 mostly wait, e.g. on the
+   * database or other services.
+   *
+   * @return CPU time divided by wall time, or null if either is not known
+   */
+  public Double getCpuShare() {
+    if (cpuTimeMs == null || wallTimeMs == null || wallTimeMs == 0) return null;
+    return (double) cpuTimeMs / wallTimeMs;
+  }
+
+  private Long perJob(Long total) {
+    return total == null || jobs == 0 ? null : total / jobs;
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a list that is paged by key rather than by offset. To get the next page, pass {@code
+ * nextCursor} back as the {@code cursor} parameter; it is null on the last page. Cursors are opaque
+ * to clients.
+ *
+ * @param <T> the type of the items
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetPage<T> {
+  private List<T> content;
+  private String nextCursor;
+
+  /**
+   * Builds a page from rows fetched with a limit of {@code size + 1}; the extra row, if present,
+   * only tells us that there is a next page.
+   *
+   * @param rows the rows fetched
+   * @param size the page size
+   * @param cursorOf makes the cursor that points just past a row
+   * @param <T> the type of the items
+   * @return the page
+   */
+  public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+    if (rows.size() <= size) return new KeysetPage<>(rows, null);
+    List<T> content = rows.subList(0, size);
+    return new KeysetPage<>(content, cursorOf.apply(content.get(size - 1)));
+  }
+
+  /**
+   * Encodes the sort key of a row as a cursor.
+   *
+   * @param parts the values of the sort key, in order
+   * @return the cursor
+   */
+  public static String encodeCursor(Object... parts) {
+    StringBuilder sb = new StringBuilder();
+    for (Object part : parts) {
+      if (!sb.isEmpty()) sb.append('|');
+      sb.append(part);
+    }
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor made by {@link #encodeCursor}.
+   *
+   * @param cursor the cursor
+   * @param count the number of parts the sort key has
+   * @return the values of the sort key, as strings
+   * @throws InvalidCursorException if the cursor was not made by {@link #encodeCursor}
+   */
+  public static String[] decodeCursor(String cursor, int count) {
+    String[] parts;
+    try {
+      parts =
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+    } catch (IllegalArgumentException e) {
+      throw new InvalidCursorException(cursor);
+    }
+    if (parts.length != count) throw new InvalidCursorException(cursor);
+    return parts;
+  }
+}
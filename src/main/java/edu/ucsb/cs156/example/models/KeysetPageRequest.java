@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The paging, sorting and opt-out parameters that every /all endpoint takes; see {@link
+ * edu.ucsb.cs156.example.controllers.ApiController#keysetPage}.
+ */
+@Data
+@NoArgsConstructor
+public class KeysetPageRequest {
+  public static final int DEFAULT_SIZE = 50;
+  public static final int MAX_SIZE = 500;
+
+  @Parameter(description = "nextCursor from the previous page")
+  private String cursor;
+
+  @Parameter(description = "items per page, at most " + MAX_SIZE)
+  private int size = DEFAULT_SIZE;
+
+  @Parameter(description = "field to sort by, optionally followed by ,asc or ,desc; e.g. name,desc")
+  private String sort;
+
+  @Parameter(description = "if true, return every matching item as a plain array instead of a page")
+  private boolean unpaged;
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** What one run of {@link edu.ucsb.cs156.example.services.jobs.JobRetentionService} removed. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RetentionReport {
+  /** "delete", "archive", or "purge" for removing every job */
+  private String mode;
+
+  /** Jobs created before this time were eligible; null when purging every job */
+  private ZonedDateTime cutoff;
+
+  private long jobs;
+  private long logChunks;
+  private int batches;
+  private long elapsedMs;
+  private ZonedDateTime finishedAt;
+}
@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobLogChunkRepository is a repository for JobLogChunk entities. */
+@Repository
+public interface JobLogChunkRepository extends CrudRepository<JobLogChunk, Long> {
+  /**
+   * This method returns the log chunks of a job in the order they were written.
+   *
+   * @param jobId id of the job
+   * @return the chunks of the job's log, ordered by seq
+   */
+  List<JobLogChunk> findAllByJobIdOrderBySeqAsc(long jobId);
+
+  /**
+   * This method returns the log chunks of a job starting at a given offset, in the order they were
+   * written.
+   *
+   * @param jobId id of the job
+   * @param seq seq of the first chunk to return
+   * @return the chunks of the job's log with seq at least the given value, ordered by seq
+   */
+  List<JobLogChunk> findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(long jobId, int seq);
+
+  /**
+   * This method returns the seq of the last log chunk of a job.
+   *
+   * @param jobId id of the job
+   * @return the highest seq, or empty if the job has no log chunks
+   */
+  @Query("SELECT MAX(c.seq) FROM job_log_chunks c WHERE c.jobId = :jobId")
+  Optional<Integer> findMaxSeqByJobId(long jobId);
+
+  /**
+   * This method deletes every log chunk of a job with a single statement.
+   *
+   * @param jobId id of the job
+   */
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM job_log_chunks c WHERE c.jobId = :jobId")
+  void deleteAllByJobId(long jobId);
+
+  /**
+   * This method deletes every log chunk of the given jobs with a single statement. Must be called
+   * inside a transaction.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of chunks deleted
+   */
+  @Modifying
+  @Query("DELETE FROM job_log_chunks c WHERE c.jobId IN :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method copies every log chunk of the given jobs into the archive table with a single
+   * statement. Must be called inside a transaction.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of chunks archived
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO job_log_chunks_archive (id, job_id, seq, text)"
+              + " SELECT id, job_id, seq, text FROM job_log_chunks WHERE job_id IN :jobIds",
+      nativeQuery = true)
+  int archiveAllByJobIdIn(Collection<Long> jobIds);
+}
@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobScheduleRepository is a repository for JobSchedule entities. */
+@Repository
+public interface JobScheduleRepository
+    extends CrudRepository<JobSchedule, Long>, JpaSpecificationExecutor<JobSchedule> {
+  /**
+   * This method returns the enabled schedules whose next run is due, earliest first.
+   *
+   * @param now the current time
+   * @return the due schedules
+   */
+  @Query(
+      "SELECT s FROM job_schedules s WHERE s.enabled = true AND s.nextRunAt <= :now"
+          + " ORDER BY s.nextRunAt")
+  List<JobSchedule> findDue(ZonedDateTime now);
+
+  /**
+   * This method moves a schedule on to its next run, but only if no other node has fired it since
+   * it was read, so that each run is started by exactly one node.
+   *
+   * @param id id of the schedule
+   * @param runCount the schedule's runCount when it was read
+   * @param nextRunAt when the schedule should fire next
+   * @param now the current time
+   * @return 1 if this node fired the schedule, 0 if another node got there first
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE job_schedules s SET s.runCount = s.runCount + 1, s.nextRunAt = :nextRunAt,"
+          + " s.lastRunAt = :now WHERE s.id = :id AND s.runCount = :runCount")
+  int advance(long id, long runCount, ZonedDateTime nextRunAt, ZonedDateTime now);
+
+  /**
+   * This method records what happened when a schedule fired.
+   *
+   * @param id id of the schedule
+   * @param lastJobId id of the job that was started, or of the previous one if none was
+   * @param lastOutcome what happened
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE job_schedules s SET s.lastJobId = :lastJobId, s.lastOutcome = :lastOutcome"
+          + " WHERE s.id = :id")
+  int recordRun(long id, Long lastJobId, String lastOutcome);
+}
@@ -1,8 +1,374 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobTypeUsage;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long>, JobsRepositoryCustom {
+  /**
+   * This method returns just the status of a job, without loading its log.
+   *
+   * @param id id of the job
+   * @return the status, or empty if there is no such job
+   */
+  @Query("SELECT j.status FROM jobs j WHERE j.id = :id")
+  Optional<String> findStatusById(long id);
+
+  /**
+   * This method returns the queued or running job that was submitted with an idempotency key.
+   *
+   * @param activeIdempotencyKey the key
+   * @return the job, or empty if no job with that key is in flight
+   */
+  Optional<Job> findByActiveIdempotencyKey(String activeIdempotencyKey);
+
+  /**
+   * This method returns the most recently finished job that was submitted with an idempotency key
+   * and finished with a given status since a given time.
+   *
+   * @param idempotencyKey the key
+   * @param status the status, e.g. "complete"
+   * @param since the earliest time the job may have finished
+   * @return the job, or empty if there is none
+   */
+  Optional<Job> findFirstByIdempotencyKeyAndStatusAndUpdatedAtGreaterThanEqualOrderByUpdatedAtDesc(
+      String idempotencyKey, String status, ZonedDateTime since);
+
+  /**
+   * This method returns the ids of queued jobs that are due, and of running jobs whose lease has
+   * expired, oldest first. It takes no locks; use {@link #leaseJobIfClaimable} to claim each one.
+   *
+   * @param now the current time
+   * @param pageable how many ids to return
+   * @return ids of jobs that a worker may claim
+   */
+  @Query(
+      "SELECT j.id FROM jobs j"
+          + " WHERE (j.status = 'queued' AND (j.runAfter IS NULL OR j.runAfter <= :now))"
+          + " OR (j.status = 'running' AND j.leaseExpiresAt < :now) ORDER BY j.id")
+  List<Long> findClaimableJobIds(ZonedDateTime now, Pageable pageable);
+
+  /**
+   * Postgres only: locks and returns the ids of claimable jobs, skipping rows that another worker
+   * has already locked. Must be called inside a transaction, followed by {@link #leaseJobs}.
+   *
+   * @param now the current time
+   * @param limit how many ids to return
+   * @return ids of jobs that are now locked by this transaction
+   */
+  @Query(
+      value =
+          "SELECT id FROM jobs"
+              + " WHERE (status = 'queued' AND (run_after IS NULL OR run_after <= :now))"
+              + " OR (status = 'running' AND lease_expires_at < :now)"
+              + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<Long> lockClaimableJobIds(ZonedDateTime now, int limit);
+
+  /**
+   * Gives this worker a lease on jobs whose rows it has locked.
+   *
+   * @param ids ids of the jobs
+   * @param owner id of the worker
+   * @param expiresAt when the lease runs out unless renewed
+   * @param now the current time
+   * @return the number of jobs leased
+   */
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.status = 'running', j.leaseOwner = :owner,"
+          + " j.leaseExpiresAt = :expiresAt, j.heartbeatAt = :now WHERE j.id IN :ids")
+  int leaseJobs(Collection<Long> ids, String owner, ZonedDateTime expiresAt, ZonedDateTime now);
+
+  /**
+   * Gives this worker a lease on a job, but only if it is still claimable. This is safe without row
+   * locks: when two workers race, only one update matches.
+   *
+   * @param id id of the job
+   * @param owner id of the worker
+   * @param expiresAt when the lease runs out unless renewed
+   * @param now the current time
+   * @return 1 if the job was leased, 0 if another worker got it first
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.status = 'running', j.leaseOwner = :owner,"
+          + " j.leaseExpiresAt = :expiresAt, j.heartbeatAt = :now WHERE j.id = :id"
+          + " AND ((j.status = 'queued' AND (j.runAfter IS NULL OR j.runAfter <= :now))"
+          + " OR (j.status = 'running' AND j.leaseExpiresAt < :now))")
+  int leaseJobIfClaimable(long id, String owner, ZonedDateTime expiresAt, ZonedDateTime now);
+
+  /**
+   * Records that jobs running, or waiting to be retried, on this node outside the database-backed
+   * queue are still alive. Jobs run through the queue get their heartbeat from {@link #renewLeases}
+   * instead.
+   *
+   * @param ids ids of the jobs
+   * @param now the current time
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.heartbeatAt = :now WHERE j.id IN :ids AND j.leaseOwner IS NULL"
+          + " AND j.status IN ('running', 'retrying')")
+  int updateHeartbeats(Collection<Long> ids, ZonedDateTime now);
+
+  /**
+   * Finds running or retrying jobs whose node has stopped sending heartbeats, e.g. because it
+   * crashed. Jobs with a lease are left out, since another worker reclaims them once their lease
+   * expires.
+   *
+   * @param cutoff jobs with no heartbeat since this time are returned
+   * @return ids of the stale jobs
+   */
+  @Query(
+      "SELECT j.id FROM jobs j WHERE j.status IN ('running', 'retrying')"
+          + " AND j.leaseOwner IS NULL AND COALESCE(j.heartbeatAt, j.updatedAt) < :cutoff"
+          + " ORDER BY j.id")
+  List<Long> findStaleRunningJobIds(ZonedDateTime cutoff);
+
+  /**
+   * Marks a job as "abandoned", but only if it is still running without a recent heartbeat, so that
+   * when several nodes sweep at once only one of them abandons it.
+   *
+   * @param id id of the job
+   * @param cutoff the job must have had no heartbeat since this time
+   * @param now the current time
+   * @return 1 if the job was abandoned, 0 otherwise
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.status = 'abandoned', j.activeIdempotencyKey = NULL, j.updatedAt = :now"
+          + " WHERE j.id = :id AND j.status IN ('running', 'retrying') AND j.leaseOwner IS NULL"
+          + " AND COALESCE(j.heartbeatAt, j.updatedAt) < :cutoff")
+  int abandonIfStale(long id, ZonedDateTime cutoff, ZonedDateTime now);
+
+  /**
+   * Extends this worker's leases on jobs it is still running.
+   *
+   * @param ids ids of the jobs
+   * @param owner id of the worker
+   * @param expiresAt the new lease expiry
+   * @param now the current time
+   * @return the number of leases renewed
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.leaseExpiresAt = :expiresAt, j.heartbeatAt = :now"
+          + " WHERE j.id IN :ids AND j.leaseOwner = :owner AND j.status = 'running'")
+  int renewLeases(Collection<Long> ids, String owner, ZonedDateTime expiresAt, ZonedDateTime now);
+
+  /**
+   * Puts a job this worker claimed but could not start back on the queue.
+   *
+   * @param id id of the job
+   * @param owner id of the worker
+   * @return the number of jobs released
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.status = 'queued', j.leaseOwner = NULL, j.leaseExpiresAt = NULL"
+          + " WHERE j.id = :id AND j.leaseOwner = :owner")
+  int releaseLease(long id, String owner);
+
+  /**
+   * Cancels a job that no worker has started yet.
+   *
+   * @param id id of the job
+   * @return 1 if the job was cancelled, 0 if it is not queued
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.status = 'cancelled', j.activeIdempotencyKey = NULL"
+          + " WHERE j.id = :id AND j.status = 'queued'")
+  int cancelIfQueued(long id);
+
+  /**
+   * Flags a running job for cancellation, for the node that is running it to pick up.
+   *
+   * @param id id of the job
+   * @return 1 if the job was flagged, 0 if it is not running
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE jobs j SET j.cancelRequested = true WHERE j.id = :id AND j.status = 'running'")
+  int requestCancel(long id);
+
+  /**
+   * This method returns which of the given running jobs have been flagged for cancellation.
+   *
+   * @param ids ids of the jobs
+   * @return ids of the jobs that should stop
+   */
+  @Query(
+      "SELECT j.id FROM jobs j WHERE j.id IN :ids AND j.cancelRequested = true"
+          + " AND j.status = 'running'")
+  List<Long> findCancelRequestedIds(Collection<Long> ids);
+
+  /**
+   * This method returns the progress of a job, without loading its log.
+   *
+   * @param id id of the job
+   * @return the progress, or empty if there is no such job
+   */
+  @Query(
+      "SELECT new edu.ucsb.cs156.example.models.JobProgress(j.id, j.status, j.progressTotal,"
+          + " j.progressDone, j.progressPhase, j.progressCounters, j.progressUpdatedAt)"
+          + " FROM jobs j WHERE j.id = :id")
+  Optional<JobProgress> findProgressById(long id);
+
+  /**
+   * Writes a job's progress columns, leaving the rest of the row alone.
+   *
+   * @param id id of the job
+   * @param total number of units of work, or null
+   * @param done units of work finished
+   * @param phase what the job is doing now, or null
+   * @param counters named counters as a JSON object
+   * @param updatedAt when the progress was taken
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE jobs j SET j.progressTotal = :total, j.progressDone = :done,"
+          + " j.progressPhase = :phase, j.progressCounters = :counters,"
+          + " j.progressUpdatedAt = :updatedAt WHERE j.id = :id")
+  int updateProgress(
+      long id, Long total, Long done, String phase, String counters, ZonedDateTime updatedAt);
+
+  /**
+   * This method returns the ids of finished jobs created before a cutoff, oldest first, for the
+   * retention engine to delete or archive a batch at a time.
+   *
+   * @param statuses statuses of jobs that may be removed
+   * @param cutoff only jobs created before this time
+   * @param pageable how many ids to return
+   * @return ids of jobs to remove
+   */
+  @Query(
+      "SELECT j.id FROM jobs j WHERE j.status IN :statuses AND j.createdAt < :cutoff"
+          + " ORDER BY j.createdAt, j.id")
+  List<Long> findIdsForRetention(
+      Collection<String> statuses, ZonedDateTime cutoff, Pageable pageable);
+
+  /**
+   * This method returns the resources used by finished jobs, totalled per job type, with the types
+   * that used the most CPU time first.
+   *
+   * @param statuses statuses of finished jobs
+   * @param since only jobs created at or after this time
+   * @return one row per job type
+   */
+  @Query(
+      "SELECT new edu.ucsb.cs156.example.models.JobTypeUsage(j.jobType, COUNT(j),"
+          + " SUM(j.attempts), SUM(j.wallTimeMs), MAX(j.wallTimeMs), SUM(j.cpuTimeMs),"
+          + " SUM(j.allocatedBytes), SUM(j.sqlStatements), SUM(j.sqlTimeMs))"
+          + " FROM jobs j WHERE j.status IN :statuses AND j.createdAt >= :since"
+          + " AND j.wallTimeMs IS NOT NULL"
+          + " GROUP BY j.jobType ORDER BY SUM(j.cpuTimeMs) DESC NULLS LAST, j.jobType")
+  List<JobTypeUsage> findUsageByJobType(Collection<String> statuses, ZonedDateTime since);
+
+  /**
+   * This method returns job ids in order, for removing every job a batch at a time.
+   *
+   * @param pageable how many ids to return
+   * @return ids of jobs
+   */
+  @Query("SELECT j.id FROM jobs j ORDER BY j.id")
+  List<Long> findIds(Pageable pageable);
+
+  /**
+   * This method deletes jobs with a single statement, without loading them. Must be called inside a
+   * transaction.
+   *
+   * @param ids ids of the jobs
+   * @return the number of jobs deleted
+   */
+  @Modifying
+  @Query("DELETE FROM jobs j WHERE j.id IN :ids")
+  int deleteAllByIdIn(Collection<Long> ids);
+
+  /**
+   * This method copies jobs into the archive table with a single statement. Must be called inside a
+   * transaction.
+   *
+   * @param ids ids of the jobs
+   * @param archivedAt the current time
+   * @return the number of jobs archived
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO jobs_archive (id, created_by_id, created_at, updated_at, status, job_type,"
+              + " log, progress_total, progress_done, log_compressed, log_codec, log_length,"
+              + " archived_at)"
+              + " SELECT id, created_by_id, created_at, updated_at, status, job_type, log,"
+              + " progress_total, progress_done, log_compressed, log_codec, log_length,"
+              + " :archivedAt FROM jobs WHERE id IN :ids",
+      nativeQuery = true)
+  int archiveAllByIdIn(Collection<Long> ids, ZonedDateTime archivedAt);
+
+  /**
+   * This method returns a job's compressed log, without decompressing it.
+   *
+   * @param id id of the job
+   * @return the compressed bytes, or empty if the job's log is not compressed
+   */
+  @Query("SELECT j.logCompressed FROM jobs j WHERE j.id = :id AND j.logCodec = 'deflate'")
+  Optional<byte[]> findCompressedLogById(long id);
+
+  /**
+   * This method returns the ids of finished jobs whose logs have not been through cold storage yet.
+   *
+   * @param statuses statuses of finished jobs
+   * @param pageable how many ids to return
+   * @return ids of jobs to compress
+   */
+  @Query("SELECT j.id FROM jobs j WHERE j.logCodec IS NULL AND j.status IN :statuses ORDER BY j.id")
+  List<Long> findIdsToCompress(Collection<String> statuses, Pageable pageable);
+
+  /**
+   * Stores a job's compressed log and clears the plain-text column. Must be called inside a
+   * transaction.
+   *
+   * @param id id of the job
+   * @param data the compressed log
+   * @param codec how the log was compressed
+   * @param length number of characters in the uncompressed log
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Query(
+      "UPDATE jobs j SET j.logCompressed = :data, j.logCodec = :codec, j.logLength = :length,"
+          + " j.log = NULL WHERE j.id = :id")
+  int storeCompressedLog(long id, byte[] data, String codec, long length);
+
+  /**
+   * Records that a job's log was left uncompressed. Must be called inside a transaction.
+   *
+   * @param id id of the job
+   * @param codec the codec, e.g. "none"
+   * @return the number of jobs updated
+   */
+  @Modifying
+  @Query("UPDATE jobs j SET j.logCodec = :codec WHERE j.id = :id")
+  int setLogCodec(long id, String codec);
+}
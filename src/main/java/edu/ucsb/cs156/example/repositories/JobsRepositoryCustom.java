@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.models.JobSummary;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/** Queries on jobs that are built at run time; see {@link JobsRepositoryCustomImpl}. */
+public interface JobsRepositoryCustom {
+  /**
+   * This method returns summaries of jobs, newest first, without loading their logs. Pass the
+   * createdAt and id of the last job of one page to get the next page.
+   *
+   * @param status only jobs with this status, or null for any
+   * @param createdById only jobs created by this user, or null for any
+   * @param beforeCreatedAt createdAt of the last job already seen, or null for the first page
+   * @param beforeId id of the last job already seen, or null for the first page
+   * @param limit maximum number of summaries to return
+   * @return the summaries
+   */
+  List<JobSummary> findSummaries(
+      String status, Long createdById, ZonedDateTime beforeCreatedAt, Long beforeId, int limit);
+}
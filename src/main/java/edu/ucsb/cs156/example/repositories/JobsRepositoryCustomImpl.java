@@ -0,0 +1,62 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.models.JobSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the job summary query with only the filters that were asked for, so that the database can
+ * use the matching (status|created_by_id, created_at, id) index.
+ */
+public class JobsRepositoryCustomImpl implements JobsRepositoryCustom {
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public List<JobSummary> findSummaries(
+      String status, Long createdById, ZonedDateTime beforeCreatedAt, Long beforeId, int limit) {
+    StringBuilder jpql =
+        new StringBuilder(
+            "SELECT j.id, j.status, u.id, j.createdAt, j.updatedAt,"
+                + " COALESCE(j.logLength, 0) + COALESCE(LENGTH(j.log), 0)"
+                + " + COALESCE((SELECT SUM(LENGTH(c.text)) FROM job_log_chunks c"
+                + " WHERE c.jobId = j.id), 0)"
+                + " FROM jobs j LEFT JOIN j.createdBy u WHERE 1 = 1");
+    Map<String, Object> params = new HashMap<>();
+    if (status != null) {
+      jpql.append(" AND j.status = :status");
+      params.put("status", status);
+    }
+    if (createdById != null) {
+      jpql.append(" AND j.createdBy.id = :createdById");
+      params.put("createdById", createdById);
+    }
+    if (beforeCreatedAt != null) {
+      jpql.append(
+          " AND (j.createdAt < :beforeCreatedAt"
+              + " OR (j.createdAt = :beforeCreatedAt AND j.id < :beforeId))");
+      params.put("beforeCreatedAt", beforeCreatedAt);
+      params.put("beforeId", beforeId);
+    }
+    jpql.append(" ORDER BY j.createdAt DESC, j.id DESC");
+
+    TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+    params.forEach(query::setParameter);
+    return query.setMaxResults(limit).getResultList().stream()
+        .map(
+            row ->
+                JobSummary.builder()
+                    .id((Long) row[0])
+                    .status((String) row[1])
+                    .createdById((Long) row[2])
+                    .createdAt((ZonedDateTime) row[3])
+                    .updatedAt((ZonedDateTime) row[4])
+                    .logLength(((Number) row[5]).longValue())
+                    .build())
+        .toList();
+  }
+}
@@ -0,0 +1,70 @@
+package edu.ucsb.cs156.example.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import java.io.IOException;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reads every entity that matches a query through a forward-only database cursor. Each entity is
+ * handed to a writer and then detached, so memory use stays flat however large the table is.
+ */
+@Service
+public class EntityStreamService {
+  /** Rows fetched per round trip; Postgres only reads through a cursor when this is set. */
+  public static final int FETCH_SIZE = 500;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  /** Something that writes out one row at a time. */
+  @FunctionalInterface
+  public interface RowWriter<T> {
+    void write(T row) throws IOException;
+  }
+
+  /**
+   * Hand each matching entity to a writer, in order.
+   *
+   * @param type the entity class
+   * @param matching the entities to read
+   * @param sort the order to read them in
+   * @param writer what to do with each entity
+   * @param <T> the entity type
+   * @throws IOException if the writer fails
+   */
+  @Transactional(readOnly = true)
+  public <T> void forEach(Class<T> type, Specification<T> matching, Sort sort, RowWriter<T> writer)
+      throws IOException {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<T> query = cb.createQuery(type);
+    Root<T> root = query.from(type);
+    query.where(matching.toPredicate(root, query, cb));
+    query.orderBy(
+        sort.stream()
+            .map(
+                order ->
+                    order.isAscending()
+                        ? cb.asc(root.get(order.getProperty()))
+                        : cb.desc(root.get(order.getProperty())))
+            .toList());
+    try (Stream<T> rows =
+        entityManager
+            .createQuery(query)
+            .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .getResultStream()) {
+      for (T row : (Iterable<T>) rows::iterator) {
+        writer.write(row);
+        entityManager.detach(row);
+      }
+    }
+  }
+}
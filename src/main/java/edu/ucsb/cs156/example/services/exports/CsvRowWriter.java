@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes entities as lines of CSV, with one column for each field of the entity's JSON. The header
+ * comes from the entity class rather than the first row, so that an empty table still has one.
+ */
+public class CsvRowWriter<T> implements RowWriter<T> {
+  private final Writer out;
+  private final ObjectMapper mapper;
+  private final List<String> fields;
+
+  /**
+   * Writes the header line.
+   *
+   * @param out where to write
+   * @param type the entity class
+   * @param mapper what turns each entity into JSON
+   * @throws IOException if the header cannot be written
+   */
+  public CsvRowWriter(Writer out, Class<T> type, ObjectMapper mapper) throws IOException {
+    this.out = out;
+    this.mapper = mapper;
+    this.fields =
+        mapper
+            .getSerializationConfig()
+            .introspect(mapper.constructType(type))
+            .findProperties()
+            .stream()
+            .filter(BeanPropertyDefinition::couldSerialize)
+            .map(BeanPropertyDefinition::getName)
+            .toList();
+    writeLine(fields);
+  }
+
+  @Override
+  public void write(T row) throws IOException {
+    JsonNode json = mapper.valueToTree(row);
+    writeLine(fields.stream().map(field -> text(json.get(field))).toList());
+  }
+
+  private void writeLine(List<String> values) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) out.write(',');
+      out.write(escape(values.get(i)));
+    }
+    out.write('\n');
+  }
+
+  /** A null is an empty field; an object or array is written as its JSON */
+  private static String text(JsonNode value) {
+    if (value == null || value.isNull()) return "";
+    return value.isValueNode() ? value.asText() : value.toString();
+  }
+
+  /**
+   * Quotes a field if it has a comma, quote or line break in it.
+   *
+   * @param value the field
+   * @return the field as it is written in a line of CSV
+   */
+  static String escape(String value) {
+    if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\r' || c == '\n')) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
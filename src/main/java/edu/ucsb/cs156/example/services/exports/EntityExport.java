@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * The body of an export: every entity of one type, read through a database cursor and written out
+ * while it is read. The response has no length, so it is sent chunked, and it is flushed once per
+ * {@link EntityStreamService#FETCH_SIZE} rows, so the client gets the first rows while later ones
+ * are still being fetched and memory use does not grow with the table.
+ *
+ * @param <T> the entity type
+ */
+@AllArgsConstructor
+public class EntityExport<T> implements StreamingResponseBody {
+  /** Bytes buffered before they are written to the response (or compressed) */
+  static final int BUFFER_SIZE = 8192;
+
+  private final EntityStreamService entityStreamService;
+  private final ObjectMapper mapper;
+  private final Class<T> type;
+  private final Sort sort;
+  private final ExportFormat format;
+  private final boolean gzip;
+
+  @Override
+  public void writeTo(OutputStream response) throws IOException {
+    // syncFlush, so that each flush sends what has been compressed so far
+    GZIPOutputStream compressed = gzip ? new GZIPOutputStream(response, BUFFER_SIZE, true) : null;
+    Writer out =
+        new BufferedWriter(
+            new OutputStreamWriter(gzip ? compressed : response, StandardCharsets.UTF_8),
+            BUFFER_SIZE);
+    RowWriter<T> rows = format.open(out, type, mapper);
+    out.flush();
+    long[] written = {0};
+    entityStreamService.forEach(
+        type,
+        (root, query, cb) -> cb.conjunction(),
+        sort,
+        row -> {
+          rows.write(row);
+          if (++written[0] % EntityStreamService.FETCH_SIZE == 0) out.flush();
+        });
+    out.flush();
+    if (gzip) compressed.finish();
+  }
+}
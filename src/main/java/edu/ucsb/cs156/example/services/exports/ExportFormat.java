@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.errors.InvalidExportException;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import java.io.IOException;
+import java.io.Writer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** The formats that entities can be exported in */
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+  /** Comma-separated values, with a header line naming the fields */
+  CSV("text/csv", "csv"),
+  /** Newline-delimited JSON: one JSON object per line */
+  NDJSON("application/x-ndjson", "ndjson");
+
+  private final String contentType;
+
+  private final String extension;
+
+  /**
+   * Works out the format an export was asked for in.
+   *
+   * @param format the format asked for, e.g. "csv"
+   * @return the format
+   * @throws InvalidExportException if the format is unknown
+   */
+  public static ExportFormat of(String format) {
+    for (ExportFormat known : values()) {
+      if (known.name().equalsIgnoreCase(format)) return known;
+    }
+    throw new InvalidExportException("Unknown format %s; expected csv or ndjson".formatted(format));
+  }
+
+  /**
+   * Starts writing entities in this format, with the CSV header if there is one.
+   *
+   * @param out where to write
+   * @param type the entity class
+   * @param mapper what turns each entity into JSON, as for the rest of the API
+   * @param <T> the entity type
+   * @return a writer for the entities
+   * @throws IOException if the header cannot be written
+   */
+  public <T> RowWriter<T> open(Writer out, Class<T> type, ObjectMapper mapper) throws IOException {
+    if (this == CSV) return new CsvRowWriter<>(out, type, mapper);
+    return row -> {
+      out.write(mapper.writeValueAsString(row));
+      out.write('\n');
+    };
+  }
+}
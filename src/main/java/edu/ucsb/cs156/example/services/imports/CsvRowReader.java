@@ -0,0 +1,67 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import com.opencsv.CSVReader;
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a CSV file whose first line names its fields. Fields may be quoted, and quoted fields may
+ * span lines. Blank lines are skipped.
+ */
+public class CsvRowReader implements RowReader {
+  private final CSVReader csv;
+  private final String[] header;
+
+  /**
+   * Reads the header.
+   *
+   * @param in the file
+   * @param required fields the header must name
+   * @throws IOException if the file cannot be read
+   * @throws InvalidImportException if the header lacks a required field
+   */
+  public CsvRowReader(Reader in, List<String> required) throws IOException {
+    csv = new CSVReader(in);
+    header = csv.readNextSilently();
+    if (header == null) return;
+    // Spreadsheets often start UTF-8 files with a byte order mark
+    if (header[0].startsWith("\uFEFF")) header[0] = header[0].substring(1);
+    List<String> names = List.of(header).stream().map(String::trim).toList();
+    for (String field : required) {
+      if (!names.contains(field)) {
+        throw new InvalidImportException("The header has no %s field".formatted(field));
+      }
+    }
+    names.toArray(header);
+  }
+
+  @Override
+  public ImportRow next() throws IOException {
+    if (header == null) return null;
+    String[] values;
+    do {
+      values = csv.readNextSilently();
+      if (values == null) return null;
+    } while (values.length == 1 && values[0].isBlank());
+
+    long line = csv.getLinesRead();
+    if (values.length != header.length) {
+      return ImportRow.unreadable(
+          line, "%d fields, but the header has %d".formatted(values.length, header.length));
+    }
+    Map<String, String> fields = new HashMap<>();
+    for (int i = 0; i < header.length; i++) {
+      fields.put(header[i], values[i]);
+    }
+    return new ImportRow(line, fields, null);
+  }
+
+  @Override
+  public void close() throws IOException {
+    csv.close();
+  }
+}
@@ -0,0 +1,44 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import java.io.IOException;
+import java.io.Reader;
+
+/** The formats that files can be imported from */
+public enum ImportFormat {
+  /** Comma-separated values, with a header line naming the fields */
+  CSV,
+  /** Newline-delimited JSON: one JSON object per line */
+  NDJSON;
+
+  /**
+   * Works out the format of an uploaded file.
+   *
+   * @param format the format asked for, e.g. "csv", or null to go by the file name
+   * @param filename name of the uploaded file, or null if it has none
+   * @return the format
+   * @throws InvalidImportException if the format asked for is unknown
+   */
+  public static ImportFormat of(String format, String filename) {
+    if (format == null) {
+      String name = filename == null ? "" : filename.toLowerCase();
+      return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+    }
+    for (ImportFormat known : values()) {
+      if (known.name().equalsIgnoreCase(format)) return known;
+    }
+    throw new InvalidImportException("Unknown format %s; expected csv or ndjson".formatted(format));
+  }
+
+  /**
+   * Starts reading a file in this format.
+   *
+   * @param in the file
+   * @param target what the file is imported into
+   * @return a reader for the file's rows
+   * @throws IOException if the file cannot be read
+   */
+  public RowReader open(Reader in, ImportTarget target) throws IOException {
+    return this == CSV ? new CsvRowReader(in, target.requiredFields()) : new NdjsonRowReader(in);
+  }
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** One row read from an uploaded file */
+@Getter
+@AllArgsConstructor
+public class ImportRow {
+  /** Line of the file that the row ends on, counting from 1 */
+  private final long line;
+
+  /** The row's fields by name, or null if the row could not be read */
+  private final Map<String, String> fields;
+
+  /** Why the row could not be read, or null if it could */
+  private final String error;
+
+  static ImportRow unreadable(long line, String error) {
+    return new ImportRow(line, null, error);
+  }
+}
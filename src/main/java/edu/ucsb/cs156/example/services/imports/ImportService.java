@@ -0,0 +1,269 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobPriority;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.services.jobs.LogFlushPolicy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * This is a service that imports rows from uploaded CSV or NDJSON files, as jobs. The upload is
+ * written to a temporary file, which the job reads back one row at a time, so no file is ever held
+ * in memory.
+ *
+ * <p>Rows are checked as they are read and written a batch at a time, each batch in its own
+ * transaction: with the COPY protocol on Postgres, and with batched inserts on other databases
+ * (e.g. H2). If the database rejects a batch, its rows are inserted again one at a time, so that
+ * only the rows at fault are left out. Every row left out is logged to the job with its line
+ * number.
+ *
+ * <p>Generated ids are taken from the entity's sequence the way Hibernate's pooled optimizer takes
+ * them, each value standing for the {@value #ID_BLOCK_SIZE} ids up to and including it, so imported
+ * rows never get an id that JPA will also hand out.
+ */
+@Service
+public class ImportService {
+  /** Ids that each value of a sequence stands for; matches allocationSize on the entities */
+  public static final int ID_BLOCK_SIZE = 50;
+
+  /** Rows left out that one job logs; any more are only counted */
+  public static final int MAX_LOGGED_REJECTIONS = 1000;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TransactionOperations transactionOperations;
+
+  @Value("${spring.datasource.url:}")
+  private String datasourceUrl;
+
+  @Value("${app.imports.batchSize:1000}")
+  private int batchSize;
+
+  /**
+   * Saves an upload to a temporary file and starts a job that imports it.
+   *
+   * @param target what to import the rows into
+   * @param upload the uploaded file
+   * @param format "csv" or "ndjson", or null to go by the file name
+   * @return the job's record
+   * @throws IOException if the upload cannot be saved
+   * @throws InvalidImportException if the upload is empty or the format is unknown
+   */
+  public Job startImport(ImportTarget target, MultipartFile upload, String format)
+      throws IOException {
+    ImportFormat importFormat = ImportFormat.of(format, upload.getOriginalFilename());
+    if (upload.isEmpty()) throw new InvalidImportException("The file is empty");
+
+    Path file = Files.createTempFile("import-", "." + importFormat.name().toLowerCase());
+    try {
+      upload.transferTo(file);
+      return jobService.runAsJob(
+          new ImportJob(target, importFormat, file, upload.getOriginalFilename()));
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+  }
+
+  /**
+   * Imports one uploaded file, then deletes it. This is an inner class so that it is never queued
+   * in the database (see {@link edu.ucsb.cs156.example.services.jobs.DatabaseJobQueue#canEnqueue}):
+   * the file is only on this node.
+   */
+  class ImportJob implements JobContextConsumer {
+    private final ImportTarget target;
+    private final ImportFormat format;
+    private final Path file;
+    private final String filename;
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private final List<Long> lines = new ArrayList<>();
+    private JobContext ctx;
+    private long imported;
+    private long rejected;
+
+    ImportJob(ImportTarget target, ImportFormat format, Path file, String filename) {
+      this.target = target;
+      this.format = format;
+      this.file = file;
+      this.filename = filename;
+    }
+
+    @Override
+    public void accept(JobContext ctx) throws Exception {
+      this.ctx = ctx;
+      try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+          RowReader reader = format.open(in, target)) {
+        ctx.log("Importing %s into %s as %s".formatted(filename, target.getTable(), format));
+        ctx.setPhase("importing");
+        for (ImportRow row = reader.next(); row != null; row = reader.next()) {
+          ctx.checkCancelled();
+          if (row.getError() != null) {
+            reject(row.getLine(), row.getError());
+            continue;
+          }
+          try {
+            rows.add(target.parse(row.getFields()));
+            lines.add(row.getLine());
+          } catch (IllegalArgumentException e) {
+            reject(row.getLine(), e.getMessage());
+          }
+          if (rows.size() >= batchSize) writeBatch();
+        }
+        writeBatch();
+        ctx.log("Imported %d rows; left out %d".formatted(imported, rejected));
+      }
+    }
+
+    /** Deletes the upload, also when the job was cancelled or rejected before it started. */
+    @Override
+    public void onFinished() throws IOException {
+      Files.deleteIfExists(file);
+    }
+
+    @Override
+    public LogFlushPolicy logFlushPolicy() {
+      return LogFlushPolicy.BUFFERED;
+    }
+
+    @Override
+    public JobPriority priority() {
+      return JobPriority.BATCH;
+    }
+
+    private void writeBatch() {
+      if (rows.isEmpty()) return;
+      if (target.getIdSequence() != null) {
+        Iterator<Long> ids = reserveIds(target.getIdSequence(), rows.size()).iterator();
+        rows.forEach(row -> row[0] = ids.next());
+      }
+      try {
+        transactionOperations.executeWithoutResult(
+            status -> {
+              if (usesCopy()) {
+                copy(target, rows);
+              } else {
+                jdbcTemplate.batchUpdate(target.insertSql(), rows);
+              }
+            });
+        imported(rows.size());
+      } catch (DataAccessException e) {
+        for (int i = 0; i < rows.size(); i++) {
+          insertOne(lines.get(i), rows.get(i));
+        }
+      }
+      rows.clear();
+      lines.clear();
+    }
+
+    private void insertOne(long line, Object[] row) {
+      try {
+        transactionOperations.executeWithoutResult(
+            status -> jdbcTemplate.update(target.insertSql(), row));
+        imported(1);
+      } catch (DataAccessException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage());
+        reject(line, message.lines().findFirst().orElse("rejected by the database"));
+      }
+    }
+
+    private void imported(int count) {
+      imported += count;
+      ctx.incrementCounter("imported", count);
+    }
+
+    private void reject(long line, String reason) {
+      rejected++;
+      ctx.incrementCounter("rejected", 1);
+      if (rejected <= MAX_LOGGED_REJECTIONS) ctx.log("Line %d: %s".formatted(line, reason));
+      if (rejected == MAX_LOGGED_REJECTIONS) {
+        ctx.log("Further rows left out are counted but not logged");
+      }
+    }
+  }
+
+  /**
+   * Takes enough values from a sequence for a number of new ids.
+   *
+   * @param sequence the sequence
+   * @param count how many ids are needed
+   * @return the ids, which no other caller of the sequence will use
+   */
+  List<Long> reserveIds(String sequence, int count) {
+    String sql =
+        usesCopy()
+            ? "SELECT nextval('%s') FROM generate_series(1, ?)".formatted(sequence)
+            : "SELECT NEXT VALUE FOR %s FROM SYSTEM_RANGE(1, ?)".formatted(sequence);
+    List<Long> ids = new ArrayList<>(count + ID_BLOCK_SIZE);
+    while (ids.size() < count) {
+      int blocks = (count - ids.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+      for (long value : jdbcTemplate.queryForList(sql, Long.class, blocks)) {
+        // The first value of a new sequence does not stand for a whole block
+        if (value < ID_BLOCK_SIZE) continue;
+        for (long id = value - ID_BLOCK_SIZE + 1; id <= value; id++) ids.add(id);
+      }
+    }
+    return ids.subList(0, count);
+  }
+
+  private void copy(ImportTarget target, List<Object[]> rows) {
+    jdbcTemplate.execute(
+        (ConnectionCallback<Long>)
+            connection -> {
+              CopyIn copy =
+                  connection.unwrap(PGConnection.class).getCopyAPI().copyIn(target.copySql());
+              try {
+                for (Object[] row : rows) {
+                  byte[] line = csvLine(row).getBytes(StandardCharsets.UTF_8);
+                  copy.writeToCopy(line, 0, line.length);
+                }
+                return copy.endCopy();
+              } finally {
+                if (copy.isActive()) copy.cancelCopy();
+              }
+            });
+  }
+
+  /**
+   * Writes a row as a line of CSV for COPY, where an unquoted empty field is NULL.
+   *
+   * @param row the row's column values
+   * @return the line, ending in a newline
+   */
+  static String csvLine(Object[] row) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < row.length; i++) {
+      if (i > 0) line.append(',');
+      if (row[i] != null) {
+        line.append('"').append(row[i].toString().replace("\"", "\"\"")).append('"');
+      }
+    }
+    return line.append('\n').toString();
+  }
+
+  private boolean usesCopy() {
+    return datasourceUrl.startsWith("jdbc:postgresql:");
+  }
+}
@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The tables that uploaded files can be imported into, and how each field of an imported row is
+ * checked. Rows are written with plain SQL rather than through JPA, so the table and column names
+ * here must match the Liquibase changelogs.
+ */
+@Getter
+public enum ImportTarget {
+  UCSB_ORGANIZATIONS(
+      "UCSBORGANIZATION",
+      null,
+      Column.text("orgCode", "ORG_CODE", true),
+      Column.text("orgTranslationShort", "ORG_TRANSLATION_SHORT", true),
+      Column.text("orgTranslation", "ORG_TRANSLATION", true),
+      new Column("inactive", "INACTIVE", Type.BOOLEAN, false)),
+  RESTAURANTS(
+      "RESTAURANTS",
+      "restaurants_seq",
+      Column.text("name", "NAME", true),
+      Column.text("description", "DESCRIPTION", true)),
+  UCSB_DINING_COMMONS_MENU_ITEMS(
+      "UCSBDININGCOMMONSMENUITEM",
+      "ucsbdiningcommonsmenuitem_seq",
+      Column.text("diningCommonsCode", "DINING_COMMONS_CODE", true),
+      Column.text("name", "NAME", true),
+      Column.text("station", "STATION", true)),
+  ARTICLES(
+      "ARTICLES",
+      "articles_seq",
+      Column.text("title", "TITLE", true),
+      Column.text("url", "URL", true),
+      Column.text("explanation", "EXPLANATION", true),
+      Column.text("email", "EMAIL", true),
+      new Column("dateAdded", "DATE_ADDED", Type.TIMESTAMP, true));
+
+  /** Longest text that fits in the VARCHAR(255) columns */
+  public static final int MAX_TEXT_LENGTH = 255;
+
+  private final String table;
+
+  /** Sequence that ids are taken from, or null if the id is one of the imported fields */
+  private final String idSequence;
+
+  private final List<Column> columns;
+
+  ImportTarget(String table, String idSequence, Column... columns) {
+    this.table = table;
+    this.idSequence = idSequence;
+    this.columns = List.of(columns);
+  }
+
+  /** How the text of a field is turned into a column value */
+  public enum Type {
+    TEXT,
+    BOOLEAN,
+    TIMESTAMP
+  }
+
+  /** One field of an imported row, and the column it is written to */
+  @Getter
+  @AllArgsConstructor
+  public static class Column {
+    private final String field;
+    private final String column;
+    private final Type type;
+    private final boolean required;
+
+    static Column text(String field, String column, boolean required) {
+      return new Column(field, column, Type.TEXT, required);
+    }
+
+    Object parse(String value) {
+      if (value == null) return type == Type.BOOLEAN ? Boolean.FALSE : null;
+      switch (type) {
+        case BOOLEAN:
+          if (value.equalsIgnoreCase("true")) return Boolean.TRUE;
+          if (value.equalsIgnoreCase("false")) return Boolean.FALSE;
+          throw new IllegalArgumentException("%s is not true or false: %s".formatted(field, value));
+        case TIMESTAMP:
+          try {
+            return LocalDateTime.parse(value);
+          } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(
+                "%s is not a date and time like 2024-01-31T12:00:00: %s".formatted(field, value));
+          }
+        default:
+          if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException(
+                "%s is longer than %d characters".formatted(field, MAX_TEXT_LENGTH));
+          }
+          return value;
+      }
+    }
+  }
+
+  /**
+   * @return the fields that every imported row must have
+   */
+  public List<String> requiredFields() {
+    return columns.stream().filter(Column::getRequired).map(Column::getField).toList();
+  }
+
+  /**
+   * @return the columns written for each row, in order; ID comes first when ids are generated
+   */
+  public List<String> columnNames() {
+    List<String> names = new ArrayList<>();
+    if (idSequence != null) names.add("ID");
+    columns.forEach(column -> names.add(column.getColumn()));
+    return names;
+  }
+
+  /**
+   * @return an INSERT statement that takes the values of one row as parameters
+   */
+  public String insertSql() {
+    List<String> names = columnNames();
+    return "INSERT INTO %s (%s) VALUES (%s)"
+        .formatted(
+            table,
+            String.join(", ", names),
+            String.join(", ", names.stream().map(n -> "?").toList()));
+  }
+
+  /**
+   * @return a Postgres COPY statement that reads rows in CSV format
+   */
+  public String copySql() {
+    return "COPY %s (%s) FROM STDIN WITH (FORMAT csv)"
+        .formatted(table, String.join(", ", columnNames()));
+  }
+
+  /**
+   * Checks one row and turns its fields into column values.
+   *
+   * @param fields the row's fields by name; an empty field is taken to be missing, and fields that
+   *     are not columns are ignored
+   * @return the values in the order of {@link #columnNames()}, with a generated id left null
+   * @throws IllegalArgumentException saying what is wrong with the row
+   */
+  public Object[] parse(Map<String, String> fields) {
+    int offset = idSequence == null ? 0 : 1;
+    Object[] values = new Object[columns.size() + offset];
+    for (int i = 0; i < columns.size(); i++) {
+      Column column = columns.get(i);
+      String value = fields.get(column.getField());
+      if (value != null && value.isEmpty()) value = null;
+      if (value == null && column.getRequired()) {
+        throw new IllegalArgumentException("missing " + column.getField());
+      }
+      values[i + offset] = column.parse(value);
+    }
+    return values;
+  }
+}
@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Reads a file with one JSON object per line. Blank lines are skipped. */
+public class NdjsonRowReader implements RowReader {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final BufferedReader in;
+  private long line;
+
+  /**
+   * @param in the file
+   */
+  public NdjsonRowReader(Reader in) {
+    this.in = new BufferedReader(in);
+  }
+
+  @Override
+  public ImportRow next() throws IOException {
+    String text;
+    do {
+      text = in.readLine();
+      if (text == null) return null;
+      line++;
+    } while (text.isBlank());
+
+    JsonNode row;
+    try {
+      row = mapper.readTree(text);
+    } catch (JsonProcessingException e) {
+      return ImportRow.unreadable(line, "not valid JSON");
+    }
+    if (!row.isObject()) return ImportRow.unreadable(line, "not a JSON object");
+
+    Map<String, String> fields = new HashMap<>();
+    row.fields()
+        .forEachRemaining(
+            field -> {
+              JsonNode value = field.getValue();
+              fields.put(
+                  field.getKey(),
+                  value.isNull() ? null : value.isValueNode() ? value.asText() : value.toString());
+            });
+    return new ImportRow(line, fields, null);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
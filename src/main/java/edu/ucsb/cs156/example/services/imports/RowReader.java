@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Reads the rows of an uploaded file one at a time, so that the file is never all in memory. */
+public interface RowReader extends Closeable {
+  /**
+   * Reads the next row. A row that cannot be read is returned with an error, and reading carries on
+   * with the row after it.
+   *
+   * @return the next row, or null at the end of the file
+   * @throws IOException if the file cannot be read any further
+   */
+  ImportRow next() throws IOException;
+}
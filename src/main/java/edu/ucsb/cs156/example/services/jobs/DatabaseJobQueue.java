@@ -0,0 +1,231 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.lang.reflect.Modifier;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * This is a service that keeps jobs in the jobs table until a worker on some node claims them.
+ *
+ * <p>A queued job's row holds its class name and its fields serialized as JSON. A worker claims a
+ * row by taking a lease on it, which it renews with heartbeats while the job runs. If a worker
+ * dies, its lease expires and another worker claims the job again. On Postgres, claiming uses
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED} so that workers never wait on each other; on other
+ * databases (e.g. H2) each row is claimed with a conditional update instead.
+ */
+@Slf4j
+@Service
+public class DatabaseJobQueue {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private TransactionOperations transactionOperations;
+
+  @Value("${spring.datasource.url:}")
+  private String datasourceUrl;
+
+  @Value("${app.jobs.leaseSeconds:60}")
+  private long leaseSeconds;
+
+  private final String workerId = UUID.randomUUID().toString();
+
+  private final ObjectMapper specMapper =
+      new ObjectMapper()
+          .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+          .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+          .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  /**
+   * @return the id this node uses as lease owner
+   */
+  public String getWorkerId() {
+    return workerId;
+  }
+
+  /**
+   * A job can only be queued in the database if it can be rebuilt from its class name and fields,
+   * which rules out lambdas and anonymous classes, and job types that opt out with {@link
+   * JobContextConsumer#enqueueable}.
+   *
+   * @param jobFunction the job
+   * @return true if the job can be queued in the database
+   */
+  public boolean canEnqueue(JobContextConsumer jobFunction) {
+    return jobFunction.enqueueable() && canRebuild(jobFunction.getClass());
+  }
+
+  private static boolean canRebuild(Class<?> type) {
+    return !type.isHidden()
+        && !type.isSynthetic()
+        && !type.isAnonymousClass()
+        && !type.isLocalClass()
+        && (!type.isMemberClass() || Modifier.isStatic(type.getModifiers()));
+  }
+
+  /**
+   * Saves a job as "queued" along with what is needed to run it later on any node.
+   *
+   * @param job the job's record
+   * @param jobFunction the work to run
+   * @return the saved job
+   */
+  public Job enqueue(Job job, JobContextConsumer jobFunction) {
+    job.setStatus("queued");
+    job.setJobType(jobFunction.getClass().getName());
+    job.setJobSpec(encode(jobFunction));
+    jobsRepository.save(job);
+    return job;
+  }
+
+  /**
+   * Saves several jobs as "queued" in one transaction, so that either all of them are queued or
+   * none are. The rows are inserted as one JDBC batch.
+   *
+   * @param jobs the jobs' records
+   * @param jobFunctions the work to run, in the same order as jobs
+   * @return the saved jobs
+   */
+  public List<Job> enqueueAll(List<Job> jobs, List<JobContextConsumer> jobFunctions) {
+    for (int i = 0; i < jobs.size(); i++) {
+      Job job = jobs.get(i);
+      job.setStatus("queued");
+      job.setJobType(jobFunctions.get(i).getClass().getName());
+      job.setJobSpec(encode(jobFunctions.get(i)));
+    }
+    jobsRepository.saveAll(jobs);
+    return jobs;
+  }
+
+  /**
+   * Serializes a job's fields, so that it can be rebuilt later with {@link #decode(String,
+   * String)}.
+   *
+   * @param jobFunction the job
+   * @return the job's fields as JSON
+   * @throws IllegalArgumentException if the job cannot be serialized
+   */
+  public String encode(JobContextConsumer jobFunction) {
+    try {
+      return specMapper.writeValueAsString(jobFunction);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Job cannot be serialized: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Rebuilds the job that a queued row describes.
+   *
+   * @param job the job's record
+   * @return the job to run
+   * @throws Exception if the class is missing or the spec cannot be read
+   */
+  public JobContextConsumer decode(Job job) throws Exception {
+    return decode(job.getJobType(), job.getJobSpec());
+  }
+
+  /**
+   * Rebuilds a job from its class name and serialized fields. The class name may come from a
+   * client, so the class is checked before it is initialized: nothing of a class that is not a job
+   * that could have been queued is run.
+   *
+   * @param jobType the job's class name
+   * @param jobSpec the job's fields as JSON
+   * @return the job to run
+   * @throws Exception if the class is missing or the spec cannot be read
+   * @throws IllegalArgumentException if the class is not a job that can be queued
+   */
+  public JobContextConsumer decode(String jobType, String jobSpec) throws Exception {
+    Class<?> type = Class.forName(jobType, false, DatabaseJobQueue.class.getClassLoader());
+    if (!JobContextConsumer.class.isAssignableFrom(type)) {
+      throw new IllegalArgumentException(jobType + " is not a JobContextConsumer");
+    }
+    if (!canRebuild(type)) {
+      throw new IllegalArgumentException(jobType + " cannot be rebuilt from its fields");
+    }
+    JobContextConsumer jobFunction = (JobContextConsumer) specMapper.readValue(jobSpec, type);
+    if (!jobFunction.enqueueable()) {
+      throw new IllegalArgumentException(jobType + " cannot be queued");
+    }
+    return jobFunction;
+  }
+
+  /**
+   * Claims up to {@code limit} jobs for this worker, including jobs whose previous worker's lease
+   * has expired.
+   *
+   * @param limit the most jobs to claim
+   * @return the claimed jobs, now leased to this worker
+   */
+  public List<Job> claim(int limit) {
+    if (limit <= 0) return List.of();
+    ZonedDateTime now = ZonedDateTime.now();
+    ZonedDateTime expiresAt = now.plusSeconds(leaseSeconds);
+
+    List<Long> claimed;
+    if (usesSkipLocked()) {
+      claimed =
+          transactionOperations.execute(
+              status -> {
+                List<Long> ids = jobsRepository.lockClaimableJobIds(now, limit);
+                if (!ids.isEmpty()) jobsRepository.leaseJobs(ids, workerId, expiresAt, now);
+                return ids;
+              });
+    } else {
+      claimed = new ArrayList<>();
+      for (Long id : jobsRepository.findClaimableJobIds(now, PageRequest.of(0, limit))) {
+        if (jobsRepository.leaseJobIfClaimable(id, workerId, expiresAt, now) == 1) {
+          claimed.add(id);
+        }
+      }
+    }
+    if (claimed.isEmpty()) return List.of();
+
+    List<Job> jobs = new ArrayList<>();
+    jobsRepository.findAllById(claimed).forEach(jobs::add);
+    return jobs;
+  }
+
+  /**
+   * Renews this worker's leases on the jobs it is running, and reports which of them have been
+   * cancelled since the last heartbeat.
+   *
+   * @param ids ids of the jobs this worker is running
+   * @return ids of the jobs that should stop
+   */
+  public List<Long> heartbeat(Collection<Long> ids) {
+    if (ids.isEmpty()) return List.of();
+    ZonedDateTime now = ZonedDateTime.now();
+    jobsRepository.renewLeases(ids, workerId, now.plusSeconds(leaseSeconds), now);
+    return jobsRepository.findCancelRequestedIds(ids);
+  }
+
+  /**
+   * Puts a claimed job that this worker could not start back on the queue.
+   *
+   * @param id id of the job
+   */
+  public void release(long id) {
+    jobsRepository.releaseLease(id, workerId);
+  }
+
+  private boolean usesSkipLocked() {
+    return datasourceUrl.startsWith("jdbc:postgresql:");
+  }
+}
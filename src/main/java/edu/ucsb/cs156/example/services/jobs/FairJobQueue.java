@@ -0,0 +1,164 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * This is the queue of jobs waiting for a slot on the {@link JobExecutor}. It picks the next job by
+ * weighted fair queuing on two levels: first among the {@link JobPriority} classes, then among the
+ * users who submitted jobs of that class, so that a user with hundreds of jobs waiting gets the
+ * same share of slots as a user with one. A user's jobs of one class start in submission order.
+ *
+ * <p>Each class and each user has a virtual time that moves on by 1/weight whenever one of their
+ * jobs starts, and the one furthest behind goes next. A class or user that had nothing waiting
+ * rejoins at the current virtual time, so time spent idle is not saved up as credit.
+ *
+ * <p>This class is not thread safe; {@link JobExecutor} guards it with a lock.
+ *
+ * @param <T> type of the queued jobs
+ */
+class FairJobQueue<T> {
+  private final ToIntFunction<JobPriority> priorityWeights;
+  private final ToIntFunction<String> ownerWeights;
+  private final Map<JobPriority, Lane> lanes = new EnumMap<>(JobPriority.class);
+  private double virtualTime;
+  private int size;
+
+  /**
+   * @param priorityWeights the weight of each priority class
+   * @param ownerWeights the weight of each user; weights below 1 count as 1
+   */
+  FairJobQueue(ToIntFunction<JobPriority> priorityWeights, ToIntFunction<String> ownerWeights) {
+    this.priorityWeights = priorityWeights;
+    this.ownerWeights = ownerWeights;
+    for (JobPriority priority : JobPriority.values()) lanes.put(priority, new Lane(priority));
+  }
+
+  void add(JobPriority priority, String owner, T item) {
+    Lane lane = lanes.get(priority);
+    if (lane.size == 0) lane.pass = Math.max(lane.pass, virtualTime);
+    Queue queue = lane.owners.computeIfAbsent(owner, Queue::new);
+    if (queue.items.isEmpty()) queue.pass = Math.max(queue.pass, lane.virtualTime);
+    queue.items.add(item);
+    lane.size++;
+    size++;
+  }
+
+  /**
+   * Removes the job that should start next, skipping jobs that cannot start yet.
+   *
+   * @param eligible whether a job can start now, e.g. because its type has a free permit
+   * @return the job, or null if no waiting job can start
+   */
+  T poll(Predicate<? super T> eligible) {
+    List<Lane> byPass =
+        lanes.values().stream()
+            .filter(l -> l.size > 0)
+            .sorted(Comparator.comparingDouble((Lane l) -> l.pass))
+            .toList();
+    for (Lane lane : byPass) {
+      // A user with nothing waiting who is no longer ahead would rejoin at the lane's time anyway
+      lane.owners.values().removeIf(q -> q.items.isEmpty() && q.pass <= lane.virtualTime);
+      List<Queue> queues =
+          lane.owners.values().stream()
+              .filter(q -> !q.items.isEmpty())
+              .sorted(Comparator.comparingDouble((Queue q) -> q.pass).thenComparing(q -> q.owner))
+              .toList();
+      for (Queue queue : queues) {
+        for (Iterator<T> it = queue.items.iterator(); it.hasNext(); ) {
+          T item = it.next();
+          if (!eligible.test(item)) continue;
+          it.remove();
+          lane.virtualTime = Math.max(lane.virtualTime, queue.pass);
+          queue.pass += 1.0 / Math.max(1, ownerWeights.applyAsInt(queue.owner));
+          virtualTime = Math.max(virtualTime, lane.pass);
+          lane.pass += 1.0 / Math.max(1, priorityWeights.applyAsInt(lane.priority));
+          lane.size--;
+          size--;
+          return item;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes a waiting job without starting it, e.g. because it was cancelled. The class and user it
+   * belonged to keep their virtual times.
+   *
+   * @param matches picks the job to remove
+   * @return the job, or null if no waiting job matches
+   */
+  T remove(Predicate<? super T> matches) {
+    for (Lane lane : lanes.values()) {
+      for (Queue queue : lane.owners.values()) {
+        for (Iterator<T> it = queue.items.iterator(); it.hasNext(); ) {
+          T item = it.next();
+          if (!matches.test(item)) continue;
+          it.remove();
+          lane.size--;
+          size--;
+          return item;
+        }
+      }
+    }
+    return null;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param priority a priority class
+   * @return the number of jobs of that class waiting
+   */
+  int size(JobPriority priority) {
+    return lanes.get(priority).size;
+  }
+
+  /**
+   * @return the number of jobs waiting for each user that has any, over all priority classes
+   */
+  Map<String, Integer> sizeByOwner() {
+    Map<String, Integer> sizes = new LinkedHashMap<>();
+    for (Lane lane : lanes.values()) {
+      lane.owners.forEach(
+          (owner, queue) -> {
+            if (!queue.items.isEmpty()) sizes.merge(owner, queue.items.size(), Integer::sum);
+          });
+    }
+    return sizes;
+  }
+
+  private class Lane {
+    private final JobPriority priority;
+    private final Map<String, Queue> owners = new HashMap<>();
+    private double pass;
+    private double virtualTime;
+    private int size;
+
+    Lane(JobPriority priority) {
+      this.priority = priority;
+    }
+  }
+
+  private class Queue {
+    private final String owner;
+    private final Deque<T> items = new ArrayDeque<>();
+    private double pass;
+
+    Queue(String owner) {
+      this.owner = owner;
+    }
+  }
+}
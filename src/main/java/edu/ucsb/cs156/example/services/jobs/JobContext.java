@@ -1,20 +1,374 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * This is the handle a running job uses to log, report progress and check whether it should stop.
+ *
+ * <p>The log buffer and progress are guarded by a {@link ReentrantLock} rather than by {@code
+ * synchronized}, since flushing them writes to the database while the lock is held (so that chunks
+ * are written, and streamed, in seq order), and a virtual thread blocked on I/O inside a {@code
+ * synchronized} block stays pinned to its carrier thread.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
+  /** Progress is written to the database at most this often while a job runs. */
+  public static final Duration PROGRESS_WRITE_INTERVAL = Duration.ofSeconds(1);
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private JobLogChunkRepository jobLogChunkRepository;
   private Job job;
+  private LogFlushPolicy flushPolicy;
+  private Clock clock;
+  private Consumer<JobLogChunk> chunkListener;
+  private Consumer<JobProgress> progressListener;
+  private int nextSeq = 0;
+
+  private final List<String> pending = new ArrayList<>();
+  private long pendingBytes = 0;
+  private Instant lastFlush;
+
+  private Long progressTotal;
+  private long progressDone = 0;
+  private String progressPhase;
+  private final Map<String, Long> counters = new LinkedHashMap<>();
+  private boolean progressChanged = false;
+  private Instant lastProgressWrite;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Object cancelLock = new Object();
+  private volatile String cancelReason;
+  private Thread thread;
+
+  public JobContext(JobLogChunkRepository jobLogChunkRepository, Job job) {
+    this(jobLogChunkRepository, job, LogFlushPolicy.IMMEDIATE, Clock.systemUTC());
+  }
+
+  public JobContext(
+      JobLogChunkRepository jobLogChunkRepository,
+      Job job,
+      LogFlushPolicy flushPolicy,
+      Clock clock) {
+    this(jobLogChunkRepository, job, flushPolicy, clock, chunk -> {});
+  }
+
+  /**
+   * @param chunkListener called with each chunk after it has been written, e.g. to stream it to
+   *     clients that are tailing the job
+   */
+  public JobContext(
+      JobLogChunkRepository jobLogChunkRepository,
+      Job job,
+      LogFlushPolicy flushPolicy,
+      Clock clock,
+      Consumer<JobLogChunk> chunkListener) {
+    this(jobLogChunkRepository, job, flushPolicy, clock, chunkListener, progress -> {});
+  }
+
+  /**
+   * @param chunkListener called with each chunk after it has been written, e.g. to stream it to
+   *     clients that are tailing the job
+   * @param progressListener called with the job's progress whenever it is due to be written, at
+   *     most once per {@link #PROGRESS_WRITE_INTERVAL} while the job runs
+   */
+  public JobContext(
+      JobLogChunkRepository jobLogChunkRepository,
+      Job job,
+      LogFlushPolicy flushPolicy,
+      Clock clock,
+      Consumer<JobLogChunk> chunkListener,
+      Consumer<JobProgress> progressListener) {
+    this.jobLogChunkRepository = jobLogChunkRepository;
+    this.job = job;
+    this.flushPolicy = flushPolicy;
+    this.clock = clock;
+    this.chunkListener = chunkListener;
+    this.progressListener = progressListener;
+    this.lastFlush = clock.instant();
+    this.lastProgressWrite = clock.instant();
+  }
 
+  public Job getJob() {
+    return job;
+  }
+
+  /**
+   * Makes the next chunk of the log follow chunks written before this context existed, e.g. by an
+   * earlier attempt of the job on another node.
+   *
+   * @param seq seq of the next chunk to write
+   */
+  void continueLogAt(int seq) {
+    lock.lock();
+    try {
+      nextSeq = seq;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends a line to the job's log. Lines are buffered according to the job's {@link
+   * LogFlushPolicy} and written as a single chunk, so the cost of a call does not depend on how
+   * much the job has already logged.
+   *
+   * @param message the line to append
+   */
   public void log(String message) {
-    log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    lock.lock();
+    try {
+      log.info("Job %s: %s".formatted(job.getId(), message));
+      pending.add(message);
+      pendingBytes += message == null ? 0 : message.getBytes(StandardCharsets.UTF_8).length;
+      if (pending.size() >= flushPolicy.getMaxLines()
+          || pendingBytes >= flushPolicy.getMaxBytes()
+          || intervalElapsed()) {
+        flush();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns true once the job has been cancelled or has run past its timeout. Long-running jobs
+   * should check this (or call {@link #checkCancelled()}) between units of work and stop early.
+   *
+   * @return true if the job should stop
+   */
+  public boolean isCancelled() {
+    return cancelReason != null;
+  }
+
+  /**
+   * Returns why the job was stopped.
+   *
+   * @return "cancelled", "timed_out", or null if the job has not been stopped
+   */
+  public String getCancelReason() {
+    return cancelReason;
+  }
+
+  /**
+   * Throws if the job has been cancelled or has run past its timeout.
+   *
+   * @throws JobCancelledException if the job should stop
+   */
+  public void checkCancelled() {
+    if (isCancelled()) throw new JobCancelledException(job.getId(), cancelReason);
+  }
+
+  /**
+   * Asks the job to stop. The first reason given wins. If the job is running, its thread is
+   * interrupted so that a job that is sleeping or blocked wakes up.
+   *
+   * @param reason the status the job should finish with, e.g. "cancelled" or "timed_out"
+   */
+  public void cancel(String reason) {
+    synchronized (cancelLock) {
+      if (cancelReason == null) cancelReason = reason;
+      if (thread != null) thread.interrupt();
+    }
+  }
+
+  /**
+   * Records the thread that runs the job, so that {@link #cancel} can interrupt it. Pass null when
+   * the job's own work is done, so that a late cancel does not interrupt the thread while it is
+   * writing out the job's final state.
+   *
+   * @param thread the thread running the job, or null
+   */
+  void bindThread(Thread thread) {
+    synchronized (cancelLock) {
+      this.thread = thread;
+    }
+  }
+
+  /**
+   * Sets how many units of work the job has in total, so that clients can show a percentage.
+   *
+   * @param total the number of units of work
+   */
+  public void setProgressTotal(long total) {
+    lock.lock();
+    try {
+      progressTotal = total;
+      progressUpdated();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sets how many units of work the job has finished.
+   *
+   * @param done the number of units finished
+   */
+  public void setProgressDone(long done) {
+    lock.lock();
+    try {
+      progressDone = done;
+      progressUpdated();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records that more units of work are finished.
+   *
+   * @param units the number of units just finished
+   */
+  public void advanceProgress(long units) {
+    lock.lock();
+    try {
+      progressDone += units;
+      progressUpdated();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sets what the job is doing now, e.g. "downloading" or "saving".
+   *
+   * @param phase a short name for the current phase
+   */
+  public void setPhase(String phase) {
+    lock.lock();
+    try {
+      progressPhase = phase;
+      progressUpdated();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds to a named counter, e.g. the number of rows skipped. Counters start at zero.
+   *
+   * @param name name of the counter
+   * @param delta amount to add
+   */
+  public void incrementCounter(String name, long delta) {
+    lock.lock();
+    try {
+      counters.merge(name, delta, Long::sum);
+      progressUpdated();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the job's progress as it is now, including changes that have not been written yet.
+   *
+   * @return the progress
+   */
+  public JobProgress getProgress() {
+    lock.lock();
+    try {
+      return JobProgress.builder()
+          .jobId(job.getId())
+          .status(job.getStatus())
+          .total(progressTotal)
+          .done(progressDone)
+          .phase(progressPhase)
+          .counters(countersJson())
+          .updatedAt(clock.instant().atZone(ZoneOffset.UTC))
+          .build();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Writes progress that has changed since the last write. */
+  public void flushProgress() {
+    lock.lock();
+    try {
+      lastProgressWrite = clock.instant();
+      if (!progressChanged) return;
+      progressChanged = false;
+      JobProgress progress = getProgress();
+      job.setProgressTotal(progress.getTotal());
+      job.setProgressDone(progress.getDone());
+      job.setProgressPhase(progress.getPhase());
+      job.setProgressCounters(progress.getCounters());
+      job.setProgressUpdatedAt(progress.getUpdatedAt());
+      progressListener.accept(progress);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void progressUpdated() {
+    progressChanged = true;
+    if (progressIntervalElapsed()) flushProgress();
+  }
+
+  private boolean progressIntervalElapsed() {
+    return Duration.between(lastProgressWrite, clock.instant()).compareTo(PROGRESS_WRITE_INTERVAL)
+        >= 0;
+  }
+
+  private String countersJson() {
+    return mapper.valueToTree(counters).toString();
+  }
+
+  /**
+   * Writes buffered lines if the policy's time interval has passed since the last write, and
+   * progress if it has changed and is due to be written.
+   */
+  public void flushIfDue() {
+    lock.lock();
+    try {
+      if (intervalElapsed()) flush();
+      if (progressChanged && progressIntervalElapsed()) flushProgress();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Writes all buffered lines to the database as one chunk. */
+  public void flush() {
+    lock.lock();
+    try {
+      lastFlush = clock.instant();
+      if (pending.isEmpty()) return;
+      String text = String.join("\n", pending);
+      JobLogChunk chunk =
+          JobLogChunk.builder().jobId(job.getId()).seq(nextSeq++).text(text).build();
+      pending.clear();
+      pendingBytes = 0;
+      if (jobLogChunkRepository != null) jobLogChunkRepository.save(chunk);
+      chunkListener.accept(chunk);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean intervalElapsed() {
+    Duration maxInterval = flushPolicy.getMaxInterval();
+    return maxInterval != null
+        && Duration.between(lastFlush, clock.instant()).compareTo(maxInterval) >= 0;
   }
 }
@@ -3,4 +3,68 @@ package edu.ucsb.cs156.example.services.jobs;
 @FunctionalInterface
 public interface JobContextConsumer {
   void accept(JobContext c) throws Exception;
+
+  /**
+   * Job types that log heavily can override this to have their log lines buffered and written in
+   * batches.
+   *
+   * @return the flush policy for this job's log
+   */
+  default LogFlushPolicy logFlushPolicy() {
+    return LogFlushPolicy.IMMEDIATE;
+  }
+
+  /**
+   * Job types whose fields cannot be serialized, e.g. because they hold lambdas, override this so
+   * that they always run on the node that submitted them, even in database queue mode; see {@link
+   * DatabaseJobQueue#canEnqueue}.
+   *
+   * @return false if the job cannot be rebuilt from its fields
+   */
+  default boolean enqueueable() {
+    return true;
+  }
+
+  /**
+   * Job types that are safe to run again from the start can override this, so that if the node
+   * running them dies, {@link JobOrphanSweeper} submits them again. Only jobs that can be rebuilt
+   * from their fields can be restarted; see {@link DatabaseJobQueue#canEnqueue}.
+   *
+   * @return true if the job may be run again after its node dies
+   */
+  default boolean restartable() {
+    return false;
+  }
+
+  /**
+   * Job types can override this to start ahead of, or behind, other waiting jobs; see {@link
+   * JobPriority}.
+   *
+   * @return the priority class of this job
+   */
+  default JobPriority priority() {
+    return JobPriority.NORMAL;
+  }
+
+  /**
+   * Job types whose failures may be transient can override this to be run again after a failure;
+   * see {@link RetryPolicy}.
+   *
+   * @return the retry policy for this job
+   */
+  default RetryPolicy retryPolicy() {
+    return RetryPolicy.NONE;
+  }
+
+  /**
+   * Job types that hold resources outside the job, e.g. a temporary file, can override this to
+   * release them. It is called once this instance will not run again: after its last attempt,
+   * whether or not {@link #accept} was ever called (e.g. when the job is cancelled while it waits
+   * to start), and when the job is rejected or another job with its idempotency key is used
+   * instead.
+   *
+   * @throws Exception if the resources cannot be released; this is logged, and does not change how
+   *     the job ended
+   */
+  default void onFinished() throws Exception {}
 }
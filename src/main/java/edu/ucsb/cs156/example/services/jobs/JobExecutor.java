@@ -0,0 +1,335 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that runs jobs, each on its own virtual thread.
+ *
+ * <p>The JVM cannot measure the CPU time or allocations of a virtual thread, so job types listed in
+ * {@code app.jobs.meteredTypes} (by simple class name, or {@code *} for every type) run on platform
+ * threads instead, for {@link JobResourceMeter} to measure. Those threads are pooled but not
+ * bounded, so a metered type that runs many jobs at once should also have a {@code maxConcurrent}
+ * limit.
+ *
+ * <p>The number of jobs of a given type that may run at once can be capped by setting {@code
+ * app.jobs.maxConcurrent.<SimpleClassName>}; types without a setting are unlimited. Jobs waiting
+ * for a permit count against {@code app.jobs.queueCapacity}, and submissions beyond that are
+ * rejected with a {@link JobQueueFullException}.
+ *
+ * <p>With {@code app.jobs.maxActive} set, at most that many jobs run at once, and waiting jobs are
+ * started in the order picked by a {@link FairJobQueue}: each {@link JobPriority} class gets a
+ * share of the free slots in proportion to {@code app.jobs.priorityWeights.<class>}, and within a
+ * class each user gets a share in proportion to {@code app.jobs.userWeights.<userId>} (1 unless
+ * set). The last {@code app.jobs.reservedSlots} slots are never given to batch jobs, so a long
+ * batch run cannot hold every slot.
+ */
+@Slf4j
+@Service
+@ConfigurationProperties(prefix = "app.jobs")
+public class JobExecutor {
+  /** The owner of jobs that were not submitted by a user, e.g. by a schedule */
+  public static final String SYSTEM_OWNER = "system";
+
+  @Getter @Setter private int queueCapacity = 1000;
+
+  @Getter @Setter private Map<String, Integer> maxConcurrent = new HashMap<>();
+
+  // 0 means unlimited
+  @Getter @Setter private int maxActive = 0;
+
+  @Getter @Setter private int reservedSlots = 0;
+
+  @Getter @Setter
+  private Map<String, Integer> priorityWeights =
+      new HashMap<>(Map.of("interactive", 8, "normal", 4, "batch", 1));
+
+  @Getter @Setter private Map<String, Integer> userWeights = new HashMap<>();
+
+  @Getter @Setter private Set<String> meteredTypes = new HashSet<>();
+
+  private final ExecutorService executor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-", 0).factory());
+
+  private final ExecutorService meteredExecutor =
+      Executors.newCachedThreadPool(Thread.ofPlatform().name("job-metered-", 0).factory());
+
+  private final Map<String, TypeStats> types = new ConcurrentHashMap<>();
+
+  private final Object lock = new Object();
+
+  private final FairJobQueue<Pending> waiting =
+      new FairJobQueue<>(
+          priority -> priorityWeights.getOrDefault(priority.key(), 1),
+          owner -> userWeights.getOrDefault(owner, 1));
+
+  // Guarded by lock
+  private int running;
+
+  private final AtomicInteger queued = new AtomicInteger();
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private volatile boolean shutdown;
+
+  /**
+   * Submits a job that no user is waiting on, e.g. in tests, with normal priority.
+   *
+   * @param jobType the job's class, used to look up its concurrency limit
+   * @param task the work to run
+   * @throws JobQueueFullException if queueCapacity jobs are already waiting to start
+   */
+  public void submit(Class<?> jobType, Runnable task) {
+    submit(jobType, SYSTEM_OWNER, JobPriority.NORMAL, task);
+  }
+
+  /**
+   * Submits a job to run as soon as it has a free slot and its type has a free permit.
+   *
+   * @param jobType the job's class, used to look up its concurrency limit
+   * @param owner whose job it is, e.g. the id of the user who submitted it
+   * @param priority the job's priority class
+   * @param task the work to run
+   * @throws JobQueueFullException if queueCapacity jobs are already waiting to start
+   */
+  public void submit(Class<?> jobType, String owner, JobPriority priority, Runnable task) {
+    submitAll(List.of(new Submission(jobType, owner, priority, task)));
+  }
+
+  /**
+   * Submits several jobs at once. Either all of them are accepted or, if there is not room in the
+   * queue for all of them, none are.
+   *
+   * @param submissions the jobs to run
+   * @throws JobQueueFullException if fewer than submissions.size() more jobs may wait to start
+   */
+  public void submitAll(List<Submission> submissions) {
+    if (submissions.isEmpty()) return;
+    int count = submissions.size();
+    if (queued.addAndGet(count) > queueCapacity) {
+      queued.addAndGet(-count);
+      throw new JobQueueFullException(
+          count == 1
+              ? submissions.get(0).jobType.getSimpleName()
+              : "a batch of %d jobs".formatted(count),
+          queueCapacity);
+    }
+    List<Pending> pending = new ArrayList<>(count);
+    for (Submission submission : submissions) {
+      TypeStats stats =
+          types.computeIfAbsent(submission.jobType.getSimpleName(), this::newTypeStats);
+      stats.queued.incrementAndGet();
+      pending.add(new Pending(stats, submission.priority, submission.task));
+    }
+
+    synchronized (lock) {
+      for (int i = 0; i < count; i++) {
+        Submission submission = submissions.get(i);
+        waiting.add(submission.priority, submission.owner, pending.get(i));
+      }
+      dispatch();
+    }
+  }
+
+  /** Starts waiting jobs while there are free slots. Must be called holding the lock. */
+  private void dispatch() {
+    while (!shutdown && (maxActive <= 0 || running < maxActive)) {
+      Pending next = waiting.poll(this::canStart);
+      if (next == null) return;
+      running++;
+      next.stats.running++;
+      queued.decrementAndGet();
+      next.stats.queued.decrementAndGet();
+      active.incrementAndGet();
+      next.stats.active.incrementAndGet();
+      (next.stats.metered ? meteredExecutor : executor).execute(() -> run(next));
+    }
+  }
+
+  private boolean canStart(Pending pending) {
+    TypeStats stats = pending.stats;
+    if (stats.limit != null && stats.running >= stats.limit) return false;
+    return pending.priority != JobPriority.BATCH
+        || maxActive <= 0
+        || running < maxActive - reservedSlots;
+  }
+
+  private void run(Pending pending) {
+    try {
+      pending.task.run();
+    } finally {
+      active.decrementAndGet();
+      pending.stats.active.decrementAndGet();
+      synchronized (lock) {
+        running--;
+        pending.stats.running--;
+        dispatch();
+      }
+    }
+  }
+
+  /**
+   * Takes back a job that is still waiting to start, e.g. because it was cancelled, so that it no
+   * longer counts against queueCapacity.
+   *
+   * @param task the task the job was submitted with
+   * @return true if the job was waiting and will not be started; false if it has already started
+   */
+  public boolean withdraw(Runnable task) {
+    synchronized (lock) {
+      Pending withdrawn = waiting.remove(pending -> pending.task == task);
+      if (withdrawn == null) return false;
+      queued.decrementAndGet();
+      withdrawn.stats.queued.decrementAndGet();
+      return true;
+    }
+  }
+
+  /**
+   * @return number of jobs that are waiting for a permit
+   */
+  public int getQueued() {
+    return queued.get();
+  }
+
+  /**
+   * @param priority a priority class
+   * @return number of jobs of that class that are waiting for a permit
+   */
+  public int getQueued(JobPriority priority) {
+    synchronized (lock) {
+      return waiting.size(priority);
+    }
+  }
+
+  /**
+   * @return number of jobs waiting for a permit, for each owner that has any
+   */
+  public Map<String, Integer> getQueuedByOwner() {
+    synchronized (lock) {
+      return waiting.sizeByOwner();
+    }
+  }
+
+  /**
+   * @return number of jobs that are running
+   */
+  public int getActive() {
+    return active.get();
+  }
+
+  /**
+   * Reports queue depth and running jobs, overall, per job type, per priority class and per owner.
+   *
+   * @return a map suitable for returning as JSON
+   */
+  public Map<String, Object> stats() {
+    Map<String, Object> perType = new LinkedHashMap<>();
+    types.forEach(
+        (name, s) -> {
+          Map<String, Object> typeStats = new LinkedHashMap<>();
+          typeStats.put("active", s.active.get());
+          typeStats.put("queued", s.queued.get());
+          typeStats.put("maxConcurrent", s.limit);
+          perType.put(name, typeStats);
+        });
+    Map<String, Object> perPriority = new LinkedHashMap<>();
+    for (JobPriority priority : JobPriority.values()) {
+      perPriority.put(priority.key(), getQueued(priority));
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("active", getActive());
+    result.put("queued", getQueued());
+    result.put("queueCapacity", queueCapacity);
+    result.put("maxActive", maxActive);
+    result.put("types", perType);
+    result.put("queuedByPriority", perPriority);
+    result.put("queuedByOwner", getQueuedByOwner());
+    return result;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    shutdown = true;
+    synchronized (lock) {
+      Pending dropped;
+      while ((dropped = waiting.poll(p -> true)) != null) {
+        queued.decrementAndGet();
+        dropped.stats.queued.decrementAndGet();
+      }
+    }
+    executor.shutdownNow();
+    meteredExecutor.shutdownNow();
+  }
+
+  private TypeStats newTypeStats(String typeName) {
+    Integer limit = maxConcurrent.get(typeName);
+    return new TypeStats(
+        limit != null && limit > 0 ? limit : null,
+        meteredTypes.contains("*") || meteredTypes.contains(typeName));
+  }
+
+  /** A job to be run, as passed to {@link #submitAll} */
+  @Getter
+  public static class Submission {
+    private final Class<?> jobType;
+    private final String owner;
+    private final JobPriority priority;
+    private final Runnable task;
+
+    /**
+     * @param jobType the job's class, used to look up its concurrency limit
+     * @param owner whose job it is, e.g. the id of the user who submitted it
+     * @param priority the job's priority class
+     * @param task the work to run
+     */
+    public Submission(Class<?> jobType, String owner, JobPriority priority, Runnable task) {
+      this.jobType = jobType;
+      this.owner = owner;
+      this.priority = priority;
+      this.task = task;
+    }
+  }
+
+  private static class Pending {
+    private final TypeStats stats;
+    private final JobPriority priority;
+    private final Runnable task;
+
+    Pending(TypeStats stats, JobPriority priority, Runnable task) {
+      this.stats = stats;
+      this.priority = priority;
+      this.task = task;
+    }
+  }
+
+  private static class TypeStats {
+    private final Integer limit;
+    private final boolean metered;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    // Guarded by lock
+    private int running;
+
+    TypeStats(Integer limit, boolean metered) {
+      this.limit = limit;
+      this.metered = metered;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * This is a service that moves the logs of finished jobs to cold storage. The log chunks (or the
+ * legacy log column) of a job are joined, compressed with zlib at its fastest level, and stored in
+ * the job's {@code logCompressed} column; the plain-text copies are then removed. Finished logs
+ * smaller than {@code app.jobs.logCompression.finishedLogMinBytes} are left as they are.
+ *
+ * <p>A running job's log is never compressed, however large it grows: its chunks are still being
+ * appended to, and clients tailing the job resume from a chunk's seq, which a compressed log no
+ * longer has.
+ *
+ * <p>zlib is the format of the HTTP "deflate" content coding, so a compressed log can be sent to
+ * clients that accept that coding without being decompressed first.
+ */
+@Slf4j
+@Service
+public class JobLogCompressionService {
+  /** The codec of compressed logs, which is also their HTTP content coding */
+  public static final String CODEC = "deflate";
+
+  /** The codec of logs that were too small to be worth compressing */
+  public static final String NONE = "none";
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
+  @Autowired private TransactionOperations transactionOperations;
+
+  @Value("${app.jobs.logCompression.finishedLogMinBytes:4096}")
+  private int finishedLogMinBytes;
+
+  @Value("${app.jobs.logCompression.batchSize:100}")
+  private int batchSize;
+
+  /**
+   * Moves a finished job's log to cold storage.
+   *
+   * @param jobId id of the job
+   */
+  public void compress(long jobId) {
+    transactionOperations.executeWithoutResult(
+        status -> {
+          List<JobLogChunk> chunks = jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(jobId);
+          String text =
+              chunks.isEmpty()
+                  ? jobsRepository.findById(jobId).map(Job::getLog).orElse("")
+                  : chunks.stream().map(JobLogChunk::getText).collect(Collectors.joining("\n"));
+          byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+          if (bytes.length < finishedLogMinBytes) {
+            jobsRepository.setLogCodec(jobId, NONE);
+            return;
+          }
+
+          jobsRepository.storeCompressedLog(jobId, deflate(bytes), CODEC, text.length());
+          if (!chunks.isEmpty()) jobLogChunkRepository.deleteAllByJobId(jobId);
+        });
+  }
+
+  /**
+   * Compresses the logs of finished jobs that have not been through cold storage, e.g. jobs that
+   * finished before compression existed, or on a node that stopped before compressing them.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.logCompression.sweepMs:60000}")
+  public void compressFinishedLogs() {
+    List<Long> ids =
+        jobsRepository.findIdsToCompress(
+            JobRetentionService.FINISHED_STATUSES, PageRequest.of(0, batchSize));
+    for (Long id : ids) {
+      try {
+        compress(id);
+      } catch (Exception e) {
+        log.warn("Could not compress log of job {}: {}", id, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Compresses bytes in zlib format at the fastest level.
+   *
+   * @param bytes the bytes to compress
+   * @return the compressed bytes
+   */
+  public static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Decompresses a log compressed with {@link #deflate}.
+   *
+   * @param compressed the compressed bytes
+   * @return the log text
+   * @throws IllegalStateException if the bytes are not valid zlib data
+   */
+  public static String inflate(byte[] compressed) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int n = inflater.inflate(buffer);
+        out.write(buffer, 0, n);
+        if (!inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Compressed log is truncated");
+        }
+      }
+      return out.toString(StandardCharsets.UTF_8);
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Compressed log is corrupt: " + e.getMessage(), e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
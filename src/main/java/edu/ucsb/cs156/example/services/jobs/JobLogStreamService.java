@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * This is a service that streams job log chunks to clients as Server-Sent Events while the job is
+ * running. Each event carries the chunk's seq as its id, so a client that reconnects can pass the
+ * next seq as its offset and only receive what it missed.
+ *
+ * <p>Chunks and the final status are pushed as soon as a job running on this node writes them. A
+ * job that runs on another node (in database queue mode) never reaches this node's {@link #publish}
+ * or {@link #jobFinished}, so every open stream is also polled from the database.
+ */
+@Slf4j
+@Service
+public class JobLogStreamService {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
+  @Value("${app.jobs.logStreamTimeoutMs:1800000}")
+  private long timeoutMs;
+
+  private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  /**
+   * Opens a stream of a job's log, starting at the chunk with seq {@code since}.
+   *
+   * @param jobId id of the job
+   * @param since seq of the first chunk to send
+   * @return an emitter that receives "log" events, then a final "status" event when the job ends
+   */
+  public SseEmitter subscribe(long jobId, int since) {
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    Subscriber subscriber = new Subscriber(emitter, since);
+    subscribers.compute(
+        jobId,
+        (id, jobSubscribers) -> {
+          Set<Subscriber> set =
+              jobSubscribers != null ? jobSubscribers : ConcurrentHashMap.newKeySet();
+          set.add(subscriber);
+          return set;
+        });
+    emitter.onCompletion(() -> unsubscribe(jobId, subscriber));
+    emitter.onTimeout(() -> unsubscribe(jobId, subscriber));
+
+    // The status is read only after registering, so a job that finishes in between is still seen
+    Optional<String> status = jobsRepository.findStatusById(jobId);
+    if (status.isEmpty()) {
+      unsubscribe(jobId, subscriber);
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+
+    List<JobLogChunk> backlog =
+        jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, since);
+    boolean finished = JobRetentionService.FINISHED_STATUSES.contains(status.get());
+    if (backlog.isEmpty() && since == 0 && finished) {
+      // A finished job's chunks may have been compressed into one log; send it as one event
+      backlog =
+          jobsRepository
+              .findCompressedLogById(jobId)
+              .map(
+                  compressed ->
+                      List.of(
+                          JobLogChunk.builder()
+                              .jobId(jobId)
+                              .seq(0)
+                              .text(JobLogCompressionService.inflate(compressed))
+                              .build()))
+              .orElse(backlog);
+    }
+    subscriber.catchUp(backlog);
+
+    if (finished) {
+      unsubscribe(jobId, subscriber);
+      subscriber.finish(status.get());
+    }
+    return emitter;
+  }
+
+  private void unsubscribe(long jobId, Subscriber subscriber) {
+    subscribers.computeIfPresent(
+        jobId,
+        (id, jobSubscribers) -> {
+          jobSubscribers.remove(subscriber);
+          return jobSubscribers.isEmpty() ? null : jobSubscribers;
+        });
+  }
+
+  /**
+   * Sends a newly written chunk to everyone tailing its job.
+   *
+   * @param chunk the chunk that was just saved
+   */
+  public void publish(JobLogChunk chunk) {
+    Set<Subscriber> jobSubscribers = subscribers.get(chunk.getJobId());
+    if (jobSubscribers == null) return;
+    jobSubscribers.forEach(s -> s.deliver(chunk));
+  }
+
+  /**
+   * Sends the final status of a job to everyone tailing it and closes their streams.
+   *
+   * @param job the job, after its final status has been saved
+   */
+  public void jobFinished(Job job) {
+    Set<Subscriber> jobSubscribers = subscribers.remove(job.getId());
+    if (jobSubscribers == null) return;
+    jobSubscribers.forEach(s -> s.finish(job.getStatus()));
+  }
+
+  /**
+   * Catches every open stream up with the chunks and status saved in the database, for jobs whose
+   * updates are not published on this node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.logStreamPollMs:2000}")
+  public void poll() {
+    subscribers.forEach(
+        (jobId, jobSubscribers) -> {
+          Optional<String> status = jobsRepository.findStatusById(jobId);
+          int since = jobSubscribers.stream().mapToInt(Subscriber::nextSeq).min().orElse(0);
+          List<JobLogChunk> chunks =
+              jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(jobId, since);
+          chunks.forEach(chunk -> jobSubscribers.forEach(s -> s.deliver(chunk)));
+          if (status.isPresent() && !JobRetentionService.FINISHED_STATUSES.contains(status.get()))
+            return;
+          // A job that is gone (e.g. deleted by retention) has no status left to report
+          Optional.ofNullable(subscribers.remove(jobId))
+              .orElse(Set.of())
+              .forEach(s -> status.ifPresentOrElse(s::finish, s::close));
+        });
+  }
+
+  /** One client's stream; chunks that arrive while the backlog is being read are held back. */
+  private static class Subscriber {
+    private final SseEmitter emitter;
+    private int nextSeq;
+    private boolean catchingUp = true;
+    private final List<JobLogChunk> held = new ArrayList<>();
+
+    Subscriber(SseEmitter emitter, int since) {
+      this.emitter = emitter;
+      this.nextSeq = since;
+    }
+
+    synchronized void catchUp(List<JobLogChunk> backlog) {
+      backlog.forEach(this::send);
+      held.forEach(this::send);
+      held.clear();
+      catchingUp = false;
+    }
+
+    synchronized void deliver(JobLogChunk chunk) {
+      if (catchingUp) {
+        held.add(chunk);
+      } else {
+        send(chunk);
+      }
+    }
+
+    synchronized int nextSeq() {
+      return nextSeq;
+    }
+
+    synchronized void close() {
+      emitter.complete();
+    }
+
+    synchronized void finish(String status) {
+      try {
+        emitter.send(SseEmitter.event().name("status").data(status));
+        emitter.complete();
+      } catch (Exception e) {
+        emitter.completeWithError(e);
+      }
+    }
+
+    private void send(JobLogChunk chunk) {
+      if (chunk.getSeq() < nextSeq) return;
+      try {
+        emitter.send(
+            SseEmitter.event()
+                .id(Integer.toString(chunk.getSeq()))
+                .name("log")
+                .data(chunk.getText()));
+        nextSeq = chunk.getSeq() + 1;
+      } catch (Exception e) {
+        log.info("Dropping job log stream: {}", e.getMessage());
+        emitter.completeWithError(e);
+      }
+    }
+  }
+}
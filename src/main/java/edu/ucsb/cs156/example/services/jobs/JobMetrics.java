@@ -0,0 +1,148 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that records job execution metrics in the Micrometer registry, where they can
+ * be read at {@code /actuator/metrics}. Every meter is tagged with the job's type, the simple name
+ * of its {@link JobContextConsumer} class:
+ *
+ * <ul>
+ *   <li>{@code jobs.submitted} and {@code jobs.rejected} count jobs accepted or turned away
+ *   <li>{@code jobs.deduplicated} counts submissions that were given an existing job instead
+ *   <li>{@code jobs.started} counts attempts of jobs that began running
+ *   <li>{@code jobs.retried} counts failed attempts that will be run again
+ *   <li>{@code jobs.queue.wait} times how long jobs waited between submission and start
+ *   <li>{@code jobs.run} times jobs from start to finish, also tagged with their final status
+ *   <li>{@code jobs.active} and {@code jobs.queued} report this node's {@link JobExecutor}
+ *   <li>{@code jobs.queued.priority} and {@code jobs.queued.user} report how many of this node's
+ *       queued jobs are of each {@link JobPriority} class and each user; the per-user gauges are
+ *       refreshed every {@code app.jobs.metrics.refreshMs}
+ * </ul>
+ */
+@Service
+public class JobMetrics {
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  private MultiGauge queuedByUser;
+
+  @PostConstruct
+  public void registerGauges() {
+    Gauge.builder("jobs.active", jobExecutor, JobExecutor::getActive)
+        .description("Jobs running on this node")
+        .register(meterRegistry);
+    Gauge.builder("jobs.queued", jobExecutor, JobExecutor::getQueued)
+        .description("Jobs on this node waiting for a permit to run")
+        .register(meterRegistry);
+    for (JobPriority priority : JobPriority.values()) {
+      Gauge.builder("jobs.queued.priority", jobExecutor, e -> e.getQueued(priority))
+          .description("Jobs on this node waiting to run, by priority class")
+          .tag("priority", priority.key())
+          .register(meterRegistry);
+    }
+    queuedByUser =
+        MultiGauge.builder("jobs.queued.user")
+            .description("Jobs on this node waiting to run, by the user who submitted them")
+            .register(meterRegistry);
+  }
+
+  /** Updates the per-user queue depth gauges; users with nothing queued are dropped. */
+  @Scheduled(fixedDelayString = "${app.jobs.metrics.refreshMs:10000}")
+  public void refreshQueuedByUser() {
+    List<MultiGauge.Row<?>> rows = new ArrayList<>();
+    jobExecutor
+        .getQueuedByOwner()
+        .forEach((owner, queued) -> rows.add(MultiGauge.Row.of(Tags.of("user", owner), queued)));
+    queuedByUser.register(rows, true);
+  }
+
+  /**
+   * Counts a job that was accepted to run.
+   *
+   * @param jobType the job's class
+   */
+  public void submitted(Class<?> jobType) {
+    counter("jobs.submitted", jobType).increment();
+  }
+
+  /**
+   * Counts a submission that was given an existing job with the same idempotency key.
+   *
+   * @param jobType the job's class
+   */
+  public void deduplicated(Class<?> jobType) {
+    counter("jobs.deduplicated", jobType).increment();
+  }
+
+  /**
+   * Counts a job that was turned away because the queue was full.
+   *
+   * @param jobType the job's class
+   */
+  public void rejected(Class<?> jobType) {
+    counter("jobs.rejected", jobType).increment();
+  }
+
+  /**
+   * Counts a failed attempt of a job that will be run again.
+   *
+   * @param jobType the job's class
+   */
+  public void retried(Class<?> jobType) {
+    counter("jobs.retried", jobType).increment();
+  }
+
+  /**
+   * Counts a job that began running, and how long it waited to do so.
+   *
+   * @param jobType the job's class
+   * @param queueWait time since the job was submitted, or null if that is not known
+   */
+  public void started(Class<?> jobType, Duration queueWait) {
+    counter("jobs.started", jobType).increment();
+    if (queueWait == null || queueWait.isNegative()) return;
+    Timer.builder("jobs.queue.wait")
+        .description("Time jobs waited between submission and start")
+        .tag("type", typeName(jobType))
+        .register(meterRegistry)
+        .record(queueWait);
+  }
+
+  /**
+   * Records how long a job ran and how it ended.
+   *
+   * @param jobType the job's class
+   * @param outcome the job's final status, e.g. "complete" or "error"
+   * @param runTime time from start to finish
+   */
+  public void finished(Class<?> jobType, String outcome, Duration runTime) {
+    Timer.builder("jobs.run")
+        .description("Time jobs ran, by final status")
+        .tag("type", typeName(jobType))
+        .tag("outcome", outcome)
+        .register(meterRegistry)
+        .record(runTime);
+  }
+
+  private Counter counter(String name, Class<?> jobType) {
+    return Counter.builder(name).tag("type", typeName(jobType)).register(meterRegistry);
+  }
+
+  private static String typeName(Class<?> jobType) {
+    return jobType.getSimpleName();
+  }
+}
@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that finds jobs left "running" by a node that died, e.g. because its JVM
+ * crashed or was killed during a deploy. Every node writes heartbeats for the jobs it is running
+ * (see {@link JobService#heartbeatActiveJobs}); a running job with no heartbeat for {@code
+ * app.jobs.orphans.staleAfterMs} is marked "abandoned". Sweeps run on a schedule and once as soon
+ * as the application has started.
+ *
+ * <p>With {@code app.jobs.orphans.resubmit=true}, abandoned jobs that are {@link
+ * JobContextConsumer#restartable() restartable} are submitted again, up to {@code
+ * app.jobs.orphans.maxRestarts} times in a row.
+ *
+ * <p>Jobs run through the {@link DatabaseJobQueue} are left alone, since their lease expires and
+ * another worker claims them again.
+ */
+@Slf4j
+@Service
+public class JobOrphanSweeper {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private DatabaseJobQueue databaseJobQueue;
+
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobStatusNotifier jobStatusNotifier;
+
+  @Value("${app.jobs.orphans.staleAfterMs:120000}")
+  private long staleAfterMs;
+
+  @Value("${app.jobs.orphans.resubmit:false}")
+  private boolean resubmit;
+
+  @Value("${app.jobs.orphans.maxRestarts:3}")
+  private int maxRestarts;
+
+  /** Reconciles jobs that were running when this or another node last stopped. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void sweepOnStartup() {
+    int abandoned = sweep();
+    if (abandoned > 0) log.info("Marked {} orphaned jobs as abandoned at startup", abandoned);
+  }
+
+  /**
+   * Marks running jobs with a stale heartbeat as "abandoned", and resubmits them if they may be
+   * restarted.
+   *
+   * @return the number of jobs abandoned by this node
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.orphans.sweepMs:60000}")
+  public int sweep() {
+    ZonedDateTime now = ZonedDateTime.now();
+    ZonedDateTime cutoff = now.minusNanos(staleAfterMs * 1_000_000);
+    // A job this node is running is alive, even if writing its heartbeat failed
+    Set<Long> active = jobService.getActiveJobIds();
+
+    int abandoned = 0;
+    for (Long id : jobsRepository.findStaleRunningJobIds(cutoff)) {
+      if (active.contains(id)) continue;
+      try {
+        if (abandon(id, cutoff, now)) abandoned++;
+      } catch (Exception e) {
+        log.warn("Could not abandon job {}: {}", id, e.getMessage());
+      }
+    }
+    return abandoned;
+  }
+
+  /**
+   * Abandons one job, unless another node got to it first or it has sent a heartbeat since it was
+   * found.
+   *
+   * @return true if this node abandoned the job
+   */
+  boolean abandon(long id, ZonedDateTime cutoff, ZonedDateTime now) {
+    if (jobsRepository.abandonIfStale(id, cutoff, now) != 1) return false;
+
+    Job job = jobsRepository.findById(id).orElseThrow();
+    log.warn("Job {} abandoned: no heartbeat since {}", id, lastSeen(job));
+    appendLog(id, "Job abandoned: no heartbeat since %s".formatted(lastSeen(job)));
+    jobLogStreamService.jobFinished(job);
+    jobStatusNotifier.finished(job);
+
+    if (resubmit && job.getRestartable()) {
+      if (job.getRestarts() >= maxRestarts) {
+        appendLog(id, "Not resubmitted: restarted %d times already".formatted(job.getRestarts()));
+      } else {
+        try {
+          Job restarted = jobService.resubmit(job, databaseJobQueue.decode(job));
+          appendLog(id, "Resubmitted as job %d".formatted(restarted.getId()));
+        } catch (Exception e) {
+          appendLog(id, "Could not resubmit: " + e.getMessage());
+        }
+      }
+    }
+    return true;
+  }
+
+  private static ZonedDateTime lastSeen(Job job) {
+    return job.getHeartbeatAt() != null ? job.getHeartbeatAt() : job.getUpdatedAt();
+  }
+
+  private void appendLog(long jobId, String text) {
+    int seq = jobLogChunkRepository.findMaxSeqByJobId(jobId).map(s -> s + 1).orElse(0);
+    jobLogChunkRepository.save(JobLogChunk.builder().jobId(jobId).seq(seq).text(text).build());
+  }
+}
@@ -0,0 +1,301 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a job made of stages that run at the same time, e.g. "fetch pages, transform them, write
+ * them in bulk". Each stage runs on its own pool of virtual threads and hands its items to the next
+ * stage through a bounded queue:
+ *
+ * <pre>{@code
+ * JobPipeline job =
+ *     JobPipeline.<Integer>source("pages", (ctx, out) -> { for (int p = 0; p < n; p++) out.emit(p); })
+ *         .stage("fetch", 8, (ctx, page, out) -> out.emit(client.fetch(page)))
+ *         .stage("transform", 2, (ctx, raw, out) -> out.emit(transform(raw)))
+ *         .sink("write", 1, (ctx, rows) -> repository.saveAll(rows));
+ * jobService.runAsJob(job);
+ * }</pre>
+ *
+ * <p>A stage with several workers takes items from its queue in parallel (fan-out), and all of them
+ * put their results on the same queue for the next stage (fan-in), so the order of items is not
+ * kept. When a queue is full, the stage feeding it blocks until there is room, so a fast stage
+ * cannot run far ahead of a slow one.
+ *
+ * <p>All stages share the parent job's {@link JobContext}: each item a stage processes is counted
+ * in a progress counter named after the stage, each item the sink finishes advances the job's
+ * progress by one, and a line is logged as each stage finishes. If any stage fails, or the job is
+ * cancelled, the other stages are interrupted and the job ends with the first failure.
+ *
+ * <p>A pipeline is never queued in the database, and has no idempotency key: it runs on the node
+ * that submitted it, even with {@code app.jobs.queueMode=database}.
+ */
+public class JobPipeline implements JobContextConsumer {
+  /** How many items may wait between two stages, unless set with {@link #queueCapacity}. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  /** Marks the end of a stage's input; one is sent to each worker of the next stage. */
+  private static final Object END = new Object();
+
+  private final List<Node> nodes;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private LogFlushPolicy logFlushPolicy = LogFlushPolicy.IMMEDIATE;
+
+  private JobPipeline(List<Node> nodes) {
+    this.nodes = List.copyOf(nodes);
+  }
+
+  /**
+   * Starts a pipeline with the stage that produces its items. The source runs on one thread.
+   *
+   * @param name name of the stage, used for its progress counter and log line
+   * @param source produces the pipeline's items
+   * @param <T> type of the items the source produces
+   * @return a builder to add the remaining stages to
+   */
+  public static <T> Builder<T> source(String name, Source<T> source) {
+    List<Node> nodes = new ArrayList<>();
+    nodes.add(new Node(name, 1, (ctx, item, out) -> source.run(ctx, cast(out))));
+    return new Builder<>(nodes);
+  }
+
+  /**
+   * Sets how many items may wait between two stages.
+   *
+   * @param queueCapacity the capacity of each queue
+   * @return this pipeline
+   */
+  public JobPipeline queueCapacity(int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+    }
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  /**
+   * Sets how the job's log lines are buffered; see {@link JobContextConsumer#logFlushPolicy()}.
+   *
+   * @param logFlushPolicy the policy
+   * @return this pipeline
+   */
+  public JobPipeline logFlushPolicy(LogFlushPolicy logFlushPolicy) {
+    this.logFlushPolicy = logFlushPolicy;
+    return this;
+  }
+
+  @Override
+  public LogFlushPolicy logFlushPolicy() {
+    return logFlushPolicy;
+  }
+
+  /** The stages are lambdas, which cannot be serialized, so a pipeline always runs in memory. */
+  @Override
+  public boolean enqueueable() {
+    return false;
+  }
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    List<BlockingQueue<Object>> queues = new ArrayList<>();
+    for (int i = 1; i < nodes.size(); i++) queues.add(new ArrayBlockingQueue<>(queueCapacity));
+
+    try (ExecutorService pool =
+        Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual()
+                .name("job-%d-pipeline-".formatted(ctx.getJob().getId()), 0)
+                .factory())) {
+      ExecutorCompletionService<Void> workers = new ExecutorCompletionService<>(pool);
+      int started = 0;
+      for (int i = 0; i < nodes.size(); i++) {
+        Node node = nodes.get(i);
+        BlockingQueue<Object> in = i == 0 ? null : queues.get(i - 1);
+        BlockingQueue<Object> out = i == nodes.size() - 1 ? null : queues.get(i);
+        int downstreamWorkers = out == null ? 0 : nodes.get(i + 1).workers;
+        AtomicInteger running = new AtomicInteger(node.workers);
+        AtomicLong processed = new AtomicLong();
+        for (int w = 0; w < node.workers; w++) {
+          workers.submit(
+              () -> {
+                runWorker(ctx, node, in, out, processed);
+                if (running.decrementAndGet() == 0) {
+                  ctx.log(
+                      "Stage %s finished: %d items, %d workers"
+                          .formatted(node.name, processed.get(), node.workers));
+                  for (int d = 0; d < downstreamWorkers; d++) out.put(END);
+                }
+                return null;
+              });
+          started++;
+        }
+      }
+
+      try {
+        for (int i = 0; i < started; i++) workers.take().get();
+      } catch (ExecutionException e) {
+        pool.shutdownNow();
+        if (e.getCause() instanceof Exception cause) throw cause;
+        throw (Error) e.getCause();
+      } catch (InterruptedException e) {
+        // The job was cancelled or timed out
+        pool.shutdownNow();
+        throw e;
+      }
+    }
+  }
+
+  private void runWorker(
+      JobContext ctx,
+      Node node,
+      BlockingQueue<Object> in,
+      BlockingQueue<Object> out,
+      AtomicLong processed)
+      throws Exception {
+    Emitter<Object> emitter = out == null ? null : out::put;
+    if (in == null) {
+      node.stage.process(
+          ctx,
+          null,
+          item -> {
+            ctx.checkCancelled();
+            emitter.emit(item);
+            processed.incrementAndGet();
+            ctx.incrementCounter(node.name, 1);
+          });
+      return;
+    }
+    while (true) {
+      Object item = in.take();
+      if (item == END) return;
+      ctx.checkCancelled();
+      node.stage.process(ctx, item, emitter);
+      processed.incrementAndGet();
+      ctx.incrementCounter(node.name, 1);
+      if (out == null) ctx.advanceProgress(1);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Emitter<T> cast(Emitter<Object> emitter) {
+    return (Emitter<T>) emitter;
+  }
+
+  /**
+   * Adds stages to a pipeline.
+   *
+   * @param <T> type of the items the last stage added produces
+   */
+  public static class Builder<T> {
+    private final List<Node> nodes;
+
+    private Builder(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    /**
+     * Adds a stage that turns each item into zero or more items for the next stage.
+     *
+     * @param name name of the stage, used for its progress counter and log line
+     * @param workers how many items the stage processes at once
+     * @param stage processes one item
+     * @param <R> type of the items the stage produces
+     * @return a builder to add the following stages to
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Builder<R> stage(String name, int workers, Stage<? super T, R> stage) {
+      // Each builder keeps its own stages, so one partly built pipeline can be finished two ways
+      List<Node> next = new ArrayList<>(nodes);
+      next.add(
+          new Node(
+              name,
+              workers,
+              (ctx, item, out) -> ((Stage<Object, R>) stage).process(ctx, item, cast(out))));
+      return new Builder<>(next);
+    }
+
+    /**
+     * Adds the last stage, which consumes the items, and builds the pipeline.
+     *
+     * @param name name of the stage, used for its progress counter and log line
+     * @param workers how many items the stage processes at once
+     * @param sink consumes one item
+     * @return the pipeline, which can be run with {@link JobService#runAsJob}
+     */
+    @SuppressWarnings("unchecked")
+    public JobPipeline sink(String name, int workers, Sink<? super T> sink) {
+      List<Node> next = new ArrayList<>(nodes);
+      next.add(
+          new Node(name, workers, (ctx, item, out) -> ((Sink<Object>) sink).accept(ctx, item)));
+      return new JobPipeline(next);
+    }
+  }
+
+  /**
+   * Hands an item to the next stage, waiting while its queue is full.
+   *
+   * @param <T> type of the items
+   */
+  @FunctionalInterface
+  public interface Emitter<T> {
+    /**
+     * @param item the item, which must not be null
+     * @throws InterruptedException if the pipeline is stopped while waiting
+     */
+    void emit(T item) throws InterruptedException;
+  }
+
+  /**
+   * The first stage of a pipeline.
+   *
+   * @param <T> type of the items it produces
+   */
+  @FunctionalInterface
+  public interface Source<T> {
+    void run(JobContext ctx, Emitter<T> out) throws Exception;
+  }
+
+  /**
+   * A middle stage of a pipeline.
+   *
+   * @param <T> type of the items it takes
+   * @param <R> type of the items it produces
+   */
+  @FunctionalInterface
+  public interface Stage<T, R> {
+    void process(JobContext ctx, T item, Emitter<R> out) throws Exception;
+  }
+
+  /**
+   * The last stage of a pipeline.
+   *
+   * @param <T> type of the items it takes
+   */
+  @FunctionalInterface
+  public interface Sink<T> {
+    void accept(JobContext ctx, T item) throws Exception;
+  }
+
+  private static class Node {
+    private final String name;
+    private final int workers;
+    private final Stage<Object, Object> stage;
+
+    Node(String name, int workers, Stage<Object, Object> stage) {
+      if (workers < 1) {
+        throw new IllegalArgumentException(
+            "Stage %s needs at least 1 worker: %d".formatted(name, workers));
+      }
+      this.name = name;
+      this.workers = workers;
+      this.stage = stage;
+    }
+  }
+}
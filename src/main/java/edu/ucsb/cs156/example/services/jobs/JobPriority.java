@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * The priority class of a job, which decides how soon it starts when jobs are waiting for a free
+ * slot on the {@link JobExecutor}. Each class gets a share of the slots in proportion to its weight
+ * in {@code app.jobs.priorityWeights}, so batch jobs still make progress while interactive jobs are
+ * waiting, just more slowly.
+ */
+public enum JobPriority {
+  /** Short jobs that a user is waiting on */
+  INTERACTIVE,
+  /** The default */
+  NORMAL,
+  /** Long-running bulk work, which may also be kept out of the slots reserved for other jobs */
+  BATCH;
+
+  /**
+   * @return the name used in properties and metrics, e.g. "batch"
+   */
+  public String key() {
+    return name().toLowerCase();
+  }
+}
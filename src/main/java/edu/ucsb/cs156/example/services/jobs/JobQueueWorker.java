@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that, when {@code app.jobs.queueMode=database}, claims queued jobs from the
+ * {@link DatabaseJobQueue} and runs them on this node's {@link JobExecutor}, renewing their leases
+ * while they run.
+ */
+@Slf4j
+@Service
+public class JobQueueWorker {
+  @Autowired private DatabaseJobQueue databaseJobQueue;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Value("${app.jobs.queueMode:memory}")
+  private String queueMode;
+
+  @Value("${app.jobs.claimBatchSize:10}")
+  private int claimBatchSize;
+
+  private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+  /** Claims as many queued jobs as this node has room for, and starts them. */
+  @Scheduled(fixedDelayString = "${app.jobs.pollMs:1000}")
+  public void poll() {
+    if (!"database".equals(queueMode)) return;
+
+    int room = Math.min(claimBatchSize, jobExecutor.getQueueCapacity() - jobExecutor.getQueued());
+    List<Job> claimed = databaseJobQueue.claim(room);
+    for (Job job : claimed) {
+      start(job);
+    }
+  }
+
+  /**
+   * Renews the leases of jobs this node is running, so other nodes do not reclaim them, and stops
+   * any of them that have been cancelled through another node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.heartbeatMs:15000}")
+  public void heartbeat() {
+    if (!"database".equals(queueMode)) return;
+    for (Long id : databaseJobQueue.heartbeat(Set.copyOf(running))) {
+      jobService.cancelRunning(id, "cancelled");
+    }
+  }
+
+  private void start(Job job) {
+    JobContextConsumer jobFunction;
+    try {
+      jobFunction = databaseJobQueue.decode(job);
+    } catch (Exception e) {
+      log.error("Job {} cannot be decoded: {}", job.getId(), e.getMessage());
+      jobService.runJobAsync(
+          job,
+          ctx -> {
+            throw new IllegalStateException("Job cannot be decoded: " + e.getMessage());
+          });
+      return;
+    }
+
+    running.add(job.getId());
+    try {
+      jobExecutor.submit(
+          jobFunction.getClass(),
+          JobService.ownerOf(job),
+          jobFunction.priority(),
+          () -> {
+            try {
+              jobService.runJobAsync(job, jobFunction);
+            } finally {
+              running.remove(job.getId());
+            }
+          });
+    } catch (JobQueueFullException e) {
+      running.remove(job.getId());
+      databaseJobQueue.release(job.getId());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the resources one attempt of a job uses on the thread that runs it: wall time, CPU time,
+ * bytes allocated, and the number and total time of the SQL statements it issues. Work the job
+ * hands to other threads, e.g. the stages of a {@link JobPipeline}, is not included.
+ *
+ * <p>CPU time and allocated bytes are left null when they cannot be measured, which is the case on
+ * the virtual threads that jobs run on unless their type is listed in {@code app.jobs.meteredTypes}
+ * (see {@link JobExecutor}).
+ */
+class JobResourceMeter {
+  private final ThreadMXBean threads;
+  private final long startedAt = System.nanoTime();
+  private final long cpuAtStart;
+  private final long allocatedAtStart;
+  private final SqlStatementListener.Tally sql = SqlStatementListener.startCounting();
+
+  private JobResourceMeter(ThreadMXBean threads) {
+    this.threads = threads;
+    this.cpuAtStart = cpuTime();
+    this.allocatedAtStart = allocatedBytes();
+  }
+
+  /**
+   * Starts measuring the current thread.
+   *
+   * @return the meter, to be stopped on the same thread
+   */
+  static JobResourceMeter start() {
+    return start(ManagementFactory.getThreadMXBean());
+  }
+
+  /**
+   * Starts measuring the current thread through the given bean, e.g. one that cannot measure CPU
+   * time or allocation.
+   *
+   * @param threads the JVM's thread bean
+   * @return the meter, to be stopped on the same thread
+   */
+  static JobResourceMeter start(ThreadMXBean threads) {
+    return new JobResourceMeter(threads);
+  }
+
+  /**
+   * Stops measuring, and adds what was used since {@link #start} to the job's totals.
+   *
+   * @param job the job's record
+   */
+  void stop(Job job) {
+    long cpuAtEnd = cpuTime();
+    long allocatedAtEnd = allocatedBytes();
+    SqlStatementListener.stopCounting();
+
+    job.setWallTimeMs(plus(job.getWallTimeMs(), (System.nanoTime() - startedAt) / 1_000_000));
+    if (cpuAtStart >= 0 && cpuAtEnd >= 0) {
+      job.setCpuTimeMs(plus(job.getCpuTimeMs(), (cpuAtEnd - cpuAtStart) / 1_000_000));
+    }
+    if (allocatedAtStart >= 0 && allocatedAtEnd >= 0) {
+      job.setAllocatedBytes(plus(job.getAllocatedBytes(), allocatedAtEnd - allocatedAtStart));
+    }
+    job.setSqlStatements(plus(job.getSqlStatements(), sql.getStatements()));
+    job.setSqlTimeMs(plus(job.getSqlTimeMs(), sql.getNanos() / 1_000_000));
+  }
+
+  private static long plus(Long total, long value) {
+    return total == null ? value : total + value;
+  }
+
+  /** CPU time of the current thread in nanoseconds, or -1 if it cannot be measured */
+  private long cpuTime() {
+    if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) return -1;
+    return threads.getCurrentThreadCpuTime();
+  }
+
+  /** Bytes allocated by the current thread so far, or -1 if they cannot be measured */
+  private long allocatedBytes() {
+    if (!(threads instanceof com.sun.management.ThreadMXBean hotspot)
+        || !hotspot.isThreadAllocatedMemorySupported()
+        || !hotspot.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    return hotspot.getCurrentThreadAllocatedBytes();
+  }
+}
@@ -0,0 +1,134 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.RetentionReport;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * This is a service that keeps the jobs table from growing without bound. On a schedule it removes
+ * finished jobs created more than {@code app.jobs.retention.days} ago, either deleting them or,
+ * with {@code app.jobs.retention.mode=archive}, moving them and their log chunks to archive tables.
+ *
+ * <p>Jobs are removed a batch of ids at a time, each batch in its own short transaction, with
+ * set-based statements; no job is ever loaded into memory.
+ */
+@Slf4j
+@Service
+public class JobRetentionService {
+  /** Statuses of jobs that have finished and may be removed */
+  public static final List<String> FINISHED_STATUSES =
+      List.of("complete", "error", "cancelled", "timed_out", "abandoned");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
+  @Autowired private TransactionOperations transactionOperations;
+
+  @Value("${app.jobs.retention.days:30}")
+  private int retentionDays;
+
+  @Value("${app.jobs.retention.mode:archive}")
+  private String mode;
+
+  @Value("${app.jobs.retention.batchSize:500}")
+  private int batchSize;
+
+  private volatile RetentionReport lastReport;
+
+  /** Runs retention on the configured schedule, unless it is turned off with days=0. */
+  @Scheduled(cron = "${app.jobs.retention.cron:0 30 3 * * *}")
+  public void runScheduled() {
+    if (retentionDays <= 0) return;
+    runRetention();
+  }
+
+  /**
+   * Removes finished jobs older than the retention period now.
+   *
+   * @return what was removed
+   */
+  public RetentionReport runRetention() {
+    ZonedDateTime cutoff = ZonedDateTime.now().minusDays(retentionDays);
+    boolean archive = "archive".equals(mode);
+    RetentionReport report =
+        removeInBatches(
+            archive ? "archive" : "delete",
+            cutoff,
+            archive,
+            () ->
+                jobsRepository.findIdsForRetention(
+                    FINISHED_STATUSES, cutoff, PageRequest.of(0, batchSize)));
+    lastReport = report;
+    return report;
+  }
+
+  /**
+   * Deletes every job, whatever its status or age, without archiving it.
+   *
+   * @return what was removed
+   */
+  public RetentionReport purgeAll() {
+    return removeInBatches(
+        "purge", null, false, () -> jobsRepository.findIds(PageRequest.of(0, batchSize)));
+  }
+
+  /**
+   * Returns what the last retention run removed.
+   *
+   * @return the report, or null if retention has not run since startup
+   */
+  public RetentionReport getLastReport() {
+    return lastReport;
+  }
+
+  private RetentionReport removeInBatches(
+      String mode, ZonedDateTime cutoff, boolean archive, Supplier<List<Long>> nextBatch) {
+    long start = System.nanoTime();
+    long jobs = 0;
+    long logChunks = 0;
+    int batches = 0;
+
+    while (true) {
+      long[] removed =
+          transactionOperations.execute(
+              status -> {
+                List<Long> ids = nextBatch.get();
+                if (ids.isEmpty()) return null;
+                if (archive) {
+                  jobsRepository.archiveAllByIdIn(ids, ZonedDateTime.now());
+                  jobLogChunkRepository.archiveAllByJobIdIn(ids);
+                }
+                int chunks = jobLogChunkRepository.deleteAllByJobIdIn(ids);
+                return new long[] {jobsRepository.deleteAllByIdIn(ids), chunks};
+              });
+      if (removed == null) break;
+      jobs += removed[0];
+      logChunks += removed[1];
+      batches++;
+    }
+
+    RetentionReport report =
+        RetentionReport.builder()
+            .mode(mode)
+            .cutoff(cutoff)
+            .jobs(jobs)
+            .logChunks(logChunks)
+            .batches(batches)
+            .elapsedMs((System.nanoTime() - start) / 1_000_000)
+            .finishedAt(ZonedDateTime.now())
+            .build();
+    log.info("Job retention ({}): removed {} jobs, {} log chunks", mode, jobs, logChunks);
+    return report;
+  }
+}
@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidJobScheduleException;
+import edu.ucsb.cs156.example.repositories.JobScheduleRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that starts recurring jobs. Each {@link JobSchedule} holds a cron expression
+ * and a job, stored as a class name and JSON fields the same way as in {@link DatabaseJobQueue};
+ * every node polls for schedules that are due and starts their jobs through {@link JobService}.
+ *
+ * <p>When several nodes are running, each due run is started by exactly one of them: a node only
+ * starts a run after moving the schedule on to its next run with a conditional update, which fails
+ * on every other node.
+ */
+@Slf4j
+@Service
+public class JobScheduler {
+  /** Values of {@link JobSchedule#getOverlapPolicy()} */
+  public static final List<String> OVERLAP_POLICIES = List.of("skip", "allow");
+
+  /** Values of {@link JobSchedule#getCatchUpPolicy()} */
+  public static final List<String> CATCH_UP_POLICIES = List.of("skip", "once");
+
+  @Autowired private JobScheduleRepository jobScheduleRepository;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private DatabaseJobQueue databaseJobQueue;
+
+  // A run that is due by more than this when it is seen counts as missed; see catchUpPolicy
+  @Value("${app.jobs.schedules.misfireMs:60000}")
+  private long misfireMs;
+
+  /** Starts the runs of every schedule that is due. */
+  @Scheduled(fixedDelayString = "${app.jobs.schedules.pollMs:5000}")
+  public void fireDueSchedules() {
+    ZonedDateTime now = ZonedDateTime.now();
+    for (JobSchedule schedule : jobScheduleRepository.findDue(now)) {
+      try {
+        fire(schedule, now);
+      } catch (Exception e) {
+        log.warn("Could not fire job schedule {}: {}", schedule.getName(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Fires a due schedule: moves it on to its next run and, unless its policies say to skip this
+   * run, starts its job.
+   *
+   * @param schedule the schedule, as read from the database
+   * @param now the current time
+   * @return false if another node fired the schedule first
+   */
+  boolean fire(JobSchedule schedule, ZonedDateTime now) {
+    ZonedDateTime next = nextRunAt(schedule, now);
+    if (jobScheduleRepository.advance(schedule.getId(), schedule.getRunCount(), next, now) != 1) {
+      return false;
+    }
+
+    Long jobId = schedule.getLastJobId();
+    String outcome;
+    if (isMissed(schedule, now) && "skip".equals(schedule.getCatchUpPolicy())) {
+      outcome = "skipped: missed";
+    } else if ("skip".equals(schedule.getOverlapPolicy()) && isStillRunning(jobId)) {
+      outcome = "skipped: previous run still running";
+    } else {
+      try {
+        JobContextConsumer jobFunction =
+            databaseJobQueue.decode(schedule.getJobType(), schedule.getJobSpec());
+        Job job =
+            jobService.runAsJob(
+                jobFunction,
+                schedule.getTimeoutMs() == null
+                    ? null
+                    : Duration.ofMillis(schedule.getTimeoutMs()));
+        jobId = job.getId();
+        outcome = "started";
+      } catch (Exception e) {
+        outcome = "error: " + e.getMessage();
+      }
+    }
+    log.info("Job schedule {} fired: {}", schedule.getName(), outcome);
+    jobScheduleRepository.recordRun(schedule.getId(), jobId, outcome);
+    return true;
+  }
+
+  private boolean isMissed(JobSchedule schedule, ZonedDateTime now) {
+    return schedule.getNextRunAt().plus(Duration.ofMillis(misfireMs)).isBefore(now);
+  }
+
+  private boolean isStillRunning(Long jobId) {
+    if (jobId == null) return false;
+    // Queued and retrying runs have not finished either; a deleted run has
+    return jobsRepository
+        .findStatusById(jobId)
+        .map(status -> !JobRetentionService.FINISHED_STATUSES.contains(status))
+        .orElse(false);
+  }
+
+  /**
+   * Checks a new schedule, sets its first run, and saves it.
+   *
+   * @param schedule the schedule
+   * @return the saved schedule
+   * @throws InvalidJobScheduleException if the schedule cannot be run
+   */
+  public JobSchedule create(JobSchedule schedule) {
+    validate(schedule);
+    schedule.setRunCount(0);
+    schedule.setNextRunAt(nextRunAt(schedule, ZonedDateTime.now()));
+    return jobScheduleRepository.save(schedule);
+  }
+
+  /**
+   * Replaces a schedule's settings and works out its next run again.
+   *
+   * @param id id of the schedule
+   * @param incoming the new settings
+   * @return the saved schedule
+   * @throws EntityNotFoundException if there is no such schedule
+   * @throws InvalidJobScheduleException if the new settings cannot be run
+   */
+  public JobSchedule update(long id, JobSchedule incoming) {
+    JobSchedule schedule =
+        jobScheduleRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+    validate(incoming);
+    schedule.setName(incoming.getName());
+    schedule.setCron(incoming.getCron());
+    schedule.setJobType(incoming.getJobType());
+    schedule.setJobSpec(incoming.getJobSpec());
+    schedule.setEnabled(incoming.getEnabled());
+    schedule.setOverlapPolicy(incoming.getOverlapPolicy());
+    schedule.setCatchUpPolicy(incoming.getCatchUpPolicy());
+    schedule.setJitterMs(incoming.getJitterMs());
+    schedule.setTimeoutMs(incoming.getTimeoutMs());
+    schedule.setNextRunAt(nextRunAt(schedule, ZonedDateTime.now()));
+    return jobScheduleRepository.save(schedule);
+  }
+
+  /**
+   * Fills in defaults for a schedule's optional settings and checks that it can be run.
+   *
+   * @param schedule the schedule
+   * @throws InvalidJobScheduleException if the schedule cannot be run
+   */
+  void validate(JobSchedule schedule) {
+    if (schedule.getName() == null || schedule.getName().isBlank()) {
+      throw new InvalidJobScheduleException("Schedule name is required");
+    }
+    if (schedule.getCron() == null || !CronExpression.isValidExpression(schedule.getCron())) {
+      throw new InvalidJobScheduleException("Invalid cron expression: " + schedule.getCron());
+    }
+    if (schedule.getOverlapPolicy() == null) schedule.setOverlapPolicy("skip");
+    if (!OVERLAP_POLICIES.contains(schedule.getOverlapPolicy())) {
+      throw new InvalidJobScheduleException(
+          "overlapPolicy must be one of " + OVERLAP_POLICIES + ": " + schedule.getOverlapPolicy());
+    }
+    if (schedule.getCatchUpPolicy() == null) schedule.setCatchUpPolicy("skip");
+    if (!CATCH_UP_POLICIES.contains(schedule.getCatchUpPolicy())) {
+      throw new InvalidJobScheduleException(
+          "catchUpPolicy must be one of " + CATCH_UP_POLICIES + ": " + schedule.getCatchUpPolicy());
+    }
+    if (schedule.getJitterMs() < 0) {
+      throw new InvalidJobScheduleException("jitterMs must not be negative");
+    }
+    if (schedule.getJobType() == null) {
+      throw new InvalidJobScheduleException("jobType is required");
+    }
+    if (schedule.getJobSpec() == null) schedule.setJobSpec("{}");
+    try {
+      databaseJobQueue.decode(schedule.getJobType(), schedule.getJobSpec());
+    } catch (Exception e) {
+      throw new InvalidJobScheduleException("Cannot build job: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Works out when a schedule should next fire after a given time, including its jitter.
+   *
+   * @param schedule the schedule
+   * @param after the time to start from
+   * @return when the schedule should next fire, or null if its cron expression never fires again
+   */
+  static ZonedDateTime nextRunAt(JobSchedule schedule, ZonedDateTime after) {
+    ZonedDateTime next = CronExpression.parse(schedule.getCron()).next(after);
+    if (next == null || schedule.getJitterMs() <= 0) return next;
+    return next.plus(
+        Duration.ofMillis(ThreadLocalRandom.current().nextLong(schedule.getJitterMs() + 1)));
+  }
+}
@@ -1,53 +1,671 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.models.JobAttempt;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class JobService {
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogChunkRepository jobLogChunkRepository;
+
   @Autowired private CurrentUserService currentUserService;
 
-  @Lazy @Autowired private JobService self;
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Autowired private DatabaseJobQueue databaseJobQueue;
+
+  @Autowired private JobLogCompressionService jobLogCompressionService;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private JobStatusNotifier jobStatusNotifier;
+
+  @Value("${app.jobs.queueMode:memory}")
+  private String queueMode;
+
+  // A submission whose idempotency key matches a job that completed this recently gets that job
+  @Value("${app.jobs.idempotency.reuseWindowSeconds:0}")
+  private long reuseWindowSeconds;
+
+  private final Map<Long, JobContext> activeContexts = new ConcurrentHashMap<>();
+
+  // Jobs on this node waiting out the backoff before their next attempt
+  private final Map<Long, PendingRetry> pendingRetries = new ConcurrentHashMap<>();
+
+  // Tasks handed to the executor that have not started yet, so that a cancel can take them back
+  private final Map<Long, Runnable> waitingToStart = new ConcurrentHashMap<>();
+
+  private static final ObjectMapper historyMapper =
+      new ObjectMapper()
+          .findAndRegisterModules()
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private final ScheduledExecutorService timeouts =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("job-timeouts").factory());
+
+  /** What job contexts time their log flushes and progress writes by */
+  private Clock clock = Clock.systemUTC();
 
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return runAsJob(jobFunction, null);
+  }
+
+  /**
+   * Starts a job. If it is still running after {@code timeout}, it is stopped the same way as a
+   * cancelled job and finishes with status "timed_out".
+   *
+   * @param jobFunction the work to run
+   * @param timeout how long the job may run once it has started, or null for no limit
+   * @return the job's record
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Duration timeout) {
+    return runAsJob(jobFunction, timeout, null);
+  }
+
+  /**
+   * Starts a job, unless a job with the same idempotency key is already queued or running, in which
+   * case that job is returned instead. With {@code app.jobs.idempotency.reuseWindowSeconds} set, a
+   * job with the same key that completed within that many seconds is also returned.
+   *
+   * @param jobFunction the work to run
+   * @param timeout how long the job may run once it has started, or null for no limit
+   * @param idempotencyKey submissions with the same key share one job, e.g. the result of {@link
+   *     #idempotencyKeyOf}; null to always start a new job
+   * @return the job's record
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Duration timeout, String idempotencyKey) {
+    if (idempotencyKey != null) {
+      Optional<Job> existing = findReusable(idempotencyKey);
+      if (existing.isPresent()) {
+        jobMetrics.deduplicated(jobFunction.getClass());
+        finished(jobFunction);
+        return existing.get();
+      }
+    }
+
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .status("running")
+            .timeoutMs(timeout == null ? null : timeout.toMillis())
+            .idempotencyKey(idempotencyKey)
+            .activeIdempotencyKey(idempotencyKey)
+            .build();
+    try {
+      return submit(job, jobFunction);
+    } catch (DataIntegrityViolationException e) {
+      return duplicateOf(jobFunction, idempotencyKey, e);
+    }
+  }
+
+  /**
+   * Starts a new job in place of one whose node died while running it. The new job is created by
+   * the same user, with the same timeout and idempotency key.
+   *
+   * @param abandoned the record of the job that was abandoned
+   * @param jobFunction the work to run, rebuilt from the abandoned job's record
+   * @return the new job's record
+   */
+  public Job resubmit(Job abandoned, JobContextConsumer jobFunction) {
+    Job job =
+        Job.builder()
+            .createdBy(abandoned.getCreatedBy())
+            .status("running")
+            .timeoutMs(abandoned.getTimeoutMs())
+            .idempotencyKey(abandoned.getIdempotencyKey())
+            .activeIdempotencyKey(abandoned.getIdempotencyKey())
+            .restarts(abandoned.getRestarts() + 1)
+            .build();
+    return submit(job, jobFunction);
+  }
+
+  /**
+   * Starts several jobs for the current user, e.g. jobs submitted together through {@code POST
+   * /api/jobs/batch}. The user is looked up once and the jobs' rows are inserted as one JDBC batch.
+   * Either every job is accepted or, if any is rejected, none are: in database queue mode they are
+   * queued in one transaction, and otherwise the executor must have room for all of them.
+   *
+   * @param jobFunctions the work to run
+   * @param timeout how long each job may run once it has started, or null for no limit
+   * @return the jobs' records, in the same order as jobFunctions
+   * @throws JobQueueFullException if the executor does not have room for all of the jobs
+   */
+  public List<Job> runAsJobs(List<JobContextConsumer> jobFunctions, Duration timeout) {
+    if (jobFunctions.isEmpty()) return List.of();
+    User user = currentUserService.getUser();
+    List<Job> jobs = new ArrayList<>(jobFunctions.size());
+    for (JobContextConsumer jobFunction : jobFunctions) {
+      Job job =
+          Job.builder()
+              .createdBy(user)
+              .status("running")
+              .timeoutMs(timeout == null ? null : timeout.toMillis())
+              .build();
+      describe(job, jobFunction);
+      jobs.add(job);
+    }
+
+    // Only queued if all of them can be, since jobs run in memory are not part of the transaction
+    if ("database".equals(queueMode)
+        && jobFunctions.stream().allMatch(databaseJobQueue::canEnqueue)) {
+      databaseJobQueue.enqueueAll(jobs, jobFunctions);
+      jobFunctions.forEach(jobFunction -> jobMetrics.submitted(jobFunction.getClass()));
+      jobs.forEach(jobStatusNotifier::submitted);
+      return jobs;
+    }
+
+    jobsRepository.saveAll(jobs);
+    List<JobContext> contexts = new ArrayList<>(jobs.size());
+    List<JobExecutor.Submission> submissions = new ArrayList<>(jobs.size());
+    for (int i = 0; i < jobs.size(); i++) {
+      JobContextConsumer jobFunction = jobFunctions.get(i);
+      JobContext context = register(jobs.get(i), jobFunction);
+      contexts.add(context);
+      Runnable task = () -> run(context, jobFunction);
+      waitingToStart.put(jobs.get(i).getId(), task);
+      submissions.add(
+          new JobExecutor.Submission(
+              jobFunction.getClass(), ownerOf(jobs.get(i)), jobFunction.priority(), task));
+    }
+    jobs.forEach(jobStatusNotifier::submitted);
+    try {
+      jobExecutor.submitAll(submissions);
+    } catch (JobQueueFullException e) {
+      for (int i = 0; i < jobs.size(); i++) {
+        waitingToStart.remove(jobs.get(i).getId());
+        activeContexts.remove(jobs.get(i).getId(), contexts.get(i));
+        jobMetrics.rejected(jobFunctions.get(i).getClass());
+        finished(jobFunctions.get(i));
+      }
+      jobsRepository.deleteAll(jobs);
+      jobs.forEach(this::rejected);
+      throw e;
+    }
+    jobFunctions.forEach(jobFunction -> jobMetrics.submitted(jobFunction.getClass()));
+    return jobs;
+  }
+
+  /** Records what a job runs, and for restartable jobs how to rebuild it. */
+  private void describe(Job job, JobContextConsumer jobFunction) {
+    job.setJobType(jobFunction.getClass().getName());
+    if (jobFunction.restartable() && databaseJobQueue.canEnqueue(jobFunction)) {
+      // Kept so that JobOrphanSweeper can rebuild the job if this node dies while running it
+      job.setRestartable(true);
+      job.setJobSpec(databaseJobQueue.encode(jobFunction));
+    }
+  }
+
+  private Job submit(Job job, JobContextConsumer jobFunction) {
+    describe(job, jobFunction);
+
+    if ("database".equals(queueMode) && databaseJobQueue.canEnqueue(jobFunction)) {
+      Job queued = databaseJobQueue.enqueue(job, jobFunction);
+      jobMetrics.submitted(jobFunction.getClass());
+      jobStatusNotifier.submitted(queued);
+      return queued;
+    }
 
     jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+    // Registered before it is submitted, so that a job still waiting for a permit can be cancelled
+    JobContext context = register(job, jobFunction);
+    // Sent before it is submitted, so that subscribers never hear of a job starting first
+    jobStatusNotifier.submitted(job);
+    Runnable task = () -> run(context, jobFunction);
+    waitingToStart.put(job.getId(), task);
+    try {
+      jobExecutor.submit(jobFunction.getClass(), ownerOf(job), jobFunction.priority(), task);
+    } catch (JobQueueFullException e) {
+      waitingToStart.remove(job.getId());
+      activeContexts.remove(job.getId(), context);
+      jobsRepository.delete(job);
+      jobMetrics.rejected(jobFunction.getClass());
+      finished(jobFunction);
+      rejected(job);
+      throw e;
+    }
+    jobMetrics.submitted(jobFunction.getClass());
 
     return job;
   }
 
-  @Async
+  /** Lets a job release what it holds, without a failure to do so affecting the job's record. */
+  private static void finished(JobContextConsumer jobFunction) {
+    try {
+      jobFunction.onFinished();
+    } catch (Exception e) {
+      log.warn("Could not finish {}: {}", jobFunction.getClass().getName(), e.getMessage());
+    }
+  }
+
+  /** Tells subscribers that a job they were told about is gone, since the executor was full. */
+  private void rejected(Job job) {
+    job.setStatus("rejected");
+    jobStatusNotifier.finished(job);
+  }
+
+  /**
+   * Names whose job this is, so that the {@link JobExecutor} can share slots fairly between users.
+   *
+   * @param job the job's record
+   * @return the id of the user who created the job, or {@link JobExecutor#SYSTEM_OWNER}
+   */
+  static String ownerOf(Job job) {
+    return job.getCreatedBy() == null
+        ? JobExecutor.SYSTEM_OWNER
+        : String.valueOf(job.getCreatedBy().getId());
+  }
+
+  /**
+   * Derives an idempotency key from a job's class and fields, so that submissions of the same job
+   * with the same parameters share one job. Only jobs that can be rebuilt from their fields have
+   * one, since the fields of a lambda cannot be read.
+   *
+   * @param jobFunction the job
+   * @return the key, or null if the job's parameters cannot be read
+   */
+  public String idempotencyKeyOf(JobContextConsumer jobFunction) {
+    if (!databaseJobQueue.canEnqueue(jobFunction)) return null;
+    byte[] spec = databaseJobQueue.encode(jobFunction).getBytes(StandardCharsets.UTF_8);
+    return jobFunction.getClass().getSimpleName() + ":" + UUID.nameUUIDFromBytes(spec);
+  }
+
+  private Optional<Job> findReusable(String idempotencyKey) {
+    Optional<Job> inFlight = jobsRepository.findByActiveIdempotencyKey(idempotencyKey);
+    if (inFlight.isPresent() || reuseWindowSeconds <= 0) return inFlight;
+    return jobsRepository
+        .findFirstByIdempotencyKeyAndStatusAndUpdatedAtGreaterThanEqualOrderByUpdatedAtDesc(
+            idempotencyKey, "complete", ZonedDateTime.now().minusSeconds(reuseWindowSeconds));
+  }
+
+  /** Handles a save that failed, which happens when another submission with the key won a race. */
+  private Job duplicateOf(
+      JobContextConsumer jobFunction, String idempotencyKey, DataIntegrityViolationException e) {
+    if (idempotencyKey == null) throw e;
+    Job existing = findReusable(idempotencyKey).orElseThrow(() -> e);
+    jobMetrics.deduplicated(jobFunction.getClass());
+    finished(jobFunction);
+    return existing;
+  }
+
+  /**
+   * Runs a job to completion and records its final status. This is called on a {@link JobExecutor}
+   * thread.
+   *
+   * @param job the job's record
+   * @param jobFunction the work to run
+   */
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    run(register(job, jobFunction), jobFunction);
+  }
+
+  private JobContext register(Job job, JobContextConsumer jobFunction) {
+    JobContext context =
+        new JobContext(
+            jobLogChunkRepository,
+            job,
+            jobFunction.logFlushPolicy(),
+            clock,
+            jobLogStreamService::publish,
+            progress -> {
+              jobsRepository.updateProgress(
+                  job.getId(),
+                  progress.getTotal(),
+                  progress.getDone(),
+                  progress.getPhase(),
+                  progress.getCounters(),
+                  progress.getUpdatedAt());
+              jobStatusNotifier.progress(job, progress);
+            });
+    if (job.getAttempts() > 0) {
+      // A job retried from the database queue appends to the log of its earlier attempts
+      context.continueLogAt(
+          jobLogChunkRepository.findMaxSeqByJobId(job.getId()).map(seq -> seq + 1).orElse(0));
+    }
+    activeContexts.put(job.getId(), context);
+    return context;
+  }
+
+  private void run(JobContext context, JobContextConsumer jobFunction) {
+    Job job = context.getJob();
+    waitingToStart.remove(job.getId());
+    job.setAttempts(job.getAttempts() + 1);
+    job.setRunAfter(null);
+    ZonedDateTime attemptStartedAt = ZonedDateTime.now();
+    long startedAt = System.nanoTime();
+    jobMetrics.started(
+        jobFunction.getClass(),
+        job.getCreatedAt() == null || job.getAttempts() > 1
+            ? null
+            : Duration.between(job.getCreatedAt(), attemptStartedAt));
+    jobStatusNotifier.started(job);
+    ScheduledFuture<?> timeout =
+        job.getTimeoutMs() == null
+            ? null
+            : timeouts.schedule(
+                () -> context.cancel("timed_out"), job.getTimeoutMs(), TimeUnit.MILLISECONDS);
+
+    RetryPolicy retryPolicy = jobFunction.retryPolicy();
+    Duration retryIn = null;
+    try {
+      Exception failure = null;
+      context.bindThread(Thread.currentThread());
+      JobResourceMeter meter = JobResourceMeter.start();
+      try {
+        context.checkCancelled();
+        jobFunction.accept(context);
+      } catch (Exception e) {
+        failure = e;
+      } finally {
+        meter.stop(job);
+        context.bindThread(null);
+        // Clear any interrupt from a cancel, so it cannot break the writes below
+        Thread.interrupted();
+        if (timeout != null) timeout.cancel(false);
+      }
+
+      if ("timed_out".equals(context.getCancelReason())) {
+        job.setStatus("timed_out");
+        context.log("Job timed out after %d ms".formatted(job.getTimeoutMs()));
+      } else if (context.isCancelled()) {
+        job.setStatus("cancelled");
+        context.log("Job cancelled");
+      } else if (failure != null && retryPolicy.shouldRetry(job.getAttempts(), failure)) {
+        retryIn = retryPolicy.backoff(job.getAttempts(), ThreadLocalRandom.current().nextDouble());
+        job.setStatus("retrying");
+        job.setRunAfter(ZonedDateTime.now().plus(retryIn));
+        context.log(
+            "Attempt %d of %d failed, retrying in %d ms: %s"
+                .formatted(
+                    job.getAttempts(),
+                    retryPolicy.getMaxAttempts(),
+                    retryIn.toMillis(),
+                    failure.getMessage()));
+      } else if (failure != null) {
+        job.setStatus("error");
+        context.log(failure.getMessage());
+      } else {
+        job.setStatus("complete");
+      }
+      if (retryPolicy.getMaxAttempts() > 1) recordAttempt(job, attemptStartedAt, failure);
+    } finally {
+      if (retryIn == null) {
+        activeContexts.remove(job.getId(), context);
+        job.setActiveIdempotencyKey(null);
+      }
+      context.flush();
+      // Also copies the latest progress onto the job, so the save below does not lose it
+      context.flushProgress();
+      if (retryIn == null) finished(jobFunction);
+    }
+
+    if (retryIn != null) {
+      jobMetrics.retried(jobFunction.getClass());
+      scheduleRetry(context, jobFunction, retryIn);
+      jobStatusNotifier.retrying(job);
+      return;
+    }
+
+    jobsRepository.save(job);
+    jobLogStreamService.jobFinished(job);
+    jobStatusNotifier.finished(job);
+    jobMetrics.finished(
+        jobFunction.getClass(), job.getStatus(), Duration.ofNanos(System.nanoTime() - startedAt));
 
     try {
-      jobFunction.accept(context);
+      jobLogCompressionService.compress(job.getId());
     } catch (Exception e) {
-      job.setStatus("error");
-      context.log(e.getMessage());
+      // The sweep in JobLogCompressionService tries again later
+      log.warn("Could not compress log of job {}: {}", job.getId(), e.getMessage());
+    }
+  }
+
+  /** Adds the attempt that just ended to the job's attempt history. */
+  private static void recordAttempt(Job job, ZonedDateTime startedAt, Exception failure) {
+    JobAttempt attempt =
+        JobAttempt.builder()
+            .attempt(job.getAttempts())
+            .startedAt(startedAt)
+            .finishedAt(ZonedDateTime.now())
+            .outcome(job.getStatus())
+            .error(failure == null ? null : failure.getMessage())
+            .retryAt(job.getRunAfter())
+            .build();
+    try {
+      ArrayNode history =
+          job.getAttemptHistory() == null
+              ? historyMapper.createArrayNode()
+              : (ArrayNode) historyMapper.readTree(job.getAttemptHistory());
+      history.add(historyMapper.valueToTree(attempt));
+      job.setAttemptHistory(historyMapper.writeValueAsString(history));
+    } catch (JsonProcessingException | ClassCastException e) {
+      log.warn("Could not record attempt of job {}: {}", job.getId(), e.getMessage());
+    }
+  }
+
+  /**
+   * Runs a failed job again once its backoff has passed, without holding a thread in the meantime.
+   * A job from the database queue goes back on the queue, where any node may claim it once it is
+   * due; any other job waits on this node's timer.
+   */
+  private void scheduleRetry(JobContext context, JobContextConsumer jobFunction, Duration delay) {
+    Job job = context.getJob();
+    if (job.getLeaseOwner() != null) {
+      activeContexts.remove(job.getId(), context);
+      job.setStatus("queued");
+      job.setLeaseOwner(null);
+      job.setLeaseExpiresAt(null);
+      jobsRepository.save(job);
       return;
     }
 
-    job.setStatus("complete");
     jobsRepository.save(job);
+    resumeLater(context, jobFunction, delay);
+  }
+
+  private void resumeLater(JobContext context, JobContextConsumer jobFunction, Duration delay) {
+    Runnable resume = () -> resume(context, jobFunction);
+    pendingRetries.put(
+        context.getJob().getId(),
+        new PendingRetry(
+            timeouts.schedule(resume, delay.toMillis(), TimeUnit.MILLISECONDS), resume));
+  }
+
+  /** Hands a job whose backoff has passed, or that was cancelled during it, to the executor. */
+  private void resume(JobContext context, JobContextConsumer jobFunction) {
+    Job job = context.getJob();
+    pendingRetries.remove(job.getId());
+    Runnable task =
+        () -> {
+          job.setStatus("running");
+          jobsRepository.save(job);
+          run(context, jobFunction);
+        };
+    waitingToStart.put(job.getId(), task);
+    try {
+      jobExecutor.submit(jobFunction.getClass(), ownerOf(job), jobFunction.priority(), task);
+    } catch (JobQueueFullException e) {
+      waitingToStart.remove(job.getId());
+      // Try again after the same backoff, rather than failing a job that was already accepted
+      resumeLater(context, jobFunction, jobFunction.retryPolicy().backoff(job.getAttempts(), 0));
+    }
+  }
+
+  /**
+   * Cancels a job. A job that is still queued in the database is cancelled at once. A running job
+   * is asked to stop: if it runs on this node its thread is interrupted, and otherwise the node
+   * running it sees the request at its next heartbeat.
+   *
+   * @param jobId id of the job
+   * @return a message saying what was done
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public String cancel(long jobId) {
+    if (cancelRunning(jobId, "cancelled")) {
+      return "Cancellation requested for job %d".formatted(jobId);
+    }
+    if (jobsRepository.cancelIfQueued(jobId) == 1) {
+      jobsRepository
+          .findById(jobId)
+          .ifPresent(
+              job -> {
+                jobLogStreamService.jobFinished(job);
+                jobStatusNotifier.finished(job);
+              });
+      return "Job %d cancelled".formatted(jobId);
+    }
+    if (jobsRepository.requestCancel(jobId) == 1) {
+      return "Cancellation requested for job %d".formatted(jobId);
+    }
+    String status =
+        jobsRepository
+            .findStatusById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+    return "Job %d is not running (status: %s)".formatted(jobId, status);
+  }
+
+  /**
+   * Asks a job that this node is running, or is about to run, to stop.
+   *
+   * @param jobId id of the job
+   * @param reason the status the job should finish with
+   * @return true if the job is known to this node
+   */
+  public boolean cancelRunning(long jobId, String reason) {
+    JobContext context = activeContexts.get(jobId);
+    if (context == null) return false;
+    context.cancel(reason);
+    // A job waiting to be retried is run at once, and stops before doing any work
+    PendingRetry retry = pendingRetries.remove(jobId);
+    if (retry != null && retry.future.cancel(false)) retry.resume.run();
+    // So is a job waiting for a slot, which would otherwise hold its place in the queue until then
+    Runnable waiting = waitingToStart.remove(jobId);
+    if (waiting != null && jobExecutor.withdraw(waiting)) waiting.run();
+    return true;
+  }
+
+  /**
+   * @return ids of the jobs this node is running or about to run
+   */
+  public Set<Long> getActiveJobIds() {
+    return Set.copyOf(activeContexts.keySet());
+  }
+
+  /**
+   * Records that the jobs this node is running are still alive, with one statement for all of them,
+   * so that {@link JobOrphanSweeper} can tell them apart from jobs whose node has died.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.heartbeatMs:15000}")
+  public void heartbeatActiveJobs() {
+    Set<Long> ids = getActiveJobIds();
+    if (ids.isEmpty()) return;
+    jobsRepository.updateHeartbeats(ids, ZonedDateTime.now());
+  }
+
+  /**
+   * Writes out buffered log lines of running jobs whose flush interval has passed, so that lines
+   * from a job that has gone quiet still reach the database.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.logFlushCheckMs:500}")
+  public void flushDueJobLogs() {
+    activeContexts.values().forEach(JobContext::flushIfDue);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    timeouts.shutdownNow();
+  }
+
+  private static class PendingRetry {
+    private final ScheduledFuture<?> future;
+    private final Runnable resume;
+
+    PendingRetry(ScheduledFuture<?> future, Runnable resume) {
+      this.future = future;
+      this.resume = resume;
+    }
   }
 
+  /**
+   * Returns the full log of a job. The log is assembled from the job's log chunks; finished jobs
+   * whose log has been compressed are decompressed, and jobs that were written before chunked
+   * logging existed fall back to the legacy log column.
+   *
+   * @param jobId id of the job
+   * @return the log text, or the empty string if the job has not logged anything
+   */
   public String getJobLogs(Long jobId) {
+    List<JobLogChunk> chunks = jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(jobId);
+    if (!chunks.isEmpty()) {
+      return chunks.stream().map(JobLogChunk::getText).collect(Collectors.joining("\n"));
+    }
+
     Job job =
         jobsRepository
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+    return storedLog(job);
+  }
 
-    String log = job.getLog();
-    return log != null ? log : "";
+  /**
+   * Returns the full log of a job that has already been loaded, as {@link #getJobLogs(Long)} does
+   * but without looking the job up again.
+   *
+   * @param job the job
+   * @return the log text, or the empty string if the job has not logged anything
+   */
+  public String getJobLogs(Job job) {
+    List<JobLogChunk> chunks = jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(job.getId());
+    if (!chunks.isEmpty()) {
+      return chunks.stream().map(JobLogChunk::getText).collect(Collectors.joining("\n"));
+    }
+    return storedLog(job);
+  }
+
+  private static String storedLog(Job job) {
+    if (JobLogCompressionService.CODEC.equals(job.getLogCodec())) {
+      return JobLogCompressionService.inflate(job.getLogCompressed());
+    }
+    String text = job.getLog();
+    return text != null ? text : "";
   }
 }
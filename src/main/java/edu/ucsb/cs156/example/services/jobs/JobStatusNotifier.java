@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusEvent;
+import java.time.ZonedDateTime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+
+/**
+ * This is a service that pushes changes in jobs' status and progress to WebSocket clients, so that
+ * they do not have to poll for them. Every event is sent to {@link #TOPIC}, and also to {@code
+ * /topic/jobs/<id>} for clients that only follow one job.
+ *
+ * <p>The broker is in memory, so a client only hears about jobs that run on the node it is
+ * connected to.
+ */
+@Slf4j
+@Service
+public class JobStatusNotifier {
+  /** The STOMP destination that receives the events of every job */
+  public static final String TOPIC = "/topic/jobs";
+
+  @Autowired private SimpMessageSendingOperations messagingTemplate;
+
+  /**
+   * @param job a job that has just been saved as queued or running
+   */
+  public void submitted(Job job) {
+    send(eventOf("submitted", job).build());
+  }
+
+  /**
+   * @param job a job whose attempt is starting
+   */
+  public void started(Job job) {
+    send(eventOf("started", job).build());
+  }
+
+  /**
+   * @param job a job that failed and will be run again after its backoff
+   */
+  public void retrying(Job job) {
+    send(eventOf("retrying", job).build());
+  }
+
+  /**
+   * @param job a job whose final status has just been saved
+   */
+  public void finished(Job job) {
+    send(eventOf("finished", job).build());
+  }
+
+  /**
+   * @param job a running job
+   * @param progress the progress it has just written
+   */
+  public void progress(Job job, JobProgress progress) {
+    send(
+        eventOf("progress", job)
+            .status(progress.getStatus())
+            .total(progress.getTotal())
+            .done(progress.getDone())
+            .phase(progress.getPhase())
+            .counters(progress.getCounters())
+            .build());
+  }
+
+  private static JobStatusEvent.JobStatusEventBuilder eventOf(String event, Job job) {
+    return JobStatusEvent.builder()
+        .event(event)
+        .jobId(job.getId())
+        .jobType(job.getJobType())
+        .status(job.getStatus())
+        .total(job.getProgressTotal())
+        .done(job.getProgressDone())
+        .phase(job.getProgressPhase())
+        .counters(job.getProgressCounters())
+        .at(ZonedDateTime.now());
+  }
+
+  private void send(JobStatusEvent event) {
+    try {
+      messagingTemplate.convertAndSend(TOPIC, event);
+      messagingTemplate.convertAndSend(TOPIC + "/" + event.getJobId(), event);
+    } catch (MessagingException e) {
+      // A lost event only means clients see the change late, e.g. on their next page load
+      log.warn("Could not send status of job {}: {}", event.getJobId(), e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Controls when a {@link JobContext} writes buffered log lines to the database. The buffer is
+ * flushed as a single chunk as soon as any one of the thresholds is reached, and always when the
+ * job finishes.
+ */
+@Data
+@AllArgsConstructor
+@Builder
+public class LogFlushPolicy {
+  /** Writes every line as soon as it is logged; this is the default for all jobs. */
+  public static final LogFlushPolicy IMMEDIATE = LogFlushPolicy.builder().maxLines(1).build();
+
+  /** Buffers up to 500 lines or 64 KiB, and never holds a line for more than two seconds. */
+  public static final LogFlushPolicy BUFFERED =
+      LogFlushPolicy.builder()
+          .maxLines(500)
+          .maxBytes(64 * 1024)
+          .maxInterval(Duration.ofSeconds(2))
+          .build();
+
+  @Builder.Default private int maxLines = Integer.MAX_VALUE;
+  @Builder.Default private long maxBytes = Long.MAX_VALUE;
+  @Builder.Default private Duration maxInterval = null;
+}
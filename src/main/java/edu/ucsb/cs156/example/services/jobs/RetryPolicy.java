@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.errors.RetryableJobException;
+import java.io.IOException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * Controls whether a failed job is run again. A job whose attempt fails with an exception that
+ * {@code retryOn} accepts is retried until it has been started {@code maxAttempts} times. Before
+ * attempt n+1 the job waits {@code initialBackoff * multiplier^(n-1)}, capped at {@code
+ * maxBackoff}, less a random part of up to {@code jitter} of that, so that jobs that failed
+ * together do not all retry at the same moment.
+ */
+@Data
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class RetryPolicy {
+  /** Never retries; this is the default for all jobs. */
+  public static final RetryPolicy NONE = RetryPolicy.builder().maxAttempts(1).build();
+
+  /** Up to five attempts, one second apart at first, for failures that {@link #isTransient}. */
+  public static final RetryPolicy TRANSIENT = RetryPolicy.builder().maxAttempts(5).build();
+
+  @Builder.Default private int maxAttempts = 3;
+  @Builder.Default private Duration initialBackoff = Duration.ofSeconds(1);
+  @Builder.Default private double multiplier = 2.0;
+  @Builder.Default private Duration maxBackoff = Duration.ofMinutes(5);
+
+  /** The fraction of each backoff that is random, from 0 (none) to 1 */
+  @Builder.Default private double jitter = 0.5;
+
+  @Builder.Default private Predicate<Throwable> retryOn = RetryPolicy::isTransient;
+
+  /**
+   * @param attempts how many times the job has been started
+   * @param failure why the last attempt failed
+   * @return true if the job should be run again
+   */
+  public boolean shouldRetry(int attempts, Throwable failure) {
+    return attempts < maxAttempts
+        && !(failure instanceof JobCancelledException)
+        && !(failure instanceof InterruptedException)
+        && retryOn.test(failure);
+  }
+
+  /**
+   * @param attempts how many times the job has been started
+   * @param random a number from 0 (inclusive) to 1 (exclusive)
+   * @return how long to wait before the next attempt
+   */
+  public Duration backoff(int attempts, double random) {
+    double millis = initialBackoff.toMillis() * Math.pow(multiplier, Math.max(0, attempts - 1));
+    millis = Math.min(millis, maxBackoff.toMillis());
+    return Duration.ofMillis(Math.round(millis * (1 - jitter * random)));
+  }
+
+  /**
+   * The default {@code retryOn}: accepts failures that are likely to go away on their own, such as
+   * a deadlock, a lock or query timeout, a dropped connection or an I/O error, and failures a job
+   * marks with {@link RetryableJobException}. The exception's causes are checked as well, each
+   * once, so a chain of causes that loops back on itself still ends.
+   *
+   * @param failure why the job failed
+   * @return true if the failure is likely to be transient
+   */
+  public static boolean isTransient(Throwable failure) {
+    Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Throwable t = failure; t != null && seen.add(t); t = t.getCause()) {
+      if (t instanceof RetryableJobException
+          || t instanceof TransientDataAccessException
+          || t instanceof RecoverableDataAccessException
+          || t instanceof SQLTransientException
+          || t instanceof SQLRecoverableException
+          || t instanceof TimeoutException
+          || t instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * This is a Hibernate session listener that counts the JDBC statements, and the time spent
+ * executing them, on threads that have asked for it with {@link #startCounting}. Hibernate creates
+ * one per session, as set by {@code spring.jpa.properties.hibernate.session.events.auto} in
+ * application.properties. A JDBC batch counts as one statement.
+ */
+public class SqlStatementListener implements SessionEventListener {
+  private static final ThreadLocal<Tally> current = new ThreadLocal<>();
+
+  private long startedAt;
+
+  /**
+   * Starts counting the statements this thread executes.
+   *
+   * @return the tally, which goes on growing until {@link #stopCounting} is called
+   */
+  static Tally startCounting() {
+    Tally tally = new Tally();
+    current.set(tally);
+    return tally;
+  }
+
+  /** Stops counting the statements this thread executes. */
+  static void stopCounting() {
+    current.remove();
+  }
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    startedAt = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteStatementEnd() {
+    record();
+  }
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    startedAt = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcExecuteBatchEnd() {
+    record();
+  }
+
+  private void record() {
+    Tally tally = current.get();
+    if (tally == null) return;
+    tally.statements++;
+    tally.nanos += System.nanoTime() - startedAt;
+  }
+
+  static class Tally {
+    private long statements;
+    private long nanos;
+
+    long getStatements() {
+      return statements;
+    }
+
+    long getNanos() {
+      return nanos;
+    }
+  }
+}
@@ -1,12 +1,21 @@
 package edu.ucsb.cs156.example;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
 import edu.ucsb.cs156.example.services.wiremock.WiremockService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -14,6 +23,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 @ActiveProfiles("test")
 @Import(TestConfig.class)
@@ -28,6 +38,26 @@ public abstract class ControllerTestCase {
 
   @MockBean WiremockService mockWiremockService;
 
+  @MockBean public EntityStreamService entityStreamService;
+
+  /** Makes the unpaged lists read these rows from the database, whatever the query. */
+  protected <T> void streamRows(List<T> rows) throws IOException {
+    doAnswer(
+            invocation -> {
+              RowWriter<T> writer = invocation.getArgument(3);
+              for (T row : rows) writer.write(row);
+              return null;
+            })
+        .when(entityStreamService)
+        .forEach(any(), any(), any(), any());
+  }
+
+  /** Downloads an export, whose body is written once the request has gone async. */
+  protected MvcResult export(MockHttpServletRequestBuilder download) throws Exception {
+    MvcResult started = mockMvc.perform(download).andExpect(request().asyncStarted()).andReturn();
+    return mockMvc.perform(asyncDispatch(started)).andReturn();
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result)
       throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
@@ -1,17 +1,57 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = DummyController.class)
@@ -20,6 +60,43 @@ public class ApiControllerTests extends ControllerTestCase {
 
   @MockBean UserRepository userRepository;
 
+  @MockBean UCSBDateRepository ucsbDateRepository;
+
+  private final UCSBDate date1 =
+      UCSBDate.builder()
+          .id(1L)
+          .quarterYYYYQ("20244")
+          .name("firstDayOfClasses")
+          .localDateTime(LocalDateTime.parse("2024-09-26T08:00:00"))
+          .build();
+
+  private final UCSBDate date2 =
+      UCSBDate.builder()
+          .id(2L)
+          .quarterYYYYQ("20244")
+          .name("lastDayOfClasses")
+          .localDateTime(LocalDateTime.parse("2024-12-06T17:00:00"))
+          .build();
+
+  /**
+   * Runs the query that the controller built against a stand-in for the database, returning the
+   * stand-in so that tests can check how the query was built.
+   */
+  @SuppressWarnings("unchecked")
+  private FetchableFluentQuery<UCSBDate> lastQuery(int requests) {
+    ArgumentCaptor<Function<FetchableFluentQuery<UCSBDate>, Object>> queryFunction =
+        ArgumentCaptor.forClass(Function.class);
+    verify(ucsbDateRepository, times(requests))
+        .findBy(any(Specification.class), queryFunction.capture());
+    FetchableFluentQuery<UCSBDate> query = mock(FetchableFluentQuery.class, RETURNS_SELF);
+    queryFunction.getValue().apply(query);
+    return query;
+  }
+
+  private static String cursorOf(String json) {
+    return Base64.getUrlEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
   @Test
   public void generic_message_test() {
     ApiController apiController = new DummyController();
@@ -53,4 +130,345 @@ public class ApiControllerTests extends ControllerTestCase {
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("String with id 7 not found", json.get("message"));
   }
+
+  @Test
+  public void test_that_job_queue_full_returns_service_unavailable() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/queuefull"))
+            .andExpect(status().isServiceUnavailable())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobQueueFullException", json.get("type"));
+    assertEquals(
+        "Job queue is full (10 jobs waiting); DummyJob was not started, try again later",
+        json.get("message"));
+  }
+
+  @Test
+  public void test_that_invalid_cursor_returns_bad_request() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/badcursor"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidCursorException", json.get("type"));
+    assertEquals("Invalid cursor: abc", json.get("message"));
+  }
+
+  @Test
+  public void test_that_invalid_job_schedule_returns_bad_request() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/badschedule"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidJobScheduleException", json.get("type"));
+    assertEquals("Invalid cron expression: every day", json.get("message"));
+  }
+
+  @Test
+  public void test_that_invalid_job_submission_returns_bad_request() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/badsubmission"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidJobSubmissionException", json.get("type"));
+    assertEquals("Unknown job type: NoSuchJob", json.get("message"));
+  }
+
+  @Test
+  public void first_page_is_sorted_by_id_and_is_the_last_if_nothing_follows() throws Exception {
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(List.of(date1), ScrollPosition::offset));
+
+    MvcResult response =
+        mockMvc.perform(get("/dummycontroller/dates")).andExpect(status().isOk()).andReturn();
+
+    assertEquals(
+        mapper.writeValueAsString(new KeysetPage<>(List.of(date1), null)),
+        response.getResponse().getContentAsString());
+    FetchableFluentQuery<UCSBDate> query = lastQuery(1);
+    verify(query).sortBy(Sort.by("id"));
+    verify(query).limit(KeysetPageRequest.DEFAULT_SIZE);
+    verify(query).scroll(ScrollPosition.keyset());
+  }
+
+  @Test
+  public void next_cursor_leads_to_the_page_after_the_last_item() throws Exception {
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(
+            Window.from(
+                List.of(date2, date1),
+                i ->
+                    ScrollPosition.forward(
+                        Map.of(
+                            "localDateTime",
+                            List.of(date2, date1).get(i).getLocalDateTime(),
+                            "id",
+                            List.of(date2, date1).get(i).getId())),
+                true));
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/dates?sort=localDateTime,desc&size=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+    String nextCursor = (String) responseToJson(response).get("nextCursor");
+    assertNotNull(nextCursor);
+    verify(lastQuery(1))
+        .sortBy(
+            Sort.by(Sort.Direction.DESC, "localDateTime").and(Sort.by(Sort.Direction.DESC, "id")));
+
+    mockMvc
+        .perform(get("/dummycontroller/dates?sort=localDateTime,desc&size=2&cursor=" + nextCursor))
+        .andExpect(status().isOk());
+    FetchableFluentQuery<UCSBDate> query = lastQuery(2);
+    verify(query).limit(2);
+    verify(query)
+        .scroll(
+            ScrollPosition.forward(
+                Map.of("localDateTime", LocalDateTime.parse("2024-09-26T08:00:00"), "id", 1L)));
+  }
+
+  @Test
+  public void page_size_is_kept_within_bounds() throws Exception {
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(List.of(), ScrollPosition::offset));
+
+    mockMvc.perform(get("/dummycontroller/dates?size=0")).andExpect(status().isOk());
+    verify(lastQuery(1)).limit(1);
+
+    mockMvc.perform(get("/dummycontroller/dates?size=100000")).andExpect(status().isOk());
+    verify(lastQuery(2)).limit(KeysetPageRequest.MAX_SIZE);
+  }
+
+  @Test
+  public void sorting_by_the_id_needs_no_tie_breaker() throws Exception {
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(List.of(), ScrollPosition::offset));
+
+    mockMvc.perform(get("/dummycontroller/dates?sort=id,DESC")).andExpect(status().isOk());
+
+    verify(lastQuery(1)).sortBy(Sort.by(Sort.Direction.DESC, "id"));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void only_the_filters_that_were_sent_are_applied() throws Exception {
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(List.of(), ScrollPosition::offset));
+    ArgumentCaptor<Specification<UCSBDate>> matching = ArgumentCaptor.forClass(Specification.class);
+    Root<UCSBDate> root = mock(Root.class);
+    Path<Object> quarter = mock(Path.class);
+    CriteriaBuilder cb = mock(CriteriaBuilder.class);
+    Predicate inQuarter = mock(Predicate.class);
+    when(root.get("quarterYYYYQ")).thenReturn(quarter);
+    when(cb.equal(quarter, "20244")).thenReturn(inQuarter);
+
+    mockMvc.perform(get("/dummycontroller/dates?quarterYYYYQ=20244")).andExpect(status().isOk());
+    mockMvc.perform(get("/dummycontroller/dates")).andExpect(status().isOk());
+
+    verify(ucsbDateRepository, times(2)).findBy(matching.capture(), any());
+    matching.getAllValues().get(0).toPredicate(root, mock(CriteriaQuery.class), cb);
+    verify(cb).and(inQuarter);
+    matching.getAllValues().get(1).toPredicate(root, mock(CriteriaQuery.class), cb);
+    verify(cb).and();
+  }
+
+  @Test
+  public void unpaged_list_is_a_plain_array_streamed_from_the_database() throws Exception {
+    streamRows(List.of(date1, date2));
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/dates?unpaged=true&sort=name,asc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    verify(entityStreamService, times(1))
+        .forEach(eq(UCSBDate.class), any(), eq(Sort.by("name").and(Sort.by("id"))), any());
+    verify(ucsbDateRepository, never()).findAll(any(Specification.class), any(Sort.class));
+    assertEquals(
+        mapper.writeValueAsString(List.of(date1, date2)),
+        response.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void streamed_array_is_written_without_type_information() throws Exception {
+    streamRows(List.of(date1));
+    StringWriter out = new StringWriter();
+
+    try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+      new ApiController.StreamedArray<>(
+              entityStreamService, UCSBDate.class, (root, query, cb) -> null, Sort.by("id"))
+          .serializeWithType(gen, mapper.getSerializerProviderInstance(), null);
+    }
+
+    assertEquals(mapper.writeValueAsString(List.of(date1)), out.toString());
+  }
+
+  @Test
+  public void sort_by_a_field_that_is_not_sortable_is_a_bad_request() throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/dates?sort=quarterYYYYQ"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidSortException", json.get("type"));
+    assertEquals(
+        "Cannot sort by quarterYYYYQ; sort by one of [id, localDateTime, name]",
+        json.get("message"));
+
+    mockMvc
+        .perform(get("/dummycontroller/dates?sort=name,sideways"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void cursors_not_made_for_the_list_are_bad_requests() throws Exception {
+    for (String cursor :
+        List.of(
+            "not*base64",
+            cursorOf("not json"),
+            cursorOf("{\"id\":1}"),
+            cursorOf("{\"id\":null,\"name\":\"x\"}"),
+            cursorOf("{\"id\":\"one\",\"name\":\"x\"}"))) {
+      MvcResult response =
+          mockMvc
+              .perform(get("/dummycontroller/dates").param("sort", "name").param("cursor", cursor))
+              .andExpect(status().isBadRequest())
+              .andReturn();
+
+      Map<String, Object> json = responseToJson(response);
+      assertEquals("InvalidCursorException", json.get("type"));
+      assertEquals("Invalid cursor: " + cursor, json.get("message"));
+    }
+  }
+
+  private Map<String, Object> bulkCreate(String json) throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/dummycontroller/dates/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(json))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+    verify(ucsbDateRepository, never()).saveAll(any());
+    return responseToJson(response);
+  }
+
+  @Test
+  public void bulk_create_with_too_many_items_is_a_bad_request() throws Exception {
+    UCSBDate[] dates = new UCSBDate[ApiController.MAX_BULK_SIZE + 1];
+    Arrays.fill(dates, date1);
+
+    Map<String, Object> json = bulkCreate(mapper.writeValueAsString(dates));
+
+    assertEquals("InvalidBulkCreateException", json.get("type"));
+    assertEquals("At most 1000 items may be created at once, got 1001", json.get("message"));
+  }
+
+  @Test
+  public void bulk_create_with_an_item_missing_a_field_is_a_bad_request() throws Exception {
+    UCSBDate nameless = UCSBDate.builder().localDateTime(date2.getLocalDateTime()).build();
+
+    Map<String, Object> json = bulkCreate(mapper.writeValueAsString(List.of(date1, nameless)));
+
+    assertEquals("InvalidBulkCreateException", json.get("type"));
+    assertEquals("Item 1 has no name", json.get("message"));
+  }
+
+  @Test
+  public void bulk_create_with_a_null_item_is_a_bad_request() throws Exception {
+    Map<String, Object> json = bulkCreate("[null]");
+
+    assertEquals("InvalidBulkCreateException", json.get("type"));
+    assertEquals("Item 0 is null", json.get("message"));
+  }
+
+  @Test
+  public void export_is_gzipped_if_the_client_accepts_gzip() throws Exception {
+    streamRows(List.of(date1, date2));
+
+    MvcResult response =
+        export(get("/dummycontroller/dates/export").header("Accept-Encoding", "deflate, gzip"));
+
+    assertEquals("gzip", response.getResponse().getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getResponse().getHeader("Vary"));
+    assertEquals(
+        "attachment; filename=\"dates.csv\"",
+        response.getResponse().getHeader("Content-Disposition"));
+    try (GZIPInputStream in =
+        new GZIPInputStream(
+            new ByteArrayInputStream(response.getResponse().getContentAsByteArray()))) {
+      assertEquals(
+          "id,quarterYYYYQ,name,localDateTime\n"
+              + "1,20244,firstDayOfClasses,2024-09-26T08:00:00\n"
+              + "2,20244,lastDayOfClasses,2024-12-06T17:00:00\n",
+          new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void export_is_not_gzipped_unless_asked_for() throws Exception {
+    streamRows(List.of(date1));
+
+    MvcResult response = export(get("/dummycontroller/dates/export?format=NDJSON"));
+
+    assertNull(response.getResponse().getHeader("Content-Encoding"));
+    assertEquals(
+        mapper.writeValueAsString(date1) + "\n", response.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void gzip_is_accepted_unless_it_is_missing_or_has_no_quality() {
+    assertTrue(ApiController.acceptsGzip("gzip"));
+    assertTrue(ApiController.acceptsGzip("br, GZIP;q=0.5"));
+    assertFalse(ApiController.acceptsGzip(null));
+    assertFalse(ApiController.acceptsGzip("br, deflate"));
+    assertFalse(ApiController.acceptsGzip("gzip;q=0"));
+    assertFalse(ApiController.acceptsGzip("gzip; q=0.000"));
+  }
+
+  @Test
+  public void export_in_an_unknown_format_is_a_bad_request() throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(get("/dummycontroller/dates/export?format=xml"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidExportException", json.get("type"));
+    assertEquals("Unknown format xml; expected csv or ndjson", json.get("message"));
+  }
 }
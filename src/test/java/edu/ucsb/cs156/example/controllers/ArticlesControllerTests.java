@@ -9,27 +9,40 @@ import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
 
 @WebMvcTest(controllers = ArticlesController.class)
 @Import(TestConfig.class)
@@ -39,6 +52,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
   @MockBean UserRepository userRepository;
 
+  @MockBean ImportService importService;
+
   // ALL --------------------
 
   @Test
@@ -51,7 +66,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/articles/all")).andExpect(status().is(200)); // logged
+    mockMvc.perform(get("/api/articles/all?unpaged=true")).andExpect(status().is(200)); // logged
   }
 
   // POST --------------------
@@ -102,20 +117,75 @@ public class ArticlesControllerTests extends ControllerTestCase {
     ArrayList<Articles> expectedArticles = new ArrayList<>();
     expectedArticles.addAll(Arrays.asList(article1, article2));
 
-    when(articlesRepository.findAll()).thenReturn(expectedArticles);
+    streamRows(expectedArticles);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/articles/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/articles/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(articlesRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(Articles.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedArticles);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_ucsbdates_one_page_at_a_time() throws Exception {
+
+    // arrange
+    LocalDateTime date1 = LocalDateTime.parse("2022-01-03T00:00:00");
+
+    Articles article1 =
+        Articles.builder()
+            .title("UCSB Housing Project for Fall 2027")
+            .url(
+                "https://dailynexus.com/2025-10-24/construction-begins-on-the-san-benito-student-housing-project-expected-completion-by-fall-2027")
+            .explanation("Article about the new housing project and its foreseen date completion.")
+            .email("ngonzalezornelas@ucsb.edu")
+            .dateAdded(date1)
+            .build();
+
+    LocalDateTime date2 = LocalDateTime.parse("2022-03-11T00:00:00");
+
+    Articles article2 =
+        Articles.builder()
+            .title("UCSB Shines in MLB Draft with Tyler Bremner Overall No. 2")
+            .url(
+                "https://dailynexus.com/2025-08-06/tyler-bremner-goes-no-2-overall-as-ucsb-shines-in-2025-mlb-draft")
+            .explanation(
+                "Article about the selected UCSB baseball player, making it into the big league.")
+            .email("ngonzalezornelas@ucsb.edu")
+            .dateAdded(date2)
+            .build();
+
+    ArrayList<Articles> expectedArticles = new ArrayList<>();
+    expectedArticles.addAll(Arrays.asList(article1, article2));
+
+    when(articlesRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedArticles, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles/all?sort=dateAdded,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(articlesRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedArticles, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   // POST --------------------
 
   @WithMockUser(roles = {"ADMIN", "USER"})
@@ -337,7 +407,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
 
     // assert
     verify(articlesRepository, times(1)).findById(15L);
-    verify(articlesRepository, times(1)).delete(any());
+    verify(articlesRepository, times(1)).delete(any(Articles.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 15 deleted", json.get("message"));
@@ -363,4 +433,158 @@ public class ArticlesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 123 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/articles/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/articles/bulk")).andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_articles_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<Articles> sent =
+        List.of(
+            Articles.builder()
+                .id(7L)
+                .title("Bulk article 1")
+                .url("https://example.org/1")
+                .explanation("first")
+                .email("cgaucho@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            Articles.builder()
+                .id(8L)
+                .title("Bulk article 2")
+                .url("https://example.org/2")
+                .explanation("second")
+                .email("ldelplaya@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<Articles> unsaved =
+        List.of(
+            Articles.builder()
+                .title("Bulk article 1")
+                .url("https://example.org/1")
+                .explanation("first")
+                .email("cgaucho@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            Articles.builder()
+                .title("Bulk article 2")
+                .url("https://example.org/2")
+                .explanation("second")
+                .email("ldelplaya@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<Articles> saved =
+        List.of(
+            Articles.builder()
+                .id(1L)
+                .title("Bulk article 1")
+                .url("https://example.org/1")
+                .explanation("first")
+                .email("cgaucho@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            Articles.builder()
+                .id(2L)
+                .title("Bulk article 2")
+                .url("https://example.org/2")
+                .explanation("second")
+                .email("ldelplaya@ucsb.edu")
+                .dateAdded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+
+    when(articlesRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/articles/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_import() throws Exception {
+    mockMvc.perform(multipart("/api/articles/import")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/articles/import")
+                .file(new MockMultipartFile("file", "import.csv", "text/csv", new byte[1]))
+                .with(csrf()))
+        .andExpect(status().is(403)); // only admins can import
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_start_an_import_job() throws Exception {
+    // arrange
+
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file",
+            "articles.ndjson",
+            "application/x-ndjson",
+            "{\"title\":\"Hello\"}\n".getBytes());
+    Job job = Job.builder().id(17L).status("running").build();
+    ArgumentCaptor<MultipartFile> uploaded = ArgumentCaptor.forClass(MultipartFile.class);
+    when(importService.startImport(eq(ImportTarget.ARTICLES), uploaded.capture(), eq("ndjson")))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/articles/import").file(file).param("format", "ndjson").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(importService).startImport(eq(ImportTarget.ARTICLES), any(), eq("ndjson"));
+    assertEquals("articles.ndjson", uploaded.getValue().getOriginalFilename());
+    assertEquals("{\"title\":\"Hello\"}\n", new String(uploaded.getValue().getBytes()));
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/articles/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_articles() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/articles/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService).forEach(eq(Articles.class), any(), eq(Sort.by("id")), any());
+  }
 }
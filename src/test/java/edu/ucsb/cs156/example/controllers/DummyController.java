@@ -1,16 +1,34 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidCursorException;
+import edu.ucsb.cs156.example.errors.InvalidJobScheduleException;
+import edu.ucsb.cs156.example.errors.InvalidJobSubmissionException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.models.KeysetPageRequest;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /** This class is used to test ApiController and EntityNotFoundException */
 @RequestMapping("/dummycontroller")
 @RestController
 public class DummyController extends ApiController {
 
+  @Autowired UCSBDateRepository ucsbDateRepository;
+
   @GetMapping("")
   public String getById(@RequestParam Long id) throws EntityNotFoundException {
     if (id == 1) {
@@ -18,4 +36,46 @@ public class DummyController extends ApiController {
     }
     throw new EntityNotFoundException(String.class, id);
   }
+
+  @GetMapping("/queuefull")
+  public String queueFull() {
+    throw new JobQueueFullException("DummyJob", 10);
+  }
+
+  @GetMapping("/badcursor")
+  public String badCursor() {
+    throw new InvalidCursorException("abc");
+  }
+
+  @GetMapping("/badschedule")
+  public String badSchedule() {
+    throw new InvalidJobScheduleException("Invalid cron expression: every day");
+  }
+
+  @GetMapping("/badsubmission")
+  public String badSubmission() {
+    throw new InvalidJobSubmissionException("Unknown job type: NoSuchJob");
+  }
+
+  @GetMapping("/dates")
+  public Object dates(@RequestParam(required = false) String quarterYYYYQ, KeysetPageRequest page) {
+    return keysetPage(
+        ucsbDateRepository,
+        UCSBDate.class,
+        Set.of("localDateTime", "name"),
+        filters("quarterYYYYQ", quarterYYYYQ),
+        page);
+  }
+
+  @PostMapping("/dates/bulk")
+  public Iterable<UCSBDate> bulkCreateDates(@RequestBody List<UCSBDate> dates) {
+    return createAll(ucsbDateRepository, UCSBDate.class, Set.of("name", "localDateTime"), dates);
+  }
+
+  @GetMapping("/dates/export")
+  public ResponseEntity<StreamingResponseBody> exportDates(
+      @RequestParam(defaultValue = "csv") String format,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return export(UCSBDate.class, "dates", format, acceptEncoding);
+  }
 }
@@ -15,17 +15,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -47,7 +53,9 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/help_requests/all")).andExpect(status().is(200)); // logged
+    mockMvc
+        .perform(get("/api/help_requests/all?unpaged=true"))
+        .andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -84,20 +92,63 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
     ArrayList<HelpRequest> expectedHelpRequests = new ArrayList<>();
     expectedHelpRequests.add(help_request1);
 
-    when(helpRequestRepository.findAll()).thenReturn(expectedHelpRequests);
+    streamRows(expectedHelpRequests);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/help_requests/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/help_requests/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(helpRequestRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(HelpRequest.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedHelpRequests);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_help_requests_one_page_at_a_time() throws Exception {
+
+    // arrange
+    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+    LocalDateTime ldt2 = LocalDateTime.parse("2022-03-11T00:00:00");
+
+    HelpRequest help_request1 =
+        HelpRequest.builder()
+            .requesterEmail("hao_ding@ucsb.edu")
+            .teamId("13")
+            .tableOrBreakoutRoom("13")
+            .requestTime(ldt1)
+            .explanation("You need to blah blah blah.")
+            .solved(false)
+            .build();
+
+    ArrayList<HelpRequest> expectedHelpRequests = new ArrayList<>();
+    expectedHelpRequests.add(help_request1);
+
+    when(helpRequestRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedHelpRequests, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/help_requests/all?sort=requestTime,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(helpRequestRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedHelpRequests, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_help_request() throws Exception {
@@ -222,7 +273,7 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
 
     // assert
     verify(helpRequestRepository, times(1)).findById(15L);
-    verify(helpRequestRepository, times(1)).delete(any());
+    verify(helpRequestRepository, times(1)).delete(any(HelpRequest.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -339,4 +390,119 @@ public class HelpRequestsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 67 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/help_requests/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/help_requests/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_helprequests_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<HelpRequest> sent =
+        List.of(
+            HelpRequest.builder()
+                .id(7L)
+                .requesterEmail("cgaucho@ucsb.edu")
+                .teamId("s22-5pm-3")
+                .tableOrBreakoutRoom("7")
+                .explanation("dokku")
+                .solved(false)
+                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            HelpRequest.builder()
+                .id(8L)
+                .requesterEmail("ldelplaya@ucsb.edu")
+                .teamId("s22-6pm-4")
+                .tableOrBreakoutRoom("11")
+                .explanation("swagger")
+                .solved(true)
+                .requestTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<HelpRequest> unsaved =
+        List.of(
+            HelpRequest.builder()
+                .requesterEmail("cgaucho@ucsb.edu")
+                .teamId("s22-5pm-3")
+                .tableOrBreakoutRoom("7")
+                .explanation("dokku")
+                .solved(false)
+                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            HelpRequest.builder()
+                .requesterEmail("ldelplaya@ucsb.edu")
+                .teamId("s22-6pm-4")
+                .tableOrBreakoutRoom("11")
+                .explanation("swagger")
+                .solved(true)
+                .requestTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<HelpRequest> saved =
+        List.of(
+            HelpRequest.builder()
+                .id(1L)
+                .requesterEmail("cgaucho@ucsb.edu")
+                .teamId("s22-5pm-3")
+                .tableOrBreakoutRoom("7")
+                .explanation("dokku")
+                .solved(false)
+                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            HelpRequest.builder()
+                .id(2L)
+                .requesterEmail("ldelplaya@ucsb.edu")
+                .teamId("s22-6pm-4")
+                .tableOrBreakoutRoom("11")
+                .explanation("swagger")
+                .solved(true)
+                .requestTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+
+    when(helpRequestRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/help_requests/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/help_requests/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_help_requests() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/help_requests/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService).forEach(eq(HelpRequest.class), any(), eq(Sort.by("id")), any());
+  }
 }
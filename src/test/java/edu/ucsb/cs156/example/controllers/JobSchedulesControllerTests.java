@@ -0,0 +1,243 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.InvalidJobScheduleException;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.repositories.JobScheduleRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = JobSchedulesController.class)
+@Import(TestConfig.class)
+public class JobSchedulesControllerTests extends ControllerTestCase {
+
+  @MockitoBean JobScheduleRepository jobScheduleRepository;
+
+  @MockitoBean JobScheduler jobScheduler;
+
+  @MockitoBean UserRepository userRepository;
+
+  private static JobSchedule nightly() {
+    return JobSchedule.builder()
+        .id(4L)
+        .name("nightly")
+        .cron("0 0 3 * * *")
+        .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+        .jobSpec("{\"sleepMs\":10}")
+        .enabled(true)
+        .overlapPolicy("skip")
+        .catchUpPolicy("once")
+        .jitterMs(30000)
+        .build();
+  }
+
+  @Test
+  public void logged_out_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/jobs/schedules/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/jobs/schedules/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_post() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/jobs/schedules/post")
+                .param("name", "nightly")
+                .param("cron", "0 0 3 * * *")
+                .param("jobType", "edu.ucsb.cs156.example.jobs.TestJob")
+                .with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_all_schedules() throws Exception {
+    streamRows(List.of(nightly()));
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/schedules/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals(
+        mapper.writeValueAsString(List.of(nightly())), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_all_schedules_one_page_at_a_time() throws Exception {
+    when(jobScheduleRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(List.of(nightly()), ScrollPosition::offset));
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/schedules/all?sort=name,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals(
+        mapper.writeValueAsString(new KeysetPage<>(List.of(nightly()), null)),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_a_schedule_by_id() throws Exception {
+    when(jobScheduleRepository.findById(4L)).thenReturn(Optional.of(nightly()));
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/schedules?id=4")).andExpect(status().isOk()).andReturn();
+
+    assertEquals(mapper.writeValueAsString(nightly()), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void get_of_a_missing_schedule_returns_not_found() throws Exception {
+    when(jobScheduleRepository.findById(5L)).thenReturn(Optional.empty());
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/schedules?id=5"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobSchedule with id 5 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_create_a_schedule() throws Exception {
+    ArgumentCaptor<JobSchedule> created = ArgumentCaptor.forClass(JobSchedule.class);
+    when(jobScheduler.create(created.capture())).thenReturn(nightly());
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/schedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 3 * * *")
+                    .param("jobType", "edu.ucsb.cs156.example.jobs.TestJob")
+                    .param("jobSpec", "{\"sleepMs\":10}")
+                    .param("catchUpPolicy", "once")
+                    .param("jitterMs", "30000")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    JobSchedule expected = nightly();
+    expected.setId(0L);
+    assertEquals(expected, created.getValue());
+    assertEquals(mapper.writeValueAsString(nightly()), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void create_of_an_invalid_schedule_returns_bad_request() throws Exception {
+    when(jobScheduler.create(any()))
+        .thenThrow(new InvalidJobScheduleException("Invalid cron expression: daily"));
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/schedules/post")
+                    .param("name", "nightly")
+                    .param("cron", "daily")
+                    .param("jobType", "edu.ucsb.cs156.example.jobs.TestJob")
+                    .param("timeoutMs", "1000")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Invalid cron expression: daily", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_update_a_schedule() throws Exception {
+    JobSchedule incoming = nightly();
+    incoming.setEnabled(false);
+    when(jobScheduler.update(eq(4L), eq(incoming))).thenReturn(incoming);
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/jobs/schedules?id=4")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(incoming))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    verify(jobScheduler, times(1)).update(4L, incoming);
+    assertEquals(mapper.writeValueAsString(incoming), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_delete_a_schedule() throws Exception {
+    when(jobScheduleRepository.findById(4L)).thenReturn(Optional.of(nightly()));
+
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobs/schedules?id=4").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    verify(jobScheduleRepository, times(1)).delete(nightly());
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobSchedule with id 4 deleted", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void delete_of_a_missing_schedule_returns_not_found() throws Exception {
+    when(jobScheduleRepository.findById(5L)).thenReturn(Optional.empty());
+
+    mockMvc
+        .perform(delete("/api/jobs/schedules?id=5").with(csrf()))
+        .andExpect(status().isNotFound());
+
+    verify(jobScheduleRepository, never()).delete(any(JobSchedule.class));
+  }
+}
@@ -2,54 +2,98 @@ package edu.ucsb.cs156.example.controllers;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobTypeUsage;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.DatabaseJobQueue;
+import edu.ucsb.cs156.example.services.jobs.JobExecutor;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressionService;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
-import java.util.ArrayList;
-import java.util.Arrays;
+import edu.ucsb.cs156.example.services.jobs.JobStatusNotifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobLogStreamService.class,
+  JobExecutor.class,
+  DatabaseJobQueue.class,
+  JobRetentionService.class,
+  JobLogCompressionService.class,
+  JobMetrics.class,
+  SimpleMeterRegistry.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogChunkRepository jobLogChunkRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean JobStatusNotifier jobStatusNotifier;
+
   @Autowired JobService jobService;
 
+  @Autowired JobLogStreamService jobLogStreamService;
+
+  @Autowired JobExecutor jobExecutor;
+
   @Autowired ObjectMapper objectMapper;
 
   @WithMockUser(roles = {"ADMIN"})
@@ -58,13 +102,11 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    Job job1 = Job.builder().log("this is job 1").build();
-    Job job2 = Job.builder().log("this is job 2").build();
+    ZonedDateTime t = ZonedDateTime.parse("2025-01-01T00:00:00Z");
+    JobSummary job1 = JobSummary.builder().id(2L).status("complete").createdAt(t).build();
+    JobSummary job2 = JobSummary.builder().id(1L).status("error").createdAt(t).logLength(5).build();
 
-    ArrayList<Job> expectedJobs = new ArrayList<>();
-    expectedJobs.addAll(Arrays.asList(job1, job2));
-
-    when(jobsRepository.findAll()).thenReturn(expectedJobs);
+    when(jobsRepository.findSummaries(null, null, null, null, 51)).thenReturn(List.of(job1, job2));
 
     // act
     MvcResult response =
@@ -72,12 +114,88 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, atLeastOnce()).findAll();
-    String expectedJson = mapper.writeValueAsString(expectedJobs);
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(List.of(job1, job2), null));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_page_through_jobs_with_filters() throws Exception {
+
+    // arrange
+
+    ZonedDateTime t1 = ZonedDateTime.parse("2025-01-02T00:00:00Z");
+    ZonedDateTime t2 = ZonedDateTime.parse("2025-01-01T00:00:00Z");
+    JobSummary job3 = JobSummary.builder().id(3L).status("complete").createdAt(t1).build();
+    JobSummary job2 = JobSummary.builder().id(2L).status("complete").createdAt(t2).build();
+    JobSummary job1 = JobSummary.builder().id(1L).status("complete").createdAt(t2).build();
+
+    when(jobsRepository.findSummaries("complete", 7L, null, null, 3))
+        .thenReturn(List.of(job3, job2, job1));
+    when(jobsRepository.findSummaries("complete", 7L, t2, 2L, 3)).thenReturn(List.of(job1));
+
+    // act
+
+    MvcResult first =
+        mockMvc
+            .perform(get("/api/jobs/all?status=complete&createdById=7&size=2"))
+            .andExpect(status().isOk())
+            .andReturn();
+    Map<String, Object> firstJson = responseToJson(first);
+    String cursor = (String) firstJson.get("nextCursor");
+
+    MvcResult second =
+        mockMvc
+            .perform(get("/api/jobs/all?status=complete&createdById=7&size=2&cursor=" + cursor))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    assertEquals(2, ((List<?>) firstJson.get("content")).size());
+    assertEquals(KeysetPage.encodeCursor(t2.toInstant(), 2L), cursor);
+    assertEquals(
+        mapper.writeValueAsString(new KeysetPage<>(List.of(job1), null)),
+        second.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void page_size_is_clamped() throws Exception {
+
+    // act
+
+    mockMvc.perform(get("/api/jobs/all?size=100000")).andExpect(status().isOk());
+    mockMvc.perform(get("/api/jobs/all?size=0")).andExpect(status().isOk());
+
+    // assert
+
+    verify(jobsRepository, times(1)).findSummaries(null, null, null, null, 501);
+    verify(jobsRepository, times(1)).findSummaries(null, null, null, null, 2);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void invalid_cursors_return_bad_request() throws Exception {
+    for (String cursor :
+        List.of(
+            "%%%",
+            KeysetPage.encodeCursor("only-one-part"),
+            KeysetPage.encodeCursor("not-a-time", 1L),
+            KeysetPage.encodeCursor(Instant.EPOCH, "not-a-number"))) {
+
+      MvcResult response =
+          mockMvc
+              .perform(get("/api/jobs/all").param("cursor", cursor))
+              .andExpect(status().isBadRequest())
+              .andReturn();
+
+      Map<String, Object> json = responseToJson(response);
+      assertEquals("InvalidCursorException", json.get("type"));
+    }
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_job_by_id() throws Exception {
@@ -101,6 +219,32 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void api_getJobLogById__admin_logged_in__returns_log_from_chunks() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(1L).status("running").build();
+
+    when(jobsRepository.findById(eq(1L))).thenReturn(Optional.of(job));
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(eq(1L)))
+        .thenReturn(
+            List.of(
+                JobLogChunk.builder().jobId(1L).seq(0).text("first line").build(),
+                JobLogChunk.builder().jobId(1L).seq(1).text("second line").build()));
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs?id=1")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("first line\nsecond line", json.get("log"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_not_found_for_missing_job()
@@ -127,7 +271,9 @@ public class JobsControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    when(jobsRepository.findIds(any())).thenReturn(List.of(1L, 2L), List.of());
+    when(jobLogChunkRepository.deleteAllByJobIdIn(List.of(1L, 2L))).thenReturn(5);
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
 
     // act
     MvcResult response =
@@ -138,12 +284,38 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
-    String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
+    verify(jobsRepository, never()).deleteAll();
+    verify(jobsRepository, never()).archiveAllByIdIn(any(), any());
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "All jobs deleted (2 jobs, 5 log chunks)"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_run_retention_and_see_the_report() throws Exception {
+
+    // act
+    MvcResult before =
+        mockMvc.perform(get("/api/jobs/retention")).andExpect(status().isOk()).andReturn();
+    MvcResult run =
+        mockMvc
+            .perform(post("/api/jobs/retention/run").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult after =
+        mockMvc.perform(get("/api/jobs/retention")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    assertEquals("", before.getResponse().getContentAsString());
+    Map<String, Object> json = responseToJson(run);
+    assertEquals("archive", json.get("mode"));
+    assertEquals(0, json.get("jobs"));
+    assertEquals(run.getResponse().getContentAsString(), after.getResponse().getContentAsString());
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void test_getJobLogs_admin_can_get_job_log() throws Exception {
@@ -195,6 +367,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
+    verify(jobLogChunkRepository, times(1)).deleteAllByJobId(eq(1L));
     verify(jobsRepository, times(1)).deleteById(eq(1L));
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
@@ -232,16 +405,6 @@ public class JobsControllerTests extends ControllerTestCase {
 
     User user = currentUserService.getUser();
 
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
     Job jobCompleted =
         Job.builder()
             .id(0L)
@@ -249,11 +412,12 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
+            .idempotencyKey(
+                jobService.idempotencyKeyOf(TestJob.builder().fail(false).sleepMs(2000).build()))
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
-
     // act
     MvcResult response =
         mockMvc
@@ -269,10 +433,44 @@ public class JobsControllerTests extends ControllerTestCase {
 
     await()
         .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .untilAsserted(
+            () ->
+                verify(jobLogChunkRepository, times(1))
+                    .save(
+                        JobLogChunk.builder()
+                            .jobId(0L)
+                            .seq(0)
+                            .text("Hello World! from test job!")
+                            .build()));
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(withUsageOf(jobCompleted)));
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(0L).seq(1).text("Goodbye from test job!").build());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void repeated_launch_returns_the_job_already_running() throws Exception {
+
+    // arrange
+
+    Job running = Job.builder().id(12L).status("running").idempotencyKey("TestJob:abc").build();
+    when(jobsRepository.findByActiveIdempotencyKey("TestJob:abc")).thenReturn(Optional.of(running));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0")
+                    .header("Idempotency-Key", "abc")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(running), response.getResponse().getContentAsString());
+    verify(jobsRepository, never()).save(any());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -283,16 +481,6 @@ public class JobsControllerTests extends ControllerTestCase {
 
     User user = currentUserService.getUser();
 
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
     Job jobFailed =
         Job.builder()
             .id(0L)
@@ -300,11 +488,12 @@ public class JobsControllerTests extends ControllerTestCase {
             .createdAt(null)
             .updatedAt(null)
             .status("error")
-            .log("Hello World! from test job!\nFail!")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
+            .idempotencyKey(
+                jobService.idempotencyKeyOf(TestJob.builder().fail(true).sleepMs(4000).build()))
             .build();
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
-
     // act
     MvcResult response =
         mockMvc
@@ -319,10 +508,680 @@ public class JobsControllerTests extends ControllerTestCase {
 
     await()
         .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .untilAsserted(
+            () ->
+                verify(jobLogChunkRepository, times(1))
+                    .save(
+                        JobLogChunk.builder()
+                            .jobId(0L)
+                            .seq(0)
+                            .text("Hello World! from test job!")
+                            .build()));
+
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(withUsageOf(jobFailed)));
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(0L).seq(1).text("Fail!").build());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_log_of_finished_job_from_offset() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(eq(1L))).thenReturn(Optional.of("complete"));
+    when(jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(eq(1L), eq(2)))
+        .thenReturn(List.of(JobLogChunk.builder().jobId(1L).seq(2).text("third").build()));
+
+    // act
+
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/1/stream?since=2"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert
+
+    mockMvc
+        .perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(
+            content().string("id:2\nevent:log\ndata:third\n\nevent:status\ndata:complete\n\n"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void stream_of_finished_job_with_compressed_log_sends_it_as_one_event() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(eq(2L))).thenReturn(Optional.of("complete"));
+    when(jobsRepository.findCompressedLogById(2L))
+        .thenReturn(Optional.of(JobLogCompressionService.deflate("a\nb".getBytes())));
+
+    // act
+
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/2/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert
+
+    mockMvc
+        .perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(
+            content().string("id:0\nevent:log\ndata:a\ndata:b\n\nevent:status\ndata:complete\n\n"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void compressed_log_is_sent_as_stored_to_clients_that_accept_deflate() throws Exception {
+
+    // arrange
+
+    byte[] compressed = JobLogCompressionService.deflate("hello".getBytes());
+    when(jobsRepository.findCompressedLogById(3L)).thenReturn(Optional.of(compressed));
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/3").header("Accept-Encoding", "gzip, deflate;q=0.5"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "deflate"))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andReturn();
+
+    // assert
+
+    assertArrayEquals(compressed, response.getResponse().getContentAsByteArray());
+    verify(jobLogChunkRepository, never()).findAllByJobIdOrderBySeqAsc(3L);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void log_is_decompressed_for_clients_that_do_not_accept_deflate() throws Exception {
+
+    // arrange
+
+    Job job =
+        Job.builder()
+            .id(4L)
+            .logCodec("deflate")
+            .logCompressed(JobLogCompressionService.deflate("hello".getBytes()))
+            .build();
+    when(jobsRepository.findCompressedLogById(4L)).thenReturn(Optional.of(job.getLogCompressed()));
+    when(jobsRepository.findById(4L)).thenReturn(Optional.of(job));
+
+    // act / assert
+
+    for (String acceptEncoding : new String[] {null, "gzip", "deflate;q=0", "*;q=0.0"}) {
+      MockHttpServletRequestBuilder request = get("/api/jobs/logs/4");
+      if (acceptEncoding != null) request.header("Accept-Encoding", acceptEncoding);
+      mockMvc
+          .perform(request)
+          .andExpect(status().isOk())
+          .andExpect(header().doesNotExist("Content-Encoding"))
+          .andExpect(content().string("hello"));
+    }
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void uncompressed_log_is_sent_as_text_even_if_client_accepts_deflate() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findById(5L)).thenReturn(Optional.of(Job.builder().log("plain").build()));
+
+    // act / assert
+
+    mockMvc
+        .perform(get("/api/jobs/logs/5").header("Accept-Encoding", "*"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("plain"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_tail_running_job_until_it_finishes() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(5L).status("running").build();
+    when(jobsRepository.findStatusById(eq(5L))).thenReturn(Optional.of("running"));
+    when(jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(eq(5L), eq(0)))
+        .thenAnswer(
+            invocation -> {
+              // a chunk written while the backlog is being read is held, not lost or duplicated
+              jobLogStreamService.publish(JobLogChunk.builder().jobId(5L).seq(1).text("b").build());
+              return List.of(
+                  JobLogChunk.builder().jobId(5L).seq(0).text("a").build(),
+                  JobLogChunk.builder().jobId(5L).seq(1).text("b").build());
+            });
+
+    // act
+
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/logs/5/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    jobLogStreamService.publish(JobLogChunk.builder().jobId(5L).seq(2).text("c").build());
+    jobLogStreamService.publish(JobLogChunk.builder().jobId(6L).seq(0).text("other").build());
+    job.setStatus("error");
+    jobLogStreamService.jobFinished(job);
+    jobLogStreamService.jobFinished(job);
+
+    // assert
+
+    mockMvc
+        .perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .string(
+                    "id:0\nevent:log\ndata:a\n\n"
+                        + "id:1\nevent:log\ndata:b\n\n"
+                        + "id:2\nevent:log\ndata:c\n\n"
+                        + "event:status\ndata:error\n\n"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void streaming_log_of_missing_job_returns_not_found() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(eq(9L))).thenReturn(Optional.empty());
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/9/stream"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 9 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_test_job_with_a_timeout() throws Exception {
+
+    // arrange
+
+    User user = currentUserService.getUser();
+
+    Job jobTimedOut =
+        Job.builder()
+            .id(0L)
+            .createdBy(user)
+            .status("timed_out")
+            .jobType(TestJob.class.getName())
+            .attempts(1)
+            .timeoutMs(100L)
+            .idempotencyKey(
+                jobService.idempotencyKeyOf(TestJob.builder().fail(false).sleepMs(60000).build()))
+            .build();
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=60000&timeoutMs=100")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
 
+    // assert
+
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(100L, jobReturned.getTimeoutMs());
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(() -> verify(jobsRepository, times(2)).save(withUsageOf(jobTimedOut)));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_a_queued_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.cancelIfQueued(7L)).thenReturn(1);
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/7/cancel").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job 7 cancelled", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancel_with_delete_reports_a_finished_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of("complete"));
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobs/8/cancel").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job 8 is not running (status: complete)", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancel_of_a_job_that_does_not_exist_returns_not_found() throws Exception {
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/9/cancel").with(csrf()))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 9 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_job_when_queue_is_full_returns_service_unavailable() throws Exception {
+
+    // arrange
+
+    jobExecutor.setQueueCapacity(0);
+
+    // act
+
+    MvcResult response;
+    try {
+      response =
+          mockMvc
+              .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+              .andExpect(status().isServiceUnavailable())
+              .andReturn();
+    } finally {
+      jobExecutor.setQueueCapacity(1000);
+    }
+
+    // assert
+
+    verify(jobsRepository, times(1)).delete(any(Job.class));
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobQueueFullException", json.get("type"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_progress() throws Exception {
+
+    // arrange
+
+    JobProgress progress =
+        JobProgress.builder()
+            .jobId(4L)
+            .status("running")
+            .total(10L)
+            .done(4L)
+            .phase("saving")
+            .counters("{\"skipped\":1}")
+            .build();
+    when(jobsRepository.findProgressById(4L)).thenReturn(Optional.of(progress));
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/4/progress")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(4, json.get("jobId"));
+    assertEquals(4, json.get("done"));
+    assertEquals("saving", json.get("phase"));
+    assertEquals(Map.of("skipped", 1), json.get("counters"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void progress_of_a_job_that_does_not_exist_returns_not_found() throws Exception {
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/9/progress")).andExpect(status().isNotFound()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 9 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_executor_stats() throws Exception {
+
+    // act
+
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/executor")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(1000, json.get("queueCapacity"));
+    assertEquals(0, json.get("queued"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_a_batch_of_jobs() throws Exception {
+
+    // arrange
+
+    String body =
+        "[{\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\","
+            + " \"jobSpec\": {\"fail\": false, \"sleepMs\": 0}},"
+            + " {\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\"}]";
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch?timeoutMs=5000")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    List<Map<String, Object>> json =
+        objectMapper.readValue(response.getResponse().getContentAsString(), List.class);
+    assertEquals(2, json.size());
+    assertEquals(TestJob.class.getName(), json.get(0).get("jobType"));
+    assertEquals(5000, json.get(1).get("timeoutMs"));
+    verify(jobsRepository, times(1)).saveAll(any());
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(2))
+                    .save(argThat(job -> "complete".equals(job.getStatus()))));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_without_a_timeout_launches_jobs_without_one() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\"}]")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    List<Map<String, Object>> json =
+        objectMapper.readValue(response.getResponse().getContentAsString(), List.class);
+    assertEquals(1, json.size());
+    assertNull(json.get(0).get("timeoutMs"));
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(1))
+                    .save(argThat(job -> "complete".equals(job.getStatus()))));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_with_an_unknown_job_type_launches_nothing() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(
+                        "[{\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\"},"
+                            + " {\"jobType\": \"edu.ucsb.cs156.example.jobs.NoSuchJob\"}]")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidJobSubmissionException", json.get("type"));
+    assertEquals(
+        "Job 1 has unknown jobType edu.ucsb.cs156.example.jobs.NoSuchJob", json.get("message"));
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  /** Set by the static initializer of {@link NotAJob}, which must never run */
+  static final AtomicBoolean notAJobInitialized = new AtomicBoolean();
+
+  static class NotAJob {
+    static {
+      notAJobInitialized.set(true);
+    }
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_of_a_class_that_is_not_a_job_is_rejected_without_initializing_it()
+      throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"jobType\": \"%s\"}]".formatted(NotAJob.class.getName()))
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    assertEquals(
+        "Job 0 cannot be built: %s is not a JobContextConsumer".formatted(NotAJob.class.getName()),
+        responseToJson(response).get("message"));
+    assertFalse(notAJobInitialized.get());
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_of_a_class_that_is_not_a_job_launches_nothing() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"jobType\": \"java.lang.String\"}, {}]")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    assertEquals(
+        "Job 0 cannot be built: java.lang.String is not a JobContextConsumer",
+        responseToJson(response).get("message"));
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_of_jobs_without_a_type_launches_nothing() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"jobSpec\": {}}]")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    assertEquals("Job 0 has no jobType", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void batch_larger_than_the_limit_is_rejected() throws Exception {
+
+    // arrange
+
+    String body =
+        objectMapper.writeValueAsString(
+            Collections.nCopies(1001, Map.of("jobType", "edu.ucsb.cs156.example.jobs.TestJob")));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+
+    assertEquals(
+        "At most 1000 jobs may be launched at once, got 1001",
+        responseToJson(response).get("message"));
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_launch_a_batch_of_jobs() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/jobs/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_resource_usage_by_job_type() throws Exception {
+
+    // arrange
+
+    JobTypeUsage usage =
+        JobTypeUsage.builder()
+            .jobType(TestJob.class.getName())
+            .jobs(4)
+            .attempts(5)
+            .wallTimeMs(2000L)
+            .maxWallTimeMs(900L)
+            .cpuTimeMs(500L)
+            .allocatedBytes(4096L)
+            .sqlStatements(40L)
+            .sqlTimeMs(120L)
+            .build();
+    when(jobsRepository.findUsageByJobType(eq(JobRetentionService.FINISHED_STATUSES), any()))
+        .thenReturn(List.of(usage));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/usage?days=1")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    List<Map<String, Object>> json =
+        objectMapper.readValue(response.getResponse().getContentAsString(), List.class);
+    assertEquals(1, json.size());
+    assertEquals(TestJob.class.getName(), json.get(0).get("jobType"));
+    assertEquals(125, json.get(0).get("cpuTimeMsPerJob"));
+    assertEquals(1024, json.get(0).get("allocatedBytesPerJob"));
+    assertEquals(10, json.get(0).get("sqlStatementsPerJob"));
+    assertEquals(0.25, json.get(0).get("cpuShare"));
+    verify(jobsRepository, times(1))
+        .findUsageByJobType(
+            eq(JobRetentionService.FINISHED_STATUSES),
+            argThat(
+                since ->
+                    since.isAfter(ZonedDateTime.now().minusDays(1).minusMinutes(1))
+                        && since.isBefore(ZonedDateTime.now().minusDays(1).plusMinutes(1))));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_get_resource_usage() throws Exception {
+    mockMvc.perform(get("/api/jobs/usage")).andExpect(status().isForbidden());
+  }
+
+  /**
+   * Matches a job equal to the expected one apart from the resources it used, which differ from run
+   * to run.
+   */
+  private static Job withUsageOf(Job expected) {
+    return argThat(
+        actual -> {
+          expected.setWallTimeMs(actual.getWallTimeMs());
+          expected.setCpuTimeMs(actual.getCpuTimeMs());
+          expected.setAllocatedBytes(actual.getAllocatedBytes());
+          expected.setSqlStatements(actual.getSqlStatements());
+          expected.setSqlTimeMs(actual.getSqlTimeMs());
+          return expected.equals(actual);
+        });
   }
 }
@@ -15,18 +15,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -51,7 +57,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/menuitemreviews/all")).andExpect(status().is(200)); // logged
+    mockMvc
+        .perform(get("/api/menuitemreviews/all?unpaged=true"))
+        .andExpect(status().is(200)); // logged
   }
 
   // Authorization tests for /api/ucsbdates/post
@@ -99,20 +107,71 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     ArrayList<MenuItemReview> expectedReviews = new ArrayList<>();
     expectedReviews.addAll(Arrays.asList(review1, review2));
 
-    when(menuItemReviewRepository.findAll()).thenReturn(expectedReviews);
+    streamRows(expectedReviews);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/menuitemreviews/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/menuitemreviews/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(menuItemReviewRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(MenuItemReview.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedReviews);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_menuitemreviews_one_page_at_a_time() throws Exception {
+
+    // arrange
+    LocalDateTime ldt1 = LocalDateTime.parse("2022-04-20T00:00:00");
+    LocalDateTime ldt2 = LocalDateTime.parse("2022-04-21T00:00:00");
+
+    MenuItemReview review1 =
+        MenuItemReview.builder()
+            .itemId(27L)
+            .reviewerEmail("cgaucho@ucsb.edu")
+            .stars(3)
+            .dateReviewed(ldt1)
+            .comments("review1test")
+            .build();
+
+    MenuItemReview review2 =
+        MenuItemReview.builder()
+            .itemId(28L)
+            .reviewerEmail("test2@ucsb.edu")
+            .stars(5)
+            .dateReviewed(ldt2)
+            .comments("review2test")
+            .build();
+
+    ArrayList<MenuItemReview> expectedReviews = new ArrayList<>();
+    expectedReviews.addAll(Arrays.asList(review1, review2));
+
+    when(menuItemReviewRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedReviews, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/all?sort=stars,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(menuItemReviewRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedReviews, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_menuitemreview() throws Exception {
@@ -331,7 +390,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
     // assert
     verify(menuItemReviewRepository, times(1)).findById(3L);
-    verify(menuItemReviewRepository, times(1)).delete(any());
+    verify(menuItemReviewRepository, times(1)).delete(any(MenuItemReview.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 3 deleted", json.get("message"));
@@ -355,4 +414,113 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 3 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/menuitemreviews/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/menuitemreviews/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_menuitemreviews_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<MenuItemReview> sent =
+        List.of(
+            MenuItemReview.builder()
+                .id(7L)
+                .itemId(27L)
+                .reviewerEmail("cgaucho@ucsb.edu")
+                .stars(3)
+                .comments("fine")
+                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            MenuItemReview.builder()
+                .id(8L)
+                .itemId(28L)
+                .reviewerEmail("ldelplaya@ucsb.edu")
+                .stars(5)
+                .comments("great")
+                .dateReviewed(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<MenuItemReview> unsaved =
+        List.of(
+            MenuItemReview.builder()
+                .itemId(27L)
+                .reviewerEmail("cgaucho@ucsb.edu")
+                .stars(3)
+                .comments("fine")
+                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            MenuItemReview.builder()
+                .itemId(28L)
+                .reviewerEmail("ldelplaya@ucsb.edu")
+                .stars(5)
+                .comments("great")
+                .dateReviewed(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<MenuItemReview> saved =
+        List.of(
+            MenuItemReview.builder()
+                .id(1L)
+                .itemId(27L)
+                .reviewerEmail("cgaucho@ucsb.edu")
+                .stars(3)
+                .comments("fine")
+                .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            MenuItemReview.builder()
+                .id(2L)
+                .itemId(28L)
+                .reviewerEmail("ldelplaya@ucsb.edu")
+                .stars(5)
+                .comments("great")
+                .dateReviewed(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+
+    when(menuItemReviewRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/menuitemreviews/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/menuitemreviews/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_menu_item_reviews() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/menuitemreviews/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService).forEach(eq(MenuItemReview.class), any(), eq(Sort.by("id")), any());
+  }
 }
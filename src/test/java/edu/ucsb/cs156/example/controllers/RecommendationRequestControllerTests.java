@@ -15,17 +15,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -48,7 +54,9 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/recommendationrequest/all")).andExpect(status().is(200)); // logged
+    mockMvc
+        .perform(get("/api/recommendationrequest/all?unpaged=true"))
+        .andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -85,23 +93,63 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     ArrayList<RecommendationRequest> expectedrecRequests = new ArrayList<>();
     // expectedrecRequests.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
     expectedrecRequests.add(recommendationrequest1);
-    when(recommendationrequestRepository.findAll()).thenReturn(expectedrecRequests);
+    streamRows(expectedrecRequests);
 
     // act
     MvcResult response =
         mockMvc
-            .perform(get("/api/recommendationrequest/all"))
+            .perform(get("/api/recommendationrequest/all?unpaged=true"))
             .andExpect(status().isOk())
             .andReturn();
 
     // assert
 
-    verify(recommendationrequestRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(RecommendationRequest.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedrecRequests);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_recRequest_one_page_at_a_time() throws Exception {
+
+    // arrange
+    LocalDateTime ldt1 = LocalDateTime.parse("2025-01-03T00:00:00");
+    LocalDateTime ldt2 = LocalDateTime.parse("2025-01-03T00:00:00");
+
+    RecommendationRequest recommendationrequest1 =
+        RecommendationRequest.builder()
+            .requesteremail("requesterqmail@mail.com")
+            .professoremail("professorfmail@mail.com")
+            .explanation("program")
+            .daterequested(ldt1)
+            .dateneeded(ldt2)
+            .done(true)
+            .build();
+
+    ArrayList<RecommendationRequest> expectedrecRequests = new ArrayList<>();
+    // expectedrecRequests.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
+    expectedrecRequests.add(recommendationrequest1);
+    when(recommendationrequestRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedrecRequests, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recommendationrequest/all?sort=dateneeded,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(recommendationrequestRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedrecRequests, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_recommendationrequest() throws Exception {
@@ -332,7 +380,7 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
 
     // assert
     verify(recommendationrequestRepository, times(1)).findById(15L);
-    verify(recommendationrequestRepository, times(1)).delete(any());
+    verify(recommendationrequestRepository, times(1)).delete(any(RecommendationRequest.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
@@ -358,4 +406,120 @@ public class RecommendationRequestControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("RecommendationRequest with id 15 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/recommendationrequest/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/recommendationrequest/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_recommendationrequests_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<RecommendationRequest> sent =
+        List.of(
+            RecommendationRequest.builder()
+                .id(7L)
+                .requesteremail("cgaucho@ucsb.edu")
+                .professoremail("phtcon@ucsb.edu")
+                .explanation("grad school")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(false)
+                .build(),
+            RecommendationRequest.builder()
+                .id(8L)
+                .requesteremail("ldelplaya@ucsb.edu")
+                .professoremail("richert@ucsb.edu")
+                .explanation("internship")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(true)
+                .build());
+    List<RecommendationRequest> unsaved =
+        List.of(
+            RecommendationRequest.builder()
+                .requesteremail("cgaucho@ucsb.edu")
+                .professoremail("phtcon@ucsb.edu")
+                .explanation("grad school")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(false)
+                .build(),
+            RecommendationRequest.builder()
+                .requesteremail("ldelplaya@ucsb.edu")
+                .professoremail("richert@ucsb.edu")
+                .explanation("internship")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(true)
+                .build());
+    List<RecommendationRequest> saved =
+        List.of(
+            RecommendationRequest.builder()
+                .id(1L)
+                .requesteremail("cgaucho@ucsb.edu")
+                .professoremail("phtcon@ucsb.edu")
+                .explanation("grad school")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(false)
+                .build(),
+            RecommendationRequest.builder()
+                .id(2L)
+                .requesteremail("ldelplaya@ucsb.edu")
+                .professoremail("richert@ucsb.edu")
+                .explanation("internship")
+                .daterequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateneeded(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .done(true)
+                .build());
+
+    when(recommendationrequestRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/recommendationrequest/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recommendationrequestRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/recommendationrequest/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_recommendation_requests() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/recommendationrequest/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService)
+        .forEach(eq(RecommendationRequest.class), any(), eq(Sort.by("id")), any());
+  }
 }
@@ -9,26 +9,40 @@ import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
 
 @WebMvcTest(controllers = RestaurantsController.class)
 @Import(TestConfig.class)
@@ -38,6 +52,8 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
   @MockBean UserRepository userRepository;
 
+  @MockBean ImportService importService;
+
   // Authorization tests for /api/phones/admin/all
 
   @Test
@@ -50,7 +66,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/restaurants/all")).andExpect(status().is(200)); // logged
+    mockMvc.perform(get("/api/restaurants/all?unpaged=true")).andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -134,20 +150,55 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     ArrayList<Restaurant> expectedRestaurants = new ArrayList<>();
     expectedRestaurants.addAll(Arrays.asList(restaurant1, restaurant2));
 
-    when(restaurantRepository.findAll()).thenReturn(expectedRestaurants);
+    streamRows(expectedRestaurants);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/restaurants/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(restaurantRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(Restaurant.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedRestaurants);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_restaurants_one_page_at_a_time() throws Exception {
+
+    // arrange
+
+    Restaurant restaurant1 = Restaurant.builder().name("Taco Bell").description("Mexican").build();
+
+    Restaurant restaurant2 = Restaurant.builder().name("McDonalds").description("American").build();
+
+    ArrayList<Restaurant> expectedRestaurants = new ArrayList<>();
+    expectedRestaurants.addAll(Arrays.asList(restaurant1, restaurant2));
+
+    when(restaurantRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedRestaurants, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all?sort=name,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(restaurantRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedRestaurants, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_restaurant() throws Exception {
@@ -189,7 +240,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
     // assert
     verify(restaurantRepository, times(1)).findById(15L);
-    verify(restaurantRepository, times(1)).delete(any());
+    verify(restaurantRepository, times(1)).delete(any(Restaurant.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -280,4 +331,197 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 67 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/restaurants/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/restaurants/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_restaurants_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<Restaurant> sent =
+        List.of(
+            Restaurant.builder().id(7L).name("Chipotle").description("Mexican").build(),
+            Restaurant.builder().id(8L).name("Taco Bell").description("Fast food").build());
+    List<Restaurant> unsaved =
+        List.of(
+            Restaurant.builder().name("Chipotle").description("Mexican").build(),
+            Restaurant.builder().name("Taco Bell").description("Fast food").build());
+    List<Restaurant> saved =
+        List.of(
+            Restaurant.builder().id(1L).name("Chipotle").description("Mexican").build(),
+            Restaurant.builder().id(2L).name("Taco Bell").description("Fast food").build());
+
+    when(restaurantRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/restaurants/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_import() throws Exception {
+    mockMvc.perform(multipart("/api/restaurants/import")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/restaurants/import")
+                .file(new MockMultipartFile("file", "import.csv", "text/csv", new byte[1]))
+                .with(csrf()))
+        .andExpect(status().is(403)); // only admins can import
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_start_an_import_job() throws Exception {
+    // arrange
+
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file",
+            "restaurants.csv",
+            "text/csv",
+            "name,description\nChipotle,Mexican\n".getBytes());
+    Job job = Job.builder().id(17L).status("running").build();
+    ArgumentCaptor<MultipartFile> uploaded = ArgumentCaptor.forClass(MultipartFile.class);
+    when(importService.startImport(eq(ImportTarget.RESTAURANTS), uploaded.capture(), eq("csv")))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/restaurants/import").file(file).param("format", "csv").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(importService).startImport(eq(ImportTarget.RESTAURANTS), any(), eq("csv"));
+    assertEquals("restaurants.csv", uploaded.getValue().getOriginalFilename());
+    assertEquals(
+        "name,description\nChipotle,Mexican\n", new String(uploaded.getValue().getBytes()));
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_import_that_cannot_be_started_is_a_bad_request() throws Exception {
+    // arrange
+
+    when(importService.startImport(eq(ImportTarget.RESTAURANTS), any(), eq("xml")))
+        .thenThrow(new InvalidImportException("Unknown format xml; expected csv or ndjson"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/restaurants/import")
+                    .file(new MockMultipartFile("file", "restaurants.xml", "text/xml", new byte[1]))
+                    .param("format", "xml")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidImportException", json.get("type"));
+    assertEquals("Unknown format xml; expected csv or ndjson", json.get("message"));
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/restaurants/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_all_restaurants_as_ndjson() throws Exception {
+
+    // arrange
+    Restaurant restaurant1 = Restaurant.builder().name("Taco Bell").description("Mexican").build();
+
+    Restaurant restaurant2 = Restaurant.builder().name("McDonalds").description("American").build();
+
+    ArrayList<Restaurant> expectedRestaurants = new ArrayList<>();
+    expectedRestaurants.addAll(Arrays.asList(restaurant1, restaurant2));
+
+    streamRows(expectedRestaurants);
+
+    // act
+    MvcResult response = export(get("/api/restaurants/export?format=ndjson"));
+
+    // assert
+
+    verify(entityStreamService).forEach(eq(Restaurant.class), any(), eq(Sort.by("id")), any());
+    assertEquals(200, response.getResponse().getStatus());
+    assertEquals("application/x-ndjson;charset=UTF-8", response.getResponse().getContentType());
+    StringBuilder expected = new StringBuilder();
+    for (Restaurant row : expectedRestaurants)
+      expected.append(mapper.writeValueAsString(row)).append("\n");
+    assertEquals(expected.toString(), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void restaurants_are_exported_as_csv_by_default() throws Exception {
+
+    // arrange
+    streamRows(
+        List.of(
+            Restaurant.builder().id(1L).name("Taco Bell").description("Mexican").build(),
+            Restaurant.builder()
+                .id(2L)
+                .name("Freebirds")
+                .description("Burritos, \"world\"")
+                .build(),
+            Restaurant.builder().id(3L).name("Unknown").build(),
+            Restaurant.builder().id(4L).name("Habit").description("Burgers\nand shakes").build()));
+
+    // act
+    MvcResult response = export(get("/api/restaurants/export"));
+
+    // assert
+
+    assertEquals("text/csv;charset=UTF-8", response.getResponse().getContentType());
+    assertEquals(
+        "attachment; filename=\"restaurants.csv\"",
+        response.getResponse().getHeader("Content-Disposition"));
+    assertEquals(
+        "id,name,description\n"
+            + "1,Taco Bell,Mexican\n"
+            + "2,Freebirds,\"Burritos, \"\"world\"\"\"\n"
+            + "3,Unknown,\n"
+            + "4,Habit,\"Burgers\nand shakes\"\n",
+        response.getResponse().getContentAsString());
+  }
 }
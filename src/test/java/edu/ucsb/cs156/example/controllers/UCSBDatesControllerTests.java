@@ -15,18 +15,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -51,7 +57,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/ucsbdates/all")).andExpect(status().is(200)); // logged
+    mockMvc.perform(get("/api/ucsbdates/all?unpaged=true")).andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -153,20 +159,68 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     ArrayList<UCSBDate> expectedDates = new ArrayList<>();
     expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-    when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+    streamRows(expectedDates);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/ucsbdates/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/ucsbdates/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(ucsbDateRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(UCSBDate.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedDates);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_ucsbdates_one_page_at_a_time() throws Exception {
+
+    // arrange
+    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+
+    UCSBDate ucsbDate1 =
+        UCSBDate.builder()
+            .name("firstDayOfClasses")
+            .quarterYYYYQ("20222")
+            .localDateTime(ldt1)
+            .build();
+
+    LocalDateTime ldt2 = LocalDateTime.parse("2022-03-11T00:00:00");
+
+    UCSBDate ucsbDate2 =
+        UCSBDate.builder()
+            .name("lastDayOfClasses")
+            .quarterYYYYQ("20222")
+            .localDateTime(ldt2)
+            .build();
+
+    ArrayList<UCSBDate> expectedDates = new ArrayList<>();
+    expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
+
+    when(ucsbDateRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedDates, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdates/all?sort=localDateTime,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(ucsbDateRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedDates, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_ucsbdate() throws Exception {
@@ -224,7 +278,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDateRepository, times(1)).findById(15L);
-    verify(ucsbDateRepository, times(1)).delete(any());
+    verify(ucsbDateRepository, times(1)).delete(any(UCSBDate.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -331,4 +385,101 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 67 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/ucsbdates/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/ucsbdates/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_ucsbdates_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<UCSBDate> sent =
+        List.of(
+            UCSBDate.builder()
+                .id(7L)
+                .quarterYYYYQ("20222")
+                .name("firstDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            UCSBDate.builder()
+                .id(8L)
+                .quarterYYYYQ("20222")
+                .name("lastDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<UCSBDate> unsaved =
+        List.of(
+            UCSBDate.builder()
+                .quarterYYYYQ("20222")
+                .name("firstDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            UCSBDate.builder()
+                .quarterYYYYQ("20222")
+                .name("lastDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+    List<UCSBDate> saved =
+        List.of(
+            UCSBDate.builder()
+                .id(1L)
+                .quarterYYYYQ("20222")
+                .name("firstDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .build(),
+            UCSBDate.builder()
+                .id(2L)
+                .quarterYYYYQ("20222")
+                .name("lastDayOfClasses")
+                .localDateTime(LocalDateTime.parse("2022-01-04T00:00:00"))
+                .build());
+
+    when(ucsbDateRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdates/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/ucsbdates/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_ucsbdates() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/ucsbdates/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService).forEach(eq(UCSBDate.class), any(), eq(Sort.by("id")), any());
+  }
 }
@@ -15,17 +15,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -50,7 +56,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/ucsbdiningcommons/all")).andExpect(status().is(200)); // logged
+    mockMvc
+        .perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
+        .andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -166,20 +174,73 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
     expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
-    when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+    streamRows(expectedCommons);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/ucsbdiningcommons/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/ucsbdiningcommons/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(ucsbDiningCommonsRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(UCSBDiningCommons.class), any(), eq(Sort.by("code")), any());
     String expectedJson = mapper.writeValueAsString(expectedCommons);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_ucsbdiningcommons_one_page_at_a_time() throws Exception {
+
+    // arrange
+
+    UCSBDiningCommons carrillo =
+        UCSBDiningCommons.builder()
+            .name("Carrillo")
+            .code("carrillo")
+            .hasSackMeal(false)
+            .hasTakeOutMeal(false)
+            .hasDiningCam(true)
+            .latitude(34.409953)
+            .longitude(-119.85277)
+            .build();
+
+    UCSBDiningCommons dlg =
+        UCSBDiningCommons.builder()
+            .name("De La Guerra")
+            .code("de-la-guerra")
+            .hasSackMeal(false)
+            .hasTakeOutMeal(false)
+            .hasDiningCam(true)
+            .latitude(34.409811)
+            .longitude(-119.845026)
+            .build();
+
+    ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
+    expectedCommons.addAll(Arrays.asList(carrillo, dlg));
+
+    when(ucsbDiningCommonsRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedCommons, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommons/all?sort=name,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(ucsbDiningCommonsRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedCommons, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_commons() throws Exception {
@@ -241,7 +302,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-    verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+    verify(ucsbDiningCommonsRepository, times(1)).delete(any(UCSBDiningCommons.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -357,4 +418,21 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/ucsbdiningcommons/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_ucsb_dining_commons() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/ucsbdiningcommons/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService)
+        .forEach(eq(UCSBDiningCommons.class), any(), eq(Sort.by("code")), any());
+  }
 }
@@ -9,27 +9,40 @@ import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuItemController.class)
 @Import(TestConfig.class)
@@ -39,6 +52,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
   @MockBean UserRepository userRepository;
 
+  @MockBean ImportService importService;
+
   // Authorization tests for /api/ucsbdiningcommonsmenuitem/admin/all
 
   @Test
@@ -52,7 +67,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
   @Test
   public void logged_in_users_can_get_all() throws Exception {
     mockMvc
-        .perform(get("/api/ucsbdiningcommonsmenuitem/all"))
+        .perform(get("/api/ucsbdiningcommonsmenuitem/all?unpaged=true"))
         .andExpect(status().is(200)); // logged
   }
 
@@ -99,23 +114,69 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     expectedDiningCommonsMenuItem.addAll(
         Arrays.asList(ucsbDiningCommonsMenuItem1, ucsbDiningCommonsMenuItem2));
 
-    when(ucsbDiningCommonsMenuItemRepository.findAll()).thenReturn(expectedDiningCommonsMenuItem);
+    streamRows(expectedDiningCommonsMenuItem);
 
     // act
     MvcResult response =
         mockMvc
-            .perform(get("/api/ucsbdiningcommonsmenuitem/all"))
+            .perform(get("/api/ucsbdiningcommonsmenuitem/all?unpaged=true"))
             .andExpect(status().isOk())
             .andReturn();
 
     // assert
 
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(UCSBDiningCommonsMenuItem.class), any(), eq(Sort.by("id")), any());
     String expectedJson = mapper.writeValueAsString(expectedDiningCommonsMenuItem);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_ucsbdiningcommonsmenuitem_one_page_at_a_time()
+      throws Exception {
+
+    // arrange
+    LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+
+    UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem1 =
+        UCSBDiningCommonsMenuItem.builder()
+            .name("Tofu Banh Mi Sandwich (v)")
+            .diningCommonsCode("ortega")
+            .station("Entree Specials")
+            .build();
+
+    UCSBDiningCommonsMenuItem ucsbDiningCommonsMenuItem2 =
+        UCSBDiningCommonsMenuItem.builder()
+            .name("Chicken Caesar Salad")
+            .diningCommonsCode("ortega")
+            .station("Entrees")
+            .build();
+
+    ArrayList<UCSBDiningCommonsMenuItem> expectedDiningCommonsMenuItem = new ArrayList<>();
+    expectedDiningCommonsMenuItem.addAll(
+        Arrays.asList(ucsbDiningCommonsMenuItem1, ucsbDiningCommonsMenuItem2));
+
+    when(ucsbDiningCommonsMenuItemRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedDiningCommonsMenuItem, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommonsmenuitem/all?sort=station,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson =
+        mapper.writeValueAsString(new KeysetPage<>(expectedDiningCommonsMenuItem, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_ucsbdiningcommonsmenuitem() throws Exception {
@@ -305,7 +366,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
     // assert
     verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(15L);
-    verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+    verify(ucsbDiningCommonsMenuItemRepository, times(1))
+        .delete(any(UCSBDiningCommonsMenuItem.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 15 deleted", json.get("message"));
@@ -332,4 +394,156 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 15 not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_bulk_post() throws Exception {
+    mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/bulk")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_bulk_post() throws Exception {
+    mockMvc
+        .perform(post("/api/ucsbdiningcommonsmenuitem/bulk"))
+        .andExpect(status().is(403)); // only admins can post
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_new_menu_items_at_once() throws Exception {
+    // arrange
+
+    // ids sent by the client are ignored
+    List<UCSBDiningCommonsMenuItem> sent =
+        List.of(
+            UCSBDiningCommonsMenuItem.builder()
+                .id(7L)
+                .diningCommonsCode("ortega")
+                .name("Baked Pesto Pasta")
+                .station("Entree Specials")
+                .build(),
+            UCSBDiningCommonsMenuItem.builder()
+                .id(8L)
+                .diningCommonsCode("portola")
+                .name("Tofu Banh Mi")
+                .station("Entrees")
+                .build());
+    List<UCSBDiningCommonsMenuItem> unsaved =
+        List.of(
+            UCSBDiningCommonsMenuItem.builder()
+                .diningCommonsCode("ortega")
+                .name("Baked Pesto Pasta")
+                .station("Entree Specials")
+                .build(),
+            UCSBDiningCommonsMenuItem.builder()
+                .diningCommonsCode("portola")
+                .name("Tofu Banh Mi")
+                .station("Entrees")
+                .build());
+    List<UCSBDiningCommonsMenuItem> saved =
+        List.of(
+            UCSBDiningCommonsMenuItem.builder()
+                .id(1L)
+                .diningCommonsCode("ortega")
+                .name("Baked Pesto Pasta")
+                .station("Entree Specials")
+                .build(),
+            UCSBDiningCommonsMenuItem.builder()
+                .id(2L)
+                .diningCommonsCode("portola")
+                .name("Tofu Banh Mi")
+                .station("Entrees")
+                .build());
+
+    when(ucsbDiningCommonsMenuItemRepository.saveAll(eq(unsaved))).thenReturn(saved);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/ucsbdiningcommonsmenuitem/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .characterEncoding("utf-8")
+                    .content(mapper.writeValueAsString(sent)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(unsaved);
+    String expectedJson = mapper.writeValueAsString(saved);
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
+  @Test
+  public void logged_out_users_cannot_import() throws Exception {
+    mockMvc.perform(multipart("/api/ucsbdiningcommonsmenuitem/import")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/ucsbdiningcommonsmenuitem/import")
+                .file(new MockMultipartFile("file", "import.csv", "text/csv", new byte[1]))
+                .with(csrf()))
+        .andExpect(status().is(403)); // only admins can import
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_start_an_import_job() throws Exception {
+    // arrange
+
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file",
+            "menu.csv",
+            "text/csv",
+            "diningCommonsCode,name,station\nortega,Tofu,Entrees\n".getBytes());
+    Job job = Job.builder().id(17L).status("running").build();
+    ArgumentCaptor<MultipartFile> uploaded = ArgumentCaptor.forClass(MultipartFile.class);
+    when(importService.startImport(
+            eq(ImportTarget.UCSB_DINING_COMMONS_MENU_ITEMS), uploaded.capture(), eq("csv")))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/ucsbdiningcommonsmenuitem/import")
+                    .file(file)
+                    .param("format", "csv")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(importService)
+        .startImport(eq(ImportTarget.UCSB_DINING_COMMONS_MENU_ITEMS), any(), eq("csv"));
+    assertEquals("menu.csv", uploaded.getValue().getOriginalFilename());
+    assertEquals(
+        "diningCommonsCode,name,station\nortega,Tofu,Entrees\n",
+        new String(uploaded.getValue().getBytes()));
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_ucsb_dining_commons_menu_items() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/ucsbdiningcommonsmenuitem/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService)
+        .forEach(eq(UCSBDiningCommonsMenuItem.class), any(), eq(Sort.by("id")), any());
+  }
 }
@@ -9,26 +9,39 @@ import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.imports.ImportService;
+import edu.ucsb.cs156.example.services.imports.ImportTarget;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.multipart.MultipartFile;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
 @Import(TestConfig.class)
@@ -38,6 +51,8 @@ public class UCSBOrganizationControllerTest extends ControllerTestCase {
 
   @MockBean UserRepository userRepository;
 
+  @MockBean ImportService importService;
+
   @Test
   public void logged_out_users_cannot_get_all() throws Exception {
     mockMvc
@@ -48,7 +63,9 @@ public class UCSBOrganizationControllerTest extends ControllerTestCase {
   @WithMockUser(roles = {"USER"})
   @Test
   public void logged_in_users_can_get_all() throws Exception {
-    mockMvc.perform(get("/api/ucsborganization/all")).andExpect(status().is(200)); // logged
+    mockMvc
+        .perform(get("/api/ucsborganization/all?unpaged=true"))
+        .andExpect(status().is(200)); // logged
   }
 
   @Test
@@ -150,20 +167,67 @@ public class UCSBOrganizationControllerTest extends ControllerTestCase {
     ArrayList<UCSBOrganization> expectedOrganizations = new ArrayList<>();
     expectedOrganizations.addAll(Arrays.asList(mtg, bgc));
 
-    when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrganizations);
+    streamRows(expectedOrganizations);
 
     // act
     MvcResult response =
-        mockMvc.perform(get("/api/ucsborganization/all")).andExpect(status().isOk()).andReturn();
+        mockMvc
+            .perform(get("/api/ucsborganization/all?unpaged=true"))
+            .andExpect(status().isOk())
+            .andReturn();
 
     // assert
 
-    verify(ucsbOrganizationRepository, times(1)).findAll();
+    verify(entityStreamService, times(1))
+        .forEach(eq(UCSBOrganization.class), any(), eq(Sort.by("orgCode")), any());
     String expectedJson = mapper.writeValueAsString(expectedOrganizations);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_all_ucsborganizations_one_page_at_a_time() throws Exception {
+
+    // arrange
+
+    UCSBOrganization mtg =
+        UCSBOrganization.builder()
+            .orgCode("MTG")
+            .orgTranslationShort("MTG@UCSB")
+            .orgTranslation("Magic: the Gathering at UCSB")
+            .inactive(false)
+            .build();
+
+    UCSBOrganization bgc =
+        UCSBOrganization.builder()
+            .orgCode("TGC")
+            .orgTranslationShort("Tabletop Gaming Club")
+            .orgTranslation("UCSB Tabletop Gaming Club")
+            .inactive(false)
+            .build();
+
+    ArrayList<UCSBOrganization> expectedOrganizations = new ArrayList<>();
+    expectedOrganizations.addAll(Arrays.asList(mtg, bgc));
+
+    when(ucsbOrganizationRepository.findBy(any(Specification.class), any()))
+        .thenReturn(Window.from(expectedOrganizations, ScrollPosition::offset));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsborganization/all?sort=orgTranslationShort,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    verify(ucsbOrganizationRepository, times(1)).findBy(any(Specification.class), any());
+    String expectedJson = mapper.writeValueAsString(new KeysetPage<>(expectedOrganizations, null));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
+
   @WithMockUser(roles = {"ADMIN", "USER"})
   @Test
   public void an_admin_user_can_post_a_new_organization() throws Exception {
@@ -219,7 +283,7 @@ public class UCSBOrganizationControllerTest extends ControllerTestCase {
 
     // assert
     verify(ucsbOrganizationRepository, times(1)).findById("GG");
-    verify(ucsbOrganizationRepository, times(1)).delete(any());
+    verify(ucsbOrganizationRepository, times(1)).delete(any(UCSBOrganization.class));
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id GG deleted", json.get("message"));
@@ -325,4 +389,71 @@ public class UCSBOrganizationControllerTest extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id GG not found", json.get("message"));
   }
+
+  @Test
+  public void logged_out_users_cannot_import() throws Exception {
+    mockMvc.perform(multipart("/api/ucsborganization/import")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_regular_users_cannot_import() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/ucsborganization/import")
+                .file(new MockMultipartFile("file", "import.csv", "text/csv", new byte[1]))
+                .with(csrf()))
+        .andExpect(status().is(403)); // only admins can import
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_start_an_import_job() throws Exception {
+    // arrange
+
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file",
+            "organizations.ndjson",
+            "application/x-ndjson",
+            "{\"orgCode\":\"ZPR\",\"orgTranslationShort\":\"ZETA PHI RHO\",\"orgTranslation\":\"ZETA PHI RHO\"}\n"
+                .getBytes());
+    Job job = Job.builder().id(17L).status("running").build();
+    ArgumentCaptor<MultipartFile> uploaded = ArgumentCaptor.forClass(MultipartFile.class);
+    when(importService.startImport(
+            eq(ImportTarget.UCSB_ORGANIZATIONS), uploaded.capture(), eq(null)))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(multipart("/api/ucsborganization/import").file(file).with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(importService).startImport(eq(ImportTarget.UCSB_ORGANIZATIONS), any(), eq(null));
+    assertEquals("organizations.ndjson", uploaded.getValue().getOriginalFilename());
+    assertEquals(
+        "{\"orgCode\":\"ZPR\",\"orgTranslationShort\":\"ZETA PHI RHO\",\"orgTranslation\":\"ZETA PHI RHO\"}\n",
+        new String(uploaded.getValue().getBytes()));
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/ucsborganization/export")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_export_ucsb_organizations() throws Exception {
+    streamRows(List.of());
+
+    MvcResult response = export(get("/api/ucsborganization/export?format=ndjson"));
+
+    assertEquals(200, response.getResponse().getStatus());
+    verify(entityStreamService)
+        .forEach(eq(UCSBOrganization.class), any(), eq(Sort.by("orgCode")), any());
+  }
 }
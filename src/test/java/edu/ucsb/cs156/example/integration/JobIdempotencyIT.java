@@ -0,0 +1,63 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobIdempotencyIT {
+  @Autowired JobService jobService;
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Test
+  public void concurrent_submissions_with_the_same_key_share_one_job() throws Exception {
+    // arrange
+    TestJob testJob = TestJob.builder().sleepMs(500).build();
+    String key = jobService.idempotencyKeyOf(testJob);
+    Callable<Job> submit = () -> jobService.runAsJob(testJob, null, key);
+
+    // act
+    List<Future<Job>> submissions = new ArrayList<>();
+    try (ExecutorService clients = Executors.newFixedThreadPool(4)) {
+      for (int i = 0; i < 4; i++) submissions.add(clients.submit(submit));
+    }
+
+    // assert
+    long id = submissions.get(0).get().getId();
+    for (Future<Job> submission : submissions) assertEquals(id, submission.get().getId());
+    assertEquals(1, jobsRepository.count());
+
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> "complete".equals(jobsRepository.findStatusById(id).orElse(null)));
+    Job again = jobService.runAsJob(testJob, null, key);
+    assertNotEquals(id, again.getId());
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressionService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"app.jobs.logCompression.finishedLogMinBytes=100"})
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobLogCompressionIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobLogChunkRepository jobLogChunkRepository;
+
+  @Autowired JobLogCompressionService jobLogCompressionService;
+
+  @Autowired JobService jobService;
+
+  @Test
+  public void finished_job_log_is_compressed_and_read_back_transparently() {
+    // arrange
+    Job job = jobsRepository.save(Job.builder().status("complete").build());
+    String line = "processed row 12345 of the input file without errors";
+    for (int seq = 0; seq < 50; seq++) {
+      jobLogChunkRepository.save(
+          JobLogChunk.builder().jobId(job.getId()).seq(seq).text(line).build());
+    }
+    String expected = String.join("\n", Collections.nCopies(50, line));
+
+    // act
+    jobLogCompressionService.compressFinishedLogs();
+
+    // assert
+    assertEquals(0, jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(job.getId()).size());
+    byte[] compressed = jobsRepository.findCompressedLogById(job.getId()).orElseThrow();
+    assertTrue(compressed.length < expected.length() / 5);
+    assertEquals(expected, jobService.getJobLogs(job.getId()));
+    List<JobSummary> summaries = jobsRepository.findSummaries(null, null, null, null, 10);
+    assertEquals(expected.length(), summaries.get(0).getLogLength());
+    assertEquals(
+        List.of(), jobsRepository.findIdsToCompress(List.of("complete"), Pageable.unpaged()));
+  }
+}
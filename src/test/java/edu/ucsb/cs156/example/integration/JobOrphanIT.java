@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobOrphanSweeper;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "app.jobs.orphans.resubmit=true")
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobOrphanIT {
+  @Autowired JobService jobService;
+
+  @Autowired JobOrphanSweeper jobOrphanSweeper;
+
+  @Autowired JobsRepository jobsRepository;
+
+  /** Left "running" by a node that died ten minutes ago */
+  private Job orphan(boolean restartable) {
+    return jobsRepository.save(
+        Job.builder()
+            .status("running")
+            .heartbeatAt(ZonedDateTime.now().minusMinutes(10))
+            .restartable(restartable)
+            .jobType(restartable ? RestartableJob.class.getName() : null)
+            .jobSpec(restartable ? "{}" : null)
+            .build());
+  }
+
+  @Test
+  public void orphaned_jobs_are_abandoned_and_restartable_ones_run_again() {
+    Job orphan = orphan(false);
+    Job restartable = orphan(true);
+    Job live =
+        jobsRepository.save(
+            Job.builder().status("running").heartbeatAt(ZonedDateTime.now()).build());
+
+    assertEquals(2, jobOrphanSweeper.sweep());
+
+    assertEquals("abandoned", jobsRepository.findStatusById(orphan.getId()).orElseThrow());
+    assertEquals("abandoned", jobsRepository.findStatusById(restartable.getId()).orElseThrow());
+    assertEquals("running", jobsRepository.findStatusById(live.getId()).orElseThrow());
+    assertTrue(
+        jobService.getJobLogs(orphan.getId()).startsWith("Job abandoned: no heartbeat since "));
+
+    List<Job> restarted = new ArrayList<>();
+    jobsRepository
+        .findAll()
+        .forEach(
+            j -> {
+              if (j.getRestarts() == 1) restarted.add(j);
+            });
+    assertEquals(1, restarted.size());
+    long restartedId = restarted.get(0).getId();
+    assertTrue(
+        jobService
+            .getJobLogs(restartable.getId())
+            .endsWith("Resubmitted as job %d".formatted(restartedId)));
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> "complete".equals(jobsRepository.findStatusById(restartedId).orElse(null)));
+
+    // Nothing is left to sweep
+    assertEquals(0, jobOrphanSweeper.sweep());
+  }
+
+  @Test
+  public void heartbeats_keep_running_jobs_from_being_abandoned() throws Exception {
+    Job job = jobService.runAsJob(ctx -> Thread.sleep(60_000));
+    jobsRepository.save(
+        jobsRepository.findById(job.getId()).map(this::backdateHeartbeat).orElseThrow());
+
+    jobService.heartbeatActiveJobs();
+
+    assertTrue(
+        jobsRepository
+            .findById(job.getId())
+            .orElseThrow()
+            .getHeartbeatAt()
+            .isAfter(ZonedDateTime.now().minusMinutes(1)));
+    assertEquals(0, jobOrphanSweeper.sweep());
+    jobService.cancel(job.getId());
+  }
+
+  private Job backdateHeartbeat(Job job) {
+    job.setHeartbeatAt(ZonedDateTime.now().minusMinutes(10));
+    return job;
+  }
+
+  public static class RestartableJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext ctx) {
+      ctx.log("Running again");
+    }
+
+    @Override
+    public boolean restartable() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobPipeline;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {"app.jobs.queueMode=database", "app.jobs.pollMs=100"})
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobQueueIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void launched_job_is_queued_in_the_database_and_run_by_a_worker() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=10").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("queued", job.getStatus());
+    assertEquals("edu.ucsb.cs156.example.jobs.TestJob", job.getJobType());
+
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(job.getId()), Optional.of("complete")::equals);
+    assertEquals(
+        "Hello World! from test job!\nGoodbye from test job!", jobService.getJobLogs(job.getId()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void batch_of_jobs_is_queued_with_distinct_ids_and_run_by_workers() throws Exception {
+    // arrange
+    String body =
+        "[{\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\","
+            + " \"jobSpec\": {\"fail\": false, \"sleepMs\": 10}},"
+            + " {\"jobType\": \"edu.ucsb.cs156.example.jobs.TestJob\","
+            + " \"jobSpec\": {\"fail\": true, \"sleepMs\": 10}}]";
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job[] jobs = mapper.readValue(response.getResponse().getContentAsString(), Job[].class);
+    assertEquals(2, jobs.length);
+    assertEquals("queued", jobs[0].getStatus());
+    assertNotEquals(jobs[0].getId(), jobs[1].getId());
+
+    await()
+        .atMost(10, SECONDS)
+        .until(
+            () -> jobsRepository.findStatusById(jobs[0].getId()), Optional.of("complete")::equals);
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(jobs[1].getId()), Optional.of("error")::equals);
+  }
+
+  @Test
+  public void job_whose_lease_expired_is_reclaimed_and_run_again() throws Exception {
+    // arrange
+    Job orphan =
+        Job.builder()
+            .status("running")
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .jobSpec("{\"fail\":true,\"sleepMs\":0}")
+            .leaseOwner("a-worker-that-died")
+            .leaseExpiresAt(ZonedDateTime.now().minusMinutes(5))
+            .build();
+    jobsRepository.save(orphan);
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(orphan.getId()), Optional.of("error")::equals);
+    assertEquals("Hello World! from test job!\nFail!", jobService.getJobLogs(orphan.getId()));
+  }
+
+  @Test
+  public void job_waiting_to_be_retried_is_not_claimed_before_its_backoff_is_over()
+      throws Exception {
+    // arrange
+    Job retrying =
+        Job.builder()
+            .status("queued")
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .jobSpec("{\"fail\":false,\"sleepMs\":0}")
+            .attempts(1)
+            .runAfter(ZonedDateTime.now().plusSeconds(2))
+            .build();
+    jobsRepository.save(retrying);
+
+    // assert
+    Thread.sleep(1000);
+    assertEquals("queued", jobsRepository.findStatusById(retrying.getId()).orElseThrow());
+    await()
+        .atMost(10, SECONDS)
+        .until(
+            () -> jobsRepository.findStatusById(retrying.getId()), Optional.of("complete")::equals);
+    assertEquals(2, jobsRepository.findById(retrying.getId()).orElseThrow().getAttempts());
+  }
+
+  @Test
+  public void pipeline_runs_in_memory_on_the_node_that_submitted_it() throws Exception {
+    // arrange
+    Set<Integer> written = ConcurrentHashMap.newKeySet();
+    JobPipeline pipeline =
+        JobPipeline.<Integer>source(
+                "pages",
+                (ctx, out) -> {
+                  for (int page = 0; page < 5; page++) out.emit(page);
+                })
+            .<Integer>stage("double", 2, (ctx, page, out) -> out.emit(page * 2))
+            .sink("write", 1, (ctx, row) -> written.add(row));
+
+    // act
+    Job job = jobService.runAsJob(pipeline);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertNull(jobService.idempotencyKeyOf(pipeline));
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(job.getId()), Optional.of("complete")::equals);
+    assertEquals(Set.of(0, 2, 4, 6, 8), written);
+  }
+}
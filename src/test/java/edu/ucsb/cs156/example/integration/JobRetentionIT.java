@@ -0,0 +1,88 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.RetentionReport;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"app.jobs.retention.mode=archive", "app.jobs.retention.batchSize=1"})
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobRetentionIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobLogChunkRepository jobLogChunkRepository;
+
+  @Autowired JobRetentionService jobRetentionService;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  private Job saveJob(String status, int daysOld) {
+    Job job = jobsRepository.save(Job.builder().status(status).build());
+    jdbcTemplate.update(
+        "UPDATE jobs SET created_at = ? WHERE id = ?",
+        ZonedDateTime.now().minusDays(daysOld).toOffsetDateTime(),
+        job.getId());
+    jobLogChunkRepository.save(JobLogChunk.builder().jobId(job.getId()).seq(0).text("x").build());
+    return job;
+  }
+
+  @Test
+  public void old_finished_jobs_are_archived_and_everything_else_is_kept() {
+    // arrange
+    Job oldComplete = saveJob("complete", 40);
+    Job oldError = saveJob("error", 31);
+    Job oldRunning = saveJob("running", 40);
+    Job recent = saveJob("complete", 1);
+
+    // act
+    RetentionReport report = jobRetentionService.runRetention();
+
+    // assert
+    assertEquals(2, report.getJobs());
+    assertEquals(2, report.getLogChunks());
+    assertEquals(2, report.getBatches());
+    assertEquals(false, jobsRepository.existsById(oldComplete.getId()));
+    assertEquals(false, jobsRepository.existsById(oldError.getId()));
+    assertEquals(true, jobsRepository.existsById(oldRunning.getId()));
+    assertEquals(true, jobsRepository.existsById(recent.getId()));
+    assertEquals(
+        2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jobs_archive", Integer.class));
+    assertEquals(
+        2,
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM job_log_chunks_archive", Integer.class));
+  }
+
+  @Test
+  public void purge_all_removes_every_job() {
+    // arrange
+    saveJob("complete", 40);
+    saveJob("running", 0);
+
+    // act
+    RetentionReport report = jobRetentionService.purgeAll();
+
+    // assert
+    assertEquals(2, report.getJobs());
+    assertEquals(0, jobsRepository.count());
+    assertEquals(0, jobLogChunkRepository.count());
+  }
+}
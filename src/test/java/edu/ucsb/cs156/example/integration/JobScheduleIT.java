@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.repositories.JobScheduleRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobScheduler;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"app.jobs.schedules.pollMs=3600000"})
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobScheduleIT {
+  @Autowired JobScheduler jobScheduler;
+
+  @Autowired JobScheduleRepository jobScheduleRepository;
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Test
+  public void due_schedule_is_fired_once_when_several_nodes_poll_at_the_same_time()
+      throws Exception {
+    // arrange
+    JobSchedule schedule =
+        jobScheduler.create(
+            JobSchedule.builder()
+                .name("nightly")
+                .cron("0 0 3 * * *")
+                .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+                .enabled(true)
+                .build());
+    jdbcTemplate.update(
+        "UPDATE job_schedules SET next_run_at = ? WHERE id = ?",
+        ZonedDateTime.now().minusSeconds(1).toOffsetDateTime(),
+        schedule.getId());
+
+    // act
+    CountDownLatch go = new CountDownLatch(1);
+    Thread[] nodes = new Thread[4];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] =
+          new Thread(
+              () -> {
+                try {
+                  go.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                jobScheduler.fireDueSchedules();
+              });
+      nodes[i].start();
+    }
+    go.countDown();
+    for (Thread node : nodes) node.join(10_000);
+
+    // assert
+    JobSchedule fired = jobScheduleRepository.findById(schedule.getId()).get();
+    assertEquals(1, fired.getRunCount());
+    assertEquals("started", fired.getLastOutcome());
+    assertEquals(1, jobsRepository.count());
+    assertEquals(fired.getLastJobId(), jobsRepository.findAll().iterator().next().getId());
+    assertTrue(fired.getNextRunAt().isAfter(ZonedDateTime.now()));
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobSummaryIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobLogChunkRepository jobLogChunkRepository;
+
+  @Test
+  public void summaries_are_paged_newest_first_by_key() throws Exception {
+    // arrange
+    Job first = jobsRepository.save(Job.builder().status("complete").log("legacy").build());
+    Job second = jobsRepository.save(Job.builder().status("error").build());
+    Job third = jobsRepository.save(Job.builder().status("complete").build());
+    jobLogChunkRepository.save(
+        JobLogChunk.builder().jobId(third.getId()).seq(0).text("ab").build());
+    jobLogChunkRepository.save(
+        JobLogChunk.builder().jobId(third.getId()).seq(1).text("cde").build());
+
+    // act
+    List<JobSummary> page1 = jobsRepository.findSummaries(null, null, null, null, 2);
+    JobSummary last = page1.get(1);
+    List<JobSummary> page2 =
+        jobsRepository.findSummaries(null, null, last.getCreatedAt(), last.getId(), 2);
+    List<JobSummary> complete = jobsRepository.findSummaries("complete", null, null, null, 10);
+
+    // assert
+    assertNotNull(first.getCreatedAt());
+    assertEquals(
+        List.of(third.getId(), second.getId()), page1.stream().map(JobSummary::getId).toList());
+    assertEquals(5L, page1.get(0).getLogLength());
+    assertEquals(List.of(first.getId()), page2.stream().map(JobSummary::getId).toList());
+    assertEquals(6L, page2.get(0).getLogLength());
+    assertEquals(
+        List.of(third.getId(), first.getId()), complete.stream().map(JobSummary::getId).toList());
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobTypeUsage;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "app.jobs.meteredTypes=*")
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobUsageIT {
+  @Autowired JobService jobService;
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Test
+  public void statements_a_job_issues_are_counted_and_totalled_by_type() {
+    // arrange
+    ZonedDateTime since = ZonedDateTime.now().minusMinutes(1);
+    JobContextConsumer querying =
+        ctx -> {
+          for (int i = 0; i < 5; i++) jobsRepository.findStatusById(ctx.getJob().getId());
+        };
+    jobsRepository.save(
+        Job.builder()
+            .status("complete")
+            .jobType(querying.getClass().getName())
+            .attempts(1)
+            .wallTimeMs(100L)
+            .cpuTimeMs(10L)
+            .allocatedBytes(1000L)
+            .sqlStatements(2L)
+            .sqlTimeMs(1L)
+            .build());
+
+    // act
+    Job job = jobService.runAsJob(querying);
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(job.getId()), Optional.of("complete")::equals);
+
+    // assert
+    Job finished = jobsRepository.findById(job.getId()).orElseThrow();
+    assertTrue(finished.getSqlStatements() >= 5);
+    assertTrue(finished.getCpuTimeMs() >= 0);
+    assertTrue(finished.getAllocatedBytes() > 0);
+
+    List<JobTypeUsage> usage =
+        jobsRepository.findUsageByJobType(JobRetentionService.FINISHED_STATUSES, since);
+    assertEquals(1, usage.size());
+    assertEquals(querying.getClass().getName(), usage.get(0).getJobType());
+    assertEquals(2, usage.get(0).getJobs());
+    assertEquals(2, usage.get(0).getAttempts());
+    assertEquals(2 + finished.getSqlStatements(), usage.get(0).getSqlStatements());
+    assertEquals(100 + finished.getWallTimeMs(), usage.get(0).getWallTimeMs());
+  }
+}
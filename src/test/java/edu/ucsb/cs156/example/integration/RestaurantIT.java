@@ -1,18 +1,32 @@
 package edu.ucsb.cs156.example.integration;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +34,8 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
@@ -41,6 +57,10 @@ public class RestaurantIT {
 
   @Autowired RestaurantRepository restaurantRepository;
 
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
   @Autowired public MockMvc mockMvc;
 
   @Autowired public ObjectMapper mapper;
@@ -86,4 +106,164 @@ public class RestaurantIT {
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void restaurants_can_be_paged_through_by_name() throws Exception {
+    // arrange
+
+    for (String name : List.of("Panda Express", "Chipotle", "Taco Bell", "Blaze", "Chipotle")) {
+      restaurantRepository.save(Restaurant.builder().name(name).description("Fast").build());
+    }
+
+    // act
+
+    List<String> names = new ArrayList<>();
+    List<Long> ids = new ArrayList<>();
+    String cursor = "";
+    int pages = 0;
+    do {
+      MvcResult response =
+          mockMvc
+              .perform(get("/api/restaurants/all?sort=name&size=2" + cursor))
+              .andExpect(status().isOk())
+              .andReturn();
+      JsonNode page = mapper.readTree(response.getResponse().getContentAsString());
+      page.get("content").forEach(r -> names.add(r.get("name").asText()));
+      page.get("content").forEach(r -> ids.add(r.get("id").asLong()));
+      cursor =
+          page.get("nextCursor").isNull() ? null : "&cursor=" + page.get("nextCursor").asText();
+      pages++;
+    } while (cursor != null);
+
+    // assert
+
+    assertEquals(List.of("Blaze", "Chipotle", "Chipotle", "Panda Express", "Taco Bell"), names);
+    assertEquals(List.of(4L, 2L, 5L, 1L, 3L), ids);
+    assertEquals(3, pages);
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void unpaged_restaurants_are_streamed_as_a_plain_array() throws Exception {
+    // arrange
+
+    for (String name : List.of("Panda Express", "Chipotle", "Blaze")) {
+      restaurantRepository.save(Restaurant.builder().name(name).description("Fast").build());
+    }
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/restaurants/all?unpaged=true&sort=name,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    JsonNode restaurants = mapper.readTree(response.getResponse().getContentAsString());
+    List<String> names = new ArrayList<>();
+    restaurants.forEach(r -> names.add(r.get("name").asText()));
+    assertEquals(List.of("Panda Express", "Chipotle", "Blaze"), names);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_post_many_restaurants_at_once() throws Exception {
+    // arrange
+
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      restaurants.add(Restaurant.builder().name("Restaurant " + i).description("Fast").build());
+    }
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/restaurants/bulk")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(restaurants)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    List<Long> ids = new ArrayList<>();
+    mapper
+        .readTree(response.getResponse().getContentAsString())
+        .forEach(r -> ids.add(r.get("id").asLong()));
+    assertEquals(LongStream.rangeClosed(1, 120).boxed().toList(), ids);
+    assertEquals(120, restaurantRepository.count());
+    assertEquals("Restaurant 119", restaurantRepository.findById(120L).orElseThrow().getName());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_admin_user_can_import_restaurants_from_a_csv_file() throws Exception {
+    // arrange
+
+    StringBuilder csv = new StringBuilder("name,description\n");
+    for (int i = 0; i < 120; i++) {
+      csv.append("Restaurant ").append(i).append(",Fast\n");
+    }
+    csv.append("Nameless,\n");
+    MockMultipartFile file =
+        new MockMultipartFile("file", "restaurants.csv", "text/csv", csv.toString().getBytes());
+
+    // act
+
+    MvcResult response =
+        mockMvc
+            .perform(multipart("/api/restaurants/import").file(file).with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    Job job = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .until(() -> jobsRepository.findStatusById(job.getId()), Optional.of("complete")::equals);
+    assertEquals(120, restaurantRepository.count());
+    assertTrue(jobService.getJobLogs(job.getId()).contains("Line 122: missing description"));
+    assertTrue(jobService.getJobLogs(job.getId()).endsWith("Imported 120 rows; left out 1"));
+
+    // ids handed out by JPA afterwards do not collide with the imported ones
+    Restaurant saved =
+        restaurantRepository.save(
+            Restaurant.builder().name("Chipotle").description("Mexican").build());
+    assertEquals(121, restaurantRepository.count());
+    assertEquals("Chipotle", restaurantRepository.findById(saved.getId()).orElseThrow().getName());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void restaurants_are_exported_from_the_database_as_csv() throws Exception {
+    // arrange
+
+    restaurantRepository.save(
+        Restaurant.builder().name("Panda Express").description("Fast").build());
+    restaurantRepository.save(
+        Restaurant.builder().name("Chipotle").description("Fast, Mexican").build());
+
+    // act
+
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/restaurants/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    assertEquals(
+        "id,name,description\n1,Panda Express,Fast\n2,Chipotle,\"Fast, Mexican\"\n",
+        response.getResponse().getContentAsString());
+  }
 }
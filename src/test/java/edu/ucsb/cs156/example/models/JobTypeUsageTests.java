@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class JobTypeUsageTests {
+
+  private static JobTypeUsage.JobTypeUsageBuilder usage() {
+    return JobTypeUsage.builder()
+        .jobType("TestJob")
+        .jobs(4)
+        .attempts(5)
+        .wallTimeMs(2000L)
+        .cpuTimeMs(500L)
+        .allocatedBytes(4096L)
+        .sqlStatements(40L);
+  }
+
+  @Test
+  public void totals_are_shared_out_over_the_jobs() {
+    JobTypeUsage usage = usage().build();
+
+    assertEquals(125, usage.getCpuTimeMsPerJob());
+    assertEquals(1024, usage.getAllocatedBytesPerJob());
+    assertEquals(10, usage.getSqlStatementsPerJob());
+    assertEquals(0.25, usage.getCpuShare());
+  }
+
+  @Test
+  public void per_job_figures_are_null_when_a_total_is_not_known() {
+    JobTypeUsage unmeasured =
+        usage().cpuTimeMs(null).allocatedBytes(null).sqlStatements(null).build();
+
+    assertNull(unmeasured.getCpuTimeMsPerJob());
+    assertNull(unmeasured.getAllocatedBytesPerJob());
+    assertNull(unmeasured.getSqlStatementsPerJob());
+    assertNull(unmeasured.getCpuShare());
+  }
+
+  @Test
+  public void per_job_figures_are_null_when_there_are_no_jobs() {
+    JobTypeUsage none = usage().jobs(0).build();
+
+    assertNull(none.getCpuTimeMsPerJob());
+    assertNull(none.getAllocatedBytesPerJob());
+    assertNull(none.getSqlStatementsPerJob());
+  }
+
+  @Test
+  public void cpu_share_is_null_without_a_wall_time() {
+    assertNull(usage().wallTimeMs(null).build().getCpuShare());
+    assertNull(usage().wallTimeMs(0L).build().getCpuShare());
+  }
+}
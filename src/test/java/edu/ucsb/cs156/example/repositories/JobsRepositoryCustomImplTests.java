@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.models.JobSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JobsRepositoryCustomImplTests {
+
+  @Mock private EntityManager entityManager;
+
+  @Mock private TypedQuery<Object[]> query;
+
+  @InjectMocks private JobsRepositoryCustomImpl jobsRepositoryCustom;
+
+  private final ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(entityManager.createQuery(jpql.capture(), eq(Object[].class))).thenReturn(query);
+    when(query.setMaxResults(anyInt())).thenReturn(query);
+  }
+
+  @Test
+  public void first_page_without_filters_has_no_where_conditions() {
+    ZonedDateTime t = ZonedDateTime.parse("2025-01-01T00:00:00Z");
+    when(query.getResultList())
+        .thenReturn(List.<Object[]>of(new Object[] {3L, "complete", 7L, t, t, 12}));
+
+    List<JobSummary> summaries = jobsRepositoryCustom.findSummaries(null, null, null, null, 10);
+
+    assertEquals(
+        List.of(
+            JobSummary.builder()
+                .id(3L)
+                .status("complete")
+                .createdById(7L)
+                .createdAt(t)
+                .updatedAt(t)
+                .logLength(12)
+                .build()),
+        summaries);
+    assertEquals(
+        "SELECT j.id, j.status, u.id, j.createdAt, j.updatedAt, COALESCE(j.logLength, 0) +"
+            + " COALESCE(LENGTH(j.log), 0) +"
+            + " COALESCE((SELECT SUM(LENGTH(c.text)) FROM job_log_chunks c WHERE c.jobId = j.id),"
+            + " 0) FROM jobs j LEFT JOIN j.createdBy u WHERE 1 = 1"
+            + " ORDER BY j.createdAt DESC, j.id DESC",
+        jpql.getValue());
+    verify(query, times(1)).setMaxResults(10);
+    verify(query, never()).setParameter(anyString(), eq(null));
+  }
+
+  @Test
+  public void filters_and_cursor_are_added_as_parameters() {
+    ZonedDateTime t = ZonedDateTime.parse("2025-01-01T00:00:00Z");
+    when(query.getResultList()).thenReturn(List.of());
+
+    jobsRepositoryCustom.findSummaries("error", 7L, t, 5L, 3);
+
+    assertEquals(
+        "SELECT j.id, j.status, u.id, j.createdAt, j.updatedAt, COALESCE(j.logLength, 0) +"
+            + " COALESCE(LENGTH(j.log), 0) +"
+            + " COALESCE((SELECT SUM(LENGTH(c.text)) FROM job_log_chunks c WHERE c.jobId = j.id),"
+            + " 0) FROM jobs j LEFT JOIN j.createdBy u WHERE 1 = 1 AND j.status = :status"
+            + " AND j.createdBy.id = :createdById AND (j.createdAt < :beforeCreatedAt"
+            + " OR (j.createdAt = :beforeCreatedAt AND j.id < :beforeId))"
+            + " ORDER BY j.createdAt DESC, j.id DESC",
+        jpql.getValue());
+    verify(query, times(1)).setParameter("status", "error");
+    verify(query, times(1)).setParameter("createdById", 7L);
+    verify(query, times(1)).setParameter("beforeCreatedAt", t);
+    verify(query, times(1)).setParameter("beforeId", 5L);
+  }
+}
@@ -0,0 +1,132 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+public class EntityStreamServiceTests {
+
+  @Mock private EntityManager entityManager;
+
+  @Mock private CriteriaBuilder cb;
+
+  @Mock private CriteriaQuery<Restaurant> criteriaQuery;
+
+  @Mock private Root<Restaurant> root;
+
+  @Mock private TypedQuery<Restaurant> query;
+
+  @Mock private RowWriter<Restaurant> writer;
+
+  @InjectMocks private EntityStreamService entityStreamService;
+
+  private final Restaurant taco = Restaurant.builder().id(1L).name("Taco Bell").build();
+
+  private final Restaurant blaze = Restaurant.builder().id(2L).name("Blaze").build();
+
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(entityManager.getCriteriaBuilder()).thenReturn(cb);
+    when(cb.createQuery(Restaurant.class)).thenReturn(criteriaQuery);
+    when(criteriaQuery.from(Restaurant.class)).thenReturn(root);
+    when(entityManager.createQuery(criteriaQuery)).thenReturn(query);
+    when(query.setHint(anyString(), any())).thenReturn(query);
+    when(query.getResultStream())
+        .thenReturn(Stream.of(blaze, taco).onClose(() -> closed.set(true)));
+  }
+
+  @Test
+  public void each_row_is_written_then_detached_in_order() throws IOException {
+    entityStreamService.forEach(Restaurant.class, (r, q, c) -> null, Sort.by("id"), writer);
+
+    InOrder inOrder = inOrder(writer, entityManager);
+    inOrder.verify(writer).write(blaze);
+    inOrder.verify(entityManager).detach(blaze);
+    inOrder.verify(writer).write(taco);
+    inOrder.verify(entityManager).detach(taco);
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void rows_are_read_read_only_through_a_cursor_with_a_fetch_size() throws IOException {
+    entityStreamService.forEach(Restaurant.class, (r, q, c) -> null, Sort.by("id"), writer);
+
+    verify(query).setHint(HibernateHints.HINT_FETCH_SIZE, EntityStreamService.FETCH_SIZE);
+    verify(query).setHint(HibernateHints.HINT_READ_ONLY, true);
+    verify(query, never()).getResultList();
+  }
+
+  @Test
+  public void query_is_filtered_and_sorted_as_asked() throws IOException {
+    Predicate matches = mock(Predicate.class);
+    Specification<Restaurant> matching = (r, q, c) -> matches;
+    Path<Object> name = mock(Path.class);
+    Path<Object> id = mock(Path.class);
+    Order nameDesc = mock(Order.class);
+    Order idAsc = mock(Order.class);
+    when(root.get("name")).thenReturn(name);
+    when(root.get("id")).thenReturn(id);
+    when(cb.desc(name)).thenReturn(nameDesc);
+    when(cb.asc(id)).thenReturn(idAsc);
+
+    entityStreamService.forEach(
+        Restaurant.class,
+        matching,
+        Sort.by(Sort.Direction.DESC, "name").and(Sort.by("id")),
+        writer);
+
+    verify(criteriaQuery).where(matches);
+    verify(criteriaQuery).orderBy(List.of(nameDesc, idAsc));
+  }
+
+  @Test
+  public void cursor_is_closed_when_writing_fails() throws IOException {
+    doThrow(new IOException("client went away")).when(writer).write(blaze);
+
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                entityStreamService.forEach(
+                    Restaurant.class, (r, q, c) -> null, Sort.by("id"), writer));
+
+    assertEquals("client went away", e.getMessage());
+    verify(writer, never()).write(taco);
+    assertTrue(closed.get());
+  }
+}
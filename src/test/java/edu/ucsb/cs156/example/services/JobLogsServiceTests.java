@@ -2,11 +2,17 @@ package edu.ucsb.cs156.example.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressionService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +24,8 @@ public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -64,4 +72,52 @@ public class JobLogsServiceTests {
     // Act & Assert
     assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
   }
+
+  @Test
+  void test_getJobLogs_joins_chunks_in_order() {
+    // Arrange
+    Long jobId = 4L;
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(jobId))
+        .thenReturn(
+            List.of(
+                JobLogChunk.builder().jobId(jobId).seq(0).text("line one").build(),
+                JobLogChunk.builder().jobId(jobId).seq(1).text("line two").build()));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("line one\nline two", result);
+    verify(jobRepository, never()).findById(jobId);
+  }
+
+  @Test
+  void test_getJobLogs_with_compressed_log() {
+    // Arrange
+    Job job =
+        Job.builder()
+            .logCodec(JobLogCompressionService.CODEC)
+            .logCompressed(JobLogCompressionService.deflate("compressed log".getBytes()))
+            .build();
+    when(jobRepository.findById(4L)).thenReturn(Optional.of(job));
+
+    // Act
+    String result = jobService.getJobLogs(4L);
+
+    // Assert
+    assertEquals("compressed log", result);
+  }
+
+  @Test
+  void test_getJobLogs_with_uncompressed_codec_uses_log_column() {
+    // Arrange
+    Job job = Job.builder().logCodec(JobLogCompressionService.NONE).log("small log").build();
+    when(jobRepository.findById(5L)).thenReturn(Optional.of(job));
+
+    // Act
+    String result = jobService.getJobLogs(5L);
+
+    // Assert
+    assertEquals("small log", result);
+  }
 }
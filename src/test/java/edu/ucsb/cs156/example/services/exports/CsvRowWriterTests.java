@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class CsvRowWriterTests {
+
+  /** Stands in for an entity with fields that are not plain values */
+  public record Row(
+      long id, String name, Boolean open, List<String> tags, Map<String, Integer> hours) {}
+
+  @Test
+  public void each_field_of_the_json_is_a_column() throws Exception {
+    StringWriter out = new StringWriter();
+    CsvRowWriter<Row> writer = new CsvRowWriter<>(out, Row.class, new ObjectMapper());
+
+    writer.write(new Row(1, "Taco Bell", true, List.of("fast", "cheap"), Map.of("open", 9)));
+    writer.write(new Row(2, null, null, List.of(), null));
+
+    assertEquals(
+        "id,name,open,tags,hours\n"
+            + "1,Taco Bell,true,\"[\"\"fast\"\",\"\"cheap\"\"]\",\"{\"\"open\"\":9}\"\n"
+            + "2,,,[],\n",
+        out.toString());
+  }
+
+  @Test
+  public void fields_left_out_of_the_json_are_empty() throws Exception {
+    StringWriter out = new StringWriter();
+    ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(Include.NON_NULL);
+    CsvRowWriter<Row> writer = new CsvRowWriter<>(out, Row.class, mapper);
+
+    writer.write(new Row(3, null, false, null, null));
+
+    assertEquals("id,name,open,tags,hours\n3,,false,,\n", out.toString());
+  }
+
+  @Test
+  public void fields_are_quoted_only_if_they_need_to_be() {
+    assertEquals("plain text", CsvRowWriter.escape("plain text"));
+    assertEquals("\"a,b\"", CsvRowWriter.escape("a,b"));
+    assertEquals("\"say \"\"hi\"\"\"", CsvRowWriter.escape("say \"hi\""));
+    assertEquals("\"two\nlines\"", CsvRowWriter.escape("two\nlines"));
+    assertEquals("\"two\r\nlines\"", CsvRowWriter.escape("two\r\nlines"));
+  }
+}
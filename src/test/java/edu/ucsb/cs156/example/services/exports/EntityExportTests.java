@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.services.EntityStreamService;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+public class EntityExportTests {
+  private final EntityStreamService entityStreamService = mock(EntityStreamService.class);
+
+  /** Remembers how much had been written each time it was flushed */
+  private static class FlushRecorder extends ByteArrayOutputStream {
+    final List<String> flushed = new ArrayList<>();
+
+    @Override
+    public void flush() {
+      flushed.add(toString());
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rows_are_flushed_to_the_client_a_fetch_at_a_time() throws Exception {
+    // arrange
+    int rows = EntityStreamService.FETCH_SIZE + 1;
+    doAnswer(
+            invocation -> {
+              RowWriter<Restaurant> writer = invocation.getArgument(3);
+              for (long id = 1; id <= rows; id++) {
+                writer.write(Restaurant.builder().id(id).name("R").description("D").build());
+              }
+              return null;
+            })
+        .when(entityStreamService)
+        .forEach(eq(Restaurant.class), any(), eq(Sort.by("id")), any());
+    FlushRecorder out = new FlushRecorder();
+
+    // act
+    new EntityExport<>(
+            entityStreamService,
+            new ObjectMapper(),
+            Restaurant.class,
+            Sort.by("id"),
+            ExportFormat.CSV,
+            false)
+        .writeTo(out);
+
+    // assert
+    assertEquals(3, out.flushed.size());
+    assertEquals("id,name,description\n", out.flushed.get(0));
+    assertEquals(EntityStreamService.FETCH_SIZE + 1, out.flushed.get(1).lines().count());
+    assertEquals(rows + 1, out.flushed.get(2).lines().count());
+    assertEquals("501,R,D", out.flushed.get(2).lines().reduce((a, b) -> b).orElseThrow());
+
+    ArgumentCaptor<Specification<Restaurant>> matching =
+        ArgumentCaptor.forClass(Specification.class);
+    verify(entityStreamService).forEach(eq(Restaurant.class), matching.capture(), any(), any());
+    CriteriaBuilder cb = mock(CriteriaBuilder.class);
+    matching.getValue().toPredicate(null, null, cb);
+    verify(cb).conjunction();
+  }
+}
@@ -0,0 +1,53 @@
+package edu.ucsb.cs156.example.services.exports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.errors.InvalidExportException;
+import edu.ucsb.cs156.example.services.EntityStreamService.RowWriter;
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+public class ExportFormatTests {
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void formats_are_found_by_name_in_any_case() {
+    assertEquals(ExportFormat.CSV, ExportFormat.of("csv"));
+    assertEquals(ExportFormat.NDJSON, ExportFormat.of("NDJson"));
+  }
+
+  @Test
+  public void unknown_formats_are_rejected() {
+    InvalidExportException e =
+        assertThrows(InvalidExportException.class, () -> ExportFormat.of("xml"));
+    assertEquals("Unknown format xml; expected csv or ndjson", e.getMessage());
+  }
+
+  @Test
+  public void csv_is_written_with_a_header() throws Exception {
+    StringWriter out = new StringWriter();
+
+    RowWriter<Restaurant> writer = ExportFormat.CSV.open(out, Restaurant.class, mapper);
+
+    assertInstanceOf(CsvRowWriter.class, writer);
+    assertEquals("id,name,description\n", out.toString());
+  }
+
+  @Test
+  public void ndjson_is_one_object_per_line() throws Exception {
+    StringWriter out = new StringWriter();
+    RowWriter<Restaurant> writer = ExportFormat.NDJSON.open(out, Restaurant.class, mapper);
+
+    writer.write(Restaurant.builder().id(1L).name("Taco Bell").description("Mexican").build());
+    writer.write(Restaurant.builder().id(2L).name("Freebirds").build());
+
+    assertEquals(
+        "{\"id\":1,\"name\":\"Taco Bell\",\"description\":\"Mexican\"}\n"
+            + "{\"id\":2,\"name\":\"Freebirds\",\"description\":null}\n",
+        out.toString());
+  }
+}
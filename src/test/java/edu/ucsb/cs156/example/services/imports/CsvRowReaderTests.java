@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class CsvRowReaderTests {
+
+  private static final List<String> REQUIRED = List.of("name", "description");
+
+  @Test
+  public void rows_are_read_by_header_name_with_their_line_numbers() throws Exception {
+    String csv =
+        "\uFEFFname, description\n"
+            + "Chipotle,Mexican\n"
+            + "\n"
+            + "\"Panda, Express\",\"Chinese\nand more\"\n"
+            + "Blaze,\"Pizza \"\"fast\"\"\"\n";
+    try (CsvRowReader reader = new CsvRowReader(new StringReader(csv), REQUIRED)) {
+      ImportRow chipotle = reader.next();
+      assertEquals(2, chipotle.getLine());
+      assertEquals(Map.of("name", "Chipotle", "description", "Mexican"), chipotle.getFields());
+      assertNull(chipotle.getError());
+
+      ImportRow panda = reader.next();
+      assertEquals(5, panda.getLine());
+      assertEquals(
+          Map.of("name", "Panda, Express", "description", "Chinese\nand more"), panda.getFields());
+
+      ImportRow blaze = reader.next();
+      assertEquals(6, blaze.getLine());
+      assertEquals(Map.of("name", "Blaze", "description", "Pizza \"fast\""), blaze.getFields());
+
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void rows_with_the_wrong_number_of_fields_cannot_be_read() throws Exception {
+    String csv = "name,description\nChipotle\nBlaze,Pizza,Fast\nTaco Bell,Mexican\n";
+    try (CsvRowReader reader = new CsvRowReader(new StringReader(csv), REQUIRED)) {
+      ImportRow tooFew = reader.next();
+      assertEquals(2, tooFew.getLine());
+      assertNull(tooFew.getFields());
+      assertEquals("1 fields, but the header has 2", tooFew.getError());
+      assertEquals("3 fields, but the header has 2", reader.next().getError());
+      assertEquals("Taco Bell", reader.next().getFields().get("name"));
+    }
+  }
+
+  @Test
+  public void header_must_name_every_required_field() {
+    InvalidImportException e =
+        assertThrows(
+            InvalidImportException.class,
+            () -> new CsvRowReader(new StringReader("name,desc\nChipotle,Mexican\n"), REQUIRED));
+    assertEquals("The header has no description field", e.getMessage());
+  }
+
+  @Test
+  public void empty_file_has_no_rows() throws Exception {
+    try (CsvRowReader reader = new CsvRowReader(new StringReader(""), REQUIRED)) {
+      assertNull(reader.next());
+    }
+  }
+}
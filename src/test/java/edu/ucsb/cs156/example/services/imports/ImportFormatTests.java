@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+
+public class ImportFormatTests {
+
+  @Test
+  public void format_asked_for_wins_over_the_file_name() {
+    assertEquals(ImportFormat.NDJSON, ImportFormat.of("ndjson", "restaurants.csv"));
+    assertEquals(ImportFormat.CSV, ImportFormat.of("CSV", "restaurants.ndjson"));
+  }
+
+  @Test
+  public void format_defaults_to_what_the_file_name_says() {
+    assertEquals(ImportFormat.NDJSON, ImportFormat.of(null, "restaurants.NDJSON"));
+    assertEquals(ImportFormat.NDJSON, ImportFormat.of(null, "restaurants.jsonl"));
+    assertEquals(ImportFormat.CSV, ImportFormat.of(null, "restaurants.csv"));
+    assertEquals(ImportFormat.CSV, ImportFormat.of(null, null));
+  }
+
+  @Test
+  public void unknown_formats_are_rejected() {
+    InvalidImportException e =
+        assertThrows(InvalidImportException.class, () -> ImportFormat.of("xml", "a.xml"));
+    assertEquals("Unknown format xml; expected csv or ndjson", e.getMessage());
+  }
+
+  @Test
+  public void each_format_has_its_own_reader() throws Exception {
+    assertInstanceOf(
+        CsvRowReader.class,
+        ImportFormat.CSV.open(new StringReader("name,description\n"), ImportTarget.RESTAURANTS));
+    assertInstanceOf(
+        NdjsonRowReader.class,
+        ImportFormat.NDJSON.open(new StringReader(""), ImportTarget.RESTAURANTS));
+  }
+}
@@ -0,0 +1,416 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.InvalidImportException;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.services.jobs.DatabaseJobQueue;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobPriority;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.services.jobs.LogFlushPolicy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.multipart.MultipartFile;
+
+public class ImportServiceTests {
+
+  private static final String H2_IDS = "SELECT NEXT VALUE FOR %s FROM SYSTEM_RANGE(1, ?)";
+
+  @Mock private JobService jobService;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private TransactionOperations transactionOperations;
+
+  @Mock private JobContext ctx;
+
+  @InjectMocks private ImportService importService;
+
+  private final Job job = Job.builder().id(17L).status("running").build();
+
+  private final List<Path> files = new ArrayList<>();
+
+  private final List<List<Object[]>> batches = new ArrayList<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(importService, "datasourceUrl", "jdbc:h2:mem:test");
+    ReflectionTestUtils.setField(importService, "batchSize", 2);
+    doAnswer(
+            inv -> {
+              ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+              return null;
+            })
+        .when(transactionOperations)
+        .executeWithoutResult(any());
+    doAnswer(
+            inv -> {
+              batches.add(new ArrayList<>(inv.<List<Object[]>>getArgument(1)));
+              return new int[0];
+            })
+        .when(jdbcTemplate)
+        .batchUpdate(anyString(), any(List.class));
+  }
+
+  private MultipartFile upload(String filename, String content) throws IOException {
+    MultipartFile upload = mock(MultipartFile.class);
+    when(upload.getOriginalFilename()).thenReturn(filename);
+    when(upload.isEmpty()).thenReturn(content.isEmpty());
+    doAnswer(
+            inv -> {
+              Path file = inv.getArgument(0);
+              Files.writeString(file, content);
+              files.add(file);
+              return null;
+            })
+        .when(upload)
+        .transferTo(any(Path.class));
+    return upload;
+  }
+
+  private JobContextConsumer start(ImportTarget target, String filename, String content)
+      throws IOException {
+    List<JobContextConsumer> submitted = new ArrayList<>();
+    when(jobService.runAsJob(any()))
+        .thenAnswer(
+            inv -> {
+              submitted.add(inv.getArgument(0));
+              return job;
+            });
+    assertSame(job, importService.startImport(target, upload(filename, content), null));
+    return submitted.get(0);
+  }
+
+  @Test
+  public void upload_is_imported_by_a_batch_job_that_only_runs_on_this_node() throws Exception {
+    JobContextConsumer importJob = start(ImportTarget.RESTAURANTS, "r.csv", "name,description\n");
+
+    assertInstanceOf(ImportService.ImportJob.class, importJob);
+    assertEquals(LogFlushPolicy.BUFFERED, importJob.logFlushPolicy());
+    assertEquals(JobPriority.BATCH, importJob.priority());
+    assertFalse(new DatabaseJobQueue().canEnqueue(importJob));
+    assertTrue(files.get(0).getFileName().toString().endsWith(".csv"));
+    assertTrue(Files.exists(files.get(0)));
+  }
+
+  @Test
+  public void empty_uploads_are_rejected() throws Exception {
+    InvalidImportException e =
+        assertThrows(
+            InvalidImportException.class,
+            () -> importService.startImport(ImportTarget.RESTAURANTS, upload("r.csv", ""), null));
+
+    assertEquals("The file is empty", e.getMessage());
+    verify(jobService, never()).runAsJob(any());
+  }
+
+  @Test
+  public void upload_is_deleted_when_the_job_cannot_be_submitted() throws Exception {
+    when(jobService.runAsJob(any())).thenThrow(new JobQueueFullException("ImportJob", 1000));
+
+    assertThrows(
+        JobQueueFullException.class,
+        () ->
+            importService.startImport(
+                ImportTarget.RESTAURANTS, upload("r.ndjson", "{}"), "ndjson"));
+
+    assertTrue(files.get(0).getFileName().toString().endsWith(".ndjson"));
+    assertFalse(Files.exists(files.get(0)));
+  }
+
+  @Test
+  public void upload_is_deleted_when_it_cannot_be_saved() throws Exception {
+    MultipartFile upload = upload("r.csv", "name,description\n");
+    List<Path> saved = new ArrayList<>();
+    doAnswer(
+            inv -> {
+              saved.add(inv.getArgument(0));
+              throw new IOException("disk full");
+            })
+        .when(upload)
+        .transferTo(any(Path.class));
+
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () -> importService.startImport(ImportTarget.RESTAURANTS, upload, null));
+
+    assertEquals("disk full", e.getMessage());
+    assertFalse(Files.exists(saved.get(0)));
+  }
+
+  @Test
+  public void rows_are_inserted_in_batches_with_ids_reserved_from_the_sequence() throws Exception {
+    // The first value of a new sequence is skipped, as Hibernate would use it
+    when(jdbcTemplate.queryForList(H2_IDS.formatted("restaurants_seq"), Long.class, 1))
+        .thenReturn(List.of(1L), List.of(51L), List.of(101L));
+    JobContextConsumer importJob =
+        start(
+            ImportTarget.RESTAURANTS,
+            "r.csv",
+            "name,description\nChipotle,Mexican\nBlaze,Pizza\nPanda Express,Chinese\n");
+
+    importJob.accept(ctx);
+
+    String sql = "INSERT INTO RESTAURANTS (ID, NAME, DESCRIPTION) VALUES (?, ?, ?)";
+    verify(jdbcTemplate, times(2)).batchUpdate(eq(sql), any(List.class));
+    assertEquals(2, batches.size());
+    assertArrayEquals(new Object[] {2L, "Chipotle", "Mexican"}, batches.get(0).get(0));
+    assertArrayEquals(new Object[] {3L, "Blaze", "Pizza"}, batches.get(0).get(1));
+    assertArrayEquals(new Object[] {52L, "Panda Express", "Chinese"}, batches.get(1).get(0));
+    verify(ctx).log("Importing r.csv into RESTAURANTS as CSV");
+    verify(ctx).setPhase("importing");
+    verify(ctx).incrementCounter("imported", 2);
+    verify(ctx).incrementCounter("imported", 1);
+    verify(ctx).log("Imported 3 rows; left out 0");
+    assertTrue(Files.exists(files.get(0)));
+
+    importJob.onFinished();
+    assertFalse(Files.exists(files.get(0)));
+  }
+
+  @Test
+  public void rows_that_cannot_be_read_or_checked_are_logged_and_left_out() throws Exception {
+    JobContextConsumer importJob =
+        start(
+            ImportTarget.UCSB_ORGANIZATIONS,
+            "orgs.ndjson",
+            """
+            {"orgCode":"ZPR","orgTranslationShort":"ZETA","orgTranslation":"ZETA PHI RHO"}
+            {"orgCode":
+            {"orgCode":"SKY","orgTranslationShort":"SKY"}
+            {"orgCode":"OSLI","orgTranslationShort":"OSLI","orgTranslation":"OSLI","inactive":1}
+            """);
+
+    importJob.accept(ctx);
+
+    verify(ctx).log("Line 2: not valid JSON");
+    verify(ctx).log("Line 3: missing orgTranslation");
+    verify(ctx).log("Line 4: inactive is not true or false: 1");
+    verify(ctx, times(3)).incrementCounter("rejected", 1);
+    verify(ctx).log("Imported 1 rows; left out 3");
+    assertEquals(1, batches.size());
+    assertArrayEquals(new Object[] {"ZPR", "ZETA", "ZETA PHI RHO", false}, batches.get(0).get(0));
+    verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class), anyInt());
+  }
+
+  @Test
+  public void batch_the_database_rejects_is_inserted_a_row_at_a_time() throws Exception {
+    String sql =
+        "INSERT INTO UCSBORGANIZATION (ORG_CODE, ORG_TRANSLATION_SHORT, ORG_TRANSLATION, INACTIVE)"
+            + " VALUES (?, ?, ?, ?)";
+    doThrow(new DuplicateKeyException("duplicate"))
+        .when(jdbcTemplate)
+        .batchUpdate(eq(sql), any(List.class));
+    doAnswer(
+            inv -> {
+              Object[] row = (Object[]) inv.getRawArguments()[1];
+              if (row[0].equals("ZPR")) {
+                throw new DataIntegrityViolationException(
+                    "insert failed",
+                    new SQLException("Unique index or primary key violation\nINSERT INTO ..."));
+              }
+              if (row[0].equals("SKY")) throw new DataIntegrityViolationException("");
+              return 1;
+            })
+        .when(jdbcTemplate)
+        .update(eq(sql), any(Object[].class));
+    JobContextConsumer importJob =
+        start(
+            ImportTarget.UCSB_ORGANIZATIONS,
+            "orgs.csv",
+            "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+                + "ZPR,ZETA,ZETA PHI RHO,false\n"
+                + "OSLI,OSLI,OSLI,true\n"
+                + "SKY,SKY,SKY,false\n");
+
+    importJob.accept(ctx);
+
+    verify(ctx).log("Line 2: Unique index or primary key violation");
+    verify(ctx).log("Line 4: rejected by the database");
+    verify(ctx).incrementCounter("imported", 1);
+    verify(ctx, times(2)).incrementCounter("rejected", 1);
+    verify(ctx).log("Imported 1 rows; left out 2");
+  }
+
+  @Test
+  public void only_the_first_rejected_rows_are_logged() throws Exception {
+    StringBuilder csv = new StringBuilder("name,description\n");
+    for (int i = 0; i < ImportService.MAX_LOGGED_REJECTIONS + 1; i++) csv.append("Nameless\n");
+    JobContextConsumer importJob = start(ImportTarget.RESTAURANTS, "r.csv", csv.toString());
+
+    importJob.accept(ctx);
+
+    verify(ctx, times(ImportService.MAX_LOGGED_REJECTIONS + 1)).incrementCounter("rejected", 1);
+    verify(ctx).log("Line 1001: 1 fields, but the header has 2");
+    verify(ctx).log("Further rows left out are counted but not logged");
+    verify(ctx, never()).log("Line 1002: 1 fields, but the header has 2");
+    verify(ctx).log("Imported 0 rows; left out 1001");
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(List.class));
+  }
+
+  @Test
+  public void cancelled_import_stops_and_its_file_is_deleted_when_it_finishes() throws Exception {
+    doThrow(new JobCancelledException(17L, "cancelled")).when(ctx).checkCancelled();
+    JobContextConsumer importJob =
+        start(ImportTarget.RESTAURANTS, "r.csv", "name,description\nChipotle,Mexican\n");
+
+    assertThrows(JobCancelledException.class, () -> importJob.accept(ctx));
+
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(List.class));
+    importJob.onFinished();
+    assertFalse(Files.exists(files.get(0)));
+  }
+
+  @Test
+  public void upload_is_deleted_when_the_job_is_cancelled_before_it_starts() throws Exception {
+    JobContextConsumer importJob =
+        start(ImportTarget.RESTAURANTS, "r.csv", "name,description\nChipotle,Mexican\n");
+
+    // JobService never calls accept for a job cancelled while it waits, but still finishes it
+    importJob.onFinished();
+
+    assertFalse(Files.exists(files.get(0)));
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(List.class));
+  }
+
+  @Test
+  public void file_missing_a_required_column_fails_the_job_and_is_deleted() throws Exception {
+    JobContextConsumer importJob = start(ImportTarget.RESTAURANTS, "r.csv", "name\nChipotle\n");
+
+    InvalidImportException e =
+        assertThrows(InvalidImportException.class, () -> importJob.accept(ctx));
+
+    assertEquals("The header has no description field", e.getMessage());
+    importJob.onFinished();
+    assertFalse(Files.exists(files.get(0)));
+  }
+
+  private CopyIn postgres() throws SQLException {
+    ReflectionTestUtils.setField(importService, "datasourceUrl", "jdbc:postgresql://db/app");
+    Connection connection = mock(Connection.class);
+    PGConnection pgConnection = mock(PGConnection.class);
+    CopyManager copyManager = mock(CopyManager.class);
+    CopyIn copyIn = mock(CopyIn.class);
+    when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+    when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+    when(copyManager.copyIn(ImportTarget.RESTAURANTS.copySql())).thenReturn(copyIn);
+    when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+        .thenAnswer(
+            inv -> {
+              try {
+                return inv.<ConnectionCallback<?>>getArgument(0).doInConnection(connection);
+              } catch (SQLException e) {
+                throw new UncategorizedSQLException("copy", null, e);
+              }
+            });
+    when(jdbcTemplate.queryForList(
+            "SELECT nextval('restaurants_seq') FROM generate_series(1, ?)", Long.class, 1))
+        .thenReturn(List.of(151L));
+    return copyIn;
+  }
+
+  @Test
+  public void rows_are_copied_on_postgres() throws Exception {
+    CopyIn copyIn = postgres();
+    List<String> copied = new ArrayList<>();
+    doAnswer(
+            inv -> {
+              copied.add(
+                  new String(
+                      inv.<byte[]>getArgument(0),
+                      inv.<Integer>getArgument(1),
+                      inv.<Integer>getArgument(2),
+                      StandardCharsets.UTF_8));
+              return null;
+            })
+        .when(copyIn)
+        .writeToCopy(any(byte[].class), anyInt(), anyInt());
+    when(copyIn.endCopy()).thenReturn(2L);
+    JobContextConsumer importJob =
+        start(
+            ImportTarget.RESTAURANTS,
+            "r.csv",
+            "name,description\n\"Chipotle, \"\"Isla Vista\"\"\",Mexican\nBlaze,Pizza\n");
+
+    importJob.accept(ctx);
+
+    assertEquals(
+        List.of(
+            "\"102\",\"Chipotle, \"\"Isla Vista\"\"\",\"Mexican\"\n",
+            "\"103\",\"Blaze\",\"Pizza\"\n"),
+        copied);
+    verify(copyIn, never()).cancelCopy();
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(List.class));
+    verify(ctx).incrementCounter("imported", 2);
+  }
+
+  @Test
+  public void failed_copy_is_cancelled_and_its_rows_inserted_one_at_a_time() throws Exception {
+    CopyIn copyIn = postgres();
+    doThrow(new SQLException("value too long")).when(copyIn).writeToCopy(any(), anyInt(), anyInt());
+    when(copyIn.isActive()).thenReturn(true);
+    JobContextConsumer importJob =
+        start(ImportTarget.RESTAURANTS, "r.csv", "name,description\nChipotle,Mexican\n");
+
+    importJob.accept(ctx);
+
+    verify(copyIn).cancelCopy();
+    verify(jdbcTemplate)
+        .update(ImportTarget.RESTAURANTS.insertSql(), new Object[] {102L, "Chipotle", "Mexican"});
+    verify(ctx).incrementCounter("imported", 1);
+  }
+
+  @Test
+  public void csv_lines_for_copy_tell_nulls_from_empty_text() {
+    assertEquals(
+        "\"1\",,\"\",\"say \"\"hi\"\"\"\n",
+        ImportService.csvLine(new Object[] {1L, null, "", "say \"hi\""}));
+  }
+}
@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ImportTargetTests {
+
+  private static Map<String, String> article() {
+    Map<String, String> fields = new HashMap<>();
+    fields.put("title", "Hello");
+    fields.put("url", "https://example.org");
+    fields.put("explanation", "A greeting");
+    fields.put("email", "a@ucsb.edu");
+    fields.put("dateAdded", "2024-01-31T12:00:00");
+    return fields;
+  }
+
+  @Test
+  public void generated_ids_come_first_and_are_left_for_the_writer() {
+    Map<String, String> fields = article();
+    fields.put("id", "7");
+    fields.put("comment", "ignored");
+
+    assertArrayEquals(
+        new Object[] {
+          null,
+          "Hello",
+          "https://example.org",
+          "A greeting",
+          "a@ucsb.edu",
+          LocalDateTime.of(2024, 1, 31, 12, 0)
+        },
+        ImportTarget.ARTICLES.parse(fields));
+    assertEquals(
+        List.of("ID", "TITLE", "URL", "EXPLANATION", "EMAIL", "DATE_ADDED"),
+        ImportTarget.ARTICLES.columnNames());
+  }
+
+  @Test
+  public void ids_that_are_fields_are_imported_like_any_other_field() {
+    assertArrayEquals(
+        new Object[] {"ZPR", "ZETA PHI RHO", "ZETA PHI RHO CHAPTER", true},
+        ImportTarget.UCSB_ORGANIZATIONS.parse(
+            Map.of(
+                "orgCode", "ZPR",
+                "orgTranslationShort", "ZETA PHI RHO",
+                "orgTranslation", "ZETA PHI RHO CHAPTER",
+                "inactive", "TRUE")));
+    assertEquals(
+        List.of("orgCode", "orgTranslationShort", "orgTranslation"),
+        ImportTarget.UCSB_ORGANIZATIONS.requiredFields());
+  }
+
+  @Test
+  public void a_missing_or_empty_flag_is_false() {
+    Map<String, String> fields =
+        new HashMap<>(Map.of("orgCode", "ZPR", "orgTranslationShort", "Z", "orgTranslation", "Z"));
+    assertEquals(false, ImportTarget.UCSB_ORGANIZATIONS.parse(fields)[3]);
+    fields.put("inactive", "");
+    assertEquals(false, ImportTarget.UCSB_ORGANIZATIONS.parse(fields)[3]);
+    fields.put("inactive", "false");
+    assertEquals(false, ImportTarget.UCSB_ORGANIZATIONS.parse(fields)[3]);
+  }
+
+  @Test
+  public void a_missing_optional_field_is_null() {
+    assertNull(new ImportTarget.Column("note", "NOTE", ImportTarget.Type.TEXT, false).parse(null));
+  }
+
+  @Test
+  public void rows_missing_a_required_field_are_rejected() {
+    IllegalArgumentException missing =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ImportTarget.RESTAURANTS.parse(Map.of("name", "Chipotle")));
+    assertEquals("missing description", missing.getMessage());
+
+    IllegalArgumentException empty =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ImportTarget.RESTAURANTS.parse(Map.of("name", "", "description", "Mexican")));
+    assertEquals("missing name", empty.getMessage());
+  }
+
+  @Test
+  public void fields_that_cannot_be_converted_are_rejected() {
+    Map<String, String> article = article();
+    article.put("dateAdded", "yesterday");
+    IllegalArgumentException date =
+        assertThrows(IllegalArgumentException.class, () -> ImportTarget.ARTICLES.parse(article));
+    assertEquals(
+        "dateAdded is not a date and time like 2024-01-31T12:00:00: yesterday", date.getMessage());
+
+    IllegalArgumentException flag =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                ImportTarget.UCSB_ORGANIZATIONS.parse(
+                    Map.of(
+                        "orgCode", "ZPR",
+                        "orgTranslationShort", "Z",
+                        "orgTranslation", "Z",
+                        "inactive", "maybe")));
+    assertEquals("inactive is not true or false: maybe", flag.getMessage());
+
+    IllegalArgumentException tooLong =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                ImportTarget.RESTAURANTS.parse(
+                    Map.of("name", "x".repeat(256), "description", "Long")));
+    assertEquals("name is longer than 255 characters", tooLong.getMessage());
+    assertEquals(
+        "x".repeat(255),
+        ImportTarget.RESTAURANTS.parse(Map.of("name", "x".repeat(255), "description", "Long"))[1]);
+  }
+
+  @Test
+  public void statements_name_the_columns_in_order() {
+    assertEquals(
+        "INSERT INTO UCSBDININGCOMMONSMENUITEM (ID, DINING_COMMONS_CODE, NAME, STATION)"
+            + " VALUES (?, ?, ?, ?)",
+        ImportTarget.UCSB_DINING_COMMONS_MENU_ITEMS.insertSql());
+    assertEquals(
+        "COPY UCSBORGANIZATION (ORG_CODE, ORG_TRANSLATION_SHORT, ORG_TRANSLATION, INACTIVE)"
+            + " FROM STDIN WITH (FORMAT csv)",
+        ImportTarget.UCSB_ORGANIZATIONS.copySql());
+    assertEquals("restaurants_seq", ImportTarget.RESTAURANTS.getIdSequence());
+  }
+}
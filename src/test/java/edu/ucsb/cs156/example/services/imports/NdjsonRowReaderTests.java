@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class NdjsonRowReaderTests {
+
+  @Test
+  public void each_line_is_a_row() throws Exception {
+    String ndjson =
+        "{\"name\":\"Chipotle\",\"description\":\"Mexican\"}\n"
+            + "\n"
+            + "{\"name\":\"Blaze\",\"stars\":4,\"open\":true,\"owner\":null,\"tags\":[\"pizza\"]}\n";
+    try (NdjsonRowReader reader = new NdjsonRowReader(new StringReader(ndjson))) {
+      ImportRow chipotle = reader.next();
+      assertEquals(1, chipotle.getLine());
+      assertEquals(Map.of("name", "Chipotle", "description", "Mexican"), chipotle.getFields());
+      assertNull(chipotle.getError());
+
+      ImportRow blaze = reader.next();
+      assertEquals(3, blaze.getLine());
+      Map<String, String> fields = new HashMap<>();
+      fields.put("name", "Blaze");
+      fields.put("stars", "4");
+      fields.put("open", "true");
+      fields.put("owner", null);
+      fields.put("tags", "[\"pizza\"]");
+      assertEquals(fields, blaze.getFields());
+
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void lines_that_are_not_json_objects_cannot_be_read() throws Exception {
+    String ndjson = "{\"name\":\n[1, 2]\n{\"name\":\"Blaze\"}";
+    try (NdjsonRowReader reader = new NdjsonRowReader(new StringReader(ndjson))) {
+      ImportRow broken = reader.next();
+      assertEquals(1, broken.getLine());
+      assertNull(broken.getFields());
+      assertEquals("not valid JSON", broken.getError());
+
+      ImportRow array = reader.next();
+      assertEquals(2, array.getLine());
+      assertEquals("not a JSON object", array.getError());
+
+      assertEquals(Map.of("name", "Blaze"), reader.next().getFields());
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.SyntheticState;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.implementation.StubMethod;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class DatabaseJobQueueTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private TransactionOperations transactionOperations;
+
+  @InjectMocks private DatabaseJobQueue databaseJobQueue;
+
+  static class SelfReferencingJob implements JobContextConsumer {
+    private SelfReferencingJob self = this;
+
+    @Override
+    public void accept(JobContext c) {}
+  }
+
+  class InnerJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext c) {}
+  }
+
+  static class InMemoryJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext c) {}
+
+    @Override
+    public boolean enqueueable() {
+      return false;
+    }
+  }
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(databaseJobQueue, "datasourceUrl", "jdbc:h2:mem:test");
+    ReflectionTestUtils.setField(databaseJobQueue, "leaseSeconds", 60L);
+  }
+
+  @Test
+  public void only_jobs_that_can_be_rebuilt_from_their_fields_can_be_enqueued() {
+    class LocalJob implements JobContextConsumer {
+      @Override
+      public void accept(JobContext c) {}
+    }
+
+    assertTrue(databaseJobQueue.canEnqueue(new TestJob()));
+    assertTrue(databaseJobQueue.canEnqueue(new SelfReferencingJob()));
+    assertFalse(databaseJobQueue.canEnqueue(ctx -> {}));
+    assertFalse(databaseJobQueue.canEnqueue(new InnerJob()));
+    assertFalse(databaseJobQueue.canEnqueue(new LocalJob()));
+    assertFalse(
+        databaseJobQueue.canEnqueue(
+            JobPipeline.source("pages", (c, out) -> out.emit(1)).sink("write", 1, (c, p) -> {})));
+    assertFalse(
+        databaseJobQueue.canEnqueue(
+            new JobContextConsumer() {
+              @Override
+              public void accept(JobContext c) {}
+            }));
+  }
+
+  @Test
+  public void jobs_of_a_generated_class_cannot_be_enqueued() throws Exception {
+    // e.g. a class made at runtime by a bytecode library, which another node would not have
+    Class<? extends JobContextConsumer> generated =
+        new ByteBuddy()
+            .subclass(JobContextConsumer.class)
+            .modifiers(Visibility.PUBLIC, SyntheticState.SYNTHETIC)
+            .method(ElementMatchers.named("accept"))
+            .intercept(StubMethod.INSTANCE)
+            .make()
+            .load(getClass().getClassLoader())
+            .getLoaded();
+
+    assertFalse(databaseJobQueue.canEnqueue(generated.getDeclaredConstructor().newInstance()));
+  }
+
+  @Test
+  public void enqueue_saves_queued_job_with_its_spec_and_decode_rebuilds_it() throws Exception {
+    Job job = Job.builder().status("running").build();
+
+    Job result = databaseJobQueue.enqueue(job, TestJob.builder().fail(true).sleepMs(5).build());
+
+    assertEquals("queued", result.getStatus());
+    assertEquals("edu.ucsb.cs156.example.jobs.TestJob", result.getJobType());
+    assertEquals("{\"fail\":true,\"sleepMs\":5}", result.getJobSpec());
+    verify(jobsRepository, times(1)).save(job);
+
+    JobContextConsumer decoded = databaseJobQueue.decode(result);
+    assertEquals(TestJob.class, decoded.getClass());
+    assertEquals(true, ReflectionTestUtils.getField(decoded, "fail"));
+    assertEquals(5, ReflectionTestUtils.getField(decoded, "sleepMs"));
+  }
+
+  @Test
+  public void enqueueAll_saves_every_job_as_queued_in_one_call() {
+    Job first = Job.builder().status("running").build();
+    Job second = Job.builder().status("running").build();
+
+    List<Job> result =
+        databaseJobQueue.enqueueAll(
+            List.of(first, second),
+            List.of(
+                TestJob.builder().fail(false).sleepMs(1).build(),
+                TestJob.builder().fail(true).sleepMs(2).build()));
+
+    assertEquals(List.of(first, second), result);
+    assertEquals("queued", first.getStatus());
+    assertEquals("{\"fail\":false,\"sleepMs\":1}", first.getJobSpec());
+    assertEquals("queued", second.getStatus());
+    assertEquals("{\"fail\":true,\"sleepMs\":2}", second.getJobSpec());
+    verify(jobsRepository, times(1)).saveAll(List.of(first, second));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  public void enqueueAll_saves_nothing_if_any_job_cannot_be_serialized() {
+    List<Job> jobs = List.of(Job.builder().build(), Job.builder().build());
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            databaseJobQueue.enqueueAll(
+                jobs,
+                List.of(
+                    TestJob.builder().fail(false).sleepMs(1).build(), new SelfReferencingJob())));
+
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  @Test
+  public void enqueue_rejects_jobs_that_cannot_be_serialized() {
+    Job job = Job.builder().build();
+
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> databaseJobQueue.enqueue(job, new SelfReferencingJob()));
+
+    assertTrue(e.getMessage().startsWith("Job cannot be serialized: "));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  public void decode_rejects_classes_that_are_not_jobs() {
+    Job job = Job.builder().jobType("java.lang.String").jobSpec("\"x\"").build();
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> databaseJobQueue.decode(job));
+
+    assertEquals("java.lang.String is not a JobContextConsumer", e.getMessage());
+  }
+
+  @Test
+  public void decode_rejects_jobs_that_could_not_have_been_queued() {
+    IllegalArgumentException inner =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> databaseJobQueue.decode(InnerJob.class.getName(), "{}"));
+    IllegalArgumentException inMemory =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> databaseJobQueue.decode(InMemoryJob.class.getName(), "{}"));
+
+    assertEquals(
+        InnerJob.class.getName() + " cannot be rebuilt from its fields", inner.getMessage());
+    assertEquals(InMemoryJob.class.getName() + " cannot be queued", inMemory.getMessage());
+  }
+
+  @Test
+  public void claim_with_no_room_does_nothing() {
+    assertEquals(List.of(), databaseJobQueue.claim(0));
+    verify(jobsRepository, never()).findClaimableJobIds(any(), any());
+  }
+
+  @Test
+  public void claim_without_skip_locked_leases_each_row_with_a_conditional_update() {
+    Job job1 = Job.builder().id(1L).build();
+    when(jobsRepository.findClaimableJobIds(any(), eq(PageRequest.of(0, 5))))
+        .thenReturn(List.of(1L, 2L));
+    when(jobsRepository.leaseJobIfClaimable(eq(1L), any(), any(), any())).thenReturn(1);
+    when(jobsRepository.leaseJobIfClaimable(eq(2L), any(), any(), any())).thenReturn(0);
+    when(jobsRepository.findAllById(List.of(1L))).thenReturn(List.of(job1));
+
+    List<Job> claimed = databaseJobQueue.claim(5);
+
+    assertEquals(List.of(job1), claimed);
+    verify(jobsRepository, times(1))
+        .leaseJobIfClaimable(
+            eq(1L), eq(databaseJobQueue.getWorkerId()), any(ZonedDateTime.class), any());
+    verify(transactionOperations, never()).execute(any());
+  }
+
+  @Test
+  public void claim_returns_nothing_when_no_rows_are_claimable() {
+    when(jobsRepository.findClaimableJobIds(any(), any())).thenReturn(List.of());
+
+    assertEquals(List.of(), databaseJobQueue.claim(5));
+    verify(jobsRepository, never()).findAllById(any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void claim_on_postgres_locks_rows_with_skip_locked_in_one_transaction() {
+    ReflectionTestUtils.setField(
+        databaseJobQueue, "datasourceUrl", "jdbc:postgresql://localhost/db");
+    when(transactionOperations.execute(any()))
+        .thenAnswer(
+            inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+    Job job3 = Job.builder().id(3L).build();
+    when(jobsRepository.lockClaimableJobIds(any(), eq(4))).thenReturn(List.of(3L));
+    when(jobsRepository.findAllById(List.of(3L))).thenReturn(List.of(job3));
+
+    List<Job> claimed = databaseJobQueue.claim(4);
+
+    assertEquals(List.of(job3), claimed);
+    verify(jobsRepository, times(1))
+        .leaseJobs(eq(List.of(3L)), eq(databaseJobQueue.getWorkerId()), any(), any());
+    verify(jobsRepository, never()).leaseJobIfClaimable(anyLong(), any(), any(), any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void claim_on_postgres_with_nothing_to_lock_leases_nothing() {
+    ReflectionTestUtils.setField(
+        databaseJobQueue, "datasourceUrl", "jdbc:postgresql://localhost/db");
+    when(transactionOperations.execute(any()))
+        .thenAnswer(
+            inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+    when(jobsRepository.lockClaimableJobIds(any(), anyInt())).thenReturn(List.of());
+
+    assertEquals(List.of(), databaseJobQueue.claim(4));
+    verify(jobsRepository, never()).leaseJobs(any(), any(), any(), any());
+  }
+
+  @Test
+  public void heartbeat_renews_leases_of_running_jobs_and_reports_cancelled_ones() {
+    assertEquals(List.of(), databaseJobQueue.heartbeat(Set.of()));
+    verify(jobsRepository, never()).renewLeases(any(), any(), any(), any());
+
+    when(jobsRepository.findCancelRequestedIds(Set.of(7L))).thenReturn(List.of(7L));
+    assertEquals(List.of(7L), databaseJobQueue.heartbeat(Set.of(7L)));
+    verify(jobsRepository, times(1))
+        .renewLeases(eq(Set.of(7L)), eq(databaseJobQueue.getWorkerId()), any(), any());
+  }
+
+  @Test
+  public void release_puts_job_back_on_the_queue() {
+    databaseJobQueue.release(8L);
+    verify(jobsRepository, times(1)).releaseLease(8L, databaseJobQueue.getWorkerId());
+  }
+}
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class FairJobQueueTests {
+
+  private final Map<String, Integer> ownerWeights = Map.of("heavy", 3);
+
+  private final FairJobQueue<String> queue =
+      new FairJobQueue<>(
+          priority -> Map.of("interactive", 8, "normal", 4, "batch", 1).get(priority.key()),
+          owner -> ownerWeights.getOrDefault(owner, 0));
+
+  private List<String> pollAll() {
+    List<String> order = new ArrayList<>();
+    String next;
+    while ((next = queue.poll(item -> true)) != null) order.add(next);
+    return order;
+  }
+
+  @Test
+  public void users_share_a_priority_class_equally() {
+    for (int i = 1; i <= 3; i++) queue.add(JobPriority.NORMAL, "a", "a" + i);
+    queue.add(JobPriority.NORMAL, "b", "b1");
+    queue.add(JobPriority.NORMAL, "c", "c1");
+
+    assertEquals(List.of("a1", "b1", "c1", "a2", "a3"), pollAll());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void user_weights_give_a_larger_share() {
+    for (int i = 1; i <= 4; i++) queue.add(JobPriority.NORMAL, "heavy", "h" + i);
+    for (int i = 1; i <= 2; i++) queue.add(JobPriority.NORMAL, "light", "l" + i);
+
+    assertEquals(List.of("h1", "l1", "h2", "h3", "h4", "l2"), pollAll());
+  }
+
+  @Test
+  public void idle_users_do_not_save_up_credit() {
+    for (int i = 1; i <= 4; i++) queue.add(JobPriority.NORMAL, "a", "a" + i);
+    assertEquals("a1", queue.poll(item -> true));
+    assertEquals("a2", queue.poll(item -> true));
+
+    // b arrives late, and takes turns with a instead of running all of its jobs first
+    queue.add(JobPriority.NORMAL, "b", "b1");
+    queue.add(JobPriority.NORMAL, "b", "b2");
+
+    assertEquals(List.of("b1", "a3", "b2", "a4"), pollAll());
+  }
+
+  @Test
+  public void priority_classes_share_by_weight() {
+    for (int i = 1; i <= 3; i++) queue.add(JobPriority.BATCH, "a", "b" + i);
+    for (int i = 1; i <= 3; i++) queue.add(JobPriority.NORMAL, "a", "n" + i);
+    for (int i = 1; i <= 3; i++) queue.add(JobPriority.INTERACTIVE, "a", "i" + i);
+
+    assertEquals(List.of("i1", "n1", "b1", "i2", "i3", "n2", "n3", "b2", "b3"), pollAll());
+  }
+
+  @Test
+  public void jobs_that_cannot_start_are_passed_over() {
+    queue.add(JobPriority.NORMAL, "a", "blocked");
+    queue.add(JobPriority.NORMAL, "a", "a2");
+    queue.add(JobPriority.BATCH, "b", "b1");
+
+    assertEquals("a2", queue.poll(item -> !item.equals("blocked")));
+    assertEquals("b1", queue.poll(item -> !item.equals("blocked")));
+    assertNull(queue.poll(item -> !item.equals("blocked")));
+    assertEquals(1, queue.size());
+    assertEquals(1, queue.size(JobPriority.NORMAL));
+    assertEquals(Map.of("a", 1), queue.sizeByOwner());
+  }
+
+  @Test
+  public void waiting_jobs_can_be_removed_without_starting() {
+    queue.add(JobPriority.NORMAL, "a", "a1");
+    queue.add(JobPriority.NORMAL, "a", "a2");
+    queue.add(JobPriority.BATCH, "b", "b1");
+
+    assertEquals("a2", queue.remove(item -> item.equals("a2")));
+    assertEquals("b1", queue.remove(item -> item.equals("b1")));
+    assertNull(queue.remove(item -> item.equals("b1")));
+    assertEquals(1, queue.size());
+    assertEquals(0, queue.size(JobPriority.BATCH));
+    assertEquals(Map.of("a", 1), queue.sizeByOwner());
+    assertEquals(List.of("a1"), pollAll());
+  }
+
+  @Test
+  public void sizes_are_counted_per_class_and_user() {
+    queue.add(JobPriority.BATCH, "a", "a1");
+    queue.add(JobPriority.NORMAL, "a", "a2");
+    queue.add(JobPriority.NORMAL, "b", "b1");
+
+    assertEquals(3, queue.size());
+    assertEquals(0, queue.size(JobPriority.INTERACTIVE));
+    assertEquals(2, queue.size(JobPriority.NORMAL));
+    assertEquals(1, queue.size(JobPriority.BATCH));
+    assertEquals(Map.of("a", 2, "b", 1), queue.sizeByOwner());
+  }
+}
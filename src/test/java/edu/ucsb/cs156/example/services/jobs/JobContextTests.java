@@ -1,13 +1,33 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 public class JobContextTests {
   @Test
-  public void when_jobs_repository_is_null_does_not_save() throws Exception {
+  public void when_chunk_repository_is_null_does_not_save() throws Exception {
 
     // arrange
 
@@ -18,6 +38,203 @@ public class JobContextTests {
     ctx.log("This is a log message");
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void log_appends_one_chunk_per_call_in_sequence() throws Exception {
+
+    // arrange
+
+    JobLogChunkRepository jobLogChunkRepository = mock(JobLogChunkRepository.class);
+    Job job = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(jobLogChunkRepository, job);
+
+    // act
+    ctx.log("first");
+    ctx.log("second");
+
+    // assert
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(7L).seq(0).text("first").build());
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(7L).seq(1).text("second").build());
+    assertNull(job.getLog());
+    assertEquals(7L, job.getId());
+  }
+
+  @Test
+  public void buffered_lines_are_written_as_one_chunk_when_line_limit_is_reached() {
+    JobLogChunkRepository jobLogChunkRepository = mock(JobLogChunkRepository.class);
+    Job job = Job.builder().id(3L).build();
+    LogFlushPolicy policy = LogFlushPolicy.builder().maxLines(3).build();
+    JobContext ctx = new JobContext(jobLogChunkRepository, job, policy, Clock.systemUTC());
+
+    ctx.log("a");
+    ctx.log("b");
+    verify(jobLogChunkRepository, never()).save(any());
+
+    ctx.log("c");
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(3L).seq(0).text("a\nb\nc").build());
+  }
+
+  @Test
+  public void buffered_lines_are_written_when_byte_limit_is_reached() {
+    JobLogChunkRepository jobLogChunkRepository = mock(JobLogChunkRepository.class);
+    Job job = Job.builder().id(3L).build();
+    LogFlushPolicy policy = LogFlushPolicy.builder().maxBytes(6).build();
+    JobContext ctx = new JobContext(jobLogChunkRepository, job, policy, Clock.systemUTC());
+
+    ctx.log("abc");
+    ctx.log("de");
+    verify(jobLogChunkRepository, never()).save(any());
+
+    ctx.log("f");
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(3L).seq(0).text("abc\nde\nf").build());
+
+    ctx.log(null);
+    ctx.flush();
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(3L).seq(1).text("null").build());
+  }
+
+  @Test
+  public void buffered_lines_are_written_once_the_interval_has_passed() {
+    JobLogChunkRepository jobLogChunkRepository = mock(JobLogChunkRepository.class);
+    Clock clock = mock(Clock.class);
+    Instant start = Instant.parse("2025-01-01T00:00:00Z");
+    when(clock.instant()).thenReturn(start);
+    Job job = Job.builder().id(5L).build();
+    LogFlushPolicy policy = LogFlushPolicy.builder().maxInterval(Duration.ofSeconds(2)).build();
+    JobContext ctx = new JobContext(jobLogChunkRepository, job, policy, clock);
+
+    ctx.log("first");
+    when(clock.instant()).thenReturn(start.plusMillis(1999));
+    ctx.flushIfDue();
+    verify(jobLogChunkRepository, never()).save(any());
+
+    when(clock.instant()).thenReturn(start.plusSeconds(2));
+    ctx.flushIfDue();
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(5L).seq(0).text("first").build());
+
+    ctx.log("second");
+    when(clock.instant()).thenReturn(start.plusSeconds(4));
+    ctx.log("third");
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(5L).seq(1).text("second\nthird").build());
+  }
+
+  @Test
+  public void flush_with_nothing_buffered_does_not_save() {
+    JobLogChunkRepository jobLogChunkRepository = mock(JobLogChunkRepository.class);
+    JobContext ctx =
+        new JobContext(
+            jobLogChunkRepository,
+            Job.builder().build(),
+            LogFlushPolicy.BUFFERED,
+            Clock.systemUTC());
+
+    ctx.flush();
+    ctx.flushIfDue();
+
+    verify(jobLogChunkRepository, never()).save(any());
+    assertEquals(Job.builder().build(), ctx.getJob());
+  }
+
+  @Test
+  public void cancel_stops_the_job_at_its_next_check() {
+    JobContext ctx = new JobContext(null, Job.builder().id(5L).build());
+    assertFalse(ctx.isCancelled());
+    ctx.checkCancelled();
+
+    ctx.cancel("timed_out");
+    ctx.cancel("cancelled");
+
+    assertTrue(ctx.isCancelled());
+    assertEquals("timed_out", ctx.getCancelReason());
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::checkCancelled);
+    assertEquals("Job 5 stopped: timed_out", e.getMessage());
+  }
+
+  @Test
+  public void cancel_interrupts_the_bound_thread_only() {
+    JobContext ctx = new JobContext(null, Job.builder().id(6L).build());
+
+    ctx.bindThread(Thread.currentThread());
+    ctx.cancel("cancelled");
+    assertTrue(Thread.interrupted());
+
+    ctx.bindThread(null);
+    ctx.cancel("cancelled");
+    assertFalse(Thread.interrupted());
+  }
+
+  @Test
+  public void progress_is_kept_in_memory_and_written_at_most_once_per_interval() {
+    Clock clock = mock(Clock.class);
+    Instant start = Instant.parse("2025-01-01T00:00:00Z");
+    when(clock.instant()).thenReturn(start);
+    Job job = Job.builder().id(7L).status("running").build();
+    List<JobProgress> written = new ArrayList<>();
+    JobContext ctx =
+        new JobContext(null, job, LogFlushPolicy.IMMEDIATE, clock, chunk -> {}, written::add);
+
+    ctx.setPhase("counting");
+    ctx.setProgressTotal(10);
+    ctx.advanceProgress(2);
+    ctx.incrementCounter("skipped", 1);
+    ctx.incrementCounter("skipped", 2);
+    ctx.flushIfDue();
+
+    assertEquals(List.of(), written);
+    JobProgress expected =
+        JobProgress.builder()
+            .jobId(7L)
+            .status("running")
+            .total(10L)
+            .done(2L)
+            .phase("counting")
+            .counters("{\"skipped\":3}")
+            .updatedAt(start.atZone(ZoneOffset.UTC))
+            .build();
+    assertEquals(expected, ctx.getProgress());
+    assertNull(job.getProgressDone());
+
+    when(clock.instant()).thenReturn(start.plusSeconds(1));
+    ctx.setProgressDone(5);
+
+    assertEquals(1, written.size());
+    assertEquals(5L, written.get(0).getDone());
+    assertEquals(5L, job.getProgressDone());
+    assertEquals(10L, job.getProgressTotal());
+    assertEquals("counting", job.getProgressPhase());
+    assertEquals("{\"skipped\":3}", job.getProgressCounters());
+    assertEquals(start.plusSeconds(1).atZone(ZoneOffset.UTC), job.getProgressUpdatedAt());
+
+    ctx.flushProgress();
+    ctx.flushIfDue();
+    assertEquals(1, written.size());
+
+    ctx.advanceProgress(1);
+    when(clock.instant()).thenReturn(start.plusSeconds(2));
+    ctx.flushIfDue();
+    assertEquals(2, written.size());
+    assertEquals(6L, written.get(1).getDone());
+  }
+
+  @Test
+  public void progress_without_a_listener_is_still_copied_onto_the_job() {
+    Job job = Job.builder().id(8L).status("running").build();
+    JobContext ctx = new JobContext(null, job, LogFlushPolicy.IMMEDIATE, Clock.systemUTC());
+
+    ctx.setProgressTotal(4);
+    ctx.setProgressDone(3);
+    ctx.flushProgress();
+
+    assertEquals(4L, job.getProgressTotal());
+    assertEquals(3L, job.getProgressDone());
   }
 }
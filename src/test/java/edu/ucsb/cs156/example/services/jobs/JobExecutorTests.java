@@ -0,0 +1,344 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class JobExecutorTests {
+
+  private static class LimitedJob {}
+
+  private static class UnlimitedJob {}
+
+  private JobExecutor jobExecutor;
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @BeforeEach
+  public void setup() {
+    jobExecutor = new JobExecutor();
+    jobExecutor.setMaxConcurrent(Map.of("LimitedJob", 2, "UnlimitedJob", 0));
+  }
+
+  @AfterEach
+  public void teardown() {
+    release.countDown();
+    jobExecutor.shutdown();
+  }
+
+  private Runnable blocking(AtomicInteger started) {
+    return () -> {
+      started.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  private Runnable blockingUninterruptibly(AtomicInteger started) {
+    return () -> {
+      started.incrementAndGet();
+      while (release.getCount() > 0) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          // keep holding the permit until released
+        }
+      }
+    };
+  }
+
+  @Test
+  public void limited_job_type_runs_at_most_its_permits_at_once() {
+    AtomicInteger started = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) jobExecutor.submit(LimitedJob.class, blocking(started));
+
+    await().atMost(5, SECONDS).until(() -> started.get() == 2);
+    assertEquals(2, jobExecutor.getActive());
+    assertEquals(1, jobExecutor.getQueued());
+    assertEquals(
+        Map.of(
+            "active",
+            2,
+            "queued",
+            1,
+            "queueCapacity",
+            1000,
+            "maxActive",
+            0,
+            "types",
+            Map.of("LimitedJob", Map.of("active", 2, "queued", 1, "maxConcurrent", 2)),
+            "queuedByPriority",
+            Map.of("interactive", 0, "normal", 1, "batch", 0),
+            "queuedByOwner",
+            Map.of(JobExecutor.SYSTEM_OWNER, 1)),
+        jobExecutor.stats());
+
+    release.countDown();
+    await().atMost(5, SECONDS).until(() -> started.get() == 3 && jobExecutor.getActive() == 0);
+    assertEquals(0, jobExecutor.getQueued());
+  }
+
+  @Test
+  public void unlimited_job_types_all_run_at_once() {
+    AtomicInteger started = new AtomicInteger();
+
+    for (int i = 0; i < 50; i++) jobExecutor.submit(UnlimitedJob.class, blocking(started));
+    for (int i = 0; i < 50; i++) jobExecutor.submit(String.class, blocking(started));
+
+    await().atMost(5, SECONDS).until(() -> started.get() == 100);
+    assertEquals(100, jobExecutor.getActive());
+    assertEquals(0, jobExecutor.getQueued());
+  }
+
+  @Test
+  public void metered_job_types_run_on_platform_threads() {
+    jobExecutor.setMeteredTypes(Set.of("LimitedJob"));
+    List<String> threads = new CopyOnWriteArrayList<>();
+
+    jobExecutor.submit(LimitedJob.class, () -> threads.add(Thread.currentThread().getName()));
+    await().atMost(5, SECONDS).until(() -> threads.size() == 1);
+    jobExecutor.submit(UnlimitedJob.class, () -> threads.add(Thread.currentThread().getName()));
+    await().atMost(5, SECONDS).until(() -> threads.size() == 2);
+
+    assertTrue(threads.get(0).startsWith("job-metered-"));
+    assertFalse(threads.get(1).startsWith("job-metered-"));
+  }
+
+  @Test
+  public void every_job_type_is_metered_with_a_wildcard() {
+    jobExecutor.setMeteredTypes(Set.of("*"));
+    List<String> threads = new CopyOnWriteArrayList<>();
+
+    jobExecutor.submit(String.class, () -> threads.add(Thread.currentThread().getName()));
+
+    await().atMost(5, SECONDS).until(() -> threads.size() == 1);
+    assertTrue(threads.get(0).startsWith("job-metered-"));
+  }
+
+  @Test
+  public void submissions_beyond_queue_capacity_are_rejected() {
+    AtomicInteger started = new AtomicInteger();
+    jobExecutor.setQueueCapacity(1);
+
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+    await().atMost(5, SECONDS).until(() -> started.get() == 1);
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+    await().atMost(5, SECONDS).until(() -> started.get() == 2);
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+
+    JobQueueFullException e =
+        assertThrows(
+            JobQueueFullException.class,
+            () -> jobExecutor.submit(LimitedJob.class, blocking(started)));
+    assertEquals(
+        "Job queue is full (1 jobs waiting); LimitedJob was not started, try again later",
+        e.getMessage());
+    assertEquals(1, jobExecutor.getQueued());
+    assertEquals(1, jobExecutor.getQueueCapacity());
+  }
+
+  @Test
+  public void withdrawn_jobs_no_longer_count_against_the_queue() {
+    AtomicInteger started = new AtomicInteger();
+    jobExecutor.setQueueCapacity(2);
+    jobExecutor.setMaxConcurrent(Map.of("LimitedJob", 1));
+
+    Runnable first = blocking(started);
+    jobExecutor.submit(LimitedJob.class, first);
+    await().atMost(5, SECONDS).until(() -> started.get() == 1);
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+    Runnable waiting = blocking(started);
+    jobExecutor.submit(LimitedJob.class, waiting);
+
+    assertTrue(jobExecutor.withdraw(waiting));
+    assertEquals(1, jobExecutor.getQueued());
+    assertEquals(Map.of(JobExecutor.SYSTEM_OWNER, 1), jobExecutor.getQueuedByOwner());
+    assertFalse(jobExecutor.withdraw(waiting));
+    assertFalse(jobExecutor.withdraw(first));
+
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+    assertEquals(2, jobExecutor.getQueued());
+    release.countDown();
+    await().atMost(5, SECONDS).until(() -> started.get() == 3);
+  }
+
+  @Test
+  public void batch_that_does_not_fit_in_the_queue_is_rejected_whole() {
+    AtomicInteger started = new AtomicInteger();
+    jobExecutor.setQueueCapacity(2);
+    jobExecutor.setMaxConcurrent(Map.of("LimitedJob", 1));
+
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+    await().atMost(5, SECONDS).until(() -> started.get() == 1);
+    jobExecutor.submit(LimitedJob.class, blocking(started));
+
+    JobQueueFullException e =
+        assertThrows(
+            JobQueueFullException.class,
+            () ->
+                jobExecutor.submitAll(
+                    List.of(
+                        new JobExecutor.Submission(
+                            LimitedJob.class, "1", JobPriority.NORMAL, blocking(started)),
+                        new JobExecutor.Submission(
+                            UnlimitedJob.class, "1", JobPriority.NORMAL, blocking(started)))));
+    assertEquals(
+        "Job queue is full (2 jobs waiting); a batch of 2 jobs was not started, try again later",
+        e.getMessage());
+    assertEquals(1, jobExecutor.getQueued());
+    assertEquals(1, started.get());
+  }
+
+  @Test
+  public void batch_that_fits_in_the_queue_is_run_whole() {
+    AtomicInteger started = new AtomicInteger();
+    jobExecutor.setQueueCapacity(2);
+
+    jobExecutor.submitAll(
+        List.of(
+            new JobExecutor.Submission(
+                UnlimitedJob.class, "1", JobPriority.NORMAL, blocking(started)),
+            new JobExecutor.Submission(
+                UnlimitedJob.class, "1", JobPriority.BATCH, blocking(started))));
+
+    await().atMost(5, SECONDS).until(() -> started.get() == 2);
+    assertEquals(2, jobExecutor.getActive());
+    assertEquals(0, jobExecutor.getQueued());
+
+    jobExecutor.submitAll(List.of());
+    assertEquals(2, jobExecutor.getActive());
+  }
+
+  @Test
+  public void queued_jobs_are_dropped_on_shutdown() throws Exception {
+    AtomicInteger started = new AtomicInteger();
+
+    jobExecutor.submit(LimitedJob.class, blockingUninterruptibly(started));
+    jobExecutor.submit(LimitedJob.class, blockingUninterruptibly(started));
+    await().atMost(5, SECONDS).until(() -> started.get() == 2);
+    jobExecutor.submit(LimitedJob.class, blockingUninterruptibly(started));
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getQueued() == 1);
+
+    jobExecutor.shutdown();
+
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getQueued() == 0);
+    release.countDown();
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getActive() == 0);
+    assertEquals(2, started.get());
+    assertTrue(jobExecutor.getMaxConcurrent().containsKey("LimitedJob"));
+  }
+
+  @Test
+  public void users_take_turns_when_slots_are_limited() {
+    jobExecutor.setMaxActive(1);
+    List<String> startOrder = new CopyOnWriteArrayList<>();
+    CountDownLatch first = new CountDownLatch(1);
+    jobExecutor.submit(
+        UnlimitedJob.class,
+        "blocker",
+        JobPriority.NORMAL,
+        () -> {
+          try {
+            first.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    for (int i = 0; i < 4; i++) {
+      jobExecutor.submit(UnlimitedJob.class, "1", JobPriority.NORMAL, () -> startOrder.add("1"));
+    }
+    jobExecutor.submit(UnlimitedJob.class, "2", JobPriority.NORMAL, () -> startOrder.add("2"));
+    jobExecutor.submit(UnlimitedJob.class, "2", JobPriority.NORMAL, () -> startOrder.add("2"));
+
+    assertEquals(Map.of("1", 4, "2", 2), jobExecutor.getQueuedByOwner());
+    assertEquals(6, jobExecutor.getQueued(JobPriority.NORMAL));
+
+    first.countDown();
+    await().atMost(5, SECONDS).until(() -> startOrder.size() == 6);
+    assertEquals(List.of("1", "2", "1", "2", "1", "1"), startOrder);
+    assertEquals(Map.of(), jobExecutor.getQueuedByOwner());
+  }
+
+  @Test
+  public void higher_priority_classes_get_more_of_the_slots() {
+    jobExecutor.setMaxActive(1);
+    List<String> startOrder = new CopyOnWriteArrayList<>();
+    CountDownLatch first = new CountDownLatch(1);
+    jobExecutor.submit(
+        UnlimitedJob.class,
+        "blocker",
+        JobPriority.NORMAL,
+        () -> {
+          try {
+            first.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    for (int i = 0; i < 3; i++) {
+      jobExecutor.submit(UnlimitedJob.class, "1", JobPriority.BATCH, () -> startOrder.add("b"));
+    }
+    for (int i = 0; i < 4; i++) {
+      jobExecutor.submit(
+          UnlimitedJob.class, "2", JobPriority.INTERACTIVE, () -> startOrder.add("i"));
+    }
+
+    first.countDown();
+    await().atMost(5, SECONDS).until(() -> startOrder.size() == 7);
+    // Batch jobs are not starved, but interactive ones (weight 8 to 1) mostly go first
+    assertEquals(List.of("i", "b", "i", "i", "i", "b", "b"), startOrder);
+  }
+
+  @Test
+  public void batch_jobs_are_kept_out_of_reserved_slots() {
+    jobExecutor.setMaxActive(3);
+    jobExecutor.setReservedSlots(1);
+    AtomicInteger batchStarted = new AtomicInteger();
+    AtomicInteger interactiveStarted = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      jobExecutor.submit(UnlimitedJob.class, "1", JobPriority.BATCH, blocking(batchStarted));
+    }
+    await().atMost(5, SECONDS).until(() -> batchStarted.get() == 2);
+    assertEquals(1, jobExecutor.getQueued(JobPriority.BATCH));
+
+    jobExecutor.submit(
+        UnlimitedJob.class, "2", JobPriority.INTERACTIVE, blocking(interactiveStarted));
+    await().atMost(5, SECONDS).until(() -> interactiveStarted.get() == 1);
+    assertEquals(3, jobExecutor.getActive());
+    assertEquals(2, batchStarted.get());
+  }
+
+  @Test
+  public void type_limits_still_apply_when_slots_are_limited() {
+    jobExecutor.setMaxActive(5);
+    AtomicInteger limited = new AtomicInteger();
+    AtomicInteger unlimited = new AtomicInteger();
+
+    for (int i = 0; i < 4; i++) jobExecutor.submit(LimitedJob.class, blocking(limited));
+    for (int i = 0; i < 4; i++) jobExecutor.submit(UnlimitedJob.class, blocking(unlimited));
+
+    // The waiting LimitedJobs do not hold back the UnlimitedJobs behind them
+    await().atMost(5, SECONDS).until(() -> limited.get() == 2 && unlimited.get() == 3);
+    assertEquals(5, jobExecutor.getActive());
+    assertEquals(3, jobExecutor.getQueued());
+  }
+}
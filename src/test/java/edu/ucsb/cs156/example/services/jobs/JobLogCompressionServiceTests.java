@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class JobLogCompressionServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
+  @Mock private TransactionOperations transactionOperations;
+
+  @InjectMocks private JobLogCompressionService jobLogCompressionService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobLogCompressionService, "finishedLogMinBytes", 10);
+    ReflectionTestUtils.setField(jobLogCompressionService, "batchSize", 5);
+    org.mockito.Mockito.doAnswer(
+            inv -> {
+              ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(null);
+              return null;
+            })
+        .when(transactionOperations)
+        .executeWithoutResult(any());
+  }
+
+  @Test
+  public void chunked_log_is_compressed_and_its_chunks_removed() {
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(1L))
+        .thenReturn(
+            List.of(
+                JobLogChunk.builder().jobId(1L).seq(0).text("first line").build(),
+                JobLogChunk.builder().jobId(1L).seq(1).text("second line").build()));
+    ArgumentCaptor<byte[]> data = ArgumentCaptor.forClass(byte[].class);
+
+    jobLogCompressionService.compress(1L);
+
+    verify(jobsRepository, times(1))
+        .storeCompressedLog(eq(1L), data.capture(), eq("deflate"), eq(22L));
+    assertEquals("first line\nsecond line", JobLogCompressionService.inflate(data.getValue()));
+    verify(jobLogChunkRepository, times(1)).deleteAllByJobId(1L);
+  }
+
+  @Test
+  public void legacy_log_column_is_compressed() {
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(2L)).thenReturn(List.of());
+    when(jobsRepository.findById(2L))
+        .thenReturn(Optional.of(Job.builder().id(2L).log("a legacy log").build()));
+
+    jobLogCompressionService.compress(2L);
+
+    verify(jobsRepository, times(1)).storeCompressedLog(eq(2L), any(), eq("deflate"), eq(12L));
+    verify(jobLogChunkRepository, never()).deleteAllByJobId(anyLong());
+  }
+
+  @Test
+  public void small_or_missing_logs_are_left_uncompressed() {
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(anyLong())).thenReturn(List.of());
+    when(jobsRepository.findById(3L)).thenReturn(Optional.of(Job.builder().log("short").build()));
+    when(jobsRepository.findById(4L)).thenReturn(Optional.empty());
+
+    jobLogCompressionService.compress(3L);
+    jobLogCompressionService.compress(4L);
+
+    verify(jobsRepository, times(1)).setLogCodec(3L, "none");
+    verify(jobsRepository, times(1)).setLogCodec(4L, "none");
+    verify(jobsRepository, never()).storeCompressedLog(anyLong(), any(), any(), anyLong());
+  }
+
+  @Test
+  public void sweep_compresses_finished_jobs_and_skips_failures() {
+    when(jobsRepository.findIdsToCompress(
+            JobRetentionService.FINISHED_STATUSES, PageRequest.of(0, 5)))
+        .thenReturn(List.of(5L, 6L));
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(5L))
+        .thenThrow(new IllegalStateException("db down"));
+    when(jobLogChunkRepository.findAllByJobIdOrderBySeqAsc(6L)).thenReturn(List.of());
+    when(jobsRepository.findById(6L)).thenReturn(Optional.empty());
+
+    jobLogCompressionService.compressFinishedLogs();
+
+    verify(jobsRepository, times(1)).setLogCodec(6L, "none");
+  }
+
+  @Test
+  public void deflate_and_inflate_round_trip_large_text() {
+    String text = "line of log output é\n".repeat(10_000);
+    byte[] compressed = JobLogCompressionService.deflate(text.getBytes(StandardCharsets.UTF_8));
+
+    assertTrue(compressed.length < text.length() / 10);
+    assertEquals(text, JobLogCompressionService.inflate(compressed));
+    assertArrayEquals(
+        new byte[0],
+        JobLogCompressionService.inflate(JobLogCompressionService.deflate(new byte[0])).getBytes());
+  }
+
+  @Test
+  public void inflate_rejects_corrupt_or_truncated_data() {
+    byte[] compressed = JobLogCompressionService.deflate("hello hello hello".getBytes());
+
+    IllegalStateException corrupt =
+        assertThrows(
+            IllegalStateException.class,
+            () -> JobLogCompressionService.inflate(new byte[] {1, 2, 3, 4}));
+    assertTrue(corrupt.getMessage().startsWith("Compressed log is corrupt"));
+
+    IllegalStateException truncated =
+        assertThrows(
+            IllegalStateException.class,
+            () -> JobLogCompressionService.inflate(Arrays.copyOf(compressed, 4)));
+    assertEquals("Compressed log is truncated", truncated.getMessage());
+
+    // Data deflated with a preset dictionary cannot be read without it, however much input there is
+    Deflater deflater = new Deflater();
+    deflater.setDictionary("hello".getBytes());
+    deflater.setInput("hello hello hello".getBytes());
+    deflater.finish();
+    byte[] buffer = new byte[64];
+    byte[] withDictionary = Arrays.copyOf(buffer, deflater.deflate(buffer));
+    deflater.end();
+    assertThrows(
+        IllegalStateException.class, () -> JobLogCompressionService.inflate(withDictionary));
+  }
+}
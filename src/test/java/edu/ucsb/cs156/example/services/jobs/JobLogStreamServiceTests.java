@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobLogStreamServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
+  @InjectMocks private JobLogStreamService jobLogStreamService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            anyLong(), anyInt()))
+        .thenReturn(List.of());
+  }
+
+  @Test
+  public void closed_streams_are_dropped_without_affecting_the_job() {
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("running"));
+    SseEmitter emitter = jobLogStreamService.subscribe(1L, 0);
+    emitter.complete();
+
+    jobLogStreamService.publish(JobLogChunk.builder().jobId(1L).seq(0).text("x").build());
+    jobLogStreamService.jobFinished(Job.builder().id(1L).status("complete").build());
+  }
+
+  @Test
+  public void publish_and_finish_without_subscribers_do_nothing() {
+    jobLogStreamService.publish(JobLogChunk.builder().jobId(2L).seq(0).text("x").build());
+    jobLogStreamService.jobFinished(Job.builder().id(2L).status("complete").build());
+  }
+
+  @Test
+  public void subscribing_to_missing_job_throws() {
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.empty());
+    assertThrows(
+        edu.ucsb.cs156.example.errors.EntityNotFoundException.class,
+        () -> jobLogStreamService.subscribe(3L, 0));
+  }
+
+  @Test
+  public void streams_of_queued_and_retrying_jobs_stay_open() {
+    when(jobsRepository.findStatusById(4L)).thenReturn(Optional.of("queued"));
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("retrying"));
+    jobLogStreamService.subscribe(4L, 0);
+    jobLogStreamService.subscribe(5L, 0);
+
+    assertTrue(subscribedJobs().containsKey(4L));
+    assertTrue(subscribedJobs().containsKey(5L));
+  }
+
+  @Test
+  public void poll_follows_a_job_running_on_another_node_until_it_finishes() {
+    when(jobsRepository.findStatusById(6L)).thenReturn(Optional.of("running"));
+    jobLogStreamService.subscribe(6L, 2);
+    when(jobLogChunkRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(6L, 2))
+        .thenReturn(List.of(JobLogChunk.builder().jobId(6L).seq(2).text("remote").build()));
+
+    jobLogStreamService.poll();
+    assertTrue(subscribedJobs().containsKey(6L));
+
+    when(jobsRepository.findStatusById(6L)).thenReturn(Optional.of("complete"));
+    jobLogStreamService.poll();
+    assertFalse(subscribedJobs().containsKey(6L));
+    verify(jobLogChunkRepository).findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(6L, 3);
+  }
+
+  @Test
+  public void poll_closes_streams_of_jobs_that_are_gone() {
+    when(jobsRepository.findStatusById(7L)).thenReturn(Optional.of("queued"));
+    jobLogStreamService.subscribe(7L, 0);
+
+    when(jobsRepository.findStatusById(7L)).thenReturn(Optional.empty());
+    jobLogStreamService.poll();
+    assertFalse(subscribedJobs().containsKey(7L));
+  }
+
+  @Test
+  public void stream_that_times_out_is_dropped_while_others_of_its_job_stay() {
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of("running"));
+    SseEmitter first = jobLogStreamService.subscribe(8L, 0);
+    jobLogStreamService.subscribe(8L, 0);
+    assertEquals(2, ((Set<?>) subscribedJobs().get(8L)).size());
+
+    // Runs the callbacks that Spring MVC runs when the request times out
+    ((Runnable) ReflectionTestUtils.getField(first, "timeoutCallback")).run();
+    assertEquals(1, ((Set<?>) subscribedJobs().get(8L)).size());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<Long, ?> subscribedJobs() {
+    return (Map<Long, ?>) ReflectionTestUtils.getField(jobLogStreamService, "subscribers");
+  }
+}
@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobMetricsTests {
+
+  @Mock private JobExecutor jobExecutor;
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private final JobMetrics jobMetrics = new JobMetrics();
+
+  private static class SampleJob {}
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobMetrics, "meterRegistry", registry);
+    ReflectionTestUtils.setField(jobMetrics, "jobExecutor", jobExecutor);
+    jobMetrics.registerGauges();
+  }
+
+  @Test
+  public void gauges_report_the_executor() {
+    when(jobExecutor.getActive()).thenReturn(3);
+    when(jobExecutor.getQueued()).thenReturn(7);
+
+    assertEquals(3.0, registry.get("jobs.active").gauge().value());
+    assertEquals(7.0, registry.get("jobs.queued").gauge().value());
+  }
+
+  @Test
+  public void queue_depth_is_reported_by_priority_and_user() {
+    when(jobExecutor.getQueued(JobPriority.INTERACTIVE)).thenReturn(1);
+    when(jobExecutor.getQueued(JobPriority.BATCH)).thenReturn(40);
+    when(jobExecutor.getQueuedByOwner()).thenReturn(Map.of("1", 40, "2", 1));
+
+    jobMetrics.refreshQueuedByUser();
+
+    assertEquals(
+        1.0, registry.get("jobs.queued.priority").tag("priority", "interactive").gauge().value());
+    assertEquals(
+        0.0, registry.get("jobs.queued.priority").tag("priority", "normal").gauge().value());
+    assertEquals(
+        40.0, registry.get("jobs.queued.priority").tag("priority", "batch").gauge().value());
+    assertEquals(40.0, registry.get("jobs.queued.user").tag("user", "1").gauge().value());
+    assertEquals(1.0, registry.get("jobs.queued.user").tag("user", "2").gauge().value());
+
+    when(jobExecutor.getQueuedByOwner()).thenReturn(Map.of("2", 1));
+    jobMetrics.refreshQueuedByUser();
+
+    assertNull(registry.find("jobs.queued.user").tag("user", "1").gauge());
+  }
+
+  @Test
+  public void counters_are_tagged_by_job_type() {
+    jobMetrics.submitted(SampleJob.class);
+    jobMetrics.submitted(SampleJob.class);
+    jobMetrics.rejected(SampleJob.class);
+    jobMetrics.retried(SampleJob.class);
+    jobMetrics.started(SampleJob.class, null);
+
+    assertEquals(2.0, registry.get("jobs.submitted").tag("type", "SampleJob").counter().count());
+    assertEquals(1.0, registry.get("jobs.rejected").tag("type", "SampleJob").counter().count());
+    assertEquals(1.0, registry.get("jobs.retried").tag("type", "SampleJob").counter().count());
+    assertEquals(1.0, registry.get("jobs.started").tag("type", "SampleJob").counter().count());
+    assertNull(registry.find("jobs.queue.wait").timer());
+  }
+
+  @Test
+  public void queue_wait_is_timed_unless_unknown_or_negative() {
+    jobMetrics.started(SampleJob.class, Duration.ofMillis(250));
+    jobMetrics.started(SampleJob.class, Duration.ofMillis(-1));
+
+    Timer wait = registry.get("jobs.queue.wait").tag("type", "SampleJob").timer();
+    assertEquals(1, wait.count());
+    assertEquals(250.0, wait.totalTime(TimeUnit.MILLISECONDS));
+    assertEquals(2.0, registry.get("jobs.started").counter().count());
+  }
+
+  @Test
+  public void run_time_is_timed_by_type_and_outcome() {
+    jobMetrics.finished(SampleJob.class, "complete", Duration.ofSeconds(2));
+    jobMetrics.finished(SampleJob.class, "complete", Duration.ofSeconds(4));
+    jobMetrics.finished(SampleJob.class, "error", Duration.ofSeconds(1));
+
+    Timer complete =
+        registry.get("jobs.run").tag("type", "SampleJob").tag("outcome", "complete").timer();
+    assertEquals(2, complete.count());
+    assertEquals(4.0, complete.max(TimeUnit.SECONDS));
+    assertEquals(
+        1,
+        registry.get("jobs.run").tag("type", "SampleJob").tag("outcome", "error").timer().count());
+  }
+}
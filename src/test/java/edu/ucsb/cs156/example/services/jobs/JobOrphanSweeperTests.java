@@ -0,0 +1,223 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobOrphanSweeperTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private DatabaseJobQueue databaseJobQueue;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
+  @Mock private JobStatusNotifier jobStatusNotifier;
+
+  @InjectMocks private JobOrphanSweeper jobOrphanSweeper;
+
+  private final ZonedDateTime now = ZonedDateTime.parse("2024-01-01T12:00:00Z");
+  private final ZonedDateTime cutoff = now.minusMinutes(2);
+  private final ZonedDateTime lastHeartbeat = now.minusMinutes(10);
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobOrphanSweeper, "staleAfterMs", 120000L);
+    ReflectionTestUtils.setField(jobOrphanSweeper, "maxRestarts", 3);
+  }
+
+  private Job abandonedJob(long id, boolean restartable, int restarts) {
+    Job job =
+        Job.builder()
+            .id(id)
+            .status("abandoned")
+            .heartbeatAt(lastHeartbeat)
+            .jobType(JobServiceTests.RestartableJob.class.getName())
+            .jobSpec("{}")
+            .restartable(restartable)
+            .restarts(restarts)
+            .build();
+    when(jobsRepository.abandonIfStale(eq(id), any(), any())).thenReturn(1);
+    when(jobsRepository.findById(id)).thenReturn(Optional.of(job));
+    return job;
+  }
+
+  private List<String> loggedLines() {
+    ArgumentCaptor<JobLogChunk> chunks = ArgumentCaptor.forClass(JobLogChunk.class);
+    verify(jobLogChunkRepository, atLeast(0)).save(chunks.capture());
+    return chunks.getAllValues().stream().map(JobLogChunk::getText).toList();
+  }
+
+  @Test
+  public void stale_jobs_are_abandoned_unless_this_node_is_running_them() {
+    ArgumentCaptor<ZonedDateTime> staleBefore = ArgumentCaptor.forClass(ZonedDateTime.class);
+    when(jobsRepository.findStaleRunningJobIds(staleBefore.capture()))
+        .thenReturn(List.of(1L, 2L, 3L));
+    when(jobService.getActiveJobIds()).thenReturn(Set.of(2L));
+    abandonedJob(1L, false, 0);
+    // Job 3 sent a heartbeat, or another node abandoned it, after it was found
+    when(jobsRepository.abandonIfStale(eq(3L), any(), any())).thenReturn(0);
+
+    ZonedDateTime before = ZonedDateTime.now();
+    assertEquals(1, jobOrphanSweeper.sweep());
+
+    assertFalse(staleBefore.getValue().isAfter(ZonedDateTime.now().minusMinutes(2)));
+    assertFalse(staleBefore.getValue().isBefore(before.minusMinutes(2)));
+    verify(jobsRepository, never()).abandonIfStale(eq(2L), any(), any());
+    verify(jobLogStreamService, times(1)).jobFinished(any());
+  }
+
+  @Test
+  public void abandoned_job_says_why_at_the_end_of_its_log() {
+    Job job = abandonedJob(4L, false, 0);
+    when(jobLogChunkRepository.findMaxSeqByJobId(4L)).thenReturn(Optional.of(6));
+
+    assertTrue(jobOrphanSweeper.abandon(4L, cutoff, now));
+
+    verify(jobLogChunkRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(4L)
+                .seq(7)
+                .text("Job abandoned: no heartbeat since " + lastHeartbeat)
+                .build());
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+    verify(jobStatusNotifier, times(1)).finished(job);
+    verify(jobService, never()).resubmit(any(), any());
+  }
+
+  @Test
+  public void job_without_a_heartbeat_is_dated_by_its_last_update() {
+    Job job = abandonedJob(5L, false, 0);
+    job.setHeartbeatAt(null);
+    job.setUpdatedAt(lastHeartbeat);
+    when(jobLogChunkRepository.findMaxSeqByJobId(5L)).thenReturn(Optional.empty());
+
+    jobOrphanSweeper.abandon(5L, cutoff, now);
+
+    verify(jobLogChunkRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(5L)
+                .seq(0)
+                .text("Job abandoned: no heartbeat since " + lastHeartbeat)
+                .build());
+  }
+
+  @Test
+  public void restartable_job_is_resubmitted_when_enabled() throws Exception {
+    ReflectionTestUtils.setField(jobOrphanSweeper, "resubmit", true);
+    Job job = abandonedJob(6L, true, 0);
+    JobContextConsumer rebuilt = new JobServiceTests.RestartableJob();
+    when(jobLogChunkRepository.findMaxSeqByJobId(6L)).thenReturn(Optional.empty());
+    when(databaseJobQueue.decode(job)).thenReturn(rebuilt);
+    when(jobService.resubmit(job, rebuilt)).thenReturn(Job.builder().id(60L).build());
+
+    jobOrphanSweeper.abandon(6L, cutoff, now);
+
+    verify(jobService, times(1)).resubmit(job, rebuilt);
+    assertEquals(
+        List.of("Job abandoned: no heartbeat since " + lastHeartbeat, "Resubmitted as job 60"),
+        loggedLines());
+  }
+
+  @Test
+  public void job_that_is_not_restartable_is_not_resubmitted() throws Exception {
+    ReflectionTestUtils.setField(jobOrphanSweeper, "resubmit", true);
+    abandonedJob(7L, false, 0);
+    when(jobLogChunkRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+
+    jobOrphanSweeper.abandon(7L, cutoff, now);
+
+    verify(databaseJobQueue, never()).decode(any(Job.class));
+    verify(jobService, never()).resubmit(any(), any());
+  }
+
+  @Test
+  public void job_is_not_restarted_more_than_max_restarts_times() throws Exception {
+    ReflectionTestUtils.setField(jobOrphanSweeper, "resubmit", true);
+    abandonedJob(8L, true, 3);
+    when(jobLogChunkRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+
+    jobOrphanSweeper.abandon(8L, cutoff, now);
+
+    verify(jobService, never()).resubmit(any(), any());
+    assertEquals("Not resubmitted: restarted 3 times already", loggedLines().get(1));
+  }
+
+  @Test
+  public void job_that_cannot_be_rebuilt_stays_abandoned() throws Exception {
+    ReflectionTestUtils.setField(jobOrphanSweeper, "resubmit", true);
+    Job job = abandonedJob(9L, true, 0);
+    when(jobLogChunkRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+    when(databaseJobQueue.decode(job)).thenThrow(new ClassNotFoundException("gone.Job"));
+
+    assertTrue(jobOrphanSweeper.abandon(9L, cutoff, now));
+
+    verify(jobService, never()).resubmit(any(), any());
+    assertEquals("Could not resubmit: gone.Job", loggedLines().get(1));
+  }
+
+  @Test
+  public void sweep_goes_on_after_a_job_fails() {
+    when(jobsRepository.findStaleRunningJobIds(any())).thenReturn(List.of(10L, 11L));
+    when(jobService.getActiveJobIds()).thenReturn(Set.of());
+    when(jobsRepository.abandonIfStale(eq(10L), any(), any()))
+        .thenThrow(new RuntimeException("db down"));
+    abandonedJob(11L, false, 0);
+    when(jobLogChunkRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+
+    assertEquals(1, jobOrphanSweeper.sweep());
+  }
+
+  @Test
+  public void startup_runs_a_sweep() {
+    when(jobsRepository.findStaleRunningJobIds(any())).thenReturn(List.of(12L));
+    when(jobService.getActiveJobIds()).thenReturn(Set.of());
+    abandonedJob(12L, false, 0);
+    when(jobLogChunkRepository.findMaxSeqByJobId(anyLong())).thenReturn(Optional.empty());
+
+    jobOrphanSweeper.sweepOnStartup();
+
+    verify(jobsRepository, times(1)).abandonIfStale(eq(12L), any(), any());
+  }
+
+  @Test
+  public void startup_with_no_orphans_abandons_nothing() {
+    when(jobsRepository.findStaleRunningJobIds(any())).thenReturn(List.of());
+    when(jobService.getActiveJobIds()).thenReturn(Set.of());
+
+    jobOrphanSweeper.sweepOnStartup();
+
+    verify(jobsRepository, never()).abandonIfStale(anyLong(), any(), any());
+  }
+}
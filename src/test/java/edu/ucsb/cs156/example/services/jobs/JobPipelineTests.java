@@ -0,0 +1,280 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+public class JobPipelineTests {
+
+  private final List<String> logged = Collections.synchronizedList(new ArrayList<>());
+
+  private JobContext context() {
+    return new JobContext(
+        null,
+        Job.builder().id(1L).status("running").build(),
+        LogFlushPolicy.IMMEDIATE,
+        Clock.systemUTC(),
+        (JobLogChunk chunk) -> logged.add(chunk.getText()));
+  }
+
+  private static JobPipeline.Source<Integer> range(int n) {
+    return (ctx, out) -> {
+      for (int i = 0; i < n; i++) out.emit(i);
+    };
+  }
+
+  @Test
+  public void items_flow_through_every_stage_into_the_sink() throws Exception {
+    Set<String> written = ConcurrentHashMap.newKeySet();
+    JobContext ctx = context();
+
+    JobPipeline pipeline =
+        JobPipeline.source("pages", range(10))
+            .stage(
+                "double",
+                3,
+                (c, page, out) -> {
+                  out.emit(page * 2);
+                  if (page == 0) out.emit(-1);
+                })
+            .<String>stage("format", 2, (c, n, out) -> out.emit("row " + n))
+            .sink("write", 2, (c, row) -> written.add(row));
+
+    pipeline.accept(ctx);
+
+    Set<String> expected = new TreeSet<>();
+    for (int i = 0; i < 10; i++) expected.add("row " + i * 2);
+    expected.add("row -1");
+    assertEquals(expected, new TreeSet<>(written));
+    assertEquals(11L, ctx.getProgress().getDone());
+    assertEquals(
+        Map.of("pages", 10, "double", 10, "format", 11, "write", 11),
+        new ObjectMapper().readValue(ctx.getProgress().getCounters(), Map.class));
+    assertEquals(
+        List.of(
+            "Stage pages finished: 10 items, 1 workers",
+            "Stage double finished: 10 items, 3 workers",
+            "Stage format finished: 11 items, 2 workers",
+            "Stage write finished: 11 items, 2 workers"),
+        logged);
+  }
+
+  @Test
+  public void pipelines_finished_from_one_builder_do_not_share_stages() throws Exception {
+    List<String> first = Collections.synchronizedList(new ArrayList<>());
+    List<String> second = Collections.synchronizedList(new ArrayList<>());
+    JobPipeline.Builder<String> formatted =
+        JobPipeline.source("pages", range(2))
+            .stage("format", 1, (c, n, out) -> out.emit("row " + n));
+
+    JobPipeline toFirst = formatted.sink("first", 1, (c, row) -> first.add(row));
+    JobPipeline toSecond =
+        formatted
+            .<String>stage("shout", 1, (c, row, out) -> out.emit(row.toUpperCase()))
+            .sink("second", 1, (c, row) -> second.add(row));
+
+    toFirst.accept(context());
+    assertEquals(
+        List.of(
+            "Stage pages finished: 2 items, 1 workers",
+            "Stage format finished: 2 items, 1 workers",
+            "Stage first finished: 2 items, 1 workers"),
+        logged);
+    logged.clear();
+    toSecond.accept(context());
+
+    assertEquals(List.of("row 0", "row 1"), first);
+    assertEquals(List.of("ROW 0", "ROW 1"), second);
+    assertEquals(
+        List.of(
+            "Stage pages finished: 2 items, 1 workers",
+            "Stage format finished: 2 items, 1 workers",
+            "Stage shout finished: 2 items, 1 workers",
+            "Stage second finished: 2 items, 1 workers"),
+        logged);
+  }
+
+  @Test
+  public void workers_of_a_stage_run_in_parallel() throws Exception {
+    CyclicBarrier allFour = new CyclicBarrier(4);
+    AtomicInteger written = new AtomicInteger();
+
+    JobPipeline.source("pages", range(8))
+        .stage(
+            "fetch",
+            4,
+            (c, page, out) -> {
+              // Only returns once four items are being fetched at the same time
+              allFour.await(5, SECONDS);
+              out.emit(page);
+            })
+        .sink("write", 1, (c, page) -> written.incrementAndGet())
+        .accept(context());
+
+    assertEquals(8, written.get());
+  }
+
+  @Test
+  public void full_queue_holds_back_the_stage_feeding_it() throws Exception {
+    AtomicInteger emitted = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    JobPipeline pipeline =
+        JobPipeline.<Integer>source(
+                "pages",
+                (c, out) -> {
+                  for (int i = 0; i < 20; i++) {
+                    out.emit(i);
+                    emitted.incrementAndGet();
+                  }
+                })
+            .sink("write", 1, (c, page) -> release.await())
+            .queueCapacity(1);
+
+    Thread runner =
+        new Thread(
+            () -> {
+              try {
+                pipeline.accept(context());
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            });
+    runner.start();
+
+    // One item is in the sink and one waits in the queue; the source blocks on the third
+    await().atMost(5, SECONDS).until(() -> emitted.get() == 2);
+    Thread.sleep(100);
+    assertEquals(2, emitted.get());
+
+    release.countDown();
+    runner.join(5_000);
+    assertEquals(20, emitted.get());
+  }
+
+  @Test
+  public void failing_stage_stops_the_pipeline_with_its_exception() {
+    Exception boom = new Exception("boom");
+    JobPipeline pipeline =
+        JobPipeline.source("pages", range(1_000))
+            .<Integer>stage(
+                "fetch",
+                2,
+                (c, page, out) -> {
+                  if (page == 3) throw boom;
+                  out.emit(page);
+                })
+            .sink("write", 1, (c, page) -> {})
+            .queueCapacity(2);
+
+    Exception thrown = assertThrows(Exception.class, () -> pipeline.accept(context()));
+
+    assertSame(boom, thrown);
+  }
+
+  @Test
+  public void errors_are_rethrown_as_they_are() {
+    AssertionError error = new AssertionError("bad state");
+    JobPipeline pipeline =
+        JobPipeline.source("pages", range(1))
+            .sink(
+                "write",
+                1,
+                (c, page) -> {
+                  throw error;
+                });
+
+    assertSame(error, assertThrows(AssertionError.class, () -> pipeline.accept(context())));
+  }
+
+  @Test
+  public void cancelled_job_interrupts_every_stage() throws Exception {
+    JobContext ctx = context();
+    CountDownLatch writing = new CountDownLatch(1);
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    JobPipeline pipeline =
+        JobPipeline.<Integer>source(
+                "pages",
+                (c, out) -> {
+                  while (true) out.emit(1);
+                })
+            .sink(
+                "write",
+                1,
+                (c, page) -> {
+                  writing.countDown();
+                  Thread.sleep(60_000);
+                });
+
+    Thread runner =
+        new Thread(
+            () -> {
+              ctx.bindThread(Thread.currentThread());
+              try {
+                pipeline.accept(ctx);
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    runner.start();
+    assertTrue(writing.await(5, SECONDS));
+
+    ctx.cancel("cancelled");
+    runner.join(5_000);
+
+    assertTrue(thrown.get() instanceof InterruptedException);
+  }
+
+  @Test
+  public void source_stops_emitting_once_the_job_is_cancelled() {
+    JobContext ctx = context();
+    ctx.cancel("timed_out");
+
+    JobPipeline pipeline = JobPipeline.source("pages", range(5)).sink("write", 1, (c, p) -> {});
+
+    assertThrows(JobCancelledException.class, () -> pipeline.accept(ctx));
+  }
+
+  @Test
+  public void pipelines_must_have_workers_and_room_between_stages() {
+    IllegalArgumentException noWorkers =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> JobPipeline.source("pages", range(1)).sink("write", 0, (c, p) -> {}));
+    assertEquals("Stage write needs at least 1 worker: 0", noWorkers.getMessage());
+
+    JobPipeline pipeline = JobPipeline.source("pages", range(1)).sink("write", 1, (c, p) -> {});
+    IllegalArgumentException noRoom =
+        assertThrows(IllegalArgumentException.class, () -> pipeline.queueCapacity(0));
+    assertEquals("queueCapacity must be at least 1: 0", noRoom.getMessage());
+  }
+
+  @Test
+  public void log_flush_policy_can_be_set() {
+    JobPipeline pipeline = JobPipeline.source("pages", range(1)).sink("write", 1, (c, p) -> {});
+    assertEquals(LogFlushPolicy.IMMEDIATE, pipeline.logFlushPolicy());
+
+    assertSame(pipeline, pipeline.logFlushPolicy(LogFlushPolicy.BUFFERED));
+    assertEquals(LogFlushPolicy.BUFFERED, pipeline.logFlushPolicy());
+  }
+}
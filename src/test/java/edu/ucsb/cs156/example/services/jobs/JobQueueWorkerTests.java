@@ -0,0 +1,126 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobQueueWorkerTests {
+
+  @Mock private DatabaseJobQueue databaseJobQueue;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobExecutor jobExecutor;
+
+  @InjectMocks private JobQueueWorker jobQueueWorker;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobQueueWorker, "queueMode", "database");
+    ReflectionTestUtils.setField(jobQueueWorker, "claimBatchSize", 10);
+    when(jobExecutor.getQueueCapacity()).thenReturn(100);
+  }
+
+  @Test
+  public void does_nothing_in_memory_mode() {
+    ReflectionTestUtils.setField(jobQueueWorker, "queueMode", "memory");
+
+    jobQueueWorker.poll();
+    jobQueueWorker.heartbeat();
+
+    verify(databaseJobQueue, never()).claim(anyInt());
+    verify(databaseJobQueue, never()).heartbeat(any());
+  }
+
+  @Test
+  public void claims_no_more_than_the_executor_has_room_for() {
+    when(jobExecutor.getQueued()).thenReturn(97);
+    when(databaseJobQueue.claim(3)).thenReturn(List.of());
+
+    jobQueueWorker.poll();
+
+    verify(databaseJobQueue, times(1)).claim(3);
+  }
+
+  @Test
+  public void claimed_jobs_run_on_the_executor_and_heartbeat_while_running() throws Exception {
+    Job job = Job.builder().id(4L).status("running").build();
+    TestJob testJob = TestJob.builder().build();
+    when(databaseJobQueue.claim(10)).thenReturn(List.of(job));
+    when(databaseJobQueue.decode(job)).thenReturn(testJob);
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    jobQueueWorker.poll();
+    verify(jobExecutor, times(1)).submit(eq(TestJob.class), any(), any(), task.capture());
+
+    jobQueueWorker.heartbeat();
+    verify(databaseJobQueue, times(1)).heartbeat(Set.of(4L));
+
+    task.getValue().run();
+    verify(jobService, times(1)).runJobAsync(job, testJob);
+
+    jobQueueWorker.heartbeat();
+    verify(databaseJobQueue, times(1)).heartbeat(Set.of());
+  }
+
+  @Test
+  public void jobs_that_cannot_be_decoded_finish_with_an_error() throws Exception {
+    Job job = Job.builder().id(5L).status("running").build();
+    when(databaseJobQueue.claim(10)).thenReturn(List.of(job));
+    when(databaseJobQueue.decode(job)).thenThrow(new ClassNotFoundException("gone.Job"));
+    ArgumentCaptor<JobContextConsumer> failing = ArgumentCaptor.forClass(JobContextConsumer.class);
+
+    jobQueueWorker.poll();
+
+    verify(jobService, times(1)).runJobAsync(eq(job), failing.capture());
+    verify(jobExecutor, never()).submit(any(), any(), any(), any());
+    Exception e = assertThrows(IllegalStateException.class, () -> failing.getValue().accept(null));
+    assertEquals("Job cannot be decoded: gone.Job", e.getMessage());
+  }
+
+  @Test
+  public void claimed_jobs_are_released_when_the_executor_is_full() throws Exception {
+    Job job = Job.builder().id(6L).status("running").build();
+    when(databaseJobQueue.claim(10)).thenReturn(List.of(job));
+    when(databaseJobQueue.decode(job)).thenReturn(TestJob.builder().build());
+    doThrow(new JobQueueFullException("TestJob", 100))
+        .when(jobExecutor)
+        .submit(any(), any(), any(), any());
+
+    jobQueueWorker.poll();
+    jobQueueWorker.heartbeat();
+
+    verify(databaseJobQueue, times(1)).release(6L);
+    verify(databaseJobQueue, times(1)).heartbeat(Set.of());
+  }
+
+  @Test
+  public void heartbeat_stops_jobs_cancelled_through_another_node() {
+    when(databaseJobQueue.heartbeat(any())).thenReturn(List.of(7L));
+
+    jobQueueWorker.heartbeat();
+
+    verify(jobService, times(1)).cancelRunning(7L, "cancelled");
+  }
+}
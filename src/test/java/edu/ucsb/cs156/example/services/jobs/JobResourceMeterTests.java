@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JobResourceMeterTests {
+
+  private static void executeStatements(SqlStatementListener listener, int n) {
+    for (int i = 0; i < n; i++) {
+      listener.jdbcExecuteStatementStart();
+      listener.jdbcExecuteStatementEnd();
+    }
+  }
+
+  @Test
+  public void measures_the_resources_used_between_start_and_stop() throws Exception {
+    Job job = Job.builder().build();
+    SqlStatementListener listener = new SqlStatementListener();
+
+    JobResourceMeter meter = JobResourceMeter.start();
+    byte[][] garbage = new byte[64][];
+    for (int i = 0; i < garbage.length; i++) garbage[i] = new byte[16 * 1024];
+    executeStatements(listener, 3);
+    listener.jdbcExecuteBatchStart();
+    listener.jdbcExecuteBatchEnd();
+    Thread.sleep(20);
+    meter.stop(job);
+
+    assertTrue(job.getWallTimeMs() >= 20);
+    assertNotNull(job.getCpuTimeMs());
+    assertTrue(job.getCpuTimeMs() <= job.getWallTimeMs());
+    assertTrue(job.getAllocatedBytes() >= 64 * 16 * 1024);
+    assertEquals(4, job.getSqlStatements());
+    assertNotNull(job.getSqlTimeMs());
+  }
+
+  @Test
+  public void statements_are_counted_only_while_a_meter_is_running() {
+    Job job = Job.builder().build();
+    SqlStatementListener listener = new SqlStatementListener();
+
+    executeStatements(listener, 2);
+    JobResourceMeter meter = JobResourceMeter.start();
+    executeStatements(listener, 1);
+    meter.stop(job);
+    executeStatements(listener, 2);
+
+    assertEquals(1, job.getSqlStatements());
+  }
+
+  @Test
+  public void statements_on_other_threads_are_not_counted() throws Exception {
+    Job job = Job.builder().build();
+
+    JobResourceMeter meter = JobResourceMeter.start();
+    Thread other = new Thread(() -> executeStatements(new SqlStatementListener(), 5));
+    other.start();
+    other.join();
+    meter.stop(job);
+
+    assertEquals(0, job.getSqlStatements());
+  }
+
+  @Test
+  public void usage_is_added_up_over_attempts() {
+    Job job =
+        Job.builder()
+            .wallTimeMs(1000L)
+            .cpuTimeMs(400L)
+            .allocatedBytes(1L << 30)
+            .sqlStatements(10L)
+            .sqlTimeMs(50L)
+            .build();
+
+    JobResourceMeter meter = JobResourceMeter.start();
+    executeStatements(new SqlStatementListener(), 2);
+    meter.stop(job);
+
+    assertTrue(job.getWallTimeMs() >= 1000);
+    assertTrue(job.getCpuTimeMs() >= 400);
+    assertTrue(job.getAllocatedBytes() >= 1L << 30);
+    assertEquals(12, job.getSqlStatements());
+    assertTrue(job.getSqlTimeMs() >= 50);
+  }
+
+  @Test
+  public void cpu_time_and_allocation_are_left_null_when_they_cannot_be_measured() {
+    ThreadMXBean unsupported = mock(ThreadMXBean.class);
+    ThreadMXBean disabled = mock(ThreadMXBean.class);
+    when(disabled.isCurrentThreadCpuTimeSupported()).thenReturn(true);
+
+    for (ThreadMXBean threads : List.of(unsupported, disabled)) {
+      Job job = Job.builder().build();
+      JobResourceMeter.start(threads).stop(job);
+
+      assertNotNull(job.getWallTimeMs());
+      assertNull(job.getCpuTimeMs());
+      assertNull(job.getAllocatedBytes());
+    }
+  }
+
+  @Test
+  public void allocation_is_left_null_when_the_jvm_cannot_measure_it() {
+    com.sun.management.ThreadMXBean unsupported = mock(com.sun.management.ThreadMXBean.class);
+    com.sun.management.ThreadMXBean disabled = mock(com.sun.management.ThreadMXBean.class);
+    when(disabled.isThreadAllocatedMemorySupported()).thenReturn(true);
+
+    for (ThreadMXBean threads : List.of(unsupported, disabled)) {
+      Job job = Job.builder().build();
+      JobResourceMeter.start(threads).stop(job);
+
+      assertNull(job.getAllocatedBytes());
+    }
+  }
+
+  @Test
+  public void usage_is_left_null_when_measuring_is_turned_off_while_the_job_runs() {
+    com.sun.management.ThreadMXBean threads = mock(com.sun.management.ThreadMXBean.class);
+    when(threads.isCurrentThreadCpuTimeSupported()).thenReturn(true);
+    when(threads.isThreadCpuTimeEnabled()).thenReturn(true, false);
+    when(threads.isThreadAllocatedMemorySupported()).thenReturn(true);
+    when(threads.isThreadAllocatedMemoryEnabled()).thenReturn(true, false);
+    when(threads.getCurrentThreadCpuTime()).thenReturn(1_000_000L);
+    when(threads.getCurrentThreadAllocatedBytes()).thenReturn(4096L);
+    Job job = Job.builder().build();
+
+    JobResourceMeter.start(threads).stop(job);
+
+    assertNull(job.getCpuTimeMs());
+    assertNull(job.getAllocatedBytes());
+  }
+
+  @Test
+  public void usage_is_measured_through_the_given_bean() {
+    com.sun.management.ThreadMXBean threads = mock(com.sun.management.ThreadMXBean.class);
+    when(threads.isCurrentThreadCpuTimeSupported()).thenReturn(true);
+    when(threads.isThreadCpuTimeEnabled()).thenReturn(true);
+    when(threads.isThreadAllocatedMemorySupported()).thenReturn(true);
+    when(threads.isThreadAllocatedMemoryEnabled()).thenReturn(true);
+    when(threads.getCurrentThreadCpuTime()).thenReturn(1_000_000L, 8_000_000L);
+    when(threads.getCurrentThreadAllocatedBytes()).thenReturn(4096L, 10_000L);
+    Job job = Job.builder().build();
+
+    JobResourceMeter.start(threads).stop(job);
+
+    assertEquals(7, job.getCpuTimeMs());
+    assertEquals(5904, job.getAllocatedBytes());
+  }
+}
@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.models.RetentionReport;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class JobRetentionServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
+  @Mock private TransactionOperations transactionOperations;
+
+  @InjectMocks private JobRetentionService jobRetentionService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobRetentionService, "retentionDays", 30);
+    ReflectionTestUtils.setField(jobRetentionService, "mode", "delete");
+    ReflectionTestUtils.setField(jobRetentionService, "batchSize", 2);
+    when(transactionOperations.execute(any()))
+        .thenAnswer(
+            inv -> ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+  }
+
+  @Test
+  public void deletes_old_finished_jobs_in_batches() {
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    when(jobsRepository.findIdsForRetention(
+            eq(JobRetentionService.FINISHED_STATUSES), cutoff.capture(), eq(PageRequest.of(0, 2))))
+        .thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+    when(jobsRepository.deleteAllByIdIn(List.of(3L))).thenReturn(1);
+    when(jobLogChunkRepository.deleteAllByJobIdIn(List.of(1L, 2L))).thenReturn(4);
+    when(jobLogChunkRepository.deleteAllByJobIdIn(List.of(3L))).thenReturn(1);
+    ZonedDateTime before = ZonedDateTime.now().minusDays(30);
+
+    assertNull(jobRetentionService.getLastReport());
+    RetentionReport report = jobRetentionService.runRetention();
+
+    assertEquals("delete", report.getMode());
+    assertEquals(3, report.getJobs());
+    assertEquals(5, report.getLogChunks());
+    assertEquals(2, report.getBatches());
+    assertEquals(cutoff.getValue(), report.getCutoff());
+    assertTrue(!report.getCutoff().isBefore(before));
+    assertEquals(report, jobRetentionService.getLastReport());
+    verify(jobsRepository, never()).archiveAllByIdIn(any(), any());
+    verify(jobLogChunkRepository, never()).archiveAllByJobIdIn(any());
+  }
+
+  @Test
+  public void archive_mode_copies_jobs_and_chunks_before_deleting_them() {
+    ReflectionTestUtils.setField(jobRetentionService, "mode", "archive");
+    when(jobsRepository.findIdsForRetention(any(), any(), any()))
+        .thenReturn(List.of(1L), List.of());
+    when(jobsRepository.deleteAllByIdIn(List.of(1L))).thenReturn(1);
+
+    RetentionReport report = jobRetentionService.runRetention();
+
+    assertEquals("archive", report.getMode());
+    assertEquals(1, report.getJobs());
+    verify(jobsRepository, times(1)).archiveAllByIdIn(eq(List.of(1L)), any());
+    verify(jobLogChunkRepository, times(1)).archiveAllByJobIdIn(List.of(1L));
+  }
+
+  @Test
+  public void scheduled_run_does_nothing_when_retention_is_off() {
+    ReflectionTestUtils.setField(jobRetentionService, "retentionDays", 0);
+
+    jobRetentionService.runScheduled();
+
+    verify(transactionOperations, never()).execute(any());
+    assertNull(jobRetentionService.getLastReport());
+  }
+
+  @Test
+  public void scheduled_run_runs_retention() {
+    when(jobsRepository.findIdsForRetention(any(), any(), any())).thenReturn(List.of());
+
+    jobRetentionService.runScheduled();
+
+    assertEquals(0, jobRetentionService.getLastReport().getJobs());
+  }
+
+  @Test
+  public void purge_all_deletes_every_job_in_batches() {
+    when(jobsRepository.findIds(PageRequest.of(0, 2))).thenReturn(List.of(1L, 2L), List.of());
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+    RetentionReport report = jobRetentionService.purgeAll();
+
+    assertEquals("purge", report.getMode());
+    assertNull(report.getCutoff());
+    assertEquals(2, report.getJobs());
+    assertEquals(1, report.getBatches());
+    assertNull(jobRetentionService.getLastReport());
+  }
+}
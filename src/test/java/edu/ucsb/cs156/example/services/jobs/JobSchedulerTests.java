@@ -0,0 +1,273 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidJobScheduleException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobScheduleRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobSchedulerTests {
+
+  @Mock private JobScheduleRepository jobScheduleRepository;
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private DatabaseJobQueue databaseJobQueue;
+
+  @InjectMocks private JobScheduler jobScheduler;
+
+  private final TestJob testJob = TestJob.builder().sleepMs(10).build();
+
+  private final ZonedDateTime now = ZonedDateTime.parse("2025-03-01T03:00:10Z");
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobScheduler, "misfireMs", 60_000L);
+    when(databaseJobQueue.decode("edu.ucsb.cs156.example.jobs.TestJob", "{\"sleepMs\":10}"))
+        .thenReturn(testJob);
+    when(jobScheduleRepository.advance(anyLong(), anyLong(), any(), any())).thenReturn(1);
+    when(jobService.runAsJob(any(), any())).thenReturn(Job.builder().id(99L).build());
+  }
+
+  private static JobSchedule.JobScheduleBuilder schedule() {
+    return JobSchedule.builder()
+        .id(4L)
+        .name("nightly")
+        .cron("0 0 3 * * *")
+        .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+        .jobSpec("{\"sleepMs\":10}")
+        .enabled(true)
+        .overlapPolicy("skip")
+        .catchUpPolicy("skip")
+        .runCount(7)
+        .nextRunAt(ZonedDateTime.parse("2025-03-01T03:00:00Z"));
+  }
+
+  @Test
+  public void due_schedule_starts_its_job_and_moves_to_the_next_day() {
+    assertTrue(jobScheduler.fire(schedule().timeoutMs(5000L).build(), now));
+
+    verify(jobScheduleRepository, times(1))
+        .advance(4L, 7L, ZonedDateTime.parse("2025-03-02T03:00:00Z"), now);
+    verify(jobService, times(1)).runAsJob(testJob, Duration.ofMillis(5000));
+    verify(jobScheduleRepository, times(1)).recordRun(4L, 99L, "started");
+  }
+
+  @Test
+  public void schedule_fired_by_another_node_is_left_alone() {
+    when(jobScheduleRepository.advance(anyLong(), anyLong(), any(), any())).thenReturn(0);
+
+    assertFalse(jobScheduler.fire(schedule().build(), now));
+
+    verify(jobService, never()).runAsJob(any(), any());
+    verify(jobScheduleRepository, never()).recordRun(anyLong(), any(), any());
+  }
+
+  @Test
+  public void missed_run_is_dropped_or_made_up_once_by_catch_up_policy() {
+    ZonedDateTime later = now.plusHours(5);
+
+    jobScheduler.fire(schedule().lastJobId(50L).build(), later);
+    verify(jobScheduleRepository, times(1)).recordRun(4L, 50L, "skipped: missed");
+    verify(jobService, never()).runAsJob(any(), any());
+
+    jobScheduler.fire(schedule().catchUpPolicy("once").build(), later);
+    verify(jobService, times(1)).runAsJob(testJob, null);
+    verify(jobScheduleRepository, times(1)).recordRun(4L, 99L, "started");
+    verify(jobScheduleRepository, times(2))
+        .advance(4L, 7L, ZonedDateTime.parse("2025-03-02T03:00:00Z"), later);
+  }
+
+  @Test
+  public void run_is_skipped_while_the_previous_one_is_still_going() {
+    when(jobsRepository.findStatusById(50L)).thenReturn(Optional.of("running"));
+    when(jobsRepository.findStatusById(51L)).thenReturn(Optional.of("queued"));
+    when(jobsRepository.findStatusById(52L)).thenReturn(Optional.of("complete"));
+
+    jobScheduler.fire(schedule().lastJobId(50L).build(), now);
+    jobScheduler.fire(schedule().lastJobId(51L).build(), now);
+    verify(jobScheduleRepository, times(1))
+        .recordRun(4L, 50L, "skipped: previous run still running");
+    verify(jobScheduleRepository, times(1))
+        .recordRun(4L, 51L, "skipped: previous run still running");
+
+    jobScheduler.fire(schedule().lastJobId(52L).build(), now);
+    jobScheduler.fire(schedule().lastJobId(53L).build(), now);
+    verify(jobService, times(2)).runAsJob(testJob, null);
+  }
+
+  @Test
+  public void run_is_skipped_while_the_previous_one_waits_to_retry() {
+    when(jobsRepository.findStatusById(54L)).thenReturn(Optional.of("retrying"));
+
+    jobScheduler.fire(schedule().lastJobId(54L).build(), now);
+    verify(jobScheduleRepository, times(1))
+        .recordRun(4L, 54L, "skipped: previous run still running");
+    verify(jobService, never()).runAsJob(testJob, null);
+  }
+
+  @Test
+  public void overlapping_runs_are_started_when_allowed() {
+    jobScheduler.fire(schedule().overlapPolicy("allow").lastJobId(50L).build(), now);
+
+    verify(jobsRepository, never()).findStatusById(anyLong());
+    verify(jobScheduleRepository, times(1)).recordRun(4L, 99L, "started");
+  }
+
+  @Test
+  public void job_that_cannot_be_started_is_recorded_as_an_error() throws Exception {
+    when(databaseJobQueue.decode(any(), eq("{}"))).thenThrow(new ClassNotFoundException("Gone"));
+
+    jobScheduler.fire(schedule().jobSpec("{}").build(), now);
+
+    verify(jobScheduleRepository, times(1)).recordRun(4L, null, "error: Gone");
+  }
+
+  @Test
+  public void fireDueSchedules_keeps_going_when_one_schedule_fails() {
+    JobSchedule broken = schedule().id(1L).cron("not a cron").build();
+    JobSchedule due = schedule().nextRunAt(ZonedDateTime.now()).build();
+    when(jobScheduleRepository.findDue(any())).thenReturn(List.of(broken, due));
+
+    jobScheduler.fireDueSchedules();
+
+    verify(jobScheduleRepository, never()).advance(eq(1L), anyLong(), any(), any());
+    verify(jobScheduleRepository, times(1)).recordRun(4L, 99L, "started");
+  }
+
+  @Test
+  public void next_run_is_delayed_by_at_most_the_jitter() {
+    ZonedDateTime slot = ZonedDateTime.parse("2025-03-02T03:00:00Z");
+    for (int i = 0; i < 20; i++) {
+      ZonedDateTime next = JobScheduler.nextRunAt(schedule().jitterMs(1000).build(), now);
+      assertFalse(next.isBefore(slot));
+      assertFalse(next.isAfter(slot.plusSeconds(1)));
+    }
+    assertEquals(slot, JobScheduler.nextRunAt(schedule().build(), now));
+    assertNull(JobScheduler.nextRunAt(schedule().cron("0 0 0 30 2 *").jitterMs(5).build(), now));
+  }
+
+  @Test
+  public void create_fills_in_defaults_and_the_first_run() throws Exception {
+    JobSchedule schedule =
+        JobSchedule.builder()
+            .name("hourly")
+            .cron("0 0 * * * *")
+            .jobType("edu.ucsb.cs156.example.jobs.TestJob")
+            .runCount(3)
+            .build();
+    when(databaseJobQueue.decode("edu.ucsb.cs156.example.jobs.TestJob", "{}")).thenReturn(testJob);
+    when(jobScheduleRepository.save(schedule)).thenReturn(schedule);
+
+    ZonedDateTime before = ZonedDateTime.now();
+    assertEquals(schedule, jobScheduler.create(schedule));
+
+    assertEquals("skip", schedule.getOverlapPolicy());
+    assertEquals("skip", schedule.getCatchUpPolicy());
+    assertEquals("{}", schedule.getJobSpec());
+    assertEquals(0, schedule.getRunCount());
+    assertTrue(schedule.getNextRunAt().isAfter(before));
+    assertFalse(schedule.getNextRunAt().isAfter(before.plusHours(1)));
+  }
+
+  @Test
+  public void update_replaces_settings_and_the_next_run() {
+    JobSchedule stored = schedule().lastJobId(50L).build();
+    when(jobScheduleRepository.findById(4L)).thenReturn(Optional.of(stored));
+    when(jobScheduleRepository.save(stored)).thenReturn(stored);
+    JobSchedule incoming =
+        schedule()
+            .id(0L)
+            .name("weekly")
+            .cron("0 0 4 * * MON")
+            .enabled(false)
+            .overlapPolicy("allow")
+            .catchUpPolicy("once")
+            .jitterMs(10)
+            .timeoutMs(1000L)
+            .lastJobId(null)
+            .build();
+
+    JobSchedule updated = jobScheduler.update(4L, incoming);
+
+    assertEquals(4L, updated.getId());
+    assertEquals("weekly", updated.getName());
+    assertEquals("0 0 4 * * MON", updated.getCron());
+    assertFalse(updated.getEnabled());
+    assertEquals("allow", updated.getOverlapPolicy());
+    assertEquals("once", updated.getCatchUpPolicy());
+    assertEquals(10L, updated.getJitterMs());
+    assertEquals(1000L, updated.getTimeoutMs());
+    assertEquals("edu.ucsb.cs156.example.jobs.TestJob", updated.getJobType());
+    assertEquals("{\"sleepMs\":10}", updated.getJobSpec());
+    assertEquals(50L, updated.getLastJobId());
+    assertTrue(updated.getNextRunAt().isAfter(ZonedDateTime.parse("2025-03-01T03:00:00Z")));
+
+    assertThrows(EntityNotFoundException.class, () -> jobScheduler.update(5L, incoming));
+  }
+
+  @Test
+  public void invalid_schedules_are_rejected() throws Exception {
+    when(databaseJobQueue.decode("NoSuchJob", "{}"))
+        .thenThrow(new ClassNotFoundException("NoSuchJob"));
+
+    assertInvalid("Schedule name is required", schedule().name(null));
+    assertInvalid("Schedule name is required", schedule().name(" "));
+    assertInvalid("Invalid cron expression: null", schedule().cron(null));
+    assertInvalid("Invalid cron expression: daily", schedule().cron("daily"));
+    assertInvalid(
+        "overlapPolicy must be one of [skip, allow]: never", schedule().overlapPolicy("never"));
+    assertInvalid(
+        "catchUpPolicy must be one of [skip, once]: all", schedule().catchUpPolicy("all"));
+    assertInvalid("jitterMs must not be negative", schedule().jitterMs(-1));
+    assertInvalid("jobType is required", schedule().jobType(null));
+    assertInvalid("Cannot build job: NoSuchJob", schedule().jobType("NoSuchJob").jobSpec(null));
+    verify(jobScheduleRepository, never()).save(any());
+  }
+
+  private void assertInvalid(String message, JobSchedule.JobScheduleBuilder schedule) {
+    InvalidJobScheduleException e =
+        assertThrows(
+            InvalidJobScheduleException.class, () -> jobScheduler.create(schedule.build()));
+    assertEquals(message, e.getMessage());
+  }
+
+  @Test
+  public void started_job_is_run_with_the_decoded_function() {
+    ArgumentCaptor<JobContextConsumer> started = ArgumentCaptor.forClass(JobContextConsumer.class);
+
+    jobScheduler.fire(schedule().build(), now);
+
+    verify(jobService).runAsJob(started.capture(), eq(null));
+    assertEquals(testJob, started.getValue());
+  }
+}
@@ -0,0 +1,998 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogChunk;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.JobQueueFullException;
+import edu.ucsb.cs156.example.repositories.JobLogChunkRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogChunkRepository jobLogChunkRepository;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
+  @Mock private JobExecutor jobExecutor;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private DatabaseJobQueue databaseJobQueue;
+
+  @Mock private JobLogCompressionService jobLogCompressionService;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private JobStatusNotifier jobStatusNotifier;
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @AfterEach
+  public void teardown() {
+    jobService.shutdown();
+  }
+
+  private static JobContextConsumer buffered(JobContextConsumer body, LogFlushPolicy policy) {
+    return new JobContextConsumer() {
+      @Override
+      public void accept(JobContext c) throws Exception {
+        body.accept(c);
+      }
+
+      @Override
+      public LogFlushPolicy logFlushPolicy() {
+        return policy;
+      }
+    };
+  }
+
+  @Test
+  public void buffered_lines_are_flushed_when_job_completes() {
+    Job job = Job.builder().id(1L).status("running").build();
+
+    jobService.runJobAsync(
+        job,
+        buffered(
+            ctx -> {
+              ctx.log("one");
+              ctx.log("two");
+            },
+            LogFlushPolicy.BUFFERED));
+
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(1L).seq(0).text("one\ntwo").build());
+    assertEquals("complete", job.getStatus());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1))
+        .publish(JobLogChunk.builder().jobId(1L).seq(0).text("one\ntwo").build());
+  }
+
+  @Test
+  public void buffered_lines_are_not_lost_when_job_fails() {
+    Job job = Job.builder().id(2L).status("running").build();
+
+    jobService.runJobAsync(
+        job,
+        buffered(
+            ctx -> {
+              ctx.log("before failure");
+              throw new Exception("boom");
+            },
+            LogFlushPolicy.BUFFERED));
+
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(2L).seq(0).text("before failure\nboom").build());
+    assertEquals("error", job.getStatus());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void flushDueJobLogs_writes_lines_of_quiet_running_jobs() throws Exception {
+    Clock clock = mock(Clock.class);
+    Instant start = Instant.parse("2025-01-01T00:00:00Z");
+    when(clock.instant()).thenReturn(start);
+    ReflectionTestUtils.setField(jobService, "clock", clock);
+    Job job = Job.builder().id(3L).status("running").build();
+    CountDownLatch logged = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    LogFlushPolicy policy = LogFlushPolicy.builder().maxInterval(Duration.ofSeconds(2)).build();
+
+    Thread runner =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    buffered(
+                        ctx -> {
+                          ctx.log("waiting");
+                          logged.countDown();
+                          release.await();
+                        },
+                        policy)));
+    runner.start();
+    assertTrue(logged.await(5, SECONDS));
+
+    jobService.flushDueJobLogs();
+    verify(jobLogChunkRepository, never()).save(any());
+
+    when(clock.instant()).thenReturn(start.plusSeconds(2));
+    jobService.flushDueJobLogs();
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(3L).seq(0).text("waiting").build());
+
+    release.countDown();
+    runner.join();
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+  }
+
+  @Test
+  public void runAsJob_saves_job_and_submits_it_by_type() {
+    JobContextConsumer jobFunction = ctx -> ctx.log("hi");
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(jobFunction);
+
+    assertEquals("running", job.getStatus());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobExecutor, times(1))
+        .submit(
+            eq(jobFunction.getClass()),
+            eq(JobExecutor.SYSTEM_OWNER),
+            eq(JobPriority.NORMAL),
+            task.capture());
+
+    task.getValue().run();
+    assertEquals("complete", job.getStatus());
+    verify(jobMetrics, times(1)).submitted(jobFunction.getClass());
+    verify(jobMetrics, times(1)).started(jobFunction.getClass(), null);
+    verify(jobMetrics, times(1)).finished(eq(jobFunction.getClass()), eq("complete"), any());
+    InOrder notified = inOrder(jobStatusNotifier);
+    notified.verify(jobStatusNotifier).submitted(job);
+    notified.verify(jobStatusNotifier).started(job);
+    notified.verify(jobStatusNotifier).finished(job);
+  }
+
+  @Test
+  public void runAsJob_deletes_job_when_queue_is_full() throws Exception {
+    JobQueueFullException full = new JobQueueFullException("X", 1);
+    doThrow(full).when(jobExecutor).submit(any(), any(), any(), any());
+    JobContextConsumer jobFunction = spy(failing(RetryPolicy.NONE));
+
+    JobQueueFullException thrown =
+        assertThrows(JobQueueFullException.class, () -> jobService.runAsJob(jobFunction));
+
+    assertEquals(full, thrown);
+    verify(jobsRepository, times(1)).delete(any(Job.class));
+    verify(jobMetrics, times(1)).rejected(any());
+    verify(jobMetrics, never()).submitted(any());
+    ArgumentCaptor<Job> rejected = ArgumentCaptor.forClass(Job.class);
+    verify(jobStatusNotifier, times(1)).finished(rejected.capture());
+    assertEquals("rejected", rejected.getValue().getStatus());
+    verify(jobFunction, times(1)).onFinished();
+  }
+
+  @Test
+  public void runAsJob_in_database_mode_enqueues_jobs_that_can_be_queued() {
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    JobContextConsumer queueable = ctx -> {};
+    JobContextConsumer notQueueable = ctx -> {};
+    when(databaseJobQueue.canEnqueue(queueable)).thenReturn(true);
+    when(databaseJobQueue.enqueue(any(), eq(queueable)))
+        .thenAnswer(inv -> inv.getArgument(0, Job.class));
+
+    Job queued = jobService.runAsJob(queueable);
+    verify(databaseJobQueue, times(1)).enqueue(queued, queueable);
+    verify(jobMetrics, times(1)).submitted(queueable.getClass());
+    verify(jobStatusNotifier, times(1)).submitted(queued);
+    verify(jobExecutor, never()).submit(any(), any(), any(), any());
+
+    Job started = jobService.runAsJob(notQueueable);
+    verify(jobExecutor, times(1)).submit(eq(notQueueable.getClass()), any(), any(), any());
+    verify(jobsRepository, times(1)).save(started);
+  }
+
+  @Test
+  public void runAsJobs_looks_up_the_user_once_and_saves_all_jobs_together() {
+    when(currentUserService.getUser()).thenReturn(User.builder().id(5L).build());
+    JobContextConsumer first = ctx -> ctx.log("one");
+    JobContextConsumer second = ctx -> ctx.log("two");
+    ArgumentCaptor<List<JobExecutor.Submission>> submissions = ArgumentCaptor.forClass(List.class);
+
+    List<Job> jobs = jobService.runAsJobs(List.of(first, second), Duration.ofSeconds(30));
+
+    assertEquals(2, jobs.size());
+    verify(currentUserService, times(1)).getUser();
+    verify(jobsRepository, times(1)).saveAll(jobs);
+    verify(jobsRepository, never()).save(any());
+    verify(jobExecutor, times(1)).submitAll(submissions.capture());
+    assertEquals(2, submissions.getValue().size());
+    assertEquals(first.getClass(), submissions.getValue().get(0).getJobType());
+    assertEquals("5", submissions.getValue().get(1).getOwner());
+    for (Job job : jobs) {
+      assertEquals("running", job.getStatus());
+      assertEquals(5L, job.getCreatedBy().getId());
+      assertEquals(30000L, job.getTimeoutMs());
+    }
+
+    submissions.getValue().forEach(submission -> submission.getTask().run());
+    assertEquals("complete", jobs.get(0).getStatus());
+    assertEquals("complete", jobs.get(1).getStatus());
+    verify(jobMetrics, times(1)).submitted(first.getClass());
+    verify(jobMetrics, times(1)).submitted(second.getClass());
+    verify(jobStatusNotifier, times(2)).submitted(any());
+  }
+
+  @Test
+  public void runAsJobs_deletes_every_job_when_the_queue_cannot_take_them_all() throws Exception {
+    JobQueueFullException full = new JobQueueFullException("a batch of 2 jobs", 1);
+    doThrow(full).when(jobExecutor).submitAll(any());
+    JobContextConsumer first = spy(failing(RetryPolicy.NONE));
+    JobContextConsumer second = spy(failing(RetryPolicy.NONE));
+
+    JobQueueFullException thrown =
+        assertThrows(
+            JobQueueFullException.class, () -> jobService.runAsJobs(List.of(first, second), null));
+
+    assertEquals(full, thrown);
+    verify(jobsRepository, times(1)).deleteAll(any());
+    verify(jobMetrics, times(2)).rejected(any());
+    verify(jobMetrics, never()).submitted(any());
+    verify(jobStatusNotifier, times(2)).finished(any());
+    assertEquals(Set.of(), jobService.getActiveJobIds());
+    verify(first, times(1)).onFinished();
+    verify(second, times(1)).onFinished();
+  }
+
+  @Test
+  public void runAsJobs_in_database_mode_queues_all_jobs_together() {
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    JobContextConsumer first = ctx -> {};
+    JobContextConsumer second = ctx -> {};
+    when(databaseJobQueue.canEnqueue(any())).thenReturn(true);
+
+    List<Job> jobs = jobService.runAsJobs(List.of(first, second), null);
+
+    verify(databaseJobQueue, times(1)).enqueueAll(jobs, List.of(first, second));
+    verify(jobsRepository, never()).saveAll(any());
+    verify(jobExecutor, never()).submitAll(any());
+    verify(jobMetrics, times(2)).submitted(any());
+    verify(jobStatusNotifier, times(1)).submitted(jobs.get(0));
+    verify(jobStatusNotifier, times(1)).submitted(jobs.get(1));
+  }
+
+  @Test
+  public void runAsJobs_in_database_mode_runs_every_job_here_if_one_cannot_be_queued() {
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    JobContextConsumer queueable = ctx -> {};
+    JobContextConsumer notQueueable = ctx -> {};
+    when(databaseJobQueue.canEnqueue(queueable)).thenReturn(true);
+
+    List<Job> jobs = jobService.runAsJobs(List.of(queueable, notQueueable), null);
+
+    verify(databaseJobQueue, never()).enqueueAll(any(), any());
+    verify(jobsRepository, times(1)).saveAll(jobs);
+    verify(jobExecutor, times(1)).submitAll(any());
+  }
+
+  @Test
+  public void runAsJobs_with_no_jobs_does_nothing() {
+    assertEquals(List.of(), jobService.runAsJobs(List.of(), null));
+    verify(currentUserService, never()).getUser();
+    verify(jobsRepository, never()).saveAll(any());
+  }
+
+  @Test
+  public void cancel_interrupts_a_running_job() throws Exception {
+    Job job = Job.builder().id(10L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+
+    Thread runner =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      Thread.sleep(60_000);
+                    }));
+    runner.start();
+    assertTrue(started.await(5, SECONDS));
+
+    assertEquals("Cancellation requested for job 10", jobService.cancel(10L));
+    runner.join(5_000);
+
+    assertEquals("cancelled", job.getStatus());
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(10L).seq(0).text("Job cancelled").build());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+    assertFalse(jobService.cancelRunning(10L, "cancelled"));
+  }
+
+  @Test
+  public void job_cancelled_before_it_starts_does_not_run() throws Exception {
+    JobContextConsumer jobFunction = mock(JobContextConsumer.class);
+    when(jobFunction.logFlushPolicy()).thenReturn(LogFlushPolicy.IMMEDIATE);
+    when(jobFunction.retryPolicy()).thenReturn(RetryPolicy.NONE);
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(jobFunction);
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    assertEquals("Cancellation requested for job 0", jobService.cancel(0L));
+
+    task.getValue().run();
+    assertEquals("cancelled", job.getStatus());
+    verify(jobFunction, never()).accept(any());
+    // What the job holds, e.g. an upload waiting to be imported, is still released
+    verify(jobFunction, times(1)).onFinished();
+  }
+
+  @Test
+  public void job_cancelled_while_waiting_for_a_slot_is_taken_out_of_the_queue() throws Exception {
+    JobContextConsumer jobFunction = mock(JobContextConsumer.class);
+    when(jobFunction.logFlushPolicy()).thenReturn(LogFlushPolicy.IMMEDIATE);
+    when(jobFunction.retryPolicy()).thenReturn(RetryPolicy.NONE);
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(jobFunction);
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    when(jobExecutor.withdraw(task.getValue())).thenReturn(true);
+
+    assertEquals("Cancellation requested for job 0", jobService.cancel(0L));
+
+    // Finished as cancelled there and then, rather than when a slot would have come free
+    assertEquals("cancelled", job.getStatus());
+    verify(jobFunction, never()).accept(any());
+    verify(jobFunction, times(1)).onFinished();
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+    assertFalse(jobService.cancelRunning(0L, "cancelled"));
+  }
+
+  @Test
+  public void job_that_runs_past_its_timeout_is_stopped() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(ctx -> Thread.sleep(60_000), Duration.ofMillis(50));
+    assertEquals(50L, job.getTimeoutMs());
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+
+    task.getValue().run();
+    assertEquals("timed_out", job.getStatus());
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(0L).seq(0).text("Job timed out after 50 ms").build());
+  }
+
+  @Test
+  public void job_that_finishes_within_its_timeout_completes() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(ctx -> {}, Duration.ofSeconds(60));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+
+    task.getValue().run();
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  public void cancel_of_a_queued_job_cancels_it_in_the_database() {
+    Job job = Job.builder().id(11L).status("cancelled").build();
+    when(jobsRepository.cancelIfQueued(11L)).thenReturn(1);
+    when(jobsRepository.findById(11L)).thenReturn(Optional.of(job));
+
+    assertEquals("Job 11 cancelled", jobService.cancel(11L));
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+    verify(jobStatusNotifier, times(1)).finished(job);
+    verify(jobsRepository, never()).requestCancel(11L);
+  }
+
+  @Test
+  public void cancel_of_a_job_running_on_another_node_flags_it() {
+    when(jobsRepository.requestCancel(12L)).thenReturn(1);
+
+    assertEquals("Cancellation requested for job 12", jobService.cancel(12L));
+  }
+
+  @Test
+  public void cancel_of_a_finished_job_does_nothing() {
+    when(jobsRepository.findStatusById(13L)).thenReturn(Optional.of("complete"));
+
+    assertEquals("Job 13 is not running (status: complete)", jobService.cancel(13L));
+    assertThrows(EntityNotFoundException.class, () -> jobService.cancel(14L));
+  }
+
+  @Test
+  public void final_progress_is_saved_with_the_job() {
+    Job job = Job.builder().id(15L).status("running").build();
+
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.setProgressTotal(3);
+          ctx.advanceProgress(3);
+        });
+
+    assertEquals(3L, job.getProgressTotal());
+    assertEquals(3L, job.getProgressDone());
+    verify(jobsRepository, times(1))
+        .updateProgress(eq(15L), eq(3L), eq(3L), eq(null), eq("{}"), any());
+    verify(jobStatusNotifier, times(1)).progress(eq(job), any());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void resources_used_by_the_job_are_saved_with_it() {
+    JobContextConsumer jobFunction = ctx -> Thread.sleep(20);
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(jobFunction);
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+
+    assertEquals(jobFunction.getClass().getName(), job.getJobType());
+    assertTrue(job.getWallTimeMs() >= 20);
+    assertTrue(job.getCpuTimeMs() >= 0);
+    assertTrue(job.getAllocatedBytes() >= 0);
+    assertEquals(0, job.getSqlStatements());
+    verify(jobsRepository, times(2)).save(job);
+  }
+
+  @Test
+  public void finished_job_log_is_moved_to_cold_storage() {
+    Job job = Job.builder().id(16L).status("running").build();
+
+    jobService.runJobAsync(job, ctx -> ctx.log("done"));
+
+    verify(jobLogCompressionService, times(1)).compress(16L);
+  }
+
+  @Test
+  public void job_still_finishes_if_its_log_cannot_be_compressed() {
+    Job job = Job.builder().id(17L).status("running").build();
+    doThrow(new IllegalStateException("db down")).when(jobLogCompressionService).compress(17L);
+
+    jobService.runJobAsync(job, ctx -> {});
+
+    assertEquals("complete", job.getStatus());
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+  }
+
+  @Test
+  public void job_still_finishes_if_it_cannot_release_what_it_holds() throws Exception {
+    Job job = Job.builder().id(18L).status("running").build();
+    JobContextConsumer jobFunction = spy(failing(RetryPolicy.NONE));
+    doThrow(new IOException("file is busy")).when(jobFunction).onFinished();
+
+    jobService.runJobAsync(job, jobFunction);
+
+    assertEquals("complete", job.getStatus());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+  }
+
+  @Test
+  public void queue_wait_and_outcome_are_recorded() {
+    Job job =
+        Job.builder()
+            .id(18L)
+            .status("running")
+            .createdAt(ZonedDateTime.now().minusSeconds(5))
+            .build();
+    JobContextConsumer jobFunction =
+        ctx -> {
+          throw new Exception("boom");
+        };
+    ArgumentCaptor<Duration> wait = ArgumentCaptor.forClass(Duration.class);
+
+    jobService.runJobAsync(job, jobFunction);
+
+    verify(jobMetrics, times(1)).started(eq(jobFunction.getClass()), wait.capture());
+    assertTrue(wait.getValue().compareTo(Duration.ofSeconds(5)) >= 0);
+    verify(jobMetrics, times(1)).finished(eq(jobFunction.getClass()), eq("error"), any());
+  }
+
+  @Test
+  public void queue_wait_is_not_recorded_again_for_a_retry() {
+    // A job claimed from the database queue after a failed attempt still has its creation time
+    Job job =
+        Job.builder()
+            .id(19L)
+            .status("running")
+            .attempts(1)
+            .createdAt(ZonedDateTime.now().minusMinutes(5))
+            .build();
+    JobContextConsumer jobFunction = failing(QUICK_RETRIES);
+
+    jobService.runJobAsync(job, jobFunction);
+
+    verify(jobMetrics, times(1)).started(jobFunction.getClass(), null);
+    assertEquals(2, job.getAttempts());
+  }
+
+  @Test
+  public void submission_with_the_key_of_an_in_flight_job_gets_that_job() throws Exception {
+    Job running = Job.builder().id(20L).status("running").build();
+    when(jobsRepository.findByActiveIdempotencyKey("k")).thenReturn(Optional.of(running));
+    JobContextConsumer jobFunction = spy(failing(RetryPolicy.NONE));
+
+    assertEquals(running, jobService.runAsJob(jobFunction, null, "k"));
+
+    verify(jobsRepository, never()).save(any());
+    verify(jobExecutor, never()).submit(any(), any(), any(), any());
+    verify(jobMetrics, times(1)).deduplicated(jobFunction.getClass());
+    verify(jobFunction, times(1)).onFinished();
+  }
+
+  @Test
+  public void new_job_records_its_key_until_it_finishes() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+    Job job = jobService.runAsJob(ctx -> {}, null, "k");
+
+    assertEquals("k", job.getIdempotencyKey());
+    assertEquals("k", job.getActiveIdempotencyKey());
+    verify(jobsRepository, never())
+        .findFirstByIdempotencyKeyAndStatusAndUpdatedAtGreaterThanEqualOrderByUpdatedAtDesc(
+            any(), any(), any());
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+
+    task.getValue().run();
+    assertEquals("k", job.getIdempotencyKey());
+    assertEquals(null, job.getActiveIdempotencyKey());
+  }
+
+  @Test
+  public void recently_completed_job_is_reused_within_the_window() {
+    ReflectionTestUtils.setField(jobService, "reuseWindowSeconds", 60L);
+    Job done = Job.builder().id(21L).status("complete").build();
+    ArgumentCaptor<ZonedDateTime> since = ArgumentCaptor.forClass(ZonedDateTime.class);
+    when(jobsRepository
+            .findFirstByIdempotencyKeyAndStatusAndUpdatedAtGreaterThanEqualOrderByUpdatedAtDesc(
+                eq("k"), eq("complete"), since.capture()))
+        .thenReturn(Optional.of(done));
+
+    ZonedDateTime before = ZonedDateTime.now();
+    assertEquals(done, jobService.runAsJob(ctx -> {}, null, "k"));
+
+    assertFalse(since.getValue().isBefore(before.minusSeconds(60)));
+    assertTrue(since.getValue().isBefore(before.minusSeconds(59)));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  public void submission_that_loses_a_race_gets_the_winning_job() {
+    Job winner = Job.builder().id(22L).status("running").build();
+    when(jobsRepository.findByActiveIdempotencyKey("k"))
+        .thenReturn(Optional.empty(), Optional.of(winner));
+    when(jobsRepository.save(any())).thenThrow(new DataIntegrityViolationException("unique"));
+
+    assertEquals(winner, jobService.runAsJob(ctx -> {}, null, "k"));
+
+    verify(jobExecutor, never()).submit(any(), any(), any(), any());
+    verify(jobMetrics, times(1)).deduplicated(any());
+  }
+
+  @Test
+  public void failed_save_is_rethrown_when_there_is_no_job_to_share() {
+    DataIntegrityViolationException failure = new DataIntegrityViolationException("unique");
+    when(jobsRepository.save(any())).thenThrow(failure);
+
+    assertEquals(
+        failure,
+        assertThrows(
+            DataIntegrityViolationException.class,
+            () -> jobService.runAsJob(ctx -> {}, null, null)));
+    assertEquals(
+        failure,
+        assertThrows(
+            DataIntegrityViolationException.class,
+            () -> jobService.runAsJob(ctx -> {}, null, "k")));
+  }
+
+  @Test
+  public void queued_submission_that_loses_a_race_gets_the_winning_job() {
+    ReflectionTestUtils.setField(jobService, "queueMode", "database");
+    JobContextConsumer jobFunction = ctx -> {};
+    Job winner = Job.builder().id(23L).status("queued").build();
+    when(databaseJobQueue.canEnqueue(jobFunction)).thenReturn(true);
+    when(databaseJobQueue.enqueue(any(), eq(jobFunction)))
+        .thenThrow(new DataIntegrityViolationException("unique"));
+    when(jobsRepository.findByActiveIdempotencyKey("k"))
+        .thenReturn(Optional.empty(), Optional.of(winner));
+
+    assertEquals(winner, jobService.runAsJob(jobFunction, null, "k"));
+    verify(jobMetrics, never()).submitted(any());
+  }
+
+  @Test
+  public void idempotency_key_is_derived_from_the_job_class_and_fields() {
+    JobContextConsumer lambda = ctx -> {};
+    assertEquals(null, jobService.idempotencyKeyOf(lambda));
+
+    SampleJob job = new SampleJob();
+    when(databaseJobQueue.canEnqueue(job)).thenReturn(true);
+    when(databaseJobQueue.encode(job)).thenReturn("{\"n\":1}");
+
+    assertEquals(
+        "SampleJob:" + UUID.nameUUIDFromBytes("{\"n\":1}".getBytes(StandardCharsets.UTF_8)),
+        jobService.idempotencyKeyOf(job));
+  }
+
+  @Test
+  public void restartable_job_keeps_what_is_needed_to_rebuild_it() {
+    RestartableJob restartable = new RestartableJob();
+    when(databaseJobQueue.canEnqueue(restartable)).thenReturn(true);
+    when(databaseJobQueue.encode(restartable)).thenReturn("{}");
+
+    Job job = jobService.runAsJob(restartable);
+
+    assertTrue(job.getRestartable());
+    assertEquals(RestartableJob.class.getName(), job.getJobType());
+    assertEquals("{}", job.getJobSpec());
+
+    SampleJob sample = new SampleJob();
+    when(databaseJobQueue.canEnqueue(sample)).thenReturn(true);
+    Job notRestartable = jobService.runAsJob(sample);
+    assertFalse(notRestartable.getRestartable());
+    assertEquals(null, notRestartable.getJobSpec());
+
+    // A job that asks to be restarted but could not be rebuilt from its record is not kept either
+    Job cannotBeRebuilt = jobService.runAsJob(new RestartableJob());
+    assertFalse(cannotBeRebuilt.getRestartable());
+    assertEquals(null, cannotBeRebuilt.getJobSpec());
+  }
+
+  @Test
+  public void resubmitted_job_takes_the_place_of_the_abandoned_one() {
+    User user = User.builder().id(7L).build();
+    Job abandoned =
+        Job.builder()
+            .id(30L)
+            .createdBy(user)
+            .status("abandoned")
+            .timeoutMs(5000L)
+            .idempotencyKey("k")
+            .restartable(true)
+            .restarts(1)
+            .build();
+    RestartableJob restartable = new RestartableJob();
+    when(databaseJobQueue.canEnqueue(restartable)).thenReturn(true);
+    when(databaseJobQueue.encode(restartable)).thenReturn("{}");
+
+    Job job = jobService.resubmit(abandoned, restartable);
+
+    assertEquals(user, job.getCreatedBy());
+    assertEquals("running", job.getStatus());
+    assertEquals(5000L, job.getTimeoutMs());
+    assertEquals("k", job.getActiveIdempotencyKey());
+    assertTrue(job.getRestartable());
+    assertEquals(2, job.getRestarts());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobExecutor, times(1))
+        .submit(eq(RestartableJob.class), eq("7"), eq(JobPriority.NORMAL), any());
+    verify(currentUserService, never()).getUser();
+  }
+
+  @Test
+  public void heartbeats_are_written_for_active_jobs_only() {
+    jobService.heartbeatActiveJobs();
+    verify(jobsRepository, never()).updateHeartbeats(any(), any());
+
+    Job job = jobService.runAsJob(ctx -> {});
+    assertEquals(Set.of(job.getId()), jobService.getActiveJobIds());
+
+    jobService.heartbeatActiveJobs();
+    verify(jobsRepository, times(1)).updateHeartbeats(eq(Set.of(job.getId())), any());
+  }
+
+  @Test
+  public void job_is_queued_under_its_user_and_priority() {
+    when(currentUserService.getUser()).thenReturn(User.builder().id(5L).build());
+    JobContextConsumer batchJob =
+        new JobContextConsumer() {
+          @Override
+          public void accept(JobContext c) {}
+
+          @Override
+          public JobPriority priority() {
+            return JobPriority.BATCH;
+          }
+        };
+
+    jobService.runAsJob(batchJob);
+
+    verify(jobExecutor, times(1))
+        .submit(eq(batchJob.getClass()), eq("5"), eq(JobPriority.BATCH), any());
+  }
+
+  /** A job that fails with the given exceptions, one per attempt, and then succeeds */
+  private static JobContextConsumer failing(RetryPolicy policy, Exception... failures) {
+    AtomicInteger attempt = new AtomicInteger();
+    return new JobContextConsumer() {
+      @Override
+      public void accept(JobContext c) throws Exception {
+        int n = attempt.getAndIncrement();
+        if (n < failures.length) throw failures[n];
+        c.log("done");
+      }
+
+      @Override
+      public RetryPolicy retryPolicy() {
+        return policy;
+      }
+    };
+  }
+
+  private static final RetryPolicy QUICK_RETRIES =
+      RetryPolicy.builder().maxAttempts(3).initialBackoff(Duration.ofMillis(50)).jitter(0).build();
+
+  @Test
+  public void transient_failure_is_retried_after_a_backoff() throws Exception {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    JobContextConsumer jobFunction =
+        spy(failing(QUICK_RETRIES, new CannotAcquireLockException("deadlock")));
+    Job job = jobService.runAsJob(jobFunction, null, "k");
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+
+    ZonedDateTime before = ZonedDateTime.now();
+    task.getValue().run();
+
+    assertEquals("retrying", job.getStatus());
+    assertEquals(1, job.getAttempts());
+    assertFalse(job.getRunAfter().isBefore(before.plusNanos(50_000_000)));
+    assertEquals("k", job.getActiveIdempotencyKey());
+    assertEquals(Set.of(job.getId()), jobService.getActiveJobIds());
+    verify(jobLogChunkRepository, times(1))
+        .save(
+            JobLogChunk.builder()
+                .jobId(0L)
+                .seq(0)
+                .text("Attempt 1 of 3 failed, retrying in 50 ms: deadlock")
+                .build());
+    verify(jobLogStreamService, never()).jobFinished(any());
+    verify(jobMetrics, times(1)).retried(any());
+    verify(jobStatusNotifier, times(1)).retrying(job);
+    verify(jobStatusNotifier, never()).finished(any());
+    verify(jobFunction, never()).onFinished();
+
+    // No thread waits out the backoff; the job is handed to the executor again once it is over
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(() -> verify(jobExecutor, times(2)).submit(any(), any(), any(), any()));
+    verify(jobExecutor, times(2)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+
+    assertEquals("complete", job.getStatus());
+    assertEquals(2, job.getAttempts());
+    assertEquals(null, job.getRunAfter());
+    assertEquals(null, job.getActiveIdempotencyKey());
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(0L).seq(1).text("done").build());
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+    verify(jobMetrics, times(1)).finished(any(), eq("complete"), any());
+    verify(jobFunction, times(1)).onFinished();
+  }
+
+  @Test
+  public void every_attempt_is_recorded_in_the_history() throws Exception {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Job job =
+        jobService.runAsJob(
+            failing(
+                QUICK_RETRIES,
+                new SocketTimeoutException("upstream timed out"),
+                new CannotAcquireLockException("deadlock"),
+                new SocketTimeoutException("upstream timed out again")));
+
+    for (int attempt = 1; attempt <= 3; attempt++) {
+      int submissions = attempt;
+      await()
+          .atMost(5, SECONDS)
+          .untilAsserted(
+              () -> verify(jobExecutor, times(submissions)).submit(any(), any(), any(), any()));
+      verify(jobExecutor, times(submissions)).submit(any(), any(), any(), task.capture());
+      task.getValue().run();
+    }
+
+    assertEquals("error", job.getStatus());
+    assertEquals(3, job.getAttempts());
+    List<Map<String, Object>> history =
+        new ObjectMapper().readValue(job.getAttemptHistory(), new TypeReference<>() {});
+    assertEquals(3, history.size());
+    assertEquals(1, history.get(0).get("attempt"));
+    assertEquals("retrying", history.get(0).get("outcome"));
+    assertEquals("upstream timed out", history.get(0).get("error"));
+    assertTrue(history.get(0).containsKey("retryAt"));
+    assertEquals("retrying", history.get(1).get("outcome"));
+    assertEquals("deadlock", history.get(1).get("error"));
+    assertEquals(3, history.get(2).get("attempt"));
+    assertEquals("error", history.get(2).get("outcome"));
+    assertFalse(history.get(2).containsKey("retryAt"));
+  }
+
+  @Test
+  public void failure_that_is_not_transient_is_not_retried() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Job job =
+        jobService.runAsJob(failing(QUICK_RETRIES, new IllegalArgumentException("bad input")));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+
+    task.getValue().run();
+
+    assertEquals("error", job.getStatus());
+    assertEquals(1, job.getAttempts());
+    verify(jobMetrics, never()).retried(any());
+    assertEquals(Set.of(), jobService.getActiveJobIds());
+  }
+
+  @Test
+  public void job_cancelled_during_its_backoff_stops_at_once() {
+    RetryPolicy slowRetries =
+        QUICK_RETRIES.toBuilder().initialBackoff(Duration.ofMinutes(10)).build();
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Job job = jobService.runAsJob(failing(slowRetries, new SocketTimeoutException("slow")));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+    assertEquals("retrying", job.getStatus());
+
+    assertEquals("Cancellation requested for job 0", jobService.cancel(0L));
+
+    verify(jobExecutor, times(2)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+    assertEquals("cancelled", job.getStatus());
+    assertEquals(2, job.getAttempts());
+    verify(jobLogStreamService, times(1)).jobFinished(job);
+  }
+
+  @Test
+  public void retry_waits_another_backoff_if_the_executor_is_full() {
+    doNothing()
+        .doThrow(new JobQueueFullException("X", 1))
+        .doNothing()
+        .when(jobExecutor)
+        .submit(any(), any(), any(), any());
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Job job = jobService.runAsJob(failing(QUICK_RETRIES, new SocketTimeoutException("slow")));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+    assertEquals("retrying", job.getStatus());
+
+    // The first resume is turned away; the job is not failed but tried again after a backoff
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(() -> verify(jobExecutor, times(3)).submit(any(), any(), any(), any()));
+    verify(jobExecutor, times(3)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+    assertEquals("complete", job.getStatus());
+    assertEquals(2, job.getAttempts());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void cancel_does_not_resume_a_retry_whose_timer_has_already_fired() {
+    RetryPolicy slowRetries =
+        QUICK_RETRIES.toBuilder().initialBackoff(Duration.ofMinutes(10)).build();
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    Job job = jobService.runAsJob(failing(slowRetries, new SocketTimeoutException("slow")));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), task.capture());
+    task.getValue().run();
+
+    // Stands in for the timer having fired just before the cancel: its future can no longer be
+    // cancelled, and the timer's own run of resume hands the job to the executor
+    Object retry =
+        ((Map<Long, Object>) ReflectionTestUtils.getField(jobService, "pendingRetries"))
+            .get(job.getId());
+    ((Future<?>) ReflectionTestUtils.getField(retry, "future")).cancel(false);
+
+    assertTrue(jobService.cancelRunning(job.getId(), "cancelled"));
+    verify(jobExecutor, times(1)).submit(any(), any(), any(), any());
+  }
+
+  @Test
+  public void attempt_history_that_cannot_be_read_is_left_as_it_is() {
+    for (String history : List.of("not json", "{\"attempt\":1}")) {
+      Job job = Job.builder().id(41L).status("running").attemptHistory(history).build();
+
+      jobService.runJobAsync(job, failing(QUICK_RETRIES));
+
+      assertEquals("complete", job.getStatus());
+      assertEquals(history, job.getAttemptHistory());
+    }
+  }
+
+  @Test
+  public void job_from_the_database_queue_goes_back_on_the_queue_to_be_retried() {
+    Job job = Job.builder().id(40L).status("running").leaseOwner("worker-1").build();
+
+    jobService.runJobAsync(job, failing(QUICK_RETRIES, new SocketTimeoutException("slow")));
+
+    assertEquals("queued", job.getStatus());
+    assertEquals(null, job.getLeaseOwner());
+    assertTrue(job.getRunAfter().isAfter(ZonedDateTime.now()));
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobExecutor, never()).submit(any(), any(), any(), any());
+    assertEquals(Set.of(), jobService.getActiveJobIds());
+  }
+
+  @Test
+  public void retried_job_appends_to_the_log_of_its_earlier_attempts() {
+    Job job = Job.builder().id(41L).status("running").attempts(1).build();
+    when(jobLogChunkRepository.findMaxSeqByJobId(41L)).thenReturn(Optional.of(4));
+
+    jobService.runJobAsync(job, failing(QUICK_RETRIES));
+
+    verify(jobLogChunkRepository, times(1))
+        .save(JobLogChunk.builder().jobId(41L).seq(5).text("done").build());
+    assertEquals(2, job.getAttempts());
+  }
+
+  static class RestartableJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext c) {}
+
+    @Override
+    public boolean restartable() {
+      return true;
+    }
+  }
+
+  static class SampleJob implements JobContextConsumer {
+    @Override
+    public void accept(JobContext c) {}
+  }
+}
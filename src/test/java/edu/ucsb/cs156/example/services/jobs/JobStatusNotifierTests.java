@@ -0,0 +1,100 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobStatusEvent;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+public class JobStatusNotifierTests {
+
+  @Mock private SimpMessageSendingOperations messagingTemplate;
+
+  @InjectMocks private JobStatusNotifier jobStatusNotifier;
+
+  private final Job job =
+      Job.builder().id(7L).jobType("TestJob").status("running").progressTotal(10L).build();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  public void events_go_to_the_topic_of_all_jobs_and_of_the_job() {
+    ArgumentCaptor<JobStatusEvent> events = ArgumentCaptor.forClass(JobStatusEvent.class);
+
+    jobStatusNotifier.started(job);
+
+    verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/jobs"), events.capture());
+    verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/jobs/7"), events.capture());
+    JobStatusEvent event = events.getValue();
+    assertEquals("started", event.getEvent());
+    assertEquals(7L, event.getJobId());
+    assertEquals("TestJob", event.getJobType());
+    assertEquals("running", event.getStatus());
+    assertEquals(10L, event.getTotal());
+  }
+
+  @Test
+  public void each_change_is_named_by_its_event() {
+    ArgumentCaptor<JobStatusEvent> events = ArgumentCaptor.forClass(JobStatusEvent.class);
+
+    jobStatusNotifier.submitted(job);
+    jobStatusNotifier.retrying(job);
+    jobStatusNotifier.finished(job);
+
+    verify(messagingTemplate, times(3)).convertAndSend(eq("/topic/jobs"), events.capture());
+    assertEquals(
+        List.of("submitted", "retrying", "finished"),
+        events.getAllValues().stream().map(JobStatusEvent::getEvent).toList());
+  }
+
+  @Test
+  public void progress_events_carry_the_progress_just_written() {
+    ArgumentCaptor<JobStatusEvent> events = ArgumentCaptor.forClass(JobStatusEvent.class);
+
+    jobStatusNotifier.progress(
+        job,
+        JobProgress.builder()
+            .jobId(7L)
+            .status("running")
+            .total(10L)
+            .done(4L)
+            .phase("loading")
+            .counters("{\"skipped\":1}")
+            .build());
+
+    verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/jobs/7"), events.capture());
+    JobStatusEvent event = events.getValue();
+    assertEquals("progress", event.getEvent());
+    assertEquals(4L, event.getDone());
+    assertEquals("loading", event.getPhase());
+    assertEquals("{\"skipped\":1}", event.getCounters());
+  }
+
+  @Test
+  public void failure_to_send_does_not_affect_the_job() {
+    doThrow(new MessageDeliveryException("broker is down"))
+        .when(messagingTemplate)
+        .convertAndSend(any(String.class), any(Object.class));
+
+    jobStatusNotifier.finished(job);
+
+    verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/jobs"), any(Object.class));
+  }
+}
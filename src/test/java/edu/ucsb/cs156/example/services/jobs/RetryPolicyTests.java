@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.errors.JobCancelledException;
+import edu.ucsb.cs156.example.errors.RetryableJobException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+
+public class RetryPolicyTests {
+
+  private final RetryPolicy policy =
+      RetryPolicy.builder()
+          .maxAttempts(4)
+          .initialBackoff(Duration.ofMillis(100))
+          .multiplier(3)
+          .maxBackoff(Duration.ofMillis(500))
+          .jitter(0.5)
+          .build();
+
+  @Test
+  public void backoff_grows_exponentially_up_to_the_cap() {
+    assertEquals(Duration.ofMillis(100), policy.backoff(1, 0));
+    assertEquals(Duration.ofMillis(300), policy.backoff(2, 0));
+    assertEquals(Duration.ofMillis(500), policy.backoff(3, 0));
+    assertEquals(Duration.ofMillis(500), policy.backoff(10, 0));
+  }
+
+  @Test
+  public void jitter_takes_off_up_to_its_share_of_the_backoff() {
+    assertEquals(Duration.ofMillis(300), policy.backoff(2, 0.0));
+    assertEquals(Duration.ofMillis(225), policy.backoff(2, 0.5));
+    assertEquals(Duration.ofMillis(150), policy.backoff(2, 0.999999));
+
+    RetryPolicy noJitter = policy.toBuilder().jitter(0).build();
+    assertEquals(Duration.ofMillis(300), noJitter.backoff(2, 0.9));
+  }
+
+  @Test
+  public void transient_failures_are_recognised_through_their_causes() {
+    assertTrue(RetryPolicy.isTransient(new CannotAcquireLockException("deadlock")));
+    assertTrue(RetryPolicy.isTransient(new SQLTransactionRollbackException("deadlock")));
+    assertTrue(RetryPolicy.isTransient(new SocketTimeoutException("upstream")));
+    assertTrue(RetryPolicy.isTransient(new RetryableJobException("try later", null)));
+    assertTrue(RetryPolicy.isTransient(new RecoverableDataAccessException("reconnected")));
+    assertTrue(RetryPolicy.isTransient(new SQLRecoverableException("connection reset")));
+    assertTrue(RetryPolicy.isTransient(new TimeoutException("no reply")));
+    assertTrue(
+        RetryPolicy.isTransient(
+            new RuntimeException(new UncheckedIOException(new SocketTimeoutException("read")))));
+
+    assertFalse(RetryPolicy.isTransient(new DataIntegrityViolationException("duplicate")));
+    assertFalse(RetryPolicy.isTransient(new IllegalArgumentException("bad input")));
+  }
+
+  @Test
+  public void causes_that_loop_back_are_each_checked_once() {
+    IllegalStateException outer = new IllegalStateException("outer");
+    IllegalArgumentException inner = new IllegalArgumentException("inner", outer);
+    outer.initCause(inner);
+
+    assertFalse(RetryPolicy.isTransient(outer));
+  }
+
+  @Test
+  public void jobs_are_retried_until_max_attempts() {
+    Exception deadlock = new CannotAcquireLockException("deadlock");
+
+    assertTrue(policy.shouldRetry(1, deadlock));
+    assertTrue(policy.shouldRetry(3, deadlock));
+    assertFalse(policy.shouldRetry(4, deadlock));
+    assertFalse(RetryPolicy.NONE.shouldRetry(1, deadlock));
+  }
+
+  @Test
+  public void stopped_jobs_are_never_retried() {
+    RetryPolicy everything = policy.toBuilder().retryOn(e -> true).build();
+
+    assertTrue(everything.shouldRetry(1, new IllegalStateException("bug")));
+    assertFalse(everything.shouldRetry(1, new JobCancelledException(1L, "cancelled")));
+    assertFalse(everything.shouldRetry(1, new InterruptedException()));
+  }
+}